@@ -0,0 +1,429 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Runs a script of commands against a {@code Company} without prompting, as
+ * an alternative to the interactive loop of {@link UserInterface}. Every line
+ * of the script holds one command and its arguments, separated by spaces:
+ *
+ * <pre>
+ * addComponent name            addSupplier name
+ * addRelation C1 S1            assign C1 quantity
+ * order C1 S1 quantity         fulfill O1
+ * component C1                 supplier S1
+ * components                   suppliers
+ * orders                       save
+ * </pre>
+ *
+ * A name is the rest of the line. Blank lines and lines starting with
+ * {@code #} are skipped.
+ *
+ * The whole script is parsed before anything is run, so that a command that
+ * cannot be parsed is reported without stopping the others. Runs of
+ * consecutive commands of the same kind that have a batch form in
+ * {@code Company} are executed as one batch of at most {@value #BATCH_SIZE},
+ * and journaled as one frame. A batch gives the same results as its commands
+ * run one at a time, including the IDs issued, so that a later command of
+ * the script can name what an earlier one added or ordered.
+ *
+ * The result of every command is written as one line of JSON, in the order
+ * of the script, such as
+ * {@code {"line":3,"command":"order","ok":true,"id":"O1"}}; a command that
+ * failed has {@code "ok":false} and an {@code "error"}. The output is
+ * buffered by the caller.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class BatchProcessor {
+
+	/**
+	 * Largest number of commands executed as one batch.
+	 */
+	public static final int BATCH_SIZE = 1 << 12;
+
+	/**
+	 * Command codes, and the words that stand for them in a script.
+	 */
+	private static final byte INVALID = 0;
+	private static final byte ADD_COMPONENT = 1;
+	private static final byte ADD_SUPPLIER = 2;
+	private static final byte ADD_RELATION = 3;
+	private static final byte ASSIGN = 4;
+	private static final byte ORDER = 5;
+	private static final byte FULFILL = 6;
+	private static final byte COMPONENT = 7;
+	private static final byte SUPPLIER = 8;
+	private static final byte COMPONENTS = 9;
+	private static final byte SUPPLIERS = 10;
+	private static final byte ORDERS = 11;
+	private static final byte SAVE = 12;
+	private static final String[] WORDS = {"invalid", "addComponent",
+			"addSupplier", "addRelation", "assign", "order", "fulfill",
+			"component", "supplier", "components", "suppliers", "orders",
+			"save"};
+
+	/**
+	 * Number of arguments of each command, not counting names.
+	 */
+	private static final int[] ARGUMENTS = {0, 0, 0, 2, 2, 3, 1, 1, 1, 0, 0,
+			0, 0};
+
+	private final Company company;
+
+	/**
+	 * The parsed script, one entry per command: its code, its line, its IDs,
+	 * its quantity, and its name or the reason it could not be parsed.
+	 */
+	private byte[] codes = new byte[1024];
+	private int[] lines = new int[1024];
+	private long[] firstIds = new long[1024];
+	private long[] secondIds = new long[1024];
+	private int[] quantities = new int[1024];
+	private String[] texts = new String[1024];
+	private int count;
+
+	private int failed;
+
+	/**
+	 * Creates a processor for the given company
+	 *
+	 * @param company
+	 *            the company the commands are run against
+	 */
+	public BatchProcessor(Company company) {
+		this.company = company;
+	}
+
+	/**
+	 * Parses the script read from the given reader, and adds its commands to
+	 * those to be run.
+	 *
+	 * @param script
+	 *            the script
+	 * @throws IOException
+	 *             if the script could not be read
+	 */
+	public void parse(Reader script) throws IOException {
+		BufferedReader reader = script instanceof BufferedReader
+				? (BufferedReader) script
+				: new BufferedReader(script, 1 << 16);
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			parseLine(line, lineNumber);
+		}
+	}
+
+	/**
+	 * Parses one command.
+	 */
+	private void parseLine(String line, int lineNumber) {
+		if (count == codes.length) {
+			int length = count * 2;
+			codes = Arrays.copyOf(codes, length);
+			lines = Arrays.copyOf(lines, length);
+			firstIds = Arrays.copyOf(firstIds, length);
+			secondIds = Arrays.copyOf(secondIds, length);
+			quantities = Arrays.copyOf(quantities, length);
+			texts = Arrays.copyOf(texts, length);
+		}
+		int index = count++;
+		lines[index] = lineNumber;
+		firstIds[index] = EntityId.NONE;
+		secondIds[index] = EntityId.NONE;
+		quantities[index] = 0;
+		texts[index] = null;
+		int space = line.indexOf(' ');
+		String word = space < 0 ? line : line.substring(0, space);
+		String rest = space < 0 ? "" : line.substring(space + 1).trim();
+		byte code = INVALID;
+		for (byte candidate = ADD_COMPONENT; candidate < WORDS.length; candidate++) {
+			if (WORDS[candidate].equals(word)) {
+				code = candidate;
+				break;
+			}
+		}
+		codes[index] = INVALID;
+		if (code == INVALID) {
+			texts[index] = "Unknown command " + word;
+			return;
+		}
+		if (code == ADD_COMPONENT || code == ADD_SUPPLIER) {
+			if (rest.isEmpty()) {
+				texts[index] = "A name is needed";
+				return;
+			}
+			texts[index] = rest;
+			codes[index] = code;
+			return;
+		}
+		String[] arguments = rest.isEmpty() ? new String[0]
+				: rest.split(" +");
+		if (arguments.length != ARGUMENTS[code]) {
+			texts[index] = word + " takes " + ARGUMENTS[code] + " arguments";
+			return;
+		}
+		int ids = code == ASSIGN ? 1 : code == ORDER ? 2 : arguments.length;
+		for (int argument = 0; argument < ids; argument++) {
+			long id = EntityId.parse(arguments[argument]);
+			if (id == EntityId.NONE) {
+				texts[index] = "Invalid ID " + arguments[argument];
+				return;
+			}
+			if (argument == 0) {
+				firstIds[index] = id;
+			} else {
+				secondIds[index] = id;
+			}
+		}
+		if (ids < arguments.length) {
+			try {
+				quantities[index] = Integer.parseInt(arguments[ids]);
+			} catch (NumberFormatException nfe) {
+				texts[index] = "Invalid quantity " + arguments[ids];
+				return;
+			}
+		}
+		codes[index] = code;
+	}
+
+	/**
+	 * Returns the number of commands parsed so far
+	 *
+	 * @return the number of commands
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of commands that failed, or could not be parsed,
+	 * in the last run
+	 *
+	 * @return the number of failed commands
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Runs the commands parsed so far, in order, and writes their results.
+	 * The commands are then discarded.
+	 *
+	 * @param writer
+	 *            the destination of the results
+	 * @throws IOException
+	 *             if the results could not be written
+	 */
+	public void run(Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		failed = 0;
+		int index = 0;
+		while (index < count) {
+			byte code = codes[index];
+			int end = index + 1;
+			if (code == ADD_COMPONENT || code == ADD_SUPPLIER
+					|| code == ADD_RELATION || code == ORDER
+					|| code == FULFILL) {
+				while (end < count && codes[end] == code
+						&& end - index < BATCH_SIZE) {
+					end++;
+				}
+			}
+			switch (code) {
+				case ADD_COMPONENT :
+					addComponents(json, index, end);
+					break;
+				case ADD_SUPPLIER :
+					addSuppliers(json, index, end);
+					break;
+				case ADD_RELATION :
+					addRelations(json, index, end);
+					break;
+				case ORDER :
+					placeOrders(json, index, end);
+					break;
+				case FULFILL :
+					fulfillOrders(json, index, end);
+					break;
+				default :
+					runSingle(json, index);
+			}
+			index = end;
+		}
+		count = 0;
+		Arrays.fill(texts, null);
+	}
+
+	private void addComponents(JsonWriter json, int start, int end)
+			throws IOException {
+		Component[] added = company
+				.addComponents(Arrays.copyOfRange(texts, start, end));
+		for (int index = start; index < end; index++) {
+			begin(json, index, true).name("id")
+					.value(added[index - start].getId()).endObject().newLine();
+		}
+	}
+
+	private void addSuppliers(JsonWriter json, int start, int end)
+			throws IOException {
+		Supplier[] added = company
+				.addSuppliers(Arrays.copyOfRange(texts, start, end));
+		for (int index = start; index < end; index++) {
+			begin(json, index, true).name("id")
+					.value(added[index - start].getId()).endObject().newLine();
+		}
+	}
+
+	private void addRelations(JsonWriter json, int start, int end)
+			throws IOException {
+		ComponentSupplierRelation[] added = company
+				.addComponentSupplierRelations(
+						Arrays.copyOfRange(firstIds, start, end),
+						Arrays.copyOfRange(secondIds, start, end));
+		for (int index = start; index < end; index++) {
+			if (added[index - start] != null) {
+				begin(json, index, true).endObject().newLine();
+			} else {
+				fail(json, index,
+						"Component or supplier not found, or already related");
+			}
+		}
+	}
+
+	private void placeOrders(JsonWriter json, int start, int end)
+			throws IOException {
+		Order[] orders = company.placeOrders(
+				Arrays.copyOfRange(firstIds, start, end),
+				Arrays.copyOfRange(secondIds, start, end),
+				Arrays.copyOfRange(quantities, start, end));
+		for (int index = start; index < end; index++) {
+			if (orders[index - start] != null) {
+				begin(json, index, true).name("id")
+						.value(orders[index - start].getId()).endObject()
+						.newLine();
+			} else {
+				fail(json, index,
+						"Component or supplier not found, not related, or quantity not positive");
+			}
+		}
+	}
+
+	private void fulfillOrders(JsonWriter json, int start, int end)
+			throws IOException {
+		ComponentSupplierRelation[] fulfilled = company
+				.fulfillOrders(Arrays.copyOfRange(firstIds, start, end));
+		for (int index = start; index < end; index++) {
+			if (fulfilled[index - start] != null) {
+				begin(json, index, true).endObject().newLine();
+			} else {
+				fail(json, index, "Order not found");
+			}
+		}
+	}
+
+	/**
+	 * Runs a command that has no batch form, or could not be parsed.
+	 */
+	private void runSingle(JsonWriter json, int index) throws IOException {
+		switch (codes[index]) {
+			case ASSIGN : {
+				Component component = company.findComponent(firstIds[index]);
+				if (component == null) {
+					fail(json, index, "Component not found");
+				} else if (quantities[index] < 1) {
+					fail(json, index, "Quantity not positive");
+				} else if (!company.assignComponent(component,
+						quantities[index])) {
+					fail(json, index, "Not enough stock");
+				} else {
+					begin(json, index, true).name("stock")
+							.value(component.getStock()).endObject().newLine();
+				}
+				break;
+			}
+			case COMPONENT : {
+				Component component = company.findComponent(firstIds[index]);
+				if (component == null) {
+					fail(json, index, "Component not found");
+				} else {
+					begin(json, index, true).name("component");
+					component.writeJson(json);
+					json.endObject().newLine();
+				}
+				break;
+			}
+			case SUPPLIER : {
+				Supplier supplier = company.findSupplier(firstIds[index]);
+				if (supplier == null) {
+					fail(json, index, "Supplier not found");
+				} else {
+					begin(json, index, true).name("supplier");
+					supplier.writeJson(json);
+					json.endObject().newLine();
+				}
+				break;
+			}
+			case COMPONENTS :
+				begin(json, index, true).name("items").beginArray();
+				for (Component component : company.getAllComponents()) {
+					component.writeJson(json);
+				}
+				json.endArray().endObject().newLine();
+				break;
+			case SUPPLIERS :
+				begin(json, index, true).name("items").beginArray();
+				for (Supplier supplier : company.getAllSuppliers()) {
+					supplier.writeJson(json);
+				}
+				json.endArray().endObject().newLine();
+				break;
+			case ORDERS :
+				begin(json, index, true).name("items").beginArray();
+				for (Order order : company.getPendingOrders()) {
+					order.writeJson(json);
+				}
+				json.endArray().endObject().newLine();
+				break;
+			case SAVE :
+				if (Company.save()) {
+					begin(json, index, true).endObject().newLine();
+				} else {
+					fail(json, index, "The company could not be saved");
+				}
+				break;
+			default :
+				fail(json, index, texts[index]);
+		}
+	}
+
+	/**
+	 * Starts the result of a command, leaving its object open.
+	 */
+	private JsonWriter begin(JsonWriter json, int index, boolean ok)
+			throws IOException {
+		return json.beginObject().name("line").value(lines[index])
+				.name("command").value(WORDS[codes[index]]).name("ok")
+				.value(ok);
+	}
+
+	/**
+	 * Writes the result of a command that failed.
+	 */
+	private void fail(JsonWriter json, int index, String error)
+			throws IOException {
+		failed++;
+		begin(json, index, false).name("error").value(error).endObject()
+				.newLine();
+	}
+}
@@ -0,0 +1,564 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads components, suppliers and relations into a {@code Company} from a
+ * delimited text file. Every line holds one record, with comma-separated
+ * fields:
+ *
+ * <pre>
+ * C,name                    a component
+ * S,name                    a supplier
+ * R,component,supplier      a relation between a component and a supplier
+ * </pre>
+ *
+ * The component and the supplier of a relation are either the ID of one that
+ * is already in the company, such as {@code C12}, or {@code #} followed by
+ * the position of a {@code C} or {@code S} record earlier in the same file,
+ * counting from {@literal 1}, such as {@code #3}. A field may be enclosed in
+ * double quotes, with a quote inside it written twice. Blank lines and lines
+ * starting with {@code #} are skipped. A line that cannot be imported is
+ * counted and skipped, and does not stop the import.
+ *
+ * The file is read through a fixed buffer, and the records are added to the
+ * company in batches of {@value #BATCH_SIZE}, each journaled as one frame.
+ * The memory the importer uses therefore does not depend on the size of the
+ * file, apart from two numbers per batch of components or suppliers, from
+ * which the positions in the file are turned into IDs.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class BulkImporter {
+
+	/**
+	 * Largest number of records of each kind added to the company at once.
+	 */
+	public static final int BATCH_SIZE = 1 << 12;
+
+	/**
+	 * Size of the read buffer, and so the longest line that can be imported.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Largest number of rejected lines that are described in the report.
+	 */
+	private static final int MAXIMUM_ERRORS = 20;
+
+	/**
+	 * Largest number of fields on a line.
+	 */
+	private static final int MAXIMUM_FIELDS = 3;
+
+	private final Company company;
+
+	/**
+	 * Records read but not yet added to the company. A relation keeps its
+	 * line, in case it cannot be added, and refers to a component or supplier
+	 * of the file by the negated position of its record.
+	 */
+	private final String[] componentNames = new String[BATCH_SIZE];
+	private final String[] supplierNames = new String[BATCH_SIZE];
+	private final long[] relationComponents = new long[BATCH_SIZE];
+	private final long[] relationSuppliers = new long[BATCH_SIZE];
+	private final long[] relationLines = new long[BATCH_SIZE];
+	private int componentCount;
+	private int supplierCount;
+	private int relationCount;
+
+	/**
+	 * For every batch of components or suppliers added, the position in the
+	 * file of its first record and the number in its first ID. The numbers of
+	 * a batch are consecutive.
+	 */
+	private int[] componentRuns = new int[16];
+	private int[] supplierRuns = new int[16];
+	private int componentRunCount;
+	private int supplierRunCount;
+
+	/**
+	 * Number of component and supplier records read so far.
+	 */
+	private int componentsRead;
+	private int suppliersRead;
+
+	/**
+	 * Where each field of the current line starts and ends.
+	 */
+	private final int[] fieldStarts = new int[MAXIMUM_FIELDS];
+	private final int[] fieldEnds = new int[MAXIMUM_FIELDS];
+
+	private long lineNumber;
+	private Report report;
+
+	/**
+	 * Creates an importer for the given company
+	 *
+	 * @param company
+	 *            the company the records are added to
+	 */
+	public BulkImporter(Company company) {
+		this.company = company;
+	}
+
+	/**
+	 * Imports the given file
+	 *
+	 * @param file
+	 *            the file to be imported
+	 * @return the report of the import
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public Report importFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			return importFrom(channel);
+		}
+	}
+
+	/**
+	 * Imports everything that can be read from the given channel. Records
+	 * refer to each other by their position among the records read by this
+	 * call only.
+	 *
+	 * @param channel
+	 *            the channel the records are read from
+	 * @return the report of the import
+	 * @throws IOException
+	 *             if the channel could not be read
+	 */
+	public Report importFrom(ReadableByteChannel channel) throws IOException {
+		report = new Report();
+		lineNumber = 0;
+		componentsRead = 0;
+		suppliersRead = 0;
+		componentRunCount = 0;
+		supplierRunCount = 0;
+		long start = System.nanoTime();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		byte[] bytes = buffer.array();
+		boolean skipping = false;
+		int scanned = 0;
+		while (true) {
+			int read = channel.read(buffer);
+			if (read > 0) {
+				report.bytes += read;
+			}
+			int limit = buffer.position();
+			int lineStart = 0;
+			for (int position = scanned; position < limit; position++) {
+				if (bytes[position] != '\n') {
+					continue;
+				}
+				if (skipping) {
+					lineNumber++;
+					skipping = false;
+				} else {
+					line(bytes, lineStart, position);
+				}
+				lineStart = position + 1;
+			}
+			if (read < 0) {
+				if (lineStart < limit) {
+					if (skipping) {
+						lineNumber++;
+					} else {
+						line(bytes, lineStart, limit);
+					}
+				}
+				break;
+			}
+			if (lineStart == 0 && limit == bytes.length) {
+				if (!skipping) {
+					reject(lineNumber + 1, "Line too long");
+					skipping = true;
+				}
+				lineStart = limit;
+			}
+			buffer.limit(limit).position(lineStart);
+			buffer.compact();
+			scanned = buffer.position();
+		}
+		flush();
+		report.lines = lineNumber;
+		report.nanos = System.nanoTime() - start;
+		return report;
+	}
+
+	/**
+	 * Reads one line, without its line feed, and adds its record to the
+	 * batches.
+	 */
+	private void line(byte[] bytes, int start, int end) {
+		lineNumber++;
+		if (end > start && bytes[end - 1] == '\r') {
+			end--;
+		}
+		if (lineNumber == 1 && end - start >= 3 && bytes[start] == (byte) 0xEF
+				&& bytes[start + 1] == (byte) 0xBB
+				&& bytes[start + 2] == (byte) 0xBF) {
+			start += 3;
+		}
+		if (start == end || bytes[start] == '#') {
+			return;
+		}
+		int fields = split(bytes, start, end);
+		if (fields < 0) {
+			reject(lineNumber, "Badly formed line");
+			return;
+		}
+		if (fieldEnds[0] - fieldStarts[0] != 1) {
+			reject(lineNumber, "Unknown record type");
+			return;
+		}
+		switch (bytes[fieldStarts[0]]) {
+			case 'C' :
+				if (fields != 2 || fieldEnds[1] == fieldStarts[1]) {
+					reject(lineNumber, "A component needs a name");
+					return;
+				}
+				componentsRead++;
+				componentNames[componentCount++] = field(bytes, 1);
+				if (componentCount == BATCH_SIZE) {
+					flush();
+				}
+				break;
+			case 'S' :
+				if (fields != 2 || fieldEnds[1] == fieldStarts[1]) {
+					reject(lineNumber, "A supplier needs a name");
+					return;
+				}
+				suppliersRead++;
+				supplierNames[supplierCount++] = field(bytes, 1);
+				if (supplierCount == BATCH_SIZE) {
+					flush();
+				}
+				break;
+			case 'R' : {
+				if (fields != 3) {
+					reject(lineNumber, "A relation needs a component and a supplier");
+					return;
+				}
+				long component = reference(bytes, 1, EntityId.COMPONENT,
+						componentsRead);
+				long supplier = reference(bytes, 2, EntityId.SUPPLIER,
+						suppliersRead);
+				if (component == EntityId.NONE || supplier == EntityId.NONE) {
+					reject(lineNumber, "Unknown component or supplier");
+					return;
+				}
+				relationComponents[relationCount] = component;
+				relationSuppliers[relationCount] = supplier;
+				relationLines[relationCount++] = lineNumber;
+				if (relationCount == BATCH_SIZE) {
+					flush();
+				}
+				break;
+			}
+			default :
+				reject(lineNumber, "Unknown record type");
+		}
+	}
+
+	/**
+	 * Finds the fields of a line. A quoted field is unquoted in place, which
+	 * never makes it longer.
+	 *
+	 * @return the number of fields, or {@literal -1} if the line is badly
+	 *         formed
+	 */
+	private int split(byte[] bytes, int start, int end) {
+		int fields = 0;
+		int position = start;
+		while (true) {
+			if (fields == MAXIMUM_FIELDS) {
+				return -1;
+			}
+			fieldStarts[fields] = position;
+			if (position < end && bytes[position] == '"') {
+				int write = position;
+				position++;
+				while (true) {
+					if (position == end) {
+						return -1;
+					}
+					if (bytes[position] == '"') {
+						if (position + 1 < end && bytes[position + 1] == '"') {
+							position++;
+						} else {
+							position++;
+							break;
+						}
+					}
+					bytes[write++] = bytes[position++];
+				}
+				fieldEnds[fields++] = write;
+				if (position < end && bytes[position] != ',') {
+					return -1;
+				}
+			} else {
+				while (position < end && bytes[position] != ',') {
+					position++;
+				}
+				fieldEnds[fields++] = position;
+			}
+			if (position == end) {
+				return fields;
+			}
+			position++;
+		}
+	}
+
+	/**
+	 * Decodes the given field of the current line.
+	 */
+	private String field(byte[] bytes, int field) {
+		return new String(bytes, fieldStarts[field],
+				fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a reference to a component or supplier: its ID, packed, or the
+	 * negated position of its record in the file.
+	 *
+	 * @param type
+	 *            the type of the ID
+	 * @param read
+	 *            the number of records of that type read so far
+	 * @return the reference, or {@link EntityId#NONE} if the field is not one
+	 */
+	private long reference(byte[] bytes, int field, int type, int read) {
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		if (end - start < 2) {
+			return EntityId.NONE;
+		}
+		int number = parseNumber(bytes, start + 1, end);
+		if (number < 0) {
+			return EntityId.NONE;
+		}
+		if (bytes[start] == '#') {
+			return number <= read ? -number : EntityId.NONE;
+		}
+		return bytes[start] == type ? EntityId.of(type, number) : EntityId.NONE;
+	}
+
+	/**
+	 * Parses a positive decimal number without leading zeros.
+	 *
+	 * @return the number, or {@literal -1} if there is none
+	 */
+	private static int parseNumber(byte[] bytes, int start, int end) {
+		if (end - start > 10 || bytes[start] == '0') {
+			return -1;
+		}
+		long number = 0;
+		for (int position = start; position < end; position++) {
+			if (bytes[position] < '0' || bytes[position] > '9') {
+				return -1;
+			}
+			number = number * 10 + (bytes[position] - '0');
+		}
+		return number > Integer.MAX_VALUE ? -1 : (int) number;
+	}
+
+	/**
+	 * Adds the records read so far to the company: first the components and
+	 * suppliers, then the relations, which may refer to them.
+	 */
+	private void flush() {
+		if (componentCount > 0) {
+			Component[] added = company.addComponents(
+					Arrays.copyOf(componentNames, componentCount));
+			componentRuns = addRun(componentRuns, componentRunCount++,
+					componentsRead - componentCount + 1,
+					added[0].getNumber());
+			report.components += componentCount;
+			Arrays.fill(componentNames, 0, componentCount, null);
+			componentCount = 0;
+		}
+		if (supplierCount > 0) {
+			Supplier[] added = company.addSuppliers(
+					Arrays.copyOf(supplierNames, supplierCount));
+			supplierRuns = addRun(supplierRuns, supplierRunCount++,
+					suppliersRead - supplierCount + 1, added[0].getNumber());
+			report.suppliers += supplierCount;
+			Arrays.fill(supplierNames, 0, supplierCount, null);
+			supplierCount = 0;
+		}
+		if (relationCount > 0) {
+			long[] components = new long[relationCount];
+			long[] suppliers = new long[relationCount];
+			for (int index = 0; index < relationCount; index++) {
+				components[index] = resolve(relationComponents[index],
+						EntityId.COMPONENT, componentRuns, componentRunCount);
+				suppliers[index] = resolve(relationSuppliers[index],
+						EntityId.SUPPLIER, supplierRuns, supplierRunCount);
+			}
+			ComponentSupplierRelation[] added = company
+					.addComponentSupplierRelations(components, suppliers);
+			for (int index = 0; index < relationCount; index++) {
+				if (added[index] != null) {
+					report.relations++;
+				} else {
+					reject(relationLines[index],
+							"Unknown component or supplier, or relation already exists");
+				}
+			}
+			relationCount = 0;
+		}
+	}
+
+	/**
+	 * Records the first position and number of a batch.
+	 *
+	 * @return the array of runs, grown if needed
+	 */
+	private static int[] addRun(int[] runs, int run, int position,
+			int number) {
+		if (2 * run + 2 > runs.length) {
+			runs = Arrays.copyOf(runs, runs.length * 2);
+		}
+		runs[2 * run] = position;
+		runs[2 * run + 1] = number;
+		return runs;
+	}
+
+	/**
+	 * Turns a reference into a packed ID.
+	 */
+	private static long resolve(long reference, int type, int[] runs,
+			int runCount) {
+		if (reference > 0) {
+			return reference;
+		}
+		int position = (int) -reference;
+		int low = 0;
+		int high = runCount - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (runs[2 * middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return EntityId.of(type,
+				runs[2 * low + 1] + position - runs[2 * low]);
+	}
+
+	/**
+	 * Counts a line that could not be imported, and describes it if not too
+	 * many have been described already.
+	 */
+	private void reject(long line, String reason) {
+		report.rejected++;
+		if (report.errors.size() < MAXIMUM_ERRORS) {
+			report.errors.add("Line " + line + ": " + reason);
+		}
+	}
+
+	/**
+	 * What an import did, and how fast.
+	 */
+	public static class Report {
+		private long lines;
+		private long bytes;
+		private long components;
+		private long suppliers;
+		private long relations;
+		private long rejected;
+		private long nanos;
+		private List<String> errors = new ArrayList<String>();
+
+		/**
+		 * Returns the number of lines read
+		 *
+		 * @return the number of lines
+		 */
+		public long getLines() {
+			return lines;
+		}
+
+		/**
+		 * Returns the number of components added
+		 *
+		 * @return the number of components
+		 */
+		public long getComponents() {
+			return components;
+		}
+
+		/**
+		 * Returns the number of suppliers added
+		 *
+		 * @return the number of suppliers
+		 */
+		public long getSuppliers() {
+			return suppliers;
+		}
+
+		/**
+		 * Returns the number of relations added
+		 *
+		 * @return the number of relations
+		 */
+		public long getRelations() {
+			return relations;
+		}
+
+		/**
+		 * Returns the number of lines that could not be imported
+		 *
+		 * @return the number of rejected lines
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Returns why the first lines that could not be imported were
+		 * rejected
+		 *
+		 * @return at most {@value BulkImporter#MAXIMUM_ERRORS} descriptions
+		 */
+		public List<String> getErrors() {
+			return Collections.unmodifiableList(errors);
+		}
+
+		/**
+		 * Returns the number of records imported per second
+		 *
+		 * @return the throughput of the import
+		 */
+		public double getRecordsPerSecond() {
+			return (components + suppliers + relations) * 1e9
+					/ Math.max(1, nanos);
+		}
+
+		/**
+		 * Summarizes the import, including its throughput
+		 */
+		@Override
+		public String toString() {
+			return String.format(
+					"Imported %d components, %d suppliers and %d relations from %d lines in %.2f s"
+							+ " (%.0f records/s, %.1f MB/s); %d lines rejected.",
+					components, suppliers, relations, lines, nanos / 1e9,
+					getRecordsPerSecond(), bytes * 1e3 / Math.max(1, nanos),
+					rejected);
+		}
+	}
+}
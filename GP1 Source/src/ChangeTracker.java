@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of the components, suppliers and relations that have been
+ * added or changed since the company was last saved, so that a save can
+ * write just those; see {@link DeltaSegment}. Every object is listed at most
+ * once, however often it changes: it carries a flag saying whether it is
+ * listed already, which is read without a lock, so that marking an object
+ * that is already listed costs no more than reading a field. Orders are
+ * tracked by {@link PendingOrders} itself.
+ *
+ * Objects read back from a snapshot are not listed, and neither are the
+ * changes made while a company is being retrieved; those are on disk
+ * already.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class ChangeTracker {
+	private List<Component> components = new ArrayList<Component>();
+	private List<Supplier> suppliers = new ArrayList<Supplier>();
+	private List<ComponentSupplierRelation> relations = new ArrayList<ComponentSupplierRelation>();
+	private static ChangeTracker tracker;
+
+	/**
+	 * Private constructor for singleton pattern
+	 *
+	 */
+	private ChangeTracker() {
+	}
+
+	/**
+	 * Supports the singleton pattern
+	 *
+	 * @return the singleton object
+	 */
+	public static synchronized ChangeTracker instance() {
+		if (tracker == null) {
+			return (tracker = new ChangeTracker());
+		} else {
+			return tracker;
+		}
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} creates a tracker with nothing listed. Used when
+	 * the company is being rebuilt from disk.
+	 */
+	static synchronized void reset() {
+		tracker = null;
+	}
+
+	/**
+	 * Lists a component that has been added, or whose stock has changed,
+	 * unless it is listed already.
+	 *
+	 * @param component
+	 *            the component
+	 */
+	synchronized void changed(Component component) {
+		if (!component.isChanged()) {
+			component.setChanged(true);
+			components.add(component);
+		}
+	}
+
+	/**
+	 * Lists a supplier that has been added, unless it is listed already.
+	 *
+	 * @param supplier
+	 *            the supplier
+	 */
+	synchronized void changed(Supplier supplier) {
+		if (!supplier.isChanged()) {
+			supplier.setChanged(true);
+			suppliers.add(supplier);
+		}
+	}
+
+	/**
+	 * Lists a relation that has been added, or whose quantity supplied to
+	 * date has changed, unless it is listed already.
+	 *
+	 * @param relation
+	 *            the relation
+	 */
+	synchronized void changed(ComponentSupplierRelation relation) {
+		if (!relation.isChanged()) {
+			relation.setChanged(true);
+			relations.add(relation);
+		}
+	}
+
+	/**
+	 * Returns a copy of the list of the components added or changed since the
+	 * last save, in the order they were first changed, so that it can be
+	 * read while the list grows.
+	 *
+	 * @return the components
+	 */
+	public synchronized List<Component> getComponents() {
+		return new ArrayList<Component>(components);
+	}
+
+	/**
+	 * Returns a copy of the list of the suppliers added since the last save,
+	 * in the order they were added.
+	 *
+	 * @return the suppliers
+	 */
+	public synchronized List<Supplier> getSuppliers() {
+		return new ArrayList<Supplier>(suppliers);
+	}
+
+	/**
+	 * Returns a copy of the list of the relations added or changed since the
+	 * last save, in the order they were first changed.
+	 *
+	 * @return the relations
+	 */
+	public synchronized List<ComponentSupplierRelation> getRelations() {
+		return new ArrayList<ComponentSupplierRelation>(relations);
+	}
+
+	/**
+	 * Returns the number of objects listed.
+	 *
+	 * @return the number of components, suppliers and relations listed
+	 */
+	public synchronized int size() {
+		return components.size() + suppliers.size() + relations.size();
+	}
+
+	/**
+	 * Forgets everything listed, once it has been saved.
+	 */
+	synchronized void clear() {
+		for (Component component : components) {
+			component.setChanged(false);
+		}
+		for (Supplier supplier : suppliers) {
+			supplier.setChanged(false);
+		}
+		for (ComponentSupplierRelation relation : relations) {
+			relation.setChanged(false);
+		}
+		components = new ArrayList<Component>();
+		suppliers = new ArrayList<Supplier>();
+		relations = new ArrayList<ComponentSupplierRelation>();
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Holds the columns in which the stock of every {@code Component} and the
+ * quantity supplied to date of every {@code ComponentSupplierRelation} are
+ * kept. Components and relations only hold their slot in these columns.
+ *
+ * The columns are kept outside of the heap when the system property
+ * {@value #OFF_HEAP_PROPERTY} is {@literal true}, as in
+ * {@code java -Dcompany.offHeap=true UserInterface}, and on the heap
+ * otherwise.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class ColumnStorage {
+
+	/**
+	 * Name of the system property that selects off-heap columns.
+	 */
+	public static final String OFF_HEAP_PROPERTY = "company.offHeap";
+
+	private IntColumn stocks;
+	private IntColumn quantities;
+	private static volatile ColumnStorage storage;
+
+	/**
+	 * Private constructor for singleton pattern
+	 *
+	 * @param offHeap
+	 *            whether the columns are kept outside of the heap
+	 */
+	private ColumnStorage(boolean offHeap) {
+		stocks = new IntColumn(offHeap);
+		quantities = new IntColumn(offHeap);
+	}
+
+	/**
+	 * Supports the singleton pattern. Only takes a lock while the singleton
+	 * is being created, since every stock and quantity access goes through
+	 * here.
+	 *
+	 * @return the singleton object
+	 */
+	public static ColumnStorage instance() {
+		ColumnStorage current = storage;
+		if (current == null) {
+			synchronized (ColumnStorage.class) {
+				if (storage == null) {
+					storage = new ColumnStorage(
+							Boolean.getBoolean(OFF_HEAP_PROPERTY));
+				}
+				current = storage;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} creates empty columns. Used when the company is
+	 * being rebuilt from disk, after which the components and relations of
+	 * the old company must not be used.
+	 */
+	static synchronized void reset() {
+		storage = null;
+	}
+
+	/**
+	 * Returns the column holding the stock of every component
+	 *
+	 * @return the stock column
+	 */
+	public IntColumn getStocks() {
+		return stocks;
+	}
+
+	/**
+	 * Returns the column holding the quantity supplied to date of every
+	 * relation
+	 *
+	 * @return the quantity column
+	 */
+	public IntColumn getQuantities() {
+		return quantities;
+	}
+}
@@ -1,274 +1,1381 @@
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.Iterator;
-
-/**
- * This class acts as a facade for the entire system and facilitates the
- * interactions between the user interface and other parts of the system.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class Company implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private ComponentList components;
-	private SupplierList suppliers;
-	private PendingOrders pendingOrders;
-	private static Company company;
-
-	/**
-	 * Uses singleton pattern; creates collection objects for components,
-	 * suppliers and orders
-	 */
-	private Company() {
-		components = ComponentList.instance();
-		suppliers = SupplierList.instance();
-		pendingOrders = PendingOrders.instance();
-	}
-
-	/**
-	 * Supports the singleton pattern
-	 * 
-	 * @return the singleton object
-	 */
-	public static Company instance() {
-		if (company == null) {
-			IdGenerator.instance();
-			return (company = new Company());
-		} else {
-			return company;
-		}
-	}
-
-	/**
-	 * Adds a new component to the component collection
-	 * 
-	 * @param name
-	 *            component name
-	 * @return the Component object created
-	 */
-	public Component addComponent(String name) {
-		Component component = new Component(name);
-		if (components.insert(component)) {
-			return component;
-		}
-		return null;
-	}
-
-	/**
-	 * Adds a new supplier to the supplier collection
-	 * 
-	 * @param name
-	 *            supplier name
-	 * @return the Supplier object created
-	 */
-	public Supplier addSupplier(String name) {
-		Supplier supplier = new Supplier(name);
-		if (suppliers.insert(supplier)) {
-			return supplier;
-		}
-		return null;
-	}
-
-	/**
-	 * Searches for a given component
-	 * 
-	 * @param componentID
-	 *            identifier of the component
-	 * @return the Component object, if found
-	 */
-	public Component findComponent(String componentID) {
-		return components.search(componentID);
-	}
-
-	/**
-	 * Searches for a given supplier
-	 * 
-	 * @param supplierID
-	 *            identifier of the supplier
-	 * @return the Supplier object, if found
-	 */
-	public Supplier findSupplier(String supplierID) {
-		return suppliers.search(supplierID);
-	}
-
-	/**
-	 * Adds a relationship between a component and supplier, indicating that the
-	 * supplier provides the component
-	 * 
-	 * @param component
-	 *            the Component being supplied
-	 * @param supplier
-	 *            the Supplier of the component
-	 * @return
-	 */
-	public boolean addComponentSupplierRelation(Component component,
-			Supplier supplier) {
-		ComponentSupplierRelation relation = new ComponentSupplierRelation(
-				component, supplier);
-		if (component.addSupplierRelation(relation)
-				&& supplier.addComponentRelation(relation)) {
-			return true;
-		}
-		return false;
-	}
-
-	/**
-	 * Adjusts the in-stock quantity of the given component after a given
-	 * quantity has been assigned for production
-	 * 
-	 * @param component
-	 *            the Component object being assigned
-	 * @param quantity
-	 *            the quantity assigned
-	 * @return true iff there is enough stock for the assignment
-	 */
-	public boolean assignComponent(Component component, int quantity) {
-		return component.assign(quantity);
-	}
-
-	/**
-	 * Places an order for a given component, with the given supplier, for a
-	 * given quantity
-	 * 
-	 * @param component
-	 *            the Component object being ordered
-	 * @param supplier
-	 *            the Supplier who will be supplying the component
-	 * @param quantity
-	 *            the quantity ordered
-	 * @return an Order object, if placing the order was successful
-	 */
-	public Order placeOrder(Component component, Supplier supplier,
-			int quantity) {
-		ComponentSupplierRelation relation = component.getSupplier(supplier);
-		if (relation == null) {
-			return null;
-		}
-
-		Order order = new Order(relation, quantity);
-		pendingOrders.insert(order);
-		return order;
-	}
-
-	/**
-	 * Fulfills a given order, updating the stock of the component and the
-	 * quantity provided by the supplier so far
-	 * 
-	 * @param orderID
-	 *            identifier of the Order object
-	 * @return a ComponentSupplierRelation object if the order was found
-	 */
-	public ComponentSupplierRelation fulfillOrder(String orderID) {
-		Order order = pendingOrders.search(orderID);
-		if (order == null) {
-			return null;
-		}
-		ComponentSupplierRelation relation = order.getRelation();
-		int orderQuantity = order.getQuantity();
-		relation.addQuantity(orderQuantity);
-		relation.getComponent().addToStock(orderQuantity);
-		pendingOrders.remove(order);
-		return relation;
-	}
-
-	/**
-	 * Returns all the supplier relations of a given component
-	 * 
-	 * @param component
-	 *            the Component object
-	 * @return an Iterator of all supplier relations of the component
-	 */
-	public Iterator<ComponentSupplierRelation> getComponentSuppliers(
-			Component component) {
-		return component.getAllSuppliers();
-	}
-
-	/**
-	 * Returns all component relations of a given supplier
-	 * 
-	 * @param supplier
-	 *            the Supplier object
-	 * @return an Iterator of all component relations of the supplier
-	 */
-	public Iterator<ComponentSupplierRelation> getSuppliedComponents(
-			Supplier supplier) {
-		return supplier.getAllComponents();
-	}
-
-	/**
-	 * Returns the list of all outstanding orders
-	 * 
-	 * @return a PendingOrders object
-	 */
-	public PendingOrders getPendingOrders() {
-		return pendingOrders;
-	}
-
-	/**
-	 * Returns the list of all components
-	 * 
-	 * @return a ComponentList object
-	 */
-	public ComponentList getAllComponents() {
-		return components;
-	}
-
-	/**
-	 * Returns the list of all {@code Supplier}s from the {@code SupplierList},
-	 * {@code suppliers}.
-	 * 
-	 * @return {@code suppliers}
-	 */
-	public SupplierList getAllSuppliers() {
-		return suppliers;
-	}
-
-	/**
-	 * Retrieves a de-serialized version of the company from disk.
-	 * 
-	 * @return a {@code Company} object.
-	 */
-	public static Company retrieve() {
-		try {
-			FileInputStream file = new FileInputStream("CompanyData");
-			ObjectInputStream input = new ObjectInputStream(file);
-			company = (Company) input.readObject();
-			IdGenerator.retrieve(input);
-			return company;
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-			return null;
-		} catch (ClassNotFoundException cnfe) {
-			cnfe.printStackTrace();
-			return null;
-		}
-	}
-
-	/**
-	 * Used to serialize the {@code Company}. Saves all information related to
-	 * {@code Company}.
-	 * 
-	 * @return {@literal true} if the data could be saved. Otherwise,
-	 *         {@literal false}.
-	 */
-	public static boolean save() {
-		try {
-			FileOutputStream file = new FileOutputStream("CompanyData");
-			ObjectOutputStream output = new ObjectOutputStream(file);
-			output.writeObject(company);
-			output.writeObject(IdGenerator.instance());
-			file.flush();
-			file.close();
-			return true;
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-			return false;
-		}
-	}
-}
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class acts as a facade for the entire system and facilitates the
+ * interactions between the user interface and other parts of the system.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class Company implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private ComponentList components;
+	private SupplierList suppliers;
+	private PendingOrders pendingOrders;
+
+	/**
+	 * The journal every change is committed to before the operation making
+	 * it returns. An operation whose change could not be journaled throws the
+	 * {@code UncheckedIOException} from {@link Journal#commit()}: the change
+	 * has been made in memory, but will be lost unless the company is saved.
+	 */
+	private transient Journal journal;
+
+	/**
+	 * Epoch of the last save this company was written by or retrieved from,
+	 * which the next save adds a delta segment to; {@link #EMPTY_EPOCH} if
+	 * the next save has to write the whole company.
+	 */
+	private transient long savedEpoch = EMPTY_EPOCH;
+
+	/**
+	 * The engine placing orders for components that run out, once it has been
+	 * started.
+	 */
+	private transient volatile ReplenishmentEngine replenishment;
+	private static Company company;
+
+	/**
+	 * Name of the file the company was saved to before snapshots were
+	 * numbered, and the start of the names of the files it is saved to now,
+	 * which are followed by a full stop and a sequence number; the snapshot
+	 * with the highest number is the current one. A snapshot is mapped into
+	 * memory while the company read from it is in use (see
+	 * {@link MappedSnapshot}), and on some systems a mapped file cannot be
+	 * replaced or deleted, so every snapshot is written to a new file, and
+	 * the older ones are deleted once that succeeds.
+	 */
+	private static final String DATA_FILE = "CompanyData";
+
+	/**
+	 * Name of the file the changes made since the last save are journaled
+	 * to.
+	 */
+	private static final String JOURNAL_FILE = "CompanyJournal";
+
+	/**
+	 * Prefix of the names of the files holding the changes saved since the
+	 * data file was written, which is followed by a sequence number; see
+	 * {@link DeltaSegment}.
+	 */
+	private static final String DELTA_FILE = "CompanyDelta.";
+
+	/**
+	 * Number of delta segments at which they are merged into the data file,
+	 * in the background.
+	 */
+	private static final int COMPACTION_THRESHOLD = 8;
+
+	/**
+	 * Lock held while the snapshots or the delta segments are being read,
+	 * written or deleted.
+	 */
+	private static final Object files = new Object();
+
+	/**
+	 * Lock held while the company is being saved, and while a batch of orders
+	 * is being placed, so that a batch is saved either as a whole or not at
+	 * all, even when it is placed by another thread. The
+	 * {@link ReplenishmentEngine} holds it while placing each of its orders.
+	 */
+	private static final Object saving = new Object();
+
+	/**
+	 * Lock held while the delta segments are being merged into the data
+	 * file, and the thread doing that in the background, if there is one;
+	 * the thread is started holding {@code files}.
+	 */
+	private static final Object compaction = new Object();
+	private static Thread compactor;
+
+	/**
+	 * Epoch of the journal of a company that has never been saved.
+	 */
+	private static final long EMPTY_EPOCH = 0;
+
+	/**
+	 * Directory holding the data file and the journal.
+	 */
+	private static File dataDirectory = new File(".");
+
+	/**
+	 * Size of the buffers used for reading and writing the data file.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Uses singleton pattern; creates collection objects for components,
+	 * suppliers and orders
+	 */
+	private Company() {
+		components = ComponentList.instance();
+		suppliers = SupplierList.instance();
+		pendingOrders = PendingOrders.instance();
+	}
+
+	/**
+	 * Supports the singleton pattern. A new company starts an empty journal;
+	 * a journal left behind that holds changes, or belongs to a saved
+	 * snapshot, is moved aside first, to a file named after it followed by
+	 * the time, rather than overwritten.
+	 * 
+	 * @return the singleton object
+	 */
+	public static Company instance() {
+		if (company == null) {
+			IdGenerator.instance();
+			company = new Company();
+			try {
+				File journalFile = new File(dataDirectory, JOURNAL_FILE);
+				if (!Journal.isEmpty(journalFile, EMPTY_EPOCH)) {
+					/*
+					 * The changes of an earlier session that was not
+					 * retrieved are kept, in case they are wanted back.
+					 */
+					Files.move(journalFile.toPath(),
+							new File(dataDirectory, JOURNAL_FILE + "."
+									+ System.currentTimeMillis()).toPath());
+				}
+				company.journal = Journal.start(journalFile, EMPTY_EPOCH);
+				IdGenerator.instance().setJournal(company.journal);
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+			}
+			return company;
+		} else {
+			return company;
+		}
+	}
+
+	/**
+	 * Adds a new component to the component collection
+	 * 
+	 * @param name
+	 *            component name
+	 * @return the Component object created
+	 */
+	public Component addComponent(String name) {
+		Component component = new Component(name);
+		if (components.insert(component)) {
+			if (journal != null) {
+				journal.addComponent(component);
+				journal.commit();
+			}
+			return component;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a new supplier to the supplier collection
+	 * 
+	 * @param name
+	 *            supplier name
+	 * @return the Supplier object created
+	 */
+	public Supplier addSupplier(String name) {
+		Supplier supplier = new Supplier(name);
+		if (suppliers.insert(supplier)) {
+			if (journal != null) {
+				journal.addSupplier(supplier);
+				journal.commit();
+			}
+			return supplier;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a batch of new components. Their IDs are leased as one block, so
+	 * they are numbered consecutively, and they are journaled together.
+	 * 
+	 * @param names
+	 *            component names
+	 * @return the Component objects created, in the same order as the names
+	 */
+	public Component[] addComponents(String[] names) {
+		int first = IdGenerator.instance().lease(EntityId.COMPONENT,
+				names.length);
+		Component[] added = new Component[names.length];
+		for (int index = 0; index < names.length; index++) {
+			added[index] = new Component(first + index, names[index]);
+		}
+		components.insertAll(added);
+		if (journal != null) {
+			for (Component component : added) {
+				journal.addComponent(component);
+			}
+			journal.commit();
+		}
+		return added;
+	}
+
+	/**
+	 * Adds a batch of new suppliers. Their IDs are leased as one block, so
+	 * they are numbered consecutively, and they are journaled together.
+	 * 
+	 * @param names
+	 *            supplier names
+	 * @return the Supplier objects created, in the same order as the names
+	 */
+	public Supplier[] addSuppliers(String[] names) {
+		int first = IdGenerator.instance().lease(EntityId.SUPPLIER,
+				names.length);
+		Supplier[] added = new Supplier[names.length];
+		for (int index = 0; index < names.length; index++) {
+			added[index] = new Supplier(first + index, names[index]);
+		}
+		suppliers.insertAll(added);
+		if (journal != null) {
+			for (Supplier supplier : added) {
+				journal.addSupplier(supplier);
+			}
+			journal.commit();
+		}
+		return added;
+	}
+
+	/**
+	 * Searches for a given component
+	 * 
+	 * @param componentID
+	 *            identifier of the component
+	 * @return the Component object, if found
+	 */
+	public Component findComponent(String componentID) {
+		return components.search(componentID);
+	}
+
+	/**
+	 * Searches for a given component
+	 * 
+	 * @param componentId
+	 *            identifier of the component, packed as described in
+	 *            {@link EntityId}
+	 * @return the Component object, if found
+	 */
+	public Component findComponent(long componentId) {
+		return components.search(componentId);
+	}
+
+	/**
+	 * Searches for a given supplier
+	 * 
+	 * @param supplierID
+	 *            identifier of the supplier
+	 * @return the Supplier object, if found
+	 */
+	public Supplier findSupplier(String supplierID) {
+		return suppliers.search(supplierID);
+	}
+
+	/**
+	 * Searches for a given supplier
+	 * 
+	 * @param supplierId
+	 *            identifier of the supplier, packed as described in
+	 *            {@link EntityId}
+	 * @return the Supplier object, if found
+	 */
+	public Supplier findSupplier(long supplierId) {
+		return suppliers.search(supplierId);
+	}
+
+	/**
+	 * Searches for components by name: first those whose names start with
+	 * the given text, ignoring case, then those whose names nearly do, as
+	 * when the text has a typing mistake.
+	 * 
+	 * @param text
+	 *            the name or the start of the name
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the components found
+	 */
+	public List<Component> searchComponents(String text, int limit) {
+		return combine(components.findByPrefix(text, limit),
+				components.findSimilar(text, limit), limit);
+	}
+
+	/**
+	 * Searches for suppliers by name, as
+	 * {@link #searchComponents(String, int)} does for components.
+	 * 
+	 * @param text
+	 *            the name or the start of the name
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the suppliers found
+	 */
+	public List<Supplier> searchSuppliers(String text, int limit) {
+		return combine(suppliers.findByPrefix(text, limit),
+				suppliers.findSimilar(text, limit), limit);
+	}
+
+	/**
+	 * Appends the close matches that are not exact matches to the exact
+	 * ones, up to the given number of matches.
+	 */
+	private static <E> List<E> combine(List<E> exact, List<E> close,
+			int limit) {
+		Map<E, Boolean> found = new IdentityHashMap<E, Boolean>();
+		for (E match : exact) {
+			found.put(match, Boolean.TRUE);
+		}
+		for (E match : close) {
+			if (exact.size() >= limit) {
+				break;
+			}
+			if (found.put(match, Boolean.TRUE) == null) {
+				exact.add(match);
+			}
+		}
+		return exact;
+	}
+
+	/**
+	 * Adds a relationship between a component and supplier, indicating that the
+	 * supplier provides the component
+	 * 
+	 * @param component
+	 *            the Component being supplied
+	 * @param supplier
+	 *            the Supplier of the component
+	 * @return
+	 */
+	public boolean addComponentSupplierRelation(Component component,
+			Supplier supplier) {
+		ComponentSupplierRelation relation = new ComponentSupplierRelation(
+				component, supplier);
+		if (component.addSupplierRelation(relation)
+				&& supplier.addComponentRelation(relation)) {
+			if (journal != null) {
+				journal.addRelation(relation);
+				journal.commit();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a batch of relationships between components and suppliers, as
+	 * {@link #addComponentSupplierRelation(Component, Supplier)} does, and
+	 * journals them together. A relationship that cannot be added does not
+	 * stop the others.
+	 * 
+	 * @param componentIds
+	 *            identifiers of the components, packed as described in
+	 *            {@link EntityId}
+	 * @param supplierIds
+	 *            identifiers of the suppliers, one per component ID
+	 * @return the relations added, in the same order as the arguments; an
+	 *         element is {@literal null} if the component or supplier does not
+	 *         exist, or the supplier already supplies the component
+	 */
+	public ComponentSupplierRelation[] addComponentSupplierRelations(
+			long[] componentIds, long[] supplierIds) {
+		if (supplierIds.length != componentIds.length) {
+			throw new IllegalArgumentException(
+					"Every relation needs a component and a supplier");
+		}
+		ComponentSupplierRelation[] added = new ComponentSupplierRelation[componentIds.length];
+		for (int index = 0; index < componentIds.length; index++) {
+			Component component = findComponent(componentIds[index]);
+			Supplier supplier = findSupplier(supplierIds[index]);
+			if (component == null || supplier == null) {
+				continue;
+			}
+			ComponentSupplierRelation relation = new ComponentSupplierRelation(
+					component, supplier);
+			if (component.addSupplierRelation(relation)
+					&& supplier.addComponentRelation(relation)) {
+				added[index] = relation;
+				if (journal != null) {
+					journal.addRelation(relation);
+				}
+			}
+		}
+		if (journal != null) {
+			journal.commit();
+		}
+		return added;
+	}
+
+	/**
+	 * Adjusts the in-stock quantity of the given component after a given
+	 * quantity has been assigned for production
+	 * 
+	 * @param component
+	 *            the Component object being assigned
+	 * @param quantity
+	 *            the quantity assigned
+	 * @return true iff there is enough stock for the assignment
+	 */
+	public boolean assignComponent(Component component, int quantity) {
+		boolean assigned = component.assign(quantity);
+		if (assigned && journal != null) {
+			journal.assignComponent(component, quantity);
+			journal.commit();
+		}
+		ReplenishmentEngine engine = replenishment;
+		if (engine != null) {
+			engine.touched(component);
+		}
+		return assigned;
+	}
+
+	/**
+	 * Places an order for a given component, with the given supplier, for a
+	 * given quantity
+	 * 
+	 * @param component
+	 *            the Component object being ordered
+	 * @param supplier
+	 *            the Supplier who will be supplying the component
+	 * @param quantity
+	 *            the quantity ordered, which must be positive
+	 * @return an Order object, if placing the order was successful; otherwise,
+	 *         if the supplier does not supply the component or the quantity
+	 *         is not positive, {@literal null}
+	 */
+	public Order placeOrder(Component component, Supplier supplier,
+			int quantity) {
+		if (quantity < 1) {
+			return null;
+		}
+		ComponentSupplierRelation relation = component.getSupplier(supplier);
+		if (relation == null) {
+			return null;
+		}
+
+		Order order = new Order(relation, quantity);
+		pendingOrders.insert(order);
+		if (journal != null) {
+			journal.placeOrder(order);
+			journal.commit();
+		}
+		return order;
+	}
+
+	/**
+	 * Places an order for the given relation, holding the lock that keeps
+	 * saves out, as a batch of orders does. The {@link ReplenishmentEngine}
+	 * places its orders this way, on its own thread, from the relation it
+	 * has chosen, so that it does not look anything up by ID.
+	 * 
+	 * @param relation
+	 *            the relation of the component with the supplier
+	 * @param quantity
+	 *            the quantity ordered, which must be positive
+	 * @return the Order object
+	 */
+	Order placeOrder(ComponentSupplierRelation relation, int quantity) {
+		synchronized (saving) {
+			Order order = new Order(relation, quantity);
+			pendingOrders.insert(order);
+			if (journal != null) {
+				journal.placeOrder(order);
+				journal.commit();
+			}
+			return order;
+		}
+	}
+
+	/**
+	 * Fulfills a given order, updating the stock of the component and the
+	 * quantity provided by the supplier so far
+	 * 
+	 * @param orderID
+	 *            identifier of the Order object
+	 * @return a ComponentSupplierRelation object if the order was found
+	 */
+	public ComponentSupplierRelation fulfillOrder(String orderID) {
+		return fulfillOrder(EntityId.parse(orderID));
+	}
+
+	/**
+	 * Fulfills a given order, updating the stock of the component and the
+	 * quantity provided by the supplier so far
+	 * 
+	 * @param orderId
+	 *            identifier of the Order object, packed as described in
+	 *            {@link EntityId}
+	 * @return a ComponentSupplierRelation object if the order was found
+	 */
+	public ComponentSupplierRelation fulfillOrder(long orderId) {
+		Order order = pendingOrders.remove(orderId);
+		if (order == null) {
+			return null;
+		}
+		ComponentSupplierRelation relation = order.getRelation();
+		int orderQuantity = order.getQuantity();
+		relation.addQuantity(orderQuantity);
+		relation.getComponent().addToStock(orderQuantity);
+		if (journal != null) {
+			journal.fulfillOrder(order);
+			journal.commit();
+		}
+		return relation;
+	}
+
+	/**
+	 * Places a batch of orders. The IDs are parsed once, up front, and the
+	 * relations are looked up component by component, so that each relation
+	 * is looked up once. The orders are then placed in the order of the
+	 * arguments, so that their IDs are issued as if they had been placed one
+	 * at a time. An order that cannot be placed does not stop the others.
+	 * 
+	 * @param componentIDs
+	 *            identifiers of the components being ordered
+	 * @param supplierIDs
+	 *            identifiers of the suppliers, one per component ID
+	 * @param quantities
+	 *            the quantities ordered, one per component ID
+	 * @return the Order objects, in the same order as the arguments; an
+	 *         element is {@literal null} if the component or supplier does not
+	 *         exist, the supplier does not supply the component, or the
+	 *         quantity is not positive
+	 */
+	public Order[] placeOrders(String[] componentIDs, String[] supplierIDs,
+			int[] quantities) {
+		if (supplierIDs.length != componentIDs.length) {
+			throw new IllegalArgumentException(
+					"Every order needs a component, a supplier and a quantity");
+		}
+		long[] componentIds = new long[componentIDs.length];
+		long[] supplierIds = new long[supplierIDs.length];
+		for (int index = 0; index < componentIDs.length; index++) {
+			componentIds[index] = EntityId.parse(componentIDs[index]);
+			supplierIds[index] = EntityId.parse(supplierIDs[index]);
+		}
+		return placeOrders(componentIds, supplierIds, quantities);
+	}
+
+	/**
+	 * Places a batch of orders, as {@link #placeOrders(String[], String[], int[])}
+	 * does, for components and suppliers identified by packed IDs.
+	 * 
+	 * @param componentIds
+	 *            identifiers of the components being ordered, packed as
+	 *            described in {@link EntityId}
+	 * @param supplierIds
+	 *            identifiers of the suppliers, one per component ID
+	 * @param quantities
+	 *            the quantities ordered, one per component ID
+	 * @return the Order objects, in the same order as the arguments; an
+	 *         element is {@literal null} if the order could not be placed
+	 */
+	public Order[] placeOrders(long[] componentIds, long[] supplierIds,
+			int[] quantities) {
+		int count = componentIds.length;
+		if (supplierIds.length != count || quantities.length != count) {
+			throw new IllegalArgumentException(
+					"Every order needs a component, a supplier and a quantity");
+		}
+		synchronized (saving) {
+			return placeOrders(componentIds, supplierIds, quantities, count);
+		}
+	}
+
+	/**
+	 * Places a batch of orders, holding the lock that keeps saves out.
+	 */
+	private Order[] placeOrders(long[] componentIds, long[] supplierIds,
+			int[] quantities, int count) {
+		IdentityHashMap<Component, Integer> groups = new IdentityHashMap<Component, Integer>();
+		Component[] components = new Component[count];
+		Supplier[] suppliers = new Supplier[count];
+		long[] work = new long[count];
+		int workCount = 0;
+		for (int index = 0; index < count; index++) {
+			Component component = findComponent(componentIds[index]);
+			Supplier supplier = findSupplier(supplierIds[index]);
+			if (component == null || supplier == null
+					|| quantities[index] < 1) {
+				continue;
+			}
+			Integer group = groups.get(component);
+			if (group == null) {
+				group = groups.size();
+				groups.put(component, group);
+			}
+			components[index] = component;
+			suppliers[index] = supplier;
+			work[workCount++] = ((long) group << 32) | index;
+		}
+		Arrays.sort(work, 0, workCount);
+
+		ComponentSupplierRelation[] found = new ComponentSupplierRelation[count];
+		IdentityHashMap<Supplier, ComponentSupplierRelation> relations = new IdentityHashMap<Supplier, ComponentSupplierRelation>();
+		long currentGroup = -1;
+		Component component = null;
+		for (int item = 0; item < workCount; item++) {
+			int index = (int) work[item];
+			if ((work[item] >>> 32) != currentGroup) {
+				currentGroup = work[item] >>> 32;
+				component = components[index];
+				relations.clear();
+			}
+			Supplier supplier = suppliers[index];
+			ComponentSupplierRelation relation = relations.get(supplier);
+			if (relation == null && !relations.containsKey(supplier)) {
+				relation = component.getSupplier(supplier);
+				relations.put(supplier, relation);
+			}
+			found[index] = relation;
+		}
+
+		Order[] orders = new Order[count];
+		for (int index = 0; index < count; index++) {
+			if (found[index] == null) {
+				continue;
+			}
+			orders[index] = new Order(found[index], quantities[index]);
+			pendingOrders.insert(orders[index]);
+			if (journal != null) {
+				journal.placeOrder(orders[index]);
+			}
+		}
+		if (journal != null) {
+			journal.commit();
+		}
+		return orders;
+	}
+
+	/**
+	 * Fulfills a batch of orders. The quantities are added up per relation and
+	 * per component first, so that each stock and each quantity supplied to
+	 * date is updated once. An order that cannot be found does not stop the
+	 * others.
+	 * 
+	 * @param orderIDs
+	 *            identifiers of the Order objects
+	 * @return the ComponentSupplierRelation of each order, in the same order
+	 *         as the argument; an element is {@literal null} if the order was
+	 *         not found, or appeared earlier in the batch
+	 */
+	public ComponentSupplierRelation[] fulfillOrders(String[] orderIDs) {
+		long[] orderIds = new long[orderIDs.length];
+		for (int index = 0; index < orderIDs.length; index++) {
+			orderIds[index] = EntityId.parse(orderIDs[index]);
+		}
+		return fulfillOrders(orderIds);
+	}
+
+	/**
+	 * Fulfills a batch of orders, as {@link #fulfillOrders(String[])} does,
+	 * for orders identified by packed IDs.
+	 * 
+	 * @param orderIds
+	 *            identifiers of the Order objects, packed as described in
+	 *            {@link EntityId}
+	 * @return the ComponentSupplierRelation of each order, in the same order
+	 *         as the argument; an element is {@literal null} if the order was
+	 *         not found, or appeared earlier in the batch
+	 */
+	public ComponentSupplierRelation[] fulfillOrders(long[] orderIds) {
+		ComponentSupplierRelation[] fulfilled = new ComponentSupplierRelation[orderIds.length];
+		IdentityHashMap<ComponentSupplierRelation, long[]> suppliedQuantities = new IdentityHashMap<ComponentSupplierRelation, long[]>();
+		IdentityHashMap<Component, long[]> stockQuantities = new IdentityHashMap<Component, long[]>();
+		for (int index = 0; index < orderIds.length; index++) {
+			Order order = pendingOrders.remove(orderIds[index]);
+			if (order == null) {
+				continue;
+			}
+			ComponentSupplierRelation relation = order.getRelation();
+			fulfilled[index] = relation;
+			long[] supplied = suppliedQuantities.get(relation);
+			if (supplied == null) {
+				suppliedQuantities.put(relation, supplied = new long[1]);
+			}
+			supplied[0] += order.getQuantity();
+			long[] stock = stockQuantities.get(relation.getComponent());
+			if (stock == null) {
+				stockQuantities.put(relation.getComponent(),
+						stock = new long[1]);
+			}
+			stock[0] += order.getQuantity();
+			if (journal != null) {
+				journal.fulfillOrder(order);
+			}
+		}
+		/*
+		 * A total beyond the range of an int is added in parts, which leaves
+		 * the same result as fulfilling the orders one by one.
+		 */
+		for (Map.Entry<ComponentSupplierRelation, long[]> entry : suppliedQuantities
+				.entrySet()) {
+			long quantity = entry.getValue()[0];
+			for (; quantity > Integer.MAX_VALUE; quantity -= Integer.MAX_VALUE) {
+				entry.getKey().addQuantity(Integer.MAX_VALUE);
+			}
+			entry.getKey().addQuantity((int) quantity);
+		}
+		for (Map.Entry<Component, long[]> entry : stockQuantities.entrySet()) {
+			long quantity = entry.getValue()[0];
+			for (; quantity > Integer.MAX_VALUE; quantity -= Integer.MAX_VALUE) {
+				entry.getKey().addToStock(Integer.MAX_VALUE);
+			}
+			entry.getKey().addToStock((int) quantity);
+		}
+		if (journal != null) {
+			journal.commit();
+		}
+		return fulfilled;
+	}
+
+	/**
+	 * Starts the engine that places orders for components that run out, unless
+	 * it is running already; see {@link ReplenishmentEngine}. Every component
+	 * assigned from then on is looked at by the engine.
+	 * 
+	 * @return the engine, to which reorder policies can be given
+	 */
+	public ReplenishmentEngine startReplenishment() {
+		return startReplenishment(null);
+	}
+
+	/**
+	 * Starts the engine that places orders for components that run out, as
+	 * {@link #startReplenishment()} does, and has it work through the given
+	 * facade.
+	 * 
+	 * @param facade
+	 *            the facade the company is used through, or {@literal null}
+	 * @return the engine
+	 */
+	synchronized ReplenishmentEngine startReplenishment(
+			ConcurrentCompany facade) {
+		if (replenishment == null) {
+			replenishment = new ReplenishmentEngine(this);
+		}
+		replenishment.start(facade);
+		return replenishment;
+	}
+
+	/**
+	 * Stops the engine that places orders for components that run out, if it
+	 * is running. Its reorder policies are kept, in case it is started again.
+	 */
+	public synchronized void stopReplenishment() {
+		if (replenishment != null) {
+			replenishment.stop();
+		}
+	}
+
+	/**
+	 * Returns all the supplier relations of a given component
+	 * 
+	 * @param component
+	 *            the Component object
+	 * @return an Iterator of all supplier relations of the component
+	 */
+	public Iterator<ComponentSupplierRelation> getComponentSuppliers(
+			Component component) {
+		return component.getAllSuppliers();
+	}
+
+	/**
+	 * Returns all component relations of a given supplier
+	 * 
+	 * @param supplier
+	 *            the Supplier object
+	 * @return an Iterator of all component relations of the supplier
+	 */
+	public Iterator<ComponentSupplierRelation> getSuppliedComponents(
+			Supplier supplier) {
+		return supplier.getAllComponents();
+	}
+
+	/**
+	 * Returns the number of outstanding orders for a given component
+	 * 
+	 * @param component
+	 *            the Component object
+	 * @return the number of orders
+	 */
+	public int getPendingOrderCount(Component component) {
+		return pendingOrders.getOrderCount(component);
+	}
+
+	/**
+	 * Returns the quantity of a given component on order
+	 * 
+	 * @param component
+	 *            the Component object
+	 * @return the total quantity of its outstanding orders
+	 */
+	public long getQuantityOnOrder(Component component) {
+		return pendingOrders.getQuantity(component);
+	}
+
+	/**
+	 * Returns the number of outstanding orders with a given supplier
+	 * 
+	 * @param supplier
+	 *            the Supplier object
+	 * @return the number of orders
+	 */
+	public int getPendingOrderCount(Supplier supplier) {
+		return pendingOrders.getOrderCount(supplier);
+	}
+
+	/**
+	 * Returns the quantity on order with a given supplier
+	 * 
+	 * @param supplier
+	 *            the Supplier object
+	 * @return the total quantity of its outstanding orders
+	 */
+	public long getQuantityOnOrder(Supplier supplier) {
+		return pendingOrders.getQuantity(supplier);
+	}
+
+	/**
+	 * Returns the suppliers that have supplied the most of a given component
+	 * to date; see {@link SupplierRanking}.
+	 * 
+	 * @param component
+	 *            the Component object
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the relations of the component with those suppliers, the
+	 *         largest quantity supplied first; suppliers that have supplied
+	 *         none of it are left out
+	 */
+	public List<ComponentSupplierRelation> getTopSuppliers(Component component,
+			int limit) {
+		int[] numbers = components.supplierRanking()
+				.findTop(component.getNumber(), limit);
+		List<ComponentSupplierRelation> top = new ArrayList<ComponentSupplierRelation>(
+				numbers.length);
+		for (int number : numbers) {
+			top.add(component.getSupplier(suppliers.get(number)));
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the suppliers that have supplied the most of all components
+	 * together to date; see {@link SupplierRanking}.
+	 * 
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the Supplier objects, the largest quantity supplied first;
+	 *         suppliers that have supplied nothing are left out
+	 */
+	public List<Supplier> getTopSuppliers(int limit) {
+		int[] numbers = components.supplierRanking().findTop(limit);
+		List<Supplier> top = new ArrayList<Supplier>(numbers.length);
+		for (int number : numbers) {
+			top.add(suppliers.get(number));
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the quantity a supplier has supplied of all components together
+	 * to date.
+	 * 
+	 * @param supplier
+	 *            the Supplier object
+	 * @return the quantity supplied
+	 */
+	public long getQuantitySupplied(Supplier supplier) {
+		return components.supplierRanking().getTotal(supplier.getNumber());
+	}
+
+	/**
+	 * Returns the list of all outstanding orders
+	 * 
+	 * @return a PendingOrders object
+	 */
+	public PendingOrders getPendingOrders() {
+		return pendingOrders;
+	}
+
+	/**
+	 * Returns the list of all components
+	 * 
+	 * @return a ComponentList object
+	 */
+	public ComponentList getAllComponents() {
+		return components;
+	}
+
+	/**
+	 * Returns the list of all {@code Supplier}s from the {@code SupplierList},
+	 * {@code suppliers}.
+	 * 
+	 * @return {@code suppliers}
+	 */
+	public SupplierList getAllSuppliers() {
+		return suppliers;
+	}
+
+	/**
+	 * Sets the directory holding the data file and the journal. Takes effect
+	 * the next time a company is created or retrieved.
+	 * 
+	 * @param directory
+	 *            the directory
+	 */
+	static void setDataDirectory(File directory) {
+		dataDirectory = directory;
+	}
+
+	/**
+	 * Reads every component, supplier and outstanding order that has not
+	 * been asked for yet from the snapshot the company was retrieved from.
+	 * Relations are still read when they are first used.
+	 */
+	void load() {
+		components.load();
+		suppliers.load();
+		pendingOrders.load();
+	}
+
+	/**
+	 * Discards the company and all of its collections, so that they can be
+	 * rebuilt from disk, or so that a new, empty company can be created.
+	 */
+	static void reset() {
+		if (company != null) {
+			company.stopReplenishment();
+		}
+		if (company != null && company.journal != null) {
+			try {
+				company.journal.close();
+			} catch (UncheckedIOException uioe) {
+				// already reported to the operations that were not journaled
+			}
+		}
+		company = null;
+		ComponentList.reset();
+		SupplierList.reset();
+		PendingOrders.reset();
+		IdGenerator.reset();
+		ColumnStorage.reset();
+		ChangeTracker.reset();
+	}
+
+	/**
+	 * Retrieves the company from disk: the last snapshot saved, followed by
+	 * the delta segments saved since and the changes journaled after those.
+	 * See {@link CompanySnapshot}, {@link DeltaSegment} and {@link Journal}
+	 * for the formats.
+	 * 
+	 * @return a {@code Company} object, or {@literal null} if nothing has
+	 *         been saved, or what was saved could not be read; in that case,
+	 *         the reason is reported, and the files are not deleted by
+	 *         later saves unless they hold snapshots.
+	 */
+	public static Company retrieve() {
+		reset();
+		File journalFile = new File(dataDirectory, JOURNAL_FILE);
+		Long journalEpoch = Journal.readEpoch(journalFile);
+		long epoch = EMPTY_EPOCH;
+		try {
+			synchronized (files) {
+				File snapshot = dataFile(dataDirectory);
+				if (snapshot != null) {
+					company = new Company();
+					epoch = CompanySnapshot.read(company, snapshot);
+					for (DeltaSegment delta : chain(dataDirectory, epoch)) {
+						delta.apply(company);
+						epoch = delta.getEpoch();
+					}
+					if (CompanySnapshot.isCurrent(snapshot)) {
+						company.savedEpoch = epoch;
+					}
+				} else if (journalEpoch != null
+						&& journalEpoch == EMPTY_EPOCH) {
+					company = new Company();
+				} else {
+					return null;
+				}
+			}
+			ChangeTracker.instance().clear();
+			company.pendingOrders.clearChanges();
+			company.journal = Journal.resume(journalFile, epoch, company);
+			IdGenerator.instance().setJournal(company.journal);
+			return company;
+		} catch (IOException ioe) {
+			System.err.println("The saved company in "
+					+ dataDirectory.getAbsolutePath()
+					+ " could not be loaded; its files are left in place.");
+			ioe.printStackTrace();
+			reset();
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the {@code Company}. The first save of a company that has not
+	 * been retrieved writes a snapshot of all of it; later ones write only
+	 * what has changed since, as a delta segment that follows the snapshot.
+	 * Once {@value #COMPACTION_THRESHOLD} segments have piled up, they are
+	 * merged into the snapshot in the background. The snapshot or segment is
+	 * written to a temporary file first, so that a failed save leaves the
+	 * previous one in place. Once it is in place, the journal is emptied.
+	 * 
+	 * @return {@literal true} if the data could be saved. Otherwise,
+	 *         {@literal false}.
+	 */
+	public static boolean save() {
+		synchronized (saving) {
+			return write(instance());
+		}
+	}
+
+	/**
+	 * Saves the company, as {@link #save()} does, holding the lock that keeps
+	 * batches of orders out.
+	 */
+	private static boolean write(Company company) {
+		long epoch;
+		do {
+			epoch = ThreadLocalRandom.current().nextLong();
+		} while (epoch <= EMPTY_EPOCH);
+		int segments;
+		try {
+			synchronized (files) {
+				File file = dataFile(dataDirectory);
+				if (company.savedEpoch == EMPTY_EPOCH || file == null) {
+					File temporary = new File(dataDirectory,
+							DATA_FILE + ".tmp");
+					try (FileOutputStream stream = new FileOutputStream(
+							temporary);
+							DataOutputStream output = new DataOutputStream(
+									new BufferedOutputStream(stream,
+											BUFFER_SIZE))) {
+						CompanySnapshot.write(company, epoch, output);
+						output.flush();
+						stream.getFD().sync();
+					}
+					file = nextDataFile(dataDirectory);
+					install(temporary, file);
+					deleteStaleDeltas(dataDirectory, epoch);
+				} else {
+					File temporary = new File(dataDirectory,
+							DELTA_FILE + "tmp");
+					try (FileOutputStream stream = new FileOutputStream(
+							temporary);
+							DataOutputStream output = new DataOutputStream(
+									new BufferedOutputStream(stream,
+											BUFFER_SIZE))) {
+						DeltaSegment.write(company, company.savedEpoch, epoch,
+								output);
+						output.flush();
+						stream.getFD().sync();
+					}
+					install(temporary, new File(dataDirectory,
+							DELTA_FILE + (lastDeltaNumber(dataDirectory) + 1)));
+				}
+				deleteStaleSnapshots(dataDirectory, file);
+				segments = deltaFiles(dataDirectory).length;
+			}
+			company.savedEpoch = epoch;
+			ChangeTracker.instance().clear();
+			company.pendingOrders.clearChanges();
+			if (company.journal != null) {
+				company.journal.restart(epoch);
+			}
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+			return false;
+		}
+		if (segments >= COMPACTION_THRESHOLD) {
+			startCompaction();
+		}
+		return true;
+	}
+
+	/**
+	 * Merges the delta segments saved since the current snapshot into a new
+	 * snapshot, which follows it, and deletes the segments. The
+	 * company in memory is not involved, and may be changed and saved while
+	 * this runs; a segment saved meanwhile follows the new snapshot as well
+	 * as the old one. If the company is saved in full meanwhile, the merged
+	 * snapshot is thrown away.
+	 * 
+	 * @return {@literal true} if the segments were merged. Otherwise, if
+	 *         there were none or the data could not be merged,
+	 *         {@literal false}.
+	 */
+	static boolean compact() {
+		synchronized (compaction) {
+			File directory = dataDirectory;
+			File temporary = new File(directory, DATA_FILE + ".compact");
+			try {
+				File file;
+				MappedSnapshot base;
+				List<DeltaSegment> deltas;
+				synchronized (files) {
+					file = dataFile(directory);
+					if (file == null || !CompanySnapshot.isCurrent(file)) {
+						return false;
+					}
+					base = MappedSnapshot.map(file);
+					deltas = chain(directory, base.getEpoch());
+					for (DeltaSegment delta : deltas) {
+						delta.read();
+					}
+				}
+				if (deltas.isEmpty()) {
+					return false;
+				}
+				try (FileOutputStream stream = new FileOutputStream(temporary);
+						DataOutputStream output = new DataOutputStream(
+								new BufferedOutputStream(stream,
+										BUFFER_SIZE))) {
+					CompanySnapshot.compact(base, deltas, output);
+					output.flush();
+					stream.getFD().sync();
+				}
+				synchronized (files) {
+					if (!file.equals(dataFile(directory))) {
+						temporary.delete();
+						return false;
+					}
+					long epoch = deltas.get(deltas.size() - 1).getEpoch();
+					file = nextDataFile(directory);
+					install(temporary, file);
+					deleteStaleDeltas(directory, epoch);
+					deleteStaleSnapshots(directory, file);
+				}
+				return true;
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+				temporary.delete();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Starts merging the delta segments into the data file on a background
+	 * thread, unless that is being done already.
+	 */
+	private static void startCompaction() {
+		synchronized (files) {
+			if (compactor == null || !compactor.isAlive()) {
+				compactor = new Thread(Company::compact, "Snapshot compaction");
+				compactor.setDaemon(true);
+				compactor.start();
+			}
+		}
+	}
+
+	/**
+	 * Returns the delta segments that follow the save with the given epoch,
+	 * in the order they were written. Segments that follow no save in the
+	 * chain, such as those left behind by a full save that was interrupted,
+	 * are left out.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @param epoch
+	 *            the epoch of the snapshot
+	 * @return the chain of segments
+	 * @throws IOException
+	 *             if a segment could not be read
+	 */
+	private static List<DeltaSegment> chain(File directory, long epoch)
+			throws IOException {
+		Map<Long, DeltaSegment> byParent = new HashMap<Long, DeltaSegment>();
+		for (File file : deltaFiles(directory)) {
+			DeltaSegment delta = DeltaSegment.open(file);
+			byParent.put(delta.getParentEpoch(), delta);
+		}
+		List<DeltaSegment> chain = new ArrayList<DeltaSegment>();
+		DeltaSegment delta;
+		while ((delta = byParent.remove(epoch)) != null) {
+			chain.add(delta);
+			epoch = delta.getEpoch();
+		}
+		return chain;
+	}
+
+	/**
+	 * Deletes the delta segments that do not follow the save with the given
+	 * epoch.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @param epoch
+	 *            the epoch of the snapshot in the data file
+	 * @throws IOException
+	 *             if a segment could not be read
+	 */
+	private static void deleteStaleDeltas(File directory, long epoch)
+			throws IOException {
+		List<DeltaSegment> chain = chain(directory, epoch);
+		for (File file : deltaFiles(directory)) {
+			boolean current = false;
+			for (DeltaSegment delta : chain) {
+				current |= delta.getFile().equals(file);
+			}
+			if (!current) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Returns the files holding delta segments, whether they follow the data
+	 * file or not.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @return the files
+	 */
+	private static File[] deltaFiles(File directory) {
+		File[] files = directory
+				.listFiles((parent, name) -> isNumbered(name, DELTA_FILE));
+		return files == null ? new File[0] : files;
+	}
+
+	/**
+	 * Returns the files holding snapshots, whether they are current or not.
+	 * 
+	 * @param directory
+	 *            the directory holding the snapshots
+	 * @return the files
+	 */
+	private static File[] dataFiles(File directory) {
+		File[] files = directory.listFiles((parent, name) -> name
+				.equals(DATA_FILE) || isNumbered(name, DATA_FILE + "."));
+		return files == null ? new File[0] : files;
+	}
+
+	/**
+	 * Returns whether a file name is the given prefix followed by a sequence
+	 * number.
+	 */
+	private static boolean isNumbered(String name, String prefix) {
+		return name.startsWith(prefix) && name.length() > prefix.length()
+				&& name.substring(prefix.length()).chars()
+						.allMatch(Character::isDigit);
+	}
+
+	/**
+	 * Returns the sequence number of a snapshot; the file of a snapshot saved
+	 * before they were numbered counts as {@literal 0}.
+	 */
+	private static long dataNumber(File file) {
+		String name = file.getName();
+		return name.equals(DATA_FILE) ? 0
+				: Long.parseLong(name.substring(DATA_FILE.length() + 1));
+	}
+
+	/**
+	 * Returns the file holding the current snapshot, the one with the highest
+	 * sequence number.
+	 * 
+	 * @param directory
+	 *            the directory holding the snapshots
+	 * @return the file, or {@literal null} if there are no snapshots
+	 */
+	private static File dataFile(File directory) {
+		File current = null;
+		for (File file : dataFiles(directory)) {
+			if (current == null || dataNumber(file) > dataNumber(current)) {
+				current = file;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Returns the file the next snapshot is to be written to, numbered after
+	 * the current one.
+	 * 
+	 * @param directory
+	 *            the directory holding the snapshots
+	 * @return the file, which does not exist
+	 */
+	private static File nextDataFile(File directory) {
+		File current = dataFile(directory);
+		return new File(directory, DATA_FILE + "."
+				+ (current == null ? 1 : dataNumber(current) + 1));
+	}
+
+	/**
+	 * Deletes the snapshots older than the given one. A snapshot that is still
+	 * mapped into memory cannot be deleted on some systems; it is left in
+	 * place, and deleted by a later save once it is no longer mapped. A data
+	 * file that does not hold a snapshot, such as the company serialized by
+	 * the first versions, is never deleted, so that data that could not be
+	 * read, or that was read from that file, is not lost.
+	 * 
+	 * @param directory
+	 *            the directory holding the snapshots
+	 * @param current
+	 *            the file holding the current snapshot
+	 */
+	private static void deleteStaleSnapshots(File directory, File current) {
+		for (File file : dataFiles(directory)) {
+			if (dataNumber(file) < dataNumber(current)
+					&& CompanySnapshot.isSnapshot(file)) {
+				try {
+					Files.deleteIfExists(file.toPath());
+				} catch (IOException ioe) {
+					// Still mapped; tried again at the next save.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the highest sequence number of a delta segment.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @return the sequence number, or {@literal 0} if there are no segments
+	 */
+	private static long lastDeltaNumber(File directory) {
+		long last = 0;
+		for (File file : deltaFiles(directory)) {
+			last = Math.max(last, Long.parseLong(
+					file.getName().substring(DELTA_FILE.length())));
+		}
+		return last;
+	}
+
+	/**
+	 * Gives a file that has been written in full its final name, in a single
+	 * step. No file has that name yet: snapshots and segments are never
+	 * replaced, as a file that is mapped into memory cannot be replaced on
+	 * some systems.
+	 * 
+	 * @param temporary
+	 *            the file that has been written
+	 * @param file
+	 *            the name it is given
+	 * @throws IOException
+	 *             if the file could not be moved
+	 */
+	private static void install(File temporary, File file) throws IOException {
+		Files.move(temporary.toPath(), file.toPath(),
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,539 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the operations of the {@code Company} facade, so that performance
+ * can be compared between releases. Every benchmark is run for each
+ * combination of catalog size and supplier fan-out: the number of suppliers
+ * related to each component.
+ *
+ * A benchmark run consists of warmup iterations, whose results are thrown
+ * away, followed by measurement iterations. Each iteration times a batch of
+ * operations, after an untimed setup that prepares what the batch needs,
+ * such as the orders to be fulfilled. The mean time per operation is reported
+ * with the half-width of its 99.9% confidence interval.
+ *
+ * Every save is preceded by changes to {@value #SAVE_CHANGES} components.
+ * Retrieving reads the saved company lazily, so its time does not include
+ * reading every entry; loading times that separately, on a company that
+ * has just been retrieved.
+ *
+ * The contended benchmarks have {@value #CONTENDING_THREADS} threads add to
+ * and assign from the stock of the same component at once, and report the
+ * wall-clock time divided by the operations of all threads. They are run
+ * against the lock-free stock of {@code Component} and against the same
+ * operations made under one lock, so the two can be compared.
+ *
+ * The company uses a temporary data directory, so saved data in the working
+ * directory is never touched. Usage:
+ *
+ * <pre>
+ * java CompanyBenchmark [-n sizes] [-f fanouts] [-b benchmarks] [-o file.csv]
+ * </pre>
+ *
+ * where sizes, fanouts and benchmarks are comma-separated lists, and the CSV
+ * file collects the results for comparison with other runs. Combinations
+ * with more than {@value #MAX_RELATIONS} relations are skipped; large
+ * catalogs need a larger heap, such as {@code -Xmx8g}.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class CompanyBenchmark {
+
+	/**
+	 * Names of the benchmarks.
+	 */
+	private static final String ADD_COMPONENT = "addComponent";
+	private static final String FIND_COMPONENT = "findComponent";
+	private static final String FIND_SUPPLIER = "findSupplier";
+	private static final String ADD_RELATION = "addComponentSupplierRelation";
+	private static final String PLACE_ORDER = "placeOrder";
+	private static final String FULFILL_ORDER = "fulfillOrder";
+	private static final String ASSIGN_COMPONENT = "assignComponent";
+	private static final String CONTENDED_STOCK = "contendedStock";
+	private static final String CONTENDED_STOCK_SYNCHRONIZED = "contendedStockSynchronized";
+	private static final String SAVE = "save";
+	private static final String RETRIEVE = "retrieve";
+	private static final String LOAD = "load";
+
+	/**
+	 * Benchmarks run by default, in the order they are run. {@value #RETRIEVE}
+	 * and {@value #LOAD} replace the company, so they come last.
+	 */
+	private static final String[] BENCHMARKS = {ADD_COMPONENT, FIND_COMPONENT,
+			FIND_SUPPLIER, ADD_RELATION, PLACE_ORDER, FULFILL_ORDER,
+			ASSIGN_COMPONENT, CONTENDED_STOCK, CONTENDED_STOCK_SYNCHRONIZED,
+			SAVE, RETRIEVE, LOAD};
+
+	private static final int[] CATALOG_SIZES = {100, 1000, 10000, 100000,
+			1000000};
+	private static final int[] FAN_OUTS = {1, 10, 100};
+
+	/**
+	 * Largest number of relations a combination may need.
+	 */
+	private static final long MAX_RELATIONS = 10000000L;
+
+	/**
+	 * Number of suppliers per component of the catalog; the supplier
+	 * collection is never smaller than the fan-out.
+	 */
+	private static final int COMPONENTS_PER_SUPPLIER = 10;
+
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASUREMENT_ITERATIONS = 5;
+
+	/**
+	 * Number of operations timed in one iteration. Saving, retrieving and
+	 * loading are timed one at a time.
+	 */
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * Number of threads changing the stock of one component at once in the
+	 * contended benchmarks, each of which makes {@value #BATCH_SIZE}
+	 * operations per iteration.
+	 */
+	private static final int CONTENDING_THREADS = 32;
+
+	/**
+	 * Number of components changed before each save, so that every save
+	 * writes the same amount of changes rather than only the first one
+	 * writing the whole company.
+	 */
+	private static final int SAVE_CHANGES = 1000;
+
+	/**
+	 * Student's t value for a 99.9% two-sided confidence interval with
+	 * {@value #MEASUREMENT_ITERATIONS} - 1 degrees of freedom.
+	 */
+	private static final double T_VALUE = 8.610;
+
+	private Company company;
+	private Component[] components;
+	private Supplier[] suppliers;
+	private String[] componentIDs;
+	private String[] supplierIDs;
+	private int fanOut;
+	private Random random = new Random(42);
+
+	/**
+	 * Inputs prepared by the setup of an iteration.
+	 */
+	private int[] picks = new int[BATCH_SIZE];
+	private Component[] freshComponents = new Component[BATCH_SIZE];
+	private String[] orderIDs = new String[BATCH_SIZE];
+
+	/**
+	 * Accumulates results of the operations, so that the compiler cannot
+	 * optimize them away.
+	 */
+	private long sink;
+
+	/**
+	 * Creates a company with the given catalog size and fan-out. Stock is
+	 * added to every component, so that assignments always succeed.
+	 *
+	 * @param catalogSize
+	 *            the number of components
+	 * @param fanOut
+	 *            the number of suppliers of each component
+	 */
+	private void populate(int catalogSize, int fanOut) {
+		Company.reset();
+		company = Company.instance();
+		this.fanOut = fanOut;
+		int supplierCount = Math.max(fanOut,
+				catalogSize / COMPONENTS_PER_SUPPLIER);
+		suppliers = new Supplier[supplierCount];
+		supplierIDs = new String[supplierCount];
+		for (int index = 0; index < supplierCount; index++) {
+			suppliers[index] = new Supplier("Supplier" + index);
+			company.getAllSuppliers().insert(suppliers[index]);
+			supplierIDs[index] = suppliers[index].getId();
+		}
+		components = new Component[catalogSize];
+		componentIDs = new String[catalogSize];
+		for (int index = 0; index < catalogSize; index++) {
+			components[index] = new Component("Component" + index);
+			components[index].addToStock(Integer.MAX_VALUE / 2);
+			company.getAllComponents().insert(components[index]);
+			componentIDs[index] = components[index].getId();
+			for (int link = 0; link < fanOut; link++) {
+				relate(components[index],
+						suppliers[(index + link) % supplierCount]);
+			}
+		}
+	}
+
+	/**
+	 * Relates a component to a supplier without going through the journal,
+	 * for setting up benchmarks.
+	 */
+	private static void relate(Component component, Supplier supplier) {
+		ComponentSupplierRelation relation = new ComponentSupplierRelation(
+				component, supplier);
+		component.addSupplierRelation(relation);
+		supplier.addComponentRelation(relation);
+	}
+
+	/**
+	 * Prepares the inputs of one iteration of the given benchmark.
+	 *
+	 * @param benchmark
+	 *            name of the benchmark
+	 * @return the number of operations in the iteration
+	 */
+	private int setUp(String benchmark) {
+		switch (benchmark) {
+			case SAVE :
+				int first = random.nextInt(components.length);
+				for (int index = 0; index < Math.min(SAVE_CHANGES,
+						components.length); index++) {
+					company.assignComponent(
+							components[(first + index) % components.length],
+							1);
+				}
+				return 1;
+			case RETRIEVE :
+				return 1;
+			case LOAD :
+				company = Company.retrieve();
+				return 1;
+			case CONTENDED_STOCK :
+			case CONTENDED_STOCK_SYNCHRONIZED :
+				return CONTENDING_THREADS * BATCH_SIZE;
+			case FIND_SUPPLIER :
+				for (int index = 0; index < BATCH_SIZE; index++) {
+					picks[index] = random.nextInt(suppliers.length);
+				}
+				return BATCH_SIZE;
+			case ADD_RELATION :
+				for (int index = 0; index < BATCH_SIZE; index++) {
+					freshComponents[index] = new Component("Fresh" + index);
+					company.getAllComponents().insert(freshComponents[index]);
+					picks[index] = random.nextInt(suppliers.length);
+				}
+				return BATCH_SIZE;
+			case FULFILL_ORDER :
+				for (int index = 0; index < BATCH_SIZE; index++) {
+					int pick = random.nextInt(components.length);
+					orderIDs[index] = company.placeOrder(components[pick],
+							suppliers[(pick + random.nextInt(fanOut))
+									% suppliers.length],
+							1).getId();
+				}
+				return BATCH_SIZE;
+			default :
+				for (int index = 0; index < BATCH_SIZE; index++) {
+					picks[index] = random.nextInt(components.length);
+				}
+				return BATCH_SIZE;
+		}
+	}
+
+	/**
+	 * Runs one operation of the given benchmark.
+	 *
+	 * @param benchmark
+	 *            name of the benchmark
+	 * @param index
+	 *            position of the operation in the iteration
+	 */
+	private void operation(String benchmark, int index) {
+		int pick = picks[index];
+		switch (benchmark) {
+			case ADD_COMPONENT :
+				sink += company.addComponent("Added").hashCode();
+				break;
+			case FIND_COMPONENT :
+				sink += company.findComponent(componentIDs[pick]).getStock();
+				break;
+			case FIND_SUPPLIER :
+				sink += company.findSupplier(supplierIDs[pick]).hashCode();
+				break;
+			case ADD_RELATION :
+				if (company.addComponentSupplierRelation(
+						freshComponents[index], suppliers[pick])) {
+					sink++;
+				}
+				break;
+			case PLACE_ORDER :
+				sink += company.placeOrder(components[pick],
+						suppliers[(pick + index % fanOut) % suppliers.length],
+						1).getQuantity();
+				break;
+			case FULFILL_ORDER :
+				sink += company.fulfillOrder(orderIDs[index])
+						.getQuantitySuppliedToDate();
+				break;
+			case ASSIGN_COMPONENT :
+				if (company.assignComponent(components[pick], 1)) {
+					sink++;
+				}
+				break;
+			case SAVE :
+				if (Company.save()) {
+					sink++;
+				}
+				break;
+			case RETRIEVE :
+				company = Company.retrieve();
+				sink += company.findComponent(componentIDs[0]).getStock();
+				break;
+			case LOAD :
+				company.load();
+				sink += company.getAllComponents().size();
+				break;
+			default :
+				throw new IllegalArgumentException(
+						"Unknown benchmark " + benchmark);
+		}
+	}
+
+	/**
+	 * Runs one iteration of a contended benchmark: every thread alternately
+	 * adds one to the stock of the first component and assigns one from it.
+	 * The threads are started before the clock, and released together.
+	 *
+	 * @param synchronize
+	 *            whether every operation is made holding one lock, as the
+	 *            baseline the lock-free stock is compared with
+	 * @return the time from releasing the threads until all of them have
+	 *         finished, in nanoseconds
+	 */
+	private long contend(boolean synchronize) {
+		Component popular = components[0];
+		Object lock = new Object();
+		CountDownLatch ready = new CountDownLatch(CONTENDING_THREADS);
+		CountDownLatch go = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(CONTENDING_THREADS);
+		long[] assigned = new long[CONTENDING_THREADS];
+		for (int thread = 0; thread < CONTENDING_THREADS; thread++) {
+			int slot = thread;
+			new Thread(() -> {
+				ready.countDown();
+				awaitUninterruptibly(go);
+				for (int index = 0; index < BATCH_SIZE; index++) {
+					boolean restock = index % 2 == 0;
+					if (synchronize) {
+						synchronized (lock) {
+							assigned[slot] += change(popular, restock);
+						}
+					} else {
+						assigned[slot] += change(popular, restock);
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+		awaitUninterruptibly(ready);
+		long start = System.nanoTime();
+		go.countDown();
+		awaitUninterruptibly(done);
+		long elapsed = System.nanoTime() - start;
+		for (long count : assigned) {
+			sink += count;
+		}
+		return elapsed;
+	}
+
+	/**
+	 * Adds one to the stock of a component, or assigns one from it.
+	 *
+	 * @return {@literal 1} if one was assigned, otherwise {@literal 0}
+	 */
+	private static int change(Component component, boolean restock) {
+		if (restock) {
+			component.addToStock(1);
+			return 0;
+		}
+		return component.assign(1) ? 1 : 0;
+	}
+
+	/**
+	 * Waits for a latch to reach zero, even if the thread is interrupted.
+	 */
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs the warmup and measurement iterations of a benchmark.
+	 *
+	 * @param benchmark
+	 *            name of the benchmark
+	 * @return the time per operation of each measurement iteration, in
+	 *         nanoseconds
+	 */
+	private double[] measure(String benchmark) {
+		double[] results = new double[MEASUREMENT_ITERATIONS];
+		for (int iteration = -WARMUP_ITERATIONS; iteration < MEASUREMENT_ITERATIONS; iteration++) {
+			int operations = setUp(benchmark);
+			long elapsed;
+			if (benchmark.equals(CONTENDED_STOCK)
+					|| benchmark.equals(CONTENDED_STOCK_SYNCHRONIZED)) {
+				elapsed = contend(
+						benchmark.equals(CONTENDED_STOCK_SYNCHRONIZED));
+			} else {
+				long start = System.nanoTime();
+				for (int index = 0; index < operations; index++) {
+					operation(benchmark, index);
+				}
+				elapsed = System.nanoTime() - start;
+			}
+			if (iteration >= 0) {
+				results[iteration] = (double) elapsed / operations;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the given benchmarks for every combination of catalog size and
+	 * fan-out, printing the results and adding them to the CSV file, if one
+	 * was given.
+	 *
+	 * @param sizes
+	 *            the catalog sizes
+	 * @param fanOuts
+	 *            the fan-outs
+	 * @param benchmarks
+	 *            the names of the benchmarks
+	 * @param csv
+	 *            the CSV file, or {@literal null}
+	 * @throws IOException
+	 *             if the data directory or the CSV file could not be written
+	 */
+	private void run(int[] sizes, int[] fanOuts, String[] benchmarks,
+			PrintWriter csv) throws IOException {
+		File directory = Files.createTempDirectory("CompanyBenchmark")
+				.toFile();
+		Company.setDataDirectory(directory);
+		System.out.printf("%-30s %10s %7s %14s %12s%n", "Benchmark",
+				"Catalog", "FanOut", "ns/op", "error");
+		for (int size : sizes) {
+			for (int fanOut : fanOuts) {
+				if ((long) size * fanOut > MAX_RELATIONS) {
+					continue;
+				}
+				populate(size, fanOut);
+				for (String benchmark : benchmarks) {
+					double[] results = measure(benchmark);
+					double mean = 0;
+					for (double result : results) {
+						mean += result / results.length;
+					}
+					double variance = 0;
+					for (double result : results) {
+						variance += (result - mean) * (result - mean)
+								/ (results.length - 1);
+					}
+					double error = T_VALUE
+							* Math.sqrt(variance / results.length);
+					System.out.printf("%-30s %10d %7d %14.1f %12.1f%n",
+							benchmark, size, fanOut, mean, error);
+					if (csv != null) {
+						csv.printf("%s,%d,%d,%.1f,%.1f%n", benchmark, size,
+								fanOut, mean, error);
+						csv.flush();
+					}
+				}
+				Company.reset();
+				company = null;
+				components = null;
+				suppliers = null;
+				System.gc();
+			}
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Parses a comma-separated list of numbers.
+	 */
+	private static int[] parseNumbers(String list) {
+		return Arrays.stream(list.split(",")).map(String::trim)
+				.mapToInt(Integer::parseInt).toArray();
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args
+	 *            the options described in the class comment
+	 * @throws IOException
+	 *             if the data directory or the CSV file could not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] sizes = CATALOG_SIZES;
+		int[] fanOuts = FAN_OUTS;
+		String[] benchmarks = BENCHMARKS;
+		String csvFile = null;
+		for (int index = 0; index + 1 < args.length; index += 2) {
+			switch (args[index]) {
+				case "-n" :
+					sizes = parseNumbers(args[index + 1]);
+					break;
+				case "-f" :
+					fanOuts = parseNumbers(args[index + 1]);
+					break;
+				case "-b" :
+					List<String> selected = new ArrayList<String>();
+					for (String name : BENCHMARKS) {
+						if (Arrays.asList(args[index + 1].split(","))
+								.contains(name)) {
+							selected.add(name);
+						}
+					}
+					benchmarks = selected.toArray(new String[0]);
+					break;
+				case "-o" :
+					csvFile = args[index + 1];
+					break;
+				default :
+					System.out.println("Unknown option " + args[index]);
+					return;
+			}
+		}
+		PrintWriter csv = null;
+		if (csvFile != null) {
+			boolean exists = new File(csvFile).exists();
+			csv = new PrintWriter(new FileWriter(csvFile, true));
+			if (!exists) {
+				csv.println("benchmark,catalog,fanout,ns_per_op,error");
+			}
+		}
+		try {
+			new CompanyBenchmark().run(sizes, fanOuts, benchmarks, csv);
+		} finally {
+			if (csv != null) {
+				csv.close();
+			}
+		}
+	}
+}
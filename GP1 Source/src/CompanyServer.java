@@ -0,0 +1,488 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that lets many clients use the company at once,
+ * through the thread-safe {@link ConcurrentCompany} facade. It listens on the
+ * loopback interface only. Requests and responses are JSON, and connections
+ * are kept alive between requests. The endpoints are:
+ *
+ * <pre>
+ * POST /components?name=N              add a component
+ * GET  /components/C1                  find a component
+ * POST /components/C1/assign?quantity=Q
+ * POST /suppliers?name=N               add a supplier
+ * GET  /suppliers/S1                   find a supplier
+ * POST /relations?component=C1&amp;supplier=S1
+ * POST /orders?component=C1&amp;supplier=S1&amp;quantity=Q
+ * POST /orders/O1/fulfill
+ * GET  /components, /suppliers, /orders     listings
+ * POST /save
+ * </pre>
+ *
+ * Parameters may be given in the query string or as a form in the body. A
+ * listing with a {@code limit} parameter returns one page, starting at the
+ * {@code cursor} parameter, with the cursor of the next one. Without it, the
+ * whole listing is streamed, {@value #PAGE_SIZE} entries at a time, so that
+ * it is never held in memory and locks are held for one page at most.
+ *
+ * Each request runs on a virtual thread when the Java runtime has them, and
+ * on a fixed pool of threads otherwise.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class CompanyServer {
+
+	/**
+	 * Default port of the server.
+	 */
+	public static final int DEFAULT_PORT = 8372;
+
+	/**
+	 * Number of entries of a streamed listing taken at a time.
+	 */
+	private static final int PAGE_SIZE = 256;
+
+	/**
+	 * Number of threads when there are no virtual threads.
+	 */
+	private static final int POOL_SIZE = Math
+			.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+	private final ConcurrentCompany company;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a server on the given port of the loopback interface. It does
+	 * not accept requests until it is started.
+	 *
+	 * @param company
+	 *            the facade the requests are made through
+	 * @param port
+	 *            the port, or {@literal 0} for any free one
+	 * @throws IOException
+	 *             if the port could not be bound
+	 */
+	public CompanyServer(ConcurrentCompany company, int port)
+			throws IOException {
+		this.company = company;
+		server = HttpServer.create(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+				0);
+		executor = newExecutor();
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	 * Returns an executor that runs every task on a new virtual thread, if the
+	 * runtime has them, or a fixed pool of threads.
+	 *
+	 * @return the executor of the requests
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException roe) {
+			return Executors.newFixedThreadPool(POOL_SIZE);
+		}
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits at most the given number of seconds for
+	 * those in progress, and stops the threads.
+	 *
+	 * @param delay
+	 *            the longest wait, in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the port the server listens on
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Handles one request: finds the endpoint from the method and the path,
+	 * and answers it. A request that fails before its response has started is
+	 * answered with an error; one that fails while its response is being
+	 * streamed is cut short by closing the exchange, as the status has been
+	 * sent already.
+	 *
+	 * @param exchange
+	 *            the request and its response
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, String> parameters = parameters(exchange);
+			String[] path = exchange.getRequestURI().getPath().substring(1)
+					.split("/");
+			boolean post = exchange.getRequestMethod().equals("POST");
+			boolean get = exchange.getRequestMethod().equals("GET");
+			String resource = path[0];
+			if (path.length == 1 && get) {
+				list(exchange, resource, parameters);
+			} else if (path.length == 1 && post) {
+				create(exchange, resource, parameters);
+			} else if (path.length == 2 && get) {
+				find(exchange, resource, path[1]);
+			} else if (path.length == 3 && post) {
+				act(exchange, resource, path[1], path[2], parameters);
+			} else {
+				error(exchange, 404, "No such endpoint");
+			}
+		} catch (RuntimeException re) {
+			if (exchange.getResponseCode() < 0) {
+				error(exchange, 500, re.toString());
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Answers a POST to a collection.
+	 */
+	private void create(HttpExchange exchange, String resource,
+			Map<String, String> parameters) throws IOException {
+		switch (resource) {
+			case "components" : {
+				String name = parameters.get("name");
+				if (name == null || name.isEmpty()) {
+					error(exchange, 400, "A name is needed");
+					return;
+				}
+				Component component = company.addComponent(name);
+				StringWriter body = new StringWriter();
+				company.writeJson(component, new JsonWriter(body));
+				send(exchange, 201, body.toString());
+				break;
+			}
+			case "suppliers" : {
+				String name = parameters.get("name");
+				if (name == null || name.isEmpty()) {
+					error(exchange, 400, "A name is needed");
+					return;
+				}
+				Supplier supplier = company.addSupplier(name);
+				StringWriter body = new StringWriter();
+				company.writeJson(supplier, new JsonWriter(body));
+				send(exchange, 201, body.toString());
+				break;
+			}
+			case "relations" : {
+				Component component = company
+						.findComponent(idOf(parameters.get("component")));
+				Supplier supplier = company
+						.findSupplier(idOf(parameters.get("supplier")));
+				if (component == null || supplier == null) {
+					error(exchange, 404, "Component or supplier not found");
+				} else if (company.addComponentSupplierRelation(component,
+						supplier)) {
+					send(exchange, 201, "{}");
+				} else {
+					error(exchange, 409,
+							"Supplier already associated with component");
+				}
+				break;
+			}
+			case "orders" : {
+				Component component = company
+						.findComponent(idOf(parameters.get("component")));
+				Supplier supplier = company
+						.findSupplier(idOf(parameters.get("supplier")));
+				int quantity = quantityOf(parameters.get("quantity"));
+				Order order;
+				if (component == null || supplier == null) {
+					error(exchange, 404, "Component or supplier not found");
+				} else if (quantity < 1) {
+					error(exchange, 400, "A positive quantity is needed");
+				} else if ((order = company.placeOrder(component, supplier,
+						quantity)) == null) {
+					error(exchange, 409,
+							"Supplier not associated with component");
+				} else {
+					StringWriter body = new StringWriter();
+					order.writeJson(new JsonWriter(body));
+					send(exchange, 201, body.toString());
+				}
+				break;
+			}
+			case "save" :
+				if (company.save()) {
+					send(exchange, 200, "{}");
+				} else {
+					error(exchange, 500, "The company could not be saved");
+				}
+				break;
+			default :
+				error(exchange, 404, "No such endpoint");
+		}
+	}
+
+	/**
+	 * Answers a GET of one component or supplier.
+	 */
+	private void find(HttpExchange exchange, String resource, String id)
+			throws IOException {
+		StringWriter body = new StringWriter();
+		if (resource.equals("components")) {
+			Component component = company.findComponent(EntityId.parse(id));
+			if (component == null) {
+				error(exchange, 404, "Component not found");
+				return;
+			}
+			company.writeJson(component, new JsonWriter(body));
+		} else if (resource.equals("suppliers")) {
+			Supplier supplier = company.findSupplier(EntityId.parse(id));
+			if (supplier == null) {
+				error(exchange, 404, "Supplier not found");
+				return;
+			}
+			company.writeJson(supplier, new JsonWriter(body));
+		} else {
+			error(exchange, 404, "No such endpoint");
+			return;
+		}
+		send(exchange, 200, body.toString());
+	}
+
+	/**
+	 * Answers a POST of an action on one component or order.
+	 */
+	private void act(HttpExchange exchange, String resource, String id,
+			String action, Map<String, String> parameters)
+			throws IOException {
+		if (resource.equals("components") && action.equals("assign")) {
+			Component component = company.findComponent(EntityId.parse(id));
+			int quantity = quantityOf(parameters.get("quantity"));
+			if (component == null) {
+				error(exchange, 404, "Component not found");
+			} else if (quantity < 1) {
+				error(exchange, 400, "A positive quantity is needed");
+			} else if (!company.assignComponent(component, quantity)) {
+				error(exchange, 409, "Not enough stock");
+			} else {
+				send(exchange, 200,
+						"{\"stock\":" + component.getStock() + "}");
+			}
+		} else if (resource.equals("orders") && action.equals("fulfill")) {
+			ComponentSupplierRelation relation = company
+					.fulfillOrder(EntityId.parse(id));
+			if (relation == null) {
+				error(exchange, 404, "Order not found");
+			} else {
+				send(exchange, 200, "{\"stock\":"
+						+ relation.getComponent().getStock() + "}");
+			}
+		} else {
+			error(exchange, 404, "No such endpoint");
+		}
+	}
+
+	/**
+	 * Answers a GET of a collection: one page if a limit is given, otherwise
+	 * the whole listing, streamed a page at a time. Every page is written to
+	 * memory first, so that no lock is held while the client reads it.
+	 */
+	private void list(HttpExchange exchange, String resource,
+			Map<String, String> parameters) throws IOException {
+		if (!resource.equals("components") && !resource.equals("suppliers")
+				&& !resource.equals("orders")) {
+			error(exchange, 404, "No such endpoint");
+			return;
+		}
+		String limitParameter = parameters.get("limit");
+		int cursor = Math.max(0, quantityOf(parameters.get("cursor")));
+		int limit = limitParameter == null ? PAGE_SIZE
+				: quantityOf(limitParameter);
+		if (limit < 1) {
+			error(exchange, 400, "A positive limit is needed");
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type",
+				"application/json; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		Writer output = new BufferedWriter(new OutputStreamWriter(
+				exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16);
+		StringWriter pageText = new StringWriter();
+		JsonWriter json = new JsonWriter(pageText);
+		json.beginObject().name("items").beginArray();
+		Page<?> page;
+		do {
+			switch (resource) {
+				case "components" :
+					Page<Component> components = company.pageComponents(cursor,
+							limit);
+					for (Component component : components) {
+						company.writeJson(component, json);
+					}
+					page = components;
+					break;
+				case "suppliers" :
+					Page<Supplier> suppliers = company.pageSuppliers(cursor,
+							limit);
+					for (Supplier supplier : suppliers) {
+						company.writeJson(supplier, json);
+					}
+					page = suppliers;
+					break;
+				default :
+					Page<Order> orders = company.pagePendingOrders(cursor,
+							limit);
+					for (Order order : orders) {
+						order.writeJson(json);
+					}
+					page = orders;
+			}
+			cursor = page.getNextCursor();
+			output.write(pageText.toString());
+			pageText.getBuffer().setLength(0);
+		} while (limitParameter == null && page.hasMore());
+		json.endArray();
+		if (limitParameter != null) {
+			json.name("nextCursor").value(cursor);
+			json.name("more").value(page.hasMore());
+		}
+		json.endObject();
+		output.write(pageText.toString());
+		output.flush();
+	}
+
+	/**
+	 * Reads the parameters of a request from its query string and, for a
+	 * form, from its body. The body is always read to the end, so that the
+	 * connection can be used for the next request.
+	 */
+	private static Map<String, String> parameters(HttpExchange exchange)
+			throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		addParameters(parameters, exchange.getRequestURI().getRawQuery());
+		try (InputStream body = exchange.getRequestBody()) {
+			byte[] bytes = body.readAllBytes();
+			String type = exchange.getRequestHeaders()
+					.getFirst("Content-Type");
+			if (type != null && type
+					.startsWith("application/x-www-form-urlencoded")) {
+				addParameters(parameters,
+						new String(bytes, StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	private static void addParameters(Map<String, String> parameters,
+			String encoded) {
+		if (encoded == null || encoded.isEmpty()) {
+			return;
+		}
+		for (String pair : encoded.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+	}
+
+	private static long idOf(String id) {
+		return id == null ? EntityId.NONE : EntityId.parse(id);
+	}
+
+	/**
+	 * Parses a quantity
+	 *
+	 * @return the quantity, or {@literal -1} if there is none
+	 */
+	private static int quantityOf(String quantity) {
+		if (quantity == null) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(quantity);
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Sends a JSON response of known length.
+	 */
+	private static void send(HttpExchange exchange, int status, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				"application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static void error(HttpExchange exchange, int status,
+			String message) throws IOException {
+		StringWriter body = new StringWriter();
+		new JsonWriter(body).beginObject().name("error").value(message)
+				.endObject();
+		send(exchange, status, body.toString());
+	}
+
+	/**
+	 * Starts a server for the saved company, or a new one if nothing has been
+	 * saved.
+	 *
+	 * @param args
+	 *            the port, if not the default one
+	 * @throws IOException
+	 *             if the port could not be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		/*
+		 * Small responses are written in more than one packet; without this,
+		 * kept-alive connections wait on delayed acknowledgements between
+		 * them. Read once, when the server implementation is loaded, so it is
+		 * set before the server is created.
+		 */
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		if (Company.retrieve() == null) {
+			Company.instance();
+		}
+		CompanyServer server = new CompanyServer(ConcurrentCompany.instance(),
+				args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+		server.start();
+		System.out.println("Listening on port " + server.getPort());
+	}
+}
@@ -0,0 +1,781 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Reads and writes the binary snapshot of a {@code Company}. A snapshot is a
+ * short header followed by one flat table each for components, suppliers,
+ * component-supplier relations and outstanding orders. Every table is
+ * written column by column, and rows refer to rows of other tables by their
+ * index. Every column has a fixed width and a position that follows from the
+ * counts in the header, so that a reader can map the file into memory and
+ * read any row in place; see {@link MappedSnapshot}.
+ *
+ * Components, suppliers and orders are sorted on the numbers in their IDs,
+ * so that a row can be found by a binary search. Relations are grouped by
+ * component; a second column lists their rows grouped by supplier. Names are
+ * kept at the end, in UTF-8, and are located by offsets from the start of
+ * that area.
+ *
+ * <pre>
+ * int       MAGIC, short VERSION, long epoch
+ * int x3    IdGenerator counters
+ * int x4    counts of components (c), suppliers (s), relations (r) and
+ *           orders (o)
+ * int[c]    component numbers, int[c] stocks, int[c + 1] name offsets,
+ *           int[c + 1] first relation row of each component
+ * int[s]    supplier numbers, int[s + 1] name offsets,
+ *           int[s + 1] first entry of each supplier in the column below
+ * int[r]    supplier row of each relation, int[r] quantities supplied to
+ *           date, int[r] relation rows grouped by supplier
+ * int[o]    order numbers, int[o] relation rows, int[o] quantities
+ * byte[]    component names, then supplier names
+ * </pre>
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class CompanySnapshot {
+
+	/**
+	 * Constant value written at the start of every snapshot, so that files in
+	 * another format are rejected.
+	 */
+	static final int MAGIC = 0x43534e50;
+
+	/**
+	 * Constant value for the version of the format that is written.
+	 */
+	static final short VERSION = 3;
+
+	/**
+	 * Epoch reported for snapshots written before epochs were recorded. No
+	 * journal ever carries it.
+	 */
+	private static final long UNKNOWN_EPOCH = -1;
+
+	/**
+	 * Size of the buffer used when an older snapshot is read in full.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Private constructor; the class only has static methods
+	 */
+	private CompanySnapshot() {
+	}
+
+	/**
+	 * Writes a snapshot of the given company.
+	 *
+	 * @param company
+	 *            the company being saved
+	 * @param epoch
+	 *            a value identifying this snapshot, which the journal of
+	 *            later changes refers to
+	 * @param output
+	 *            the stream the snapshot is written to
+	 * @throws IOException
+	 *             if the snapshot could not be written
+	 */
+	public static void write(Company company, long epoch,
+			DataOutputStream output) throws IOException {
+		ComponentList components = company.getAllComponents();
+		SupplierList suppliers = company.getAllSuppliers();
+		PendingOrders pendingOrders = company.getPendingOrders();
+
+		Component[] componentRows = new Component[components.size()];
+		int[] componentNumbers = new int[componentRows.length];
+		int row = 0;
+		for (Component component : components) {
+			componentRows[row] = component;
+			componentNumbers[row++] = component.getNumber();
+		}
+		sortByNumber(componentRows, componentNumbers);
+		Supplier[] supplierRows = new Supplier[suppliers.size()];
+		int[] supplierNumbers = new int[supplierRows.length];
+		row = 0;
+		for (Supplier supplier : suppliers) {
+			supplierRows[row] = supplier;
+			supplierNumbers[row++] = supplier.getNumber();
+		}
+		sortByNumber(supplierRows, supplierNumbers);
+
+		int[] componentStocks = new int[componentRows.length];
+		String[] componentNames = new String[componentRows.length];
+		int[] relationStarts = new int[componentRows.length + 1];
+		for (row = 0; row < componentRows.length; row++) {
+			componentStocks[row] = componentRows[row].getStock();
+			componentNames[row] = componentRows[row].getName();
+			relationStarts[row + 1] = relationStarts[row]
+					+ componentRows[row].getSupplierRelations().size();
+		}
+		String[] supplierNames = new String[supplierRows.length];
+		for (row = 0; row < supplierRows.length; row++) {
+			supplierNames[row] = supplierRows[row].getName();
+		}
+		int relationCount = relationStarts[componentRows.length];
+		int[] relationSuppliers = new int[relationCount];
+		int[] relationQuantities = new int[relationCount];
+		for (row = 0; row < componentRows.length; row++) {
+			int relation = relationStarts[row];
+			for (ComponentSupplierRelation supplied : componentRows[row]
+					.getSupplierRelations()) {
+				relationSuppliers[relation] = Arrays.binarySearch(
+						supplierNumbers,
+						supplied.getSupplier().getNumber());
+				relationQuantities[relation++] = supplied
+						.getQuantitySuppliedToDate();
+			}
+		}
+
+		Order[] orderRows;
+		synchronized (pendingOrders) {
+			orderRows = new Order[pendingOrders.size()];
+			row = 0;
+			for (Order order : pendingOrders) {
+				orderRows[row++] = order;
+			}
+		}
+		int[] orderNumbers = new int[orderRows.length];
+		for (row = 0; row < orderRows.length; row++) {
+			orderNumbers[row] = orderRows[row].getNumber();
+		}
+		sortByNumber(orderRows, orderNumbers);
+		int[] orderRelations = new int[orderRows.length];
+		int[] orderQuantities = new int[orderRows.length];
+		for (row = 0; row < orderRows.length; row++) {
+			ComponentSupplierRelation relation = orderRows[row].getRelation();
+			orderRelations[row] = findRelation(relationStarts,
+					relationSuppliers,
+					Arrays.binarySearch(componentNumbers,
+							relation.getComponent().getNumber()),
+					Arrays.binarySearch(supplierNumbers,
+							relation.getSupplier().getNumber()));
+			orderQuantities[row] = orderRows[row].getQuantity();
+		}
+
+		writeTables(output, epoch, IdGenerator.checkpoint(), componentNumbers,
+				componentStocks, componentNames, relationStarts,
+				supplierNumbers, supplierNames, relationSuppliers,
+				relationQuantities, orderNumbers, orderRelations,
+				orderQuantities);
+	}
+
+	/**
+	 * Writes a snapshot that holds the given snapshot with the changes of the
+	 * given chain of segments applied, without reading either into a
+	 * company; see {@link DeltaSegment}. The new snapshot has the epoch of
+	 * the last segment, so the journal that follows the chain follows it as
+	 * well. Relations keep their order within each component, those of the
+	 * snapshot first, then the new ones in the order they were added.
+	 *
+	 * @param base
+	 *            the snapshot the chain starts at
+	 * @param deltas
+	 *            the segments, in the order they were written; at least one
+	 * @param output
+	 *            the stream the new snapshot is written to
+	 * @throws IOException
+	 *             if a segment could not be read or does not fit the
+	 *             snapshot, or the new snapshot could not be written
+	 */
+	public static void compact(MappedSnapshot base, List<DeltaSegment> deltas,
+			DataOutputStream output) throws IOException {
+		TreeMap<Integer, Integer> stockChanges = new TreeMap<Integer, Integer>();
+		TreeMap<Integer, String> names = new TreeMap<Integer, String>();
+		TreeMap<Integer, String> supplierAdditions = new TreeMap<Integer, String>();
+		LinkedHashMap<Long, Integer> relationChanges = new LinkedHashMap<Long, Integer>();
+		LinkedHashMap<Integer, int[]> placedOrders = new LinkedHashMap<Integer, int[]>();
+		HashSet<Integer> fulfilledOrders = new HashSet<Integer>();
+		for (DeltaSegment delta : deltas) {
+			delta.read();
+			int[] numbers = delta.getComponentNumbers();
+			for (int index = 0; index < numbers.length; index++) {
+				stockChanges.put(numbers[index],
+						delta.getComponentStocks()[index]);
+				names.putIfAbsent(numbers[index],
+						delta.getComponentNames()[index]);
+			}
+			numbers = delta.getSupplierNumbers();
+			for (int index = 0; index < numbers.length; index++) {
+				supplierAdditions.putIfAbsent(numbers[index],
+						delta.getSupplierNames()[index]);
+			}
+			numbers = delta.getRelationComponents();
+			for (int index = 0; index < numbers.length; index++) {
+				relationChanges.put((long) numbers[index] << 32
+						| delta.getRelationSuppliers()[index],
+						delta.getRelationQuantities()[index]);
+			}
+			for (int number : delta.getFulfilledOrders()) {
+				if (placedOrders.remove(number) == null) {
+					fulfilledOrders.add(number);
+				}
+			}
+			numbers = delta.getOrderNumbers();
+			for (int index = 0; index < numbers.length; index++) {
+				placedOrders.put(numbers[index],
+						new int[]{delta.getOrderComponents()[index],
+								delta.getOrderSuppliers()[index],
+								delta.getOrderQuantities()[index]});
+			}
+		}
+
+		int[] componentNumbers = merge(base.getComponentCount(),
+				base::getComponentNumber, base::findComponent,
+				stockChanges.keySet());
+		int componentCount = componentNumbers.length;
+		int[] baseRows = new int[componentCount];
+		int[] componentStocks = new int[componentCount];
+		String[] componentNames = new String[componentCount];
+		for (int row = 0; row < componentCount; row++) {
+			baseRows[row] = base.findComponent(componentNumbers[row]);
+			Integer stock = stockChanges.get(componentNumbers[row]);
+			if (baseRows[row] >= 0) {
+				componentNames[row] = base.getComponentName(baseRows[row]);
+				componentStocks[row] = stock != null ? stock
+						: base.getComponentStock(baseRows[row]);
+			} else {
+				componentNames[row] = names.get(componentNumbers[row]);
+				componentStocks[row] = stock;
+			}
+		}
+		int[] supplierNumbers = merge(base.getSupplierCount(),
+				base::getSupplierNumber, base::findSupplier,
+				supplierAdditions.keySet());
+		String[] supplierNames = new String[supplierNumbers.length];
+		for (int row = 0; row < supplierNumbers.length; row++) {
+			int baseRow = base.findSupplier(supplierNumbers[row]);
+			supplierNames[row] = baseRow >= 0 ? base.getSupplierName(baseRow)
+					: supplierAdditions.get(supplierNumbers[row]);
+		}
+
+		int baseRelationCount = base.getRelationCount();
+		int[] baseQuantities = new int[baseRelationCount];
+		for (int relation = 0; relation < baseRelationCount; relation++) {
+			baseQuantities[relation] = base.getRelationQuantity(relation);
+		}
+		long[] addedRelations = new long[relationChanges.size()];
+		int[] addedSuppliers = new int[addedRelations.length];
+		int[] addedQuantities = new int[addedRelations.length];
+		int addedCount = 0;
+		for (Map.Entry<Long, Integer> change : relationChanges.entrySet()) {
+			int component = (int) (change.getKey() >>> 32);
+			int supplier = (int) (long) change.getKey();
+			int baseRow = base.findComponent(component);
+			int relation = baseRow < 0 ? -1
+					: findRelation(base, baseRow, base.findSupplier(supplier));
+			if (relation >= 0) {
+				baseQuantities[relation] = change.getValue();
+			} else {
+				addedRelations[addedCount] = (long) component << 32
+						| addedCount;
+				addedSuppliers[addedCount] = supplier;
+				addedQuantities[addedCount++] = change.getValue();
+			}
+		}
+		Arrays.sort(addedRelations, 0, addedCount);
+
+		int relationCount = baseRelationCount + addedCount;
+		int[] relationStarts = new int[componentCount + 1];
+		int[] relationSuppliers = new int[relationCount];
+		int[] relationQuantities = new int[relationCount];
+		int[] movedRelations = new int[baseRelationCount];
+		int relation = 0;
+		int added = 0;
+		for (int row = 0; row < componentCount; row++) {
+			relationStarts[row] = relation;
+			if (baseRows[row] >= 0) {
+				for (int baseRelation = base.getRelationStart(
+						baseRows[row]); baseRelation < base
+								.getRelationStart(baseRows[row] + 1); baseRelation++) {
+					relationSuppliers[relation] = Arrays.binarySearch(
+							supplierNumbers, base.getSupplierNumber(
+									base.getRelationSupplier(baseRelation)));
+					relationQuantities[relation] = baseQuantities[baseRelation];
+					movedRelations[baseRelation] = relation++;
+				}
+			}
+			while (added < addedCount && (int) (addedRelations[added]
+					>>> 32) == componentNumbers[row]) {
+				int index = (int) addedRelations[added++];
+				relationSuppliers[relation] = Arrays.binarySearch(
+						supplierNumbers, addedSuppliers[index]);
+				relationQuantities[relation++] = addedQuantities[index];
+			}
+		}
+		relationStarts[componentCount] = relation;
+		if (relation != relationCount
+				|| Arrays.stream(relationSuppliers).anyMatch(row -> row < 0)) {
+			throw new IOException("Delta segments do not fit the snapshot");
+		}
+
+		int orderCount = 0;
+		long[] orderKeys = new long[base.getOrderCount() + placedOrders.size()];
+		int[] orderRelations = new int[orderKeys.length];
+		int[] orderQuantities = new int[orderKeys.length];
+		for (int row = 0; row < base.getOrderCount(); row++) {
+			if (!fulfilledOrders.contains(base.getOrderNumber(row))) {
+				orderKeys[orderCount] = (long) base.getOrderNumber(row) << 32
+						| orderCount;
+				orderRelations[orderCount] = movedRelations[base
+						.getOrderRelation(row)];
+				orderQuantities[orderCount++] = base.getOrderQuantity(row);
+			}
+		}
+		for (Map.Entry<Integer, int[]> order : placedOrders.entrySet()) {
+			int[] placed = order.getValue();
+			int relationRow = findRelation(relationStarts, relationSuppliers,
+					Arrays.binarySearch(componentNumbers, placed[0]),
+					Arrays.binarySearch(supplierNumbers, placed[1]));
+			if (relationRow < 0) {
+				throw new IOException("Delta segments do not fit the snapshot");
+			}
+			orderKeys[orderCount] = (long) order.getKey() << 32 | orderCount;
+			orderRelations[orderCount] = relationRow;
+			orderQuantities[orderCount++] = placed[2];
+		}
+		Arrays.sort(orderKeys, 0, orderCount);
+		int[] orderNumbers = new int[orderCount];
+		int[] sortedRelations = new int[orderCount];
+		int[] sortedQuantities = new int[orderCount];
+		for (int row = 0; row < orderCount; row++) {
+			int index = (int) orderKeys[row];
+			orderNumbers[row] = (int) (orderKeys[row] >>> 32);
+			sortedRelations[row] = orderRelations[index];
+			sortedQuantities[row] = orderQuantities[index];
+		}
+
+		DeltaSegment last = deltas.get(deltas.size() - 1);
+		writeTables(output, last.getEpoch(), last.getCounters(),
+				componentNumbers, componentStocks, componentNames,
+				relationStarts, supplierNumbers, supplierNames,
+				relationSuppliers, relationQuantities, orderNumbers,
+				sortedRelations, sortedQuantities);
+	}
+
+	/**
+	 * Returns whether the snapshot in the given file is of the version that
+	 * is written now, which can be mapped into memory and compacted with the
+	 * delta segments that follow it.
+	 *
+	 * @param file
+	 *            the file holding the snapshot
+	 * @return {@literal true} if the snapshot is of the current version
+	 * @throws IOException
+	 *             if the file could not be read or does not hold a snapshot,
+	 *             nor a company serialized by an earlier version
+	 */
+	public static boolean isCurrent(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			int magic = input.readInt();
+			if (magic == SerializedCompany.STREAM_MAGIC) {
+				return false;
+			}
+			if (magic != MAGIC) {
+				throw new IOException("Not a company snapshot");
+			}
+			return input.readShort() == VERSION;
+		}
+	}
+
+	/**
+	 * Returns whether the given file holds a snapshot, of any version, as
+	 * opposed to a company serialized by an earlier version or a file that
+	 * cannot be read at all.
+	 *
+	 * @param file
+	 *            the file
+	 * @return {@literal true} if the file starts as a snapshot does
+	 */
+	public static boolean isSnapshot(File file) {
+		try (DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			return input.readInt() == MAGIC;
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the tables of a snapshot, given every column but those that
+	 * follow from the others: the name offsets and the relations grouped by
+	 * supplier.
+	 */
+	private static void writeTables(DataOutputStream output, long epoch,
+			int[] counters, int[] componentNumbers, int[] componentStocks,
+			String[] componentNames, int[] relationStarts,
+			int[] supplierNumbers, String[] supplierNames,
+			int[] relationSuppliers, int[] relationQuantities,
+			int[] orderNumbers, int[] orderRelations, int[] orderQuantities)
+			throws IOException {
+		int relationCount = relationSuppliers.length;
+		int[] supplierStarts = new int[supplierNumbers.length + 1];
+		for (int relation = 0; relation < relationCount; relation++) {
+			supplierStarts[relationSuppliers[relation] + 1]++;
+		}
+		for (int row = 0; row < supplierNumbers.length; row++) {
+			supplierStarts[row + 1] += supplierStarts[row];
+		}
+		int[] relationsBySupplier = new int[relationCount];
+		int[] filled = Arrays.copyOf(supplierStarts, supplierNumbers.length);
+		for (int relation = 0; relation < relationCount; relation++) {
+			relationsBySupplier[filled[relationSuppliers[relation]]++] = relation;
+		}
+
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeLong(epoch);
+		writeInts(output, counters);
+		output.writeInt(componentNumbers.length);
+		output.writeInt(supplierNumbers.length);
+		output.writeInt(relationCount);
+		output.writeInt(orderNumbers.length);
+
+		writeInts(output, componentNumbers);
+		writeInts(output, componentStocks);
+		int nameOffset = 0;
+		output.writeInt(nameOffset);
+		for (String name : componentNames) {
+			nameOffset += utf8Length(name);
+			output.writeInt(nameOffset);
+		}
+		writeInts(output, relationStarts);
+
+		writeInts(output, supplierNumbers);
+		output.writeInt(nameOffset);
+		for (String name : supplierNames) {
+			nameOffset += utf8Length(name);
+			output.writeInt(nameOffset);
+		}
+		writeInts(output, supplierStarts);
+
+		writeInts(output, relationSuppliers);
+		writeInts(output, relationQuantities);
+		writeInts(output, relationsBySupplier);
+
+		writeInts(output, orderNumbers);
+		writeInts(output, orderRelations);
+		writeInts(output, orderQuantities);
+
+		for (String name : componentNames) {
+			output.write(name.getBytes(StandardCharsets.UTF_8));
+		}
+		for (String name : supplierNames) {
+			output.write(name.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Merges the ascending numbers of the rows of a snapshot with the given
+	 * ascending numbers, leaving out those the snapshot holds already.
+	 *
+	 * @param count
+	 *            the number of rows of the snapshot
+	 * @param numbers
+	 *            the number of each row
+	 * @param find
+	 *            the row holding a number, or {@literal -1}
+	 * @param changed
+	 *            the numbers being merged in
+	 * @return the merged numbers
+	 */
+	private static int[] merge(int count, IntUnaryOperator numbers,
+			IntUnaryOperator find, Collection<Integer> changed) {
+		int[] added = changed.stream().mapToInt(Integer::intValue)
+				.filter(number -> find.applyAsInt(number) < 0).toArray();
+		int[] merged = new int[count + added.length];
+		int row = 0;
+		int next = 0;
+		for (int index = 0; index < merged.length; index++) {
+			if (next == added.length || row < count
+					&& numbers.applyAsInt(row) < added[next]) {
+				merged[index] = numbers.applyAsInt(row++);
+			} else {
+				merged[index] = added[next++];
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Finds the row of the relation between the given component and supplier
+	 * of a snapshot being written.
+	 *
+	 * @param relationStarts
+	 *            the first relation row of each component
+	 * @param relationSuppliers
+	 *            the supplier row of each relation
+	 * @param component
+	 *            a component row
+	 * @param supplier
+	 *            a supplier row
+	 * @return the relation row, or {@literal -1} if there is no such relation
+	 */
+	private static int findRelation(int[] relationStarts,
+			int[] relationSuppliers, int component, int supplier) {
+		if (component < 0 || supplier < 0) {
+			return -1;
+		}
+		for (int relation = relationStarts[component]; relation < relationStarts[component
+				+ 1]; relation++) {
+			if (relationSuppliers[relation] == supplier) {
+				return relation;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the row of the relation between the given component and supplier
+	 * of a mapped snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @param component
+	 *            a component row
+	 * @param supplier
+	 *            a supplier row
+	 * @return the relation row, or {@literal -1} if there is no such relation
+	 */
+	private static int findRelation(MappedSnapshot snapshot, int component,
+			int supplier) {
+		if (supplier < 0) {
+			return -1;
+		}
+		for (int relation = snapshot.getRelationStart(
+				component); relation < snapshot
+						.getRelationStart(component + 1); relation++) {
+			if (snapshot.getRelationSupplier(relation) == supplier) {
+				return relation;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the snapshot in the given file into the given company, which is
+	 * expected to be empty. Snapshots of the current version are mapped into
+	 * memory and read lazily; see {@link MappedSnapshot}. Older ones are read
+	 * in full, as is the company serialized by the first versions; see
+	 * {@link SerializedCompany}.
+	 *
+	 * @param company
+	 *            the company being rebuilt
+	 * @param file
+	 *            the file holding the snapshot
+	 * @return the epoch of the snapshot
+	 * @throws IOException
+	 *             if the snapshot could not be read or is not in a supported
+	 *             format
+	 */
+	public static long read(Company company, File file) throws IOException {
+		int magic;
+		short version;
+		try (DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			magic = input.readInt();
+			version = input.readShort();
+		}
+		if (magic == SerializedCompany.STREAM_MAGIC) {
+			SerializedCompany.read(company, file);
+			return UNKNOWN_EPOCH;
+		}
+		if (magic != MAGIC) {
+			throw new IOException("Not a company snapshot");
+		}
+		if (version == VERSION) {
+			return MappedSnapshot.map(file).attach(company);
+		}
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file),
+						BUFFER_SIZE))) {
+			return read(company, input);
+		}
+	}
+
+	/**
+	 * Reads a snapshot written before snapshots were mapped into memory into
+	 * the given company, which is expected to be empty. Its format differs
+	 * from the current one in that rows are kept in insertion order, names
+	 * are written with {@link DataOutputStream#writeUTF(String)} after the
+	 * stocks, relations are listed from the component side only and orders
+	 * come last; version 1 also lacks the epoch.
+	 *
+	 * @param company
+	 *            the company being rebuilt
+	 * @param input
+	 *            the stream the snapshot is read from
+	 * @return the epoch of the snapshot
+	 * @throws IOException
+	 *             if the snapshot could not be read or is not in a supported
+	 *             format
+	 */
+	public static long read(Company company, DataInputStream input)
+			throws IOException {
+		if (input.readInt() != MAGIC) {
+			throw new IOException("Not a company snapshot");
+		}
+		short version = input.readShort();
+		if (version < 1 || version >= VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		long epoch = version >= 2 ? input.readLong() : UNKNOWN_EPOCH;
+		IdGenerator.retrieve(input);
+
+		int[] numbers = readInts(input, input.readInt());
+		int[] stocks = readInts(input, numbers.length);
+		Component[] components = new Component[numbers.length];
+		ComponentList componentList = company.getAllComponents();
+		for (int row = 0; row < components.length; row++) {
+			components[row] = new Component(numbers[row], input.readUTF());
+			components[row].addToStock(stocks[row]);
+			componentList.insert(components[row]);
+		}
+
+		numbers = readInts(input, input.readInt());
+		Supplier[] suppliers = new Supplier[numbers.length];
+		SupplierList supplierList = company.getAllSuppliers();
+		for (int row = 0; row < suppliers.length; row++) {
+			suppliers[row] = new Supplier(numbers[row], input.readUTF());
+			supplierList.insert(suppliers[row]);
+		}
+
+		int[] componentRows = readInts(input, input.readInt());
+		int[] supplierRows = readInts(input, componentRows.length);
+		int[] quantities = readInts(input, componentRows.length);
+		ComponentSupplierRelation[] relations = new ComponentSupplierRelation[componentRows.length];
+		for (int row = 0; row < relations.length; row++) {
+			Component component = components[componentRows[row]];
+			Supplier supplier = suppliers[supplierRows[row]];
+			relations[row] = new ComponentSupplierRelation(component,
+					supplier);
+			relations[row].addQuantity(quantities[row]);
+			component.addSupplierRelation(relations[row]);
+			supplier.addComponentRelation(relations[row]);
+		}
+
+		numbers = readInts(input, input.readInt());
+		int[] relationRows = readInts(input, numbers.length);
+		quantities = readInts(input, numbers.length);
+		PendingOrders pendingOrders = company.getPendingOrders();
+		for (int row = 0; row < numbers.length; row++) {
+			pendingOrders.insert(new Order(numbers[row],
+					relations[relationRows[row]], quantities[row]));
+		}
+		return epoch;
+	}
+
+	/**
+	 * Writes a column of {@code int} values.
+	 *
+	 * @param output
+	 *            the stream the column is written to
+	 * @param values
+	 *            the values
+	 * @throws IOException
+	 *             if the column could not be written
+	 */
+	private static void writeInts(DataOutputStream output, int[] values)
+			throws IOException {
+		for (int value : values) {
+			output.writeInt(value);
+		}
+	}
+
+	/**
+	 * Reads a column of {@code int} values.
+	 *
+	 * @param input
+	 *            the stream the column is read from
+	 * @param length
+	 *            the number of values in the column
+	 * @return the values
+	 * @throws IOException
+	 *             if the column could not be read
+	 */
+	private static int[] readInts(DataInputStream input, int length)
+			throws IOException {
+		if (length < 0) {
+			throw new IOException("Corrupt snapshot");
+		}
+		int[] values = new int[length];
+		for (int index = 0; index < length; index++) {
+			values[index] = input.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Sorts the given rows on the numbers in their IDs, unless they are in
+	 * that order already, as they are when every row was inserted in the
+	 * order its ID was issued.
+	 *
+	 * @param rows
+	 *            the components, suppliers or orders
+	 * @param numbers
+	 *            the number in the ID of each row
+	 */
+	private static void sortByNumber(Object[] rows, int[] numbers) {
+		int row = 1;
+		while (row < numbers.length && numbers[row - 1] < numbers[row]) {
+			row++;
+		}
+		if (row >= numbers.length) {
+			return;
+		}
+		long[] keys = new long[numbers.length];
+		for (row = 0; row < numbers.length; row++) {
+			keys[row] = (long) numbers[row] << 32 | row;
+		}
+		Arrays.sort(keys);
+		Object[] sorted = new Object[rows.length];
+		for (row = 0; row < keys.length; row++) {
+			sorted[row] = rows[(int) keys[row]];
+			numbers[row] = (int) (keys[row] >>> 32);
+		}
+		System.arraycopy(sorted, 0, rows, 0, rows.length);
+	}
+
+	/**
+	 * Counts the bytes of the UTF-8 encoding of a name, without encoding it.
+	 *
+	 * @param name
+	 *            the name of a component or supplier
+	 * @return the length of the encoded name
+	 */
+	private static int utf8Length(String name) {
+		int length = 0;
+		for (int index = 0; index < name.length(); index++) {
+			char character = name.charAt(index);
+			if (character < 0x80) {
+				length++;
+			} else if (character < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(character)
+					&& index + 1 < name.length()
+					&& Character.isLowSurrogate(name.charAt(index + 1))) {
+				length += 4;
+				index++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
@@ -1,159 +1,386 @@
-import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Iterator;
-
-/**
- * This class represents a single component.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class Component implements Serializable {
-	private static final long serialVersionUID = 1L;
-
-	/**
-	 * Constant {@code String} value that is placed in the beginning of every
-	 * {@code id} to indicate that this {@code String} represents a
-	 * {@code Component}.
-	 */
-	private static final String COMPONENT_MARKER = "C";
-	private String name;
-	private String id;
-	private int stock;
-	private HashSet<ComponentSupplierRelation> supplierRelations = new HashSet<ComponentSupplierRelation>();
-
-	/**
-	 * Represents a single {@code Component}.
-	 * 
-	 * @param name
-	 *            the name of the {@code Component}.
-	 */
-	public Component(String name) {
-		this.name = name;
-		id = COMPONENT_MARKER + IdGenerator.instance().getComponentId();
-	}
-
-	/**
-	 * Returns the name of the {@code Component}.
-	 * 
-	 * @return {@code name}.
-	 */
-	public String getName() {
-		return name;
-	}
-
-	/**
-	 * Returns the identification of the {@code Component}.
-	 * 
-	 * @return {@code id}.
-	 */
-	public String getId() {
-		return id;
-	}
-
-	/**
-	 * Returns the current stock quantity of the {@code Component}.
-	 * 
-	 * @return {@code stock}.
-	 */
-	public int getStock() {
-		return stock;
-	}
-
-	/**
-	 * Adds the given quantity to the component stock
-	 * 
-	 * @param quantity
-	 *            the quantity to be added.
-	 */
-	public void addToStock(int quantity) {
-		this.stock += quantity;
-	}
-
-	/**
-	 * Returns a set of relationships representing the suppliers that supply
-	 * this component.
-	 * 
-	 * @return a set of {@code ComponentSupplierRelation} objects
-	 */
-	public HashSet<ComponentSupplierRelation> getSupplierRelations() {
-		return this.supplierRelations;
-	}
-
-	/**
-	 * Adds a relationship between the component and a supplier.
-	 * 
-	 * @param relation
-	 *            the relation to be added
-	 * @return {@literal true}, if the relation was successfully added.
-	 *         Otherwise, {@literal false}.
-	 */
-	public boolean addSupplierRelation(ComponentSupplierRelation relation) {
-		return supplierRelations.add(relation);
-	}
-
-	/**
-	 * Removes the given quantity from {@code stock}.
-	 * 
-	 * @param quantity
-	 *            quantity to be removed
-	 * @return {@literal true}, if there is enough {@code stock}. Otherwise,
-	 *         {@literal false}.
-	 */
-	public boolean assign(int quantity) {
-		if (stock >= quantity) {
-			stock -= quantity;
-			return true;
-		}
-		return false;
-	}
-
-	/**
-	 * Finds and returns the relation between this component and the given
-	 * supplier, if one exists.
-	 * 
-	 * @param supplier
-	 *            the supplier whose relation is being searched for
-	 * @return a ComponentSupplierRelation object of this component and the
-	 *         given supplier.
-	 */
-	public ComponentSupplierRelation getSupplier(Supplier supplier) {
-		for (ComponentSupplierRelation relation : supplierRelations) {
-			if (relation.getSupplier().equals(supplier)) {
-				return relation;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Returns an iterator over all the supplier relations of this component
-	 * 
-	 * @return an Iterator of all ComponentSupplierRelation objects related to
-	 *         this component.
-	 */
-	public Iterator<ComponentSupplierRelation> getAllSuppliers() {
-		return supplierRelations.iterator();
-	}
-
-	/**
-	 * Returns a {@code String} representation of the {@code Component}.
-	 */
-	@Override
-	public String toString() {
-		/*
-		 * return "Component name: " + name + " | Component ID: " + id +
-		 * " | Quantity on hand: " + stock;
-		 */
-		String output = "Component name: " + name + " | Component ID: " + id
-				+ " | Quantity on hand: " + stock + "\nSuppliers:\n";
-		Iterator<ComponentSupplierRelation> componentSuppliers = getAllSuppliers();
-		while (componentSuppliers.hasNext()) {
-			Supplier supplier = componentSuppliers.next().getSupplier();
-			output += (supplier.getName() + ", " + supplier.getId() + "\n");
-		}
-		output += "\n";
-		return output;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * This class represents a single component.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class Component implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+
+	/**
+	 * The number in the ID of the {@code Component}; see {@link EntityId}.
+	 */
+	private final int number;
+
+	/**
+	 * Slot of the stock of this component in the stock column of
+	 * {@code ColumnStorage}, which gives atomic access to it, so that it can
+	 * be changed from several threads without a lock.
+	 */
+	private final int stockSlot;
+
+	/**
+	 * The relations with the suppliers of this component, keyed on the
+	 * supplier.
+	 */
+	private RelationIndex supplierRelations = new RelationIndex(true);
+
+	/**
+	 * The snapshot and row this component was created from, until its
+	 * relations have been read from there.
+	 */
+	private transient volatile MappedSnapshot snapshot;
+	private transient int row;
+
+	/**
+	 * Whether the component is listed by {@link ChangeTracker} as added or
+	 * changed since the last save.
+	 */
+	private transient volatile boolean changed;
+
+	/**
+	 * Represents a single {@code Component}.
+	 * 
+	 * @param name
+	 *            the name of the {@code Component}.
+	 */
+	public Component(String name) {
+		this.name = name;
+		number = IdGenerator.instance().getComponentId();
+		stockSlot = ColumnStorage.instance().getStocks().add(0);
+	}
+
+	/**
+	 * Represents a single {@code Component} whose ID has already been issued,
+	 * such as one read back from a snapshot.
+	 * 
+	 * @param number
+	 *            the number in the ID of the {@code Component}.
+	 * @param name
+	 *            the name of the {@code Component}.
+	 */
+	Component(int number, String name) {
+		this.name = name;
+		this.number = number;
+		stockSlot = ColumnStorage.instance().getStocks().add(0);
+	}
+
+	/**
+	 * Represents a single {@code Component} whose ID has already been issued,
+	 * with the given stock. Unlike giving it its stock with
+	 * {@link #addToStock(int)}, this does not count as a change since the
+	 * last save, so that a component read back from a snapshot is not saved
+	 * again; a new one counts as changed once it is inserted into the
+	 * {@code ComponentList}.
+	 * 
+	 * @param number
+	 *            the number in the ID of the {@code Component}.
+	 * @param name
+	 *            the name of the {@code Component}.
+	 * @param stock
+	 *            the stock quantity.
+	 */
+	Component(int number, String name, int stock) {
+		this.name = name;
+		this.number = number;
+		this.stockSlot = ColumnStorage.instance().getStocks().add(stock);
+	}
+
+	/**
+	 * Returns the name of the {@code Component}.
+	 * 
+	 * @return {@code name}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the identification of the {@code Component}, in its text form.
+	 * 
+	 * @return the ID, such as {@code C12}.
+	 */
+	public String getId() {
+		return EntityId.format(getEntityId());
+	}
+
+	/**
+	 * Returns the identification of the {@code Component}, packed as
+	 * described in {@link EntityId}.
+	 * 
+	 * @return the packed ID.
+	 */
+	public long getEntityId() {
+		return EntityId.of(EntityId.COMPONENT, number);
+	}
+
+	/**
+	 * Returns the number in the identification of the {@code Component}.
+	 * 
+	 * @return {@code number}.
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * Returns the current stock quantity of the {@code Component}.
+	 * 
+	 * @return the stock.
+	 */
+	public int getStock() {
+		return ColumnStorage.instance().getStocks().get(stockSlot);
+	}
+
+	/**
+	 * Adds the given quantity to the component stock. The addition is a
+	 * single atomic instruction, so it completes in a bounded number of steps
+	 * even when other threads are changing the stock.
+	 * 
+	 * @param quantity
+	 *            the quantity to be added.
+	 */
+	public void addToStock(int quantity) {
+		ColumnStorage.instance().getStocks().getAndAdd(stockSlot, quantity);
+		changed();
+		ComponentList.instance().restocked(this);
+	}
+
+	/**
+	 * Returns a set of relationships representing the suppliers that supply
+	 * this component.
+	 * 
+	 * @return a collection of {@code ComponentSupplierRelation} objects
+	 */
+	public Collection<ComponentSupplierRelation> getSupplierRelations() {
+		loadRelations();
+		return this.supplierRelations.values();
+	}
+
+	/**
+	 * Adds a relationship between the component and a supplier.
+	 * 
+	 * @param relation
+	 *            the relation to be added
+	 * @return {@literal true}, if the relation was successfully added.
+	 *         Otherwise, {@literal false}.
+	 */
+	public boolean addSupplierRelation(ComponentSupplierRelation relation) {
+		loadRelations();
+		if (supplierRelations.add(relation)) {
+			ChangeTracker.instance().changed(relation);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a relationship read back from a snapshot, which does not count as
+	 * a change since the last save.
+	 * 
+	 * @param relation
+	 *            the relation to be added
+	 */
+	void restoreSupplierRelation(ComponentSupplierRelation relation) {
+		supplierRelations.add(relation);
+	}
+
+	/**
+	 * Removes the given quantity from the stock. The check and the removal
+	 * are done with a compare-and-set, which is retried if another thread
+	 * changed the stock in between, so the stock never goes below zero.
+	 * 
+	 * @param quantity
+	 *            quantity to be removed
+	 * @return {@literal true}, if there is enough stock. Otherwise,
+	 *         {@literal false}.
+	 */
+	public boolean assign(int quantity) {
+		IntColumn stocks = ColumnStorage.instance().getStocks();
+		int current;
+		do {
+			current = stocks.get(stockSlot);
+			if (current < quantity) {
+				return false;
+			}
+		} while (!stocks.weakCompareAndSet(stockSlot, current,
+				current - quantity));
+		changed();
+		ComponentList.instance().restocked(this);
+		return true;
+	}
+
+	/**
+	 * Returns whether the component has been added or changed since the last
+	 * save; see {@link ChangeTracker}.
+	 * 
+	 * @return {@literal true} if the component is listed as changed
+	 */
+	boolean isChanged() {
+		return changed;
+	}
+
+	/**
+	 * Sets whether the component is listed as changed. Only
+	 * {@link ChangeTracker} calls this, holding its lock.
+	 * 
+	 * @param changed
+	 *            whether the component is listed
+	 */
+	void setChanged(boolean changed) {
+		this.changed = changed;
+	}
+
+	/**
+	 * Lists the component with the {@code ChangeTracker}, unless it is listed
+	 * already, which is checked without taking a lock.
+	 */
+	private void changed() {
+		if (!changed) {
+			ChangeTracker.instance().changed(this);
+		}
+	}
+
+	/**
+	 * Finds and returns the relation between this component and the given
+	 * supplier, if one exists.
+	 * 
+	 * @param supplier
+	 *            the supplier whose relation is being searched for
+	 * @return a ComponentSupplierRelation object of this component and the
+	 *         given supplier.
+	 */
+	public ComponentSupplierRelation getSupplier(Supplier supplier) {
+		loadRelations();
+		return supplierRelations.get(supplier);
+	}
+
+	/**
+	 * Returns an iterator over all the supplier relations of this component
+	 * 
+	 * @return an Iterator of all ComponentSupplierRelation objects related to
+	 *         this component.
+	 */
+	public Iterator<ComponentSupplierRelation> getAllSuppliers() {
+		loadRelations();
+		return supplierRelations.values().iterator();
+	}
+
+	/**
+	 * Records that this component was created from the given row of a
+	 * snapshot, whose relations are read when they are first used.
+	 * 
+	 * @param snapshot
+	 *            the snapshot holding the relations
+	 * @param row
+	 *            the row of this component in the snapshot
+	 */
+	void attach(MappedSnapshot snapshot, int row) {
+		this.snapshot = snapshot;
+		this.row = row;
+	}
+
+	/**
+	 * Reads the relations of this component from the snapshot it was created
+	 * from, if that has not been done yet. They are read holding the lock of
+	 * the snapshot, and the snapshot is let go only once all of them have
+	 * been added, so that another thread either waits for them or finds them
+	 * all there.
+	 */
+	private void loadRelations() {
+		MappedSnapshot source = snapshot;
+		if (source != null) {
+			synchronized (source) {
+				if (snapshot != null) {
+					source.loadSupplierRelations(this, row);
+					snapshot = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the details of the {@code Component}, followed by the name and ID
+	 * of each of its suppliers, piece by piece to the given writer.
+	 * 
+	 * @param writer
+	 *            the destination of the details
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write("Component name: ");
+		writer.write(name);
+		writer.write(" | Component ID: ");
+		writer.write(getId());
+		writer.write(" | Quantity on hand: ");
+		writer.write(Integer.toString(getStock()));
+		writer.write("\nSuppliers:\n");
+		Iterator<ComponentSupplierRelation> componentSuppliers = getAllSuppliers();
+		while (componentSuppliers.hasNext()) {
+			Supplier supplier = componentSuppliers.next().getSupplier();
+			writer.write(supplier.getName());
+			writer.write(", ");
+			writer.write(supplier.getId());
+			writer.write('\n');
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the details of the {@code Component}, with the ID, name and
+	 * quantity supplied to date of each of its suppliers, as a JSON object.
+	 * 
+	 * @param json
+	 *            the destination of the details
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeJson(JsonWriter json) throws IOException {
+		json.beginObject();
+		json.name("id").value(getId());
+		json.name("name").value(name);
+		json.name("stock").value(getStock());
+		json.name("suppliers").beginArray();
+		Iterator<ComponentSupplierRelation> componentSuppliers = getAllSuppliers();
+		while (componentSuppliers.hasNext()) {
+			ComponentSupplierRelation relation = componentSuppliers.next();
+			json.beginObject();
+			json.name("id").value(relation.getSupplier().getId());
+			json.name("name").value(relation.getSupplier().getName());
+			json.name("supplied").value(relation.getQuantitySuppliedToDate());
+			json.endObject();
+		}
+		json.endArray();
+		json.endObject();
+	}
+
+	/**
+	 * Returns a {@code String} representation of the {@code Component}.
+	 */
+	@Override
+	public String toString() {
+		/*
+		 * return "Component name: " + name + " | Component ID: " + getId() +
+		 * " | Quantity on hand: " + stock;
+		 */
+		StringWriter output = new StringWriter();
+		try {
+			write(output);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return output.toString();
+	}
+}
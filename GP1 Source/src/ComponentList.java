@@ -1,77 +1,519 @@
-import java.io.Serializable;
-import java.util.LinkedList;
-
-/**
- * The collection class for Component objects
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class ComponentList implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private LinkedList<Component> componentList = new LinkedList<Component>();
-	private static ComponentList components;
-
-	/**
-	 * Private constructor for singleton pattern
-	 * 
-	 */
-	private ComponentList() {
-	}
-
-	/**
-	 * Supports the singleton pattern
-	 * 
-	 * @return the singleton object
-	 */
-	public static ComponentList instance() {
-		if (components == null) {
-			return (components = new ComponentList());
-		} else {
-			return components;
-		}
-	}
-
-	/**
-	 * Inserts a given component to the list of components
-	 * 
-	 * @param component
-	 *            component to be inserted
-	 * @return {@literal}, if insertion was successful. Otherwise,
-	 *         {@literal false}.
-	 */
-	public boolean insert(Component component) {
-		return componentList.add(component);
-	}
-
-	/**
-	 * Searches the collection for a component with the given ID.
-	 * 
-	 * @param componentID
-	 *            the ID being searched for
-	 * @return a {@code Component} object with the matching ID, if one is found.
-	 *         Otherwise, {@literal null}.
-	 */
-	public Component search(String componentID) {
-		for (Component component : componentList) {
-			if (component.getId().equals(componentID)) {
-				return component;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * A {@code String} representation of all {@code Component} objects in
-	 * {@code ComponentList}.
-	 */
-	@Override
-	public String toString() {
-		String output = "";
-		for (Component component : componentList) {
-			output += (component.toString() + "\n");
-		}
-		return output;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The collection class for Component objects
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class ComponentList implements Serializable, Iterable<Component> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The components, keyed on the number in their ID and kept in insertion
+	 * order.
+	 */
+	private volatile IntHashMap<Component> componentList = new IntHashMap<Component>();
+
+	/**
+	 * The snapshot the components not yet in {@code componentList} are read from,
+	 * until all of them have been read. A component read from the snapshot is
+	 * kept there, not added to {@code componentList}, so that a lookup never
+	 * changes the collection; {@link #load()} merges them all in.
+	 */
+	private transient volatile MappedSnapshot snapshot;
+
+	/**
+	 * The index of the names of the components, built the first time a component
+	 * is searched for by name.
+	 */
+	private transient volatile NameIndex names;
+
+	/**
+	 * The index of the stock of the components, built the first time the
+	 * components with low stock are asked for.
+	 */
+	private transient volatile StockIndex stocks;
+
+	/**
+	 * The ranking of the suppliers by the quantity they have supplied, built
+	 * the first time it is asked for.
+	 */
+	private transient volatile SupplierRanking ranking;
+	private static ComponentList components;
+
+	/**
+	 * Private constructor for singleton pattern
+	 * 
+	 */
+	private ComponentList() {
+	}
+
+	/**
+	 * Supports the singleton pattern
+	 * 
+	 * @return the singleton object
+	 */
+	public static ComponentList instance() {
+		if (components == null) {
+			return (components = new ComponentList());
+		} else {
+			return components;
+		}
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} creates an empty collection. Used when the company
+	 * is being rebuilt from disk.
+	 */
+	static void reset() {
+		components = null;
+	}
+
+	/**
+	 * Inserts a given component to the list of components
+	 * 
+	 * @param component
+	 *            component to be inserted
+	 * @return {@literal}, if insertion was successful. Otherwise,
+	 *         {@literal false}.
+	 */
+	public boolean insert(Component component) {
+		if (!inSnapshot(component.getNumber())
+				&& componentList.put(component.getNumber(), component)) {
+			ChangeTracker.instance().changed(component);
+			NameIndex index = names;
+			if (index != null) {
+				index.add(component.getNumber(), component.getName());
+			}
+			restocked(component);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts a batch of components, growing the collection at most once.
+	 * 
+	 * @param components
+	 *            components to be inserted
+	 * @return the number of components inserted; a component whose ID is already
+	 *         in the collection is skipped
+	 */
+	public int insertAll(Component[] components) {
+		componentList.ensureCapacity(componentList.size() + components.length);
+		ChangeTracker tracker = ChangeTracker.instance();
+		NameIndex index = names;
+		int inserted = 0;
+		for (Component component : components) {
+			if (!inSnapshot(component.getNumber())
+					&& componentList.put(component.getNumber(), component)) {
+				tracker.changed(component);
+				if (index != null) {
+					index.add(component.getNumber(), component.getName());
+				}
+				restocked(component);
+				inserted++;
+			}
+		}
+		return inserted;
+	}
+
+	/**
+	 * Searches the collection for a component with the given ID.
+	 * 
+	 * @param componentID
+	 *            the ID being searched for
+	 * @return a {@code Component} object with the matching ID, if one is found.
+	 *         Otherwise, {@literal null}.
+	 */
+	public Component search(String componentID) {
+		return search(EntityId.parse(componentID));
+	}
+
+	/**
+	 * Searches the collection for a component with the given packed ID.
+	 * 
+	 * @param componentId
+	 *            the ID being searched for, packed as described in
+	 *            {@link EntityId}
+	 * @return a {@code Component} object with the matching ID, if one is found.
+	 *         Otherwise, {@literal null}.
+	 */
+	public Component search(long componentId) {
+		if (EntityId.type(componentId) != EntityId.COMPONENT) {
+			return null;
+		}
+		return get(EntityId.number(componentId));
+	}
+
+	/**
+	 * Searches the collection for the components with the given name, ignoring
+	 * case.
+	 * 
+	 * @param name
+	 *            the name being searched for
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the matching {@code Component} objects, in the order they were
+	 *         inserted
+	 */
+	public List<Component> findByName(String name, int limit) {
+		return lookUp(nameIndex().findExact(name, limit));
+	}
+
+	/**
+	 * Searches the collection for the components whose names start with the
+	 * given text, ignoring case.
+	 * 
+	 * @param prefix
+	 *            the start of the names
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the matching {@code Component} objects, sorted by name
+	 */
+	public List<Component> findByPrefix(String prefix, int limit) {
+		return lookUp(nameIndex().findPrefix(prefix, limit));
+	}
+
+	/**
+	 * Searches the collection for the components whose names start with the
+	 * given text, or nearly do, allowing for typing mistakes; see
+	 * {@link NameIndex#findSimilar(String, int)}.
+	 * 
+	 * @param text
+	 *            the text typed
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the matching {@code Component} objects, the closest matches first
+	 */
+	public List<Component> findSimilar(String text, int limit) {
+		return lookUp(nameIndex().findSimilar(text, limit));
+	}
+
+	/**
+	 * Returns the index of the names of the components, building it the first
+	 * time. The names of the components still in the snapshot are read from
+	 * there, without creating the components.
+	 * 
+	 * @return the index
+	 */
+	private synchronized NameIndex nameIndex() {
+		if (names == null) {
+			NameIndex index = new NameIndex();
+			for (int row = 0; snapshot != null
+					&& row < snapshot.getComponentCount(); row++) {
+				index.add(snapshot.getComponentNumber(row),
+						snapshot.getComponentName(row));
+			}
+			for (Component component : componentList) {
+				if (snapshot == null
+						|| snapshot.findComponent(component.getNumber()) < 0) {
+					index.add(component.getNumber(), component.getName());
+				}
+			}
+			names = index;
+		}
+		return names;
+	}
+
+	/**
+	 * Searches the collection for the components with less than the given
+	 * stock.
+	 * 
+	 * @param level
+	 *            the stock that the components have less than
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the matching {@code Component} objects, those with the least
+	 *         stock first
+	 */
+	public List<Component> findBelow(int level, int limit) {
+		return lookUp(stockIndex().findBelow(level, limit));
+	}
+
+	/**
+	 * Returns the components with the least stock.
+	 * 
+	 * @param limit
+	 *            the number of components returned, unless there are fewer
+	 * @return the {@code Component} objects, those with the least stock first
+	 */
+	public List<Component> findLowest(int limit) {
+		return findBelow(Integer.MAX_VALUE, limit);
+	}
+
+	/**
+	 * Brings the index of the stock up to date with the stock of the given
+	 * component, once the index has been built. Called whenever the stock of
+	 * a component changes.
+	 * 
+	 * @param component
+	 *            the component
+	 */
+	void restocked(Component component) {
+		StockIndex index = stocks;
+		if (index != null) {
+			index.update(component);
+		}
+	}
+
+	/**
+	 * Returns the index of the stock of the components, building it the
+	 * first time. The stock of the components in the snapshot that have not
+	 * been created is read from there, without creating them. The index is
+	 * published before it is filled in, while holding the locks of all its
+	 * stripes, so that a change of stock made meanwhile waits and is then
+	 * recorded.
+	 * 
+	 * @return the index
+	 */
+	private synchronized StockIndex stockIndex() {
+		if (stocks == null) {
+			StockIndex index = new StockIndex();
+			index.lockAll();
+			try {
+				stocks = index;
+				for (int row = 0; snapshot != null
+						&& row < snapshot.getComponentCount(); row++) {
+					int number = snapshot.getComponentNumber(row);
+					Component component = snapshot.peekComponent(row);
+					index.update(number, component != null
+							? component.getStock()
+							: snapshot.getComponentStock(row));
+				}
+				for (Component component : componentList) {
+					index.update(component);
+				}
+			} finally {
+				index.unlockAll();
+			}
+		}
+		return stocks;
+	}
+
+	/**
+	 * Brings the ranking of the suppliers up to date with the quantity
+	 * supplied to date of the given relation, once the ranking has been
+	 * built. Called whenever that quantity changes.
+	 * 
+	 * @param relation
+	 *            the relation
+	 */
+	void supplied(ComponentSupplierRelation relation) {
+		SupplierRanking current = ranking;
+		if (current != null) {
+			current.update(relation);
+		}
+	}
+
+	/**
+	 * Returns the ranking of the suppliers by the quantity they have
+	 * supplied, building it the first time. The relations of the components
+	 * in the snapshot that have not been created are read from there,
+	 * without creating them; the relations of any other component are those
+	 * of the component object.
+	 * The ranking is published before it is filled in, while holding its
+	 * lock, as the index of the stock is.
+	 * 
+	 * @return the ranking
+	 */
+	synchronized SupplierRanking supplierRanking() {
+		if (ranking == null) {
+			SupplierRanking built = new SupplierRanking();
+			synchronized (built) {
+				ranking = built;
+				for (int row = 0; snapshot != null
+						&& row < snapshot.getComponentCount(); row++) {
+					int number = snapshot.getComponentNumber(row);
+					Component component = snapshot.peekComponent(row);
+					if (component != null) {
+						for (ComponentSupplierRelation relation : component
+								.getSupplierRelations()) {
+							built.update(relation);
+						}
+						continue;
+					}
+					for (int relation = snapshot.getRelationStart(
+							row); relation < snapshot
+									.getRelationStart(row + 1); relation++) {
+						built.update(number,
+								snapshot.getSupplierNumber(
+										snapshot.getRelationSupplier(relation)),
+								snapshot.getRelationQuantity(relation));
+					}
+				}
+				for (Component component : componentList) {
+					for (ComponentSupplierRelation relation : component
+							.getSupplierRelations()) {
+						built.update(relation);
+					}
+				}
+			}
+		}
+		return ranking;
+	}
+
+	/**
+	 * Returns the components with the given numbers in their IDs, leaving out any
+	 * that are not in the collection, such as a component that an index has seen
+	 * before it was inserted.
+	 */
+	private List<Component> lookUp(int[] numbers) {
+		List<Component> found = new ArrayList<Component>(numbers.length);
+		for (int number : numbers) {
+			Component component = get(number);
+			if (component != null) {
+				found.add(component);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the component with the given number in its ID, reading it from
+	 * the snapshot the first time it is asked for. The collection itself is
+	 * not changed, so this is a read as far as any lock around it is
+	 * concerned.
+	 * 
+	 * @param number
+	 *            the number in the ID
+	 * @return the {@code Component} object, if one exists. Otherwise,
+	 *         {@literal null}.
+	 */
+	Component get(int number) {
+		MappedSnapshot source = snapshot;
+		Component component = componentList.get(number);
+		if (component == null && source != null) {
+			int row = source.findComponent(number);
+			if (row >= 0) {
+				component = source.getComponent(row);
+			}
+		}
+		return component;
+	}
+
+	/**
+	 * Returns whether the snapshot the collection still reads from holds a
+	 * component with the given number in its ID.
+	 */
+	private boolean inSnapshot(int number) {
+		MappedSnapshot source = snapshot;
+		return source != null && source.findComponent(number) >= 0;
+	}
+
+	/**
+	 * Makes the collection read the components it does not hold from the given
+	 * snapshot, as they are asked for.
+	 * 
+	 * @param snapshot
+	 *            the snapshot the collection was saved in
+	 */
+	void attach(MappedSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Reads all components that have not been asked for yet from the snapshot,
+	 * so that the collection lists them in the order of their IDs, followed
+	 * by those added since the snapshot was taken. The merged collection is
+	 * filled in before it replaces the old one, and the snapshot is let go
+	 * only after that, so that {@link #get(int)}, which looks at the snapshot
+	 * first, finds every component throughout.
+	 */
+	synchronized void load() {
+		MappedSnapshot source = snapshot;
+		if (source == null) {
+			return;
+		}
+		IntHashMap<Component> loaded = new IntHashMap<Component>();
+		loaded.ensureCapacity(source.getComponentCount() + componentList.size());
+		for (int row = 0; row < source.getComponentCount(); row++) {
+			loaded.put(source.getComponentNumber(row), source.getComponent(row));
+		}
+		for (Component component : componentList) {
+			loaded.put(component.getNumber(), component);
+		}
+		componentList = loaded;
+		snapshot = null;
+	}
+
+	/**
+	 * Returns the number of components in the collection.
+	 * 
+	 * @return the size of the collection
+	 */
+	public int size() {
+		load();
+		return componentList.size();
+	}
+
+	/**
+	 * Returns at most {@code pageSize} components, in the order they were
+	 * inserted, starting at the given cursor. Components are never removed, so
+	 * page {@code k} (counting from {@literal 0}) starts at cursor
+	 * {@code k * pageSize}; otherwise, pass the next cursor of the previous
+	 * page.
+	 * 
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of components returned
+	 * @return the components and the cursor of the following page
+	 */
+	public Page<Component> page(int cursor, int pageSize) {
+		load();
+		return componentList.page(cursor, pageSize);
+	}
+
+	/**
+	 * Returns an iterator over the components, in the order they were
+	 * inserted.
+	 */
+	@Override
+	public Iterator<Component> iterator() {
+		load();
+		return componentList.iterator();
+	}
+
+	/**
+	 * Writes all {@code Component} objects in {@code ComponentList} to the given
+	 * writer, one after another, without building the listing in memory.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void write(Writer writer) throws IOException {
+		load();
+		for (Component component : componentList) {
+			component.write(writer);
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * A {@code String} representation of all {@code Component} objects in
+	 * {@code ComponentList}.
+	 */
+	@Override
+	public String toString() {
+		StringWriter output = new StringWriter();
+		try {
+			write(output);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return output.toString();
+	}
+}
@@ -1,123 +1,179 @@
-import java.io.Serializable;
-import java.util.Objects;
-
-/**
- * This class represents a single relationship between a {@code Component} and a
- * {@code Supplier}. A component can be supplied by multiple suppliers. And a
- * supplier can supply multiple components.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class ComponentSupplierRelation implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private Component component;
-	private Supplier supplier;
-
-	/**
-	 * Represents the total quantity of this component this supplier has
-	 * supplied to date.
-	 */
-	private int quantitySuppliedToDate;
-
-	/**
-	 * Generates a constructor for {@code ComponentSupplierRelation}. In it, a
-	 * {@code Component} and {@code Supplier} are stored.
-	 * 
-	 * @param component
-	 *            the {@code Component} being supplied by the {@code supplier}.
-	 * @param supplier
-	 *            the {@code Supplier} supplying the {@code component}.
-	 */
-	public ComponentSupplierRelation(Component component, Supplier supplier) {
-		this.component = component;
-		this.supplier = supplier;
-	}
-
-	/**
-	 * Returns the total quantity supplied by the {@code supplier} so far
-	 * 
-	 * @return {@code quantitySuppliedToDate}.
-	 */
-	public int getQuantitySuppliedToDate() {
-		return quantitySuppliedToDate;
-	}
-
-	/**
-	 * Adds a given quantity to the {@code quantitySuppliedToDate}, the quantity
-	 * supplied by the supplier so far.
-	 * 
-	 * @param quantity
-	 *            the quantity to be added.
-	 */
-	public void addQuantity(int quantity) {
-		this.quantitySuppliedToDate += quantity;
-	}
-
-	/**
-	 * Returns the {@code Supplier} that is supplying the {@code Component} in
-	 * the relation.
-	 * 
-	 * @return {@code supplier}.
-	 */
-	public Supplier getSupplier() {
-		return supplier;
-	}
-
-	/**
-	 * Returns the {@code Component} that is being supplied by the
-	 * {@code Supplier} in the relation.
-	 * 
-	 * @return {@code component}.
-	 */
-	public Component getComponent() {
-		return component;
-	}
-
-	/**
-	 * Checks whether a relation is equal to the one supplied.
-	 * 
-	 * @param object
-	 *            the relation that will be compared.
-	 * @return {@literal}, if they have the same component and supplier.
-	 *         Otherwise, {@literal false}.
-	 */
-	@Override
-	public boolean equals(Object object) {
-		if (this == object) {
-			return true;
-		}
-		if (object == null) {
-			return false;
-		}
-		if (!(object instanceof ComponentSupplierRelation)) {
-			return false;
-		}
-
-		ComponentSupplierRelation relation = (ComponentSupplierRelation) object;
-
-		return (this.component.equals(relation.component))
-				&& (this.supplier.equals(relation.supplier));
-	}
-
-	/**
-	 * Generates a hash code for the relation based on the hash of the
-	 * {@code component}. and {@code supplier}.
-	 */
-	@Override
-	public int hashCode() {
-		return Objects.hash(component, supplier);
-	}
-
-	/**
-	 * Returns a string representation of the relation.
-	 */
-	@Override
-	public String toString() {
-		return "Component: " + component.getName() + "\nSupplier: "
-				+ supplier.getName() + "\nTotal quantity received from "
-				+ supplier.getName() + ": " + quantitySuppliedToDate;
-	}
-
-}
+import java.io.Serializable;
+
+/**
+ * This class represents a single relationship between a {@code Component} and a
+ * {@code Supplier}. A component can be supplied by multiple suppliers. And a
+ * supplier can supply multiple components.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class ComponentSupplierRelation implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private Component component;
+	private Supplier supplier;
+
+	/**
+	 * Slot of the quantity supplied to date in the quantity column of
+	 * {@code ColumnStorage}.
+	 */
+	private final int quantitySlot;
+
+	/**
+	 * Whether the relation is listed by {@link ChangeTracker} as added or
+	 * changed since the last save.
+	 */
+	private transient volatile boolean changed;
+
+	/**
+	 * Generates a constructor for {@code ComponentSupplierRelation}. In it, a
+	 * {@code Component} and {@code Supplier} are stored.
+	 * 
+	 * @param component
+	 *            the {@code Component} being supplied by the {@code supplier}.
+	 * @param supplier
+	 *            the {@code Supplier} supplying the {@code component}.
+	 */
+	public ComponentSupplierRelation(Component component, Supplier supplier) {
+		this.component = component;
+		this.supplier = supplier;
+		quantitySlot = ColumnStorage.instance().getQuantities()
+				.add(0);
+	}
+
+	/**
+	 * Represents a relation read back from a snapshot, with the quantity
+	 * supplied to date it was saved with. It does not count as changed since
+	 * the last save.
+	 * 
+	 * @param component
+	 *            the {@code Component} being supplied by the {@code supplier}.
+	 * @param supplier
+	 *            the {@code Supplier} supplying the {@code component}.
+	 * @param quantity
+	 *            the quantity supplied to date.
+	 */
+	ComponentSupplierRelation(Component component, Supplier supplier,
+			int quantity) {
+		this.component = component;
+		this.supplier = supplier;
+		quantitySlot = ColumnStorage.instance().getQuantities()
+				.add(quantity);
+	}
+
+	/**
+	 * Returns the total quantity supplied by the {@code supplier} so far
+	 * 
+	 * @return the quantity supplied to date.
+	 */
+	public int getQuantitySuppliedToDate() {
+		return ColumnStorage.instance().getQuantities()
+				.get(quantitySlot);
+	}
+
+	/**
+	 * Adds a given quantity to the quantity supplied by the supplier so far.
+	 * The addition is atomic.
+	 * 
+	 * @param quantity
+	 *            the quantity to be added.
+	 */
+	public void addQuantity(int quantity) {
+		ColumnStorage.instance().getQuantities()
+				.getAndAdd(quantitySlot, quantity);
+		if (!changed) {
+			ChangeTracker.instance().changed(this);
+		}
+		ComponentList.instance().supplied(this);
+	}
+
+	/**
+	 * Returns whether the relation has been added or changed since the last
+	 * save; see {@link ChangeTracker}.
+	 * 
+	 * @return {@literal true} if the relation is listed as changed
+	 */
+	boolean isChanged() {
+		return changed;
+	}
+
+	/**
+	 * Sets whether the relation is listed as changed. Only
+	 * {@link ChangeTracker} calls this, holding its lock.
+	 * 
+	 * @param changed
+	 *            whether the relation is listed
+	 */
+	void setChanged(boolean changed) {
+		this.changed = changed;
+	}
+
+	/**
+	 * Returns the {@code Supplier} that is supplying the {@code Component} in
+	 * the relation.
+	 * 
+	 * @return {@code supplier}.
+	 */
+	public Supplier getSupplier() {
+		return supplier;
+	}
+
+	/**
+	 * Returns the {@code Component} that is being supplied by the
+	 * {@code Supplier} in the relation.
+	 * 
+	 * @return {@code component}.
+	 */
+	public Component getComponent() {
+		return component;
+	}
+
+	/**
+	 * Checks whether a relation is equal to the one supplied.
+	 * 
+	 * @param object
+	 *            the relation that will be compared.
+	 * @return {@literal}, if they have the same component and supplier.
+	 *         Otherwise, {@literal false}.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (!(object instanceof ComponentSupplierRelation)) {
+			return false;
+		}
+
+		ComponentSupplierRelation relation = (ComponentSupplierRelation) object;
+
+		return (this.component.equals(relation.component))
+				&& (this.supplier.equals(relation.supplier));
+	}
+
+	/**
+	 * Generates a hash code for the relation based on the hash of the
+	 * {@code component}. and {@code supplier}. The result is that of
+	 * {@code Objects.hash(component, supplier)}, without allocating an array
+	 * for the arguments.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * (31 + component.hashCode()) + supplier.hashCode();
+	}
+
+	/**
+	 * Returns a string representation of the relation.
+	 */
+	@Override
+	public String toString() {
+		return "Component: " + component.getName() + "\nSupplier: "
+				+ supplier.getName() + "\nTotal quantity received from "
+				+ supplier.getName() + ": " + getQuantitySuppliedToDate();
+	}
+
+}
@@ -0,0 +1,622 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe facade over the {@code Company}, for when several terminals
+ * share one process. It offers the operations of {@code Company} and
+ * coordinates them as follows:
+ *
+ * <ul>
+ * <li>Changes to a component, including placing and fulfilling its orders,
+ * are made while holding the lock of that {@code Component} object, so
+ * operations on one component take effect one at a time, and operations on
+ * different components never wait for each other. Assignments are the
+ * exception: they only touch the stock, which {@code Component} updates
+ * atomically without a lock.</li>
+ * <li>Components are spread over a set of stripes, each of which is a
+ * read-write lock. Every change to a component holds the read lock of its
+ * stripe, which does not exclude other changes. {@link #save()} takes the
+ * write lock of every stripe, to get a consistent snapshot.</li>
+ * <li>Lookups of components and suppliers are optimistic and take no lock at
+ * all, unless a component or supplier is being added at the same time.</li>
+ * </ul>
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class ConcurrentCompany {
+	private Company company;
+	private StampedLock componentsLock = new StampedLock();
+	private StampedLock suppliersLock = new StampedLock();
+	private ReentrantReadWriteLock[] stripes;
+	private static ConcurrentCompany concurrentCompany;
+
+	/**
+	 * Number of entries of a listing taken at a time.
+	 */
+	private static final int LIST_PAGE_SIZE = 256;
+
+	/**
+	 * Private constructor for singleton pattern
+	 *
+	 * @param company
+	 *            the company all operations are delegated to
+	 */
+	private ConcurrentCompany(Company company) {
+		this.company = company;
+		company.load();
+		int stripeCount = Integer.highestOneBit(
+				Runtime.getRuntime().availableProcessors() * 8 - 1) << 1;
+		stripes = new ReentrantReadWriteLock[stripeCount];
+		for (int index = 0; index < stripeCount; index++) {
+			stripes[index] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * Supports the singleton pattern. Wraps the singleton {@code Company},
+	 * which must not be used directly once this facade is in use. If the
+	 * company was retrieved from a snapshot, all of its components, suppliers
+	 * and orders are read first, so that lookups never change the
+	 * collections.
+	 *
+	 * @return the singleton object
+	 */
+	public static synchronized ConcurrentCompany instance() {
+		if (concurrentCompany == null) {
+			return (concurrentCompany = new ConcurrentCompany(
+					Company.instance()));
+		} else {
+			return concurrentCompany;
+		}
+	}
+
+	/**
+	 * Adds a new component to the component collection
+	 *
+	 * @param name
+	 *            component name
+	 * @return the Component object created
+	 */
+	public Component addComponent(String name) {
+		long stamp = componentsLock.writeLock();
+		try {
+			return company.addComponent(name);
+		} finally {
+			componentsLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Adds a new supplier to the supplier collection
+	 *
+	 * @param name
+	 *            supplier name
+	 * @return the Supplier object created
+	 */
+	public Supplier addSupplier(String name) {
+		long stamp = suppliersLock.writeLock();
+		try {
+			return company.addSupplier(name);
+		} finally {
+			suppliersLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Searches for a given component. The search is first made without a
+	 * lock; it is repeated under the read lock only if a component was added
+	 * while it ran.
+	 *
+	 * @param componentID
+	 *            identifier of the component
+	 * @return the Component object, if found
+	 */
+	public Component findComponent(String componentID) {
+		return findComponent(EntityId.parse(componentID));
+	}
+
+	/**
+	 * Searches for a given component, as {@link #findComponent(String)} does.
+	 *
+	 * @param componentId
+	 *            identifier of the component, packed as described in
+	 *            {@link EntityId}
+	 * @return the Component object, if found
+	 */
+	public Component findComponent(long componentId) {
+		long stamp = componentsLock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				Component component = company.findComponent(componentId);
+				if (componentsLock.validate(stamp)) {
+					return component;
+				}
+			} catch (RuntimeException re) {
+				// the collection changed under the search; retried below
+			}
+		}
+		stamp = componentsLock.readLock();
+		try {
+			return company.findComponent(componentId);
+		} finally {
+			componentsLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Searches for a given supplier. The search is first made without a lock;
+	 * it is repeated under the read lock only if a supplier was added while it
+	 * ran.
+	 *
+	 * @param supplierID
+	 *            identifier of the supplier
+	 * @return the Supplier object, if found
+	 */
+	public Supplier findSupplier(String supplierID) {
+		return findSupplier(EntityId.parse(supplierID));
+	}
+
+	/**
+	 * Searches for a given supplier, as {@link #findSupplier(String)} does.
+	 *
+	 * @param supplierId
+	 *            identifier of the supplier, packed as described in
+	 *            {@link EntityId}
+	 * @return the Supplier object, if found
+	 */
+	public Supplier findSupplier(long supplierId) {
+		long stamp = suppliersLock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				Supplier supplier = company.findSupplier(supplierId);
+				if (suppliersLock.validate(stamp)) {
+					return supplier;
+				}
+			} catch (RuntimeException re) {
+				// the collection changed under the search; retried below
+			}
+		}
+		stamp = suppliersLock.readLock();
+		try {
+			return company.findSupplier(supplierId);
+		} finally {
+			suppliersLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Adds a relationship between a component and supplier, indicating that the
+	 * supplier provides the component
+	 *
+	 * @param component
+	 *            the Component being supplied
+	 * @param supplier
+	 *            the Supplier of the component
+	 * @return true iff the relationship was added
+	 */
+	public boolean addComponentSupplierRelation(Component component,
+			Supplier supplier) {
+		ReentrantReadWriteLock.ReadLock stripe = stripeOf(component);
+		stripe.lock();
+		try {
+			synchronized (component) {
+				synchronized (supplier) {
+					return company.addComponentSupplierRelation(component,
+							supplier);
+				}
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Adjusts the in-stock quantity of the given component after a given
+	 * quantity has been assigned for production
+	 *
+	 * @param component
+	 *            the Component object being assigned
+	 * @param quantity
+	 *            the quantity assigned
+	 * @return true iff there is enough stock for the assignment
+	 */
+	public boolean assignComponent(Component component, int quantity) {
+		ReentrantReadWriteLock.ReadLock stripe = stripeOf(component);
+		stripe.lock();
+		try {
+			return company.assignComponent(component, quantity);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Places an order for a given component, with the given supplier, for a
+	 * given quantity
+	 *
+	 * @param component
+	 *            the Component object being ordered
+	 * @param supplier
+	 *            the Supplier who will be supplying the component
+	 * @param quantity
+	 *            the quantity ordered
+	 * @return an Order object, if placing the order was successful
+	 */
+	public Order placeOrder(Component component, Supplier supplier,
+			int quantity) {
+		ReentrantReadWriteLock.ReadLock stripe = stripeOf(component);
+		stripe.lock();
+		try {
+			synchronized (component) {
+				return company.placeOrder(component, supplier, quantity);
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Fulfills a given order, updating the stock of the component and the
+	 * quantity provided by the supplier so far. If two threads try to fulfill
+	 * the same order, only one of them succeeds.
+	 *
+	 * @param orderID
+	 *            identifier of the Order object
+	 * @return a ComponentSupplierRelation object if the order was found
+	 */
+	public ComponentSupplierRelation fulfillOrder(String orderID) {
+		return fulfillOrder(EntityId.parse(orderID));
+	}
+
+	/**
+	 * Fulfills a given order, as {@link #fulfillOrder(String)} does.
+	 *
+	 * @param orderId
+	 *            identifier of the Order object, packed as described in
+	 *            {@link EntityId}
+	 * @return a ComponentSupplierRelation object if the order was found
+	 */
+	public ComponentSupplierRelation fulfillOrder(long orderId) {
+		Order order = company.getPendingOrders().search(orderId);
+		if (order == null) {
+			return null;
+		}
+		Component component = order.getRelation().getComponent();
+		ReentrantReadWriteLock.ReadLock stripe = stripeOf(component);
+		stripe.lock();
+		try {
+			synchronized (component) {
+				return company.fulfillOrder(orderId);
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Starts the engine that places orders for components that run out; see
+	 * {@link Company#startReplenishment()}. The engine looks at each component
+	 * holding the locks {@link #placeOrder(Component, Supplier, int)} holds,
+	 * and finds the components with low stock holding the read lock of the
+	 * collection.
+	 *
+	 * @return the engine, to which reorder policies can be given
+	 */
+	public ReplenishmentEngine startReplenishment() {
+		return company.startReplenishment(this);
+	}
+
+	/**
+	 * Stops the engine that places orders for components that run out, if it
+	 * is running, and waits for it to end.
+	 */
+	public void stopReplenishment() {
+		company.stopReplenishment();
+	}
+
+	/**
+	 * Has the replenishment engine work out and place the order a component
+	 * needs, holding the locks that placing an order holds.
+	 *
+	 * @param engine
+	 *            the engine
+	 * @param component
+	 *            the component
+	 * @return the order placed, or {@literal null}
+	 */
+	Order reorder(ReplenishmentEngine engine, Component component) {
+		ReentrantReadWriteLock.ReadLock stripe = stripeOf(component);
+		stripe.lock();
+		try {
+			synchronized (component) {
+				return engine.reorder(component);
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Returns the components with less than the given stock, holding the read
+	 * lock of the collection; see {@link ComponentList#findBelow(int, int)}.
+	 *
+	 * @param level
+	 *            the stock that the components have less than
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the components, those with the least stock first
+	 */
+	List<Component> findBelow(int level, int limit) {
+		long stamp = componentsLock.readLock();
+		try {
+			return company.getAllComponents().findBelow(level, limit);
+		} finally {
+			componentsLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Writes all components to the given writer. The components are taken
+	 * {@value #LIST_PAGE_SIZE} at a time, and each page is written to memory
+	 * first, so that no lock is held while the writer is slow; components
+	 * added meanwhile may or may not be listed. Each component is written
+	 * while no supplier is being added to it.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void listComponents(Writer writer) throws IOException {
+		StringWriter pageText = new StringWriter();
+		int cursor = 0;
+		Page<Component> page;
+		do {
+			page = pageComponents(cursor, LIST_PAGE_SIZE);
+			for (Component component : page) {
+				synchronized (component) {
+					component.write(pageText);
+				}
+				pageText.write('\n');
+			}
+			cursor = page.getNextCursor();
+			writer.write(pageText.toString());
+			pageText.getBuffer().setLength(0);
+		} while (page.hasMore());
+	}
+
+	/**
+	 * Writes all suppliers to the given writer, a page at a time, as
+	 * {@link #listComponents(Writer)} does. Each supplier is written while no
+	 * component is being added to it.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void listSuppliers(Writer writer) throws IOException {
+		StringWriter pageText = new StringWriter();
+		int cursor = 0;
+		Page<Supplier> page;
+		do {
+			page = pageSuppliers(cursor, LIST_PAGE_SIZE);
+			for (Supplier supplier : page) {
+				synchronized (supplier) {
+					supplier.write(pageText);
+				}
+				pageText.write('\n');
+			}
+			cursor = page.getNextCursor();
+			writer.write(pageText.toString());
+			pageText.getBuffer().setLength(0);
+		} while (page.hasMore());
+	}
+
+	/**
+	 * Writes all outstanding orders to the given writer, a page at a time, as
+	 * {@link #listComponents(Writer)} does. Orders placed or fulfilled
+	 * meanwhile may or may not be listed.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void listPendingOrders(Writer writer) throws IOException {
+		StringWriter pageText = new StringWriter();
+		pageText.write("Outstanding orders: \n");
+		int cursor = 0;
+		Page<Order> page;
+		do {
+			page = pagePendingOrders(cursor, LIST_PAGE_SIZE);
+			for (Order order : page) {
+				PendingOrders.write(pageText, order);
+			}
+			cursor = page.getNextCursor();
+			writer.write(pageText.toString());
+			pageText.getBuffer().setLength(0);
+		} while (page.hasMore());
+	}
+
+	/**
+	 * Returns a page of components. Components cannot be added while the page
+	 * is taken, but can be between pages.
+	 *
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of components returned
+	 * @return the components and the cursor of the following page
+	 */
+	public Page<Component> pageComponents(int cursor, int pageSize) {
+		long stamp = componentsLock.readLock();
+		try {
+			return company.getAllComponents().page(cursor, pageSize);
+		} finally {
+			componentsLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns a page of suppliers. Suppliers cannot be added while the page
+	 * is taken, but can be between pages.
+	 *
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of suppliers returned
+	 * @return the suppliers and the cursor of the following page
+	 */
+	public Page<Supplier> pageSuppliers(int cursor, int pageSize) {
+		long stamp = suppliersLock.readLock();
+		try {
+			return company.getAllSuppliers().page(cursor, pageSize);
+		} finally {
+			suppliersLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns a page of outstanding orders.
+	 *
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of orders returned
+	 * @return the orders and the cursor of the following page
+	 */
+	public Page<Order> pagePendingOrders(int cursor, int pageSize) {
+		return company.getPendingOrders().page(cursor, pageSize);
+	}
+
+	/**
+	 * Returns the suppliers that have supplied the most of a given component
+	 * to date, holding the read lock of the suppliers; see
+	 * {@link Company#getTopSuppliers(Component, int)}.
+	 *
+	 * @param component
+	 *            the component
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the relations of the component with those suppliers, the
+	 *         largest quantity supplied first
+	 */
+	public List<ComponentSupplierRelation> getTopSuppliers(Component component,
+			int limit) {
+		long stamp = suppliersLock.readLock();
+		try {
+			return company.getTopSuppliers(component, limit);
+		} finally {
+			suppliersLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the suppliers that have supplied the most of all components
+	 * together to date, holding the read lock of the suppliers; see
+	 * {@link Company#getTopSuppliers(int)}.
+	 *
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the suppliers, the largest quantity supplied first
+	 */
+	public List<Supplier> getTopSuppliers(int limit) {
+		long stamp = suppliersLock.readLock();
+		try {
+			return company.getTopSuppliers(limit);
+		} finally {
+			suppliersLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the quantity a supplier has supplied of all components together
+	 * to date. The ranking has its own lock, so no other lock is taken.
+	 *
+	 * @param supplier
+	 *            the supplier
+	 * @return the quantity supplied
+	 */
+	public long getQuantitySupplied(Supplier supplier) {
+		return company.getQuantitySupplied(supplier);
+	}
+
+	/**
+	 * Writes a component as JSON while no supplier is being added to it.
+	 *
+	 * @param component
+	 *            the component
+	 * @param json
+	 *            the destination of the component
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeJson(Component component, JsonWriter json)
+			throws IOException {
+		synchronized (component) {
+			component.writeJson(json);
+		}
+	}
+
+	/**
+	 * Writes a supplier as JSON while no component is being added to it.
+	 *
+	 * @param supplier
+	 *            the supplier
+	 * @param json
+	 *            the destination of the supplier
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeJson(Supplier supplier, JsonWriter json)
+			throws IOException {
+		synchronized (supplier) {
+			supplier.writeJson(json);
+		}
+	}
+
+	/**
+	 * Saves the company while no other operation is in progress.
+	 *
+	 * @return {@literal true} if the data could be saved. Otherwise,
+	 *         {@literal false}.
+	 */
+	public boolean save() {
+		long componentsStamp = componentsLock.writeLock();
+		long suppliersStamp = suppliersLock.writeLock();
+		int locked = 0;
+		try {
+			for (; locked < stripes.length; locked++) {
+				stripes[locked].writeLock().lock();
+			}
+			return Company.save();
+		} finally {
+			while (locked > 0) {
+				stripes[--locked].writeLock().unlock();
+			}
+			suppliersLock.unlockWrite(suppliersStamp);
+			componentsLock.unlockWrite(componentsStamp);
+		}
+	}
+
+	/**
+	 * Returns the stripe whose read lock must be held while changing the given
+	 * component.
+	 *
+	 * @param component
+	 *            the component being changed
+	 * @return the read lock of the stripe
+	 */
+	private ReentrantReadWriteLock.ReadLock stripeOf(Component component) {
+		int hash = System.identityHashCode(component) * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)]
+				.readLock();
+	}
+}
@@ -0,0 +1,397 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates synthetic data and loads it into a {@code Company}, for testing
+ * at production scale. The data follows distributions seen in practice:
+ *
+ * <ul>
+ * <li>Supplier popularity follows Zipf's law: the supplier of rank {@code r}
+ * is picked with a probability proportional to {@code 1 / r^s}.</li>
+ * <li>The number of suppliers of a component and the quantity of an order
+ * follow power laws: most components have few suppliers and most orders are
+ * small, but there is a long tail of large ones.</li>
+ * </ul>
+ *
+ * The work is split into fixed chunks that are generated in parallel. Every
+ * chunk draws from its own random number generator, seeded from the seed of
+ * the generator and the index of the chunk, so the same seed always produces
+ * the same data, whatever the number of threads.
+ *
+ * The data is loaded directly into the collections, without going through
+ * the journal; call {@link Company#save()} afterwards to keep it.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class DataGenerator {
+
+	/**
+	 * Number of items generated by one parallel task.
+	 */
+	private static final int CHUNK_SIZE = 1 << 14;
+
+	private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+	private static final int MINIMUM_NAME_LENGTH = 6;
+	private static final int MAXIMUM_NAME_LENGTH = 10;
+
+	private long seed;
+	private int componentCount = 1000;
+	private int supplierCount = 100;
+	private int orderCount = 1000;
+	private int maximumFanOut = 20;
+	private double fanOutExponent = 2.0;
+	private double supplierSkew = 1.0;
+	private int maximumOrderQuantity = 10000;
+	private double orderQuantityExponent = 2.0;
+	private int maximumStock = 1000;
+
+	/**
+	 * Creates a generator with the default sizes and distributions.
+	 *
+	 * @param seed
+	 *            the seed all random choices are derived from
+	 */
+	public DataGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of components to be generated.
+	 *
+	 * @param componentCount
+	 *            the number of components
+	 */
+	public void setComponentCount(int componentCount) {
+		this.componentCount = componentCount;
+	}
+
+	/**
+	 * Sets the number of suppliers to be generated.
+	 *
+	 * @param supplierCount
+	 *            the number of suppliers
+	 */
+	public void setSupplierCount(int supplierCount) {
+		this.supplierCount = supplierCount;
+	}
+
+	/**
+	 * Sets the number of outstanding orders to be generated.
+	 *
+	 * @param orderCount
+	 *            the number of orders
+	 */
+	public void setOrderCount(int orderCount) {
+		this.orderCount = orderCount;
+	}
+
+	/**
+	 * Sets the distribution of the number of suppliers of a component: a
+	 * power law from {@literal 1} to {@code maximumFanOut} with the given
+	 * exponent. The maximum is capped at the number of suppliers.
+	 *
+	 * @param maximumFanOut
+	 *            the largest number of suppliers of a component
+	 * @param exponent
+	 *            the exponent of the power law; larger values make
+	 *            components with many suppliers rarer
+	 */
+	public void setFanOut(int maximumFanOut, double exponent) {
+		this.maximumFanOut = maximumFanOut;
+		this.fanOutExponent = exponent;
+	}
+
+	/**
+	 * Sets the exponent of Zipf's law for supplier popularity.
+	 *
+	 * @param skew
+	 *            the exponent; {@literal 0} makes every supplier equally
+	 *            popular, and larger values concentrate the relations on the
+	 *            top-ranked suppliers
+	 */
+	public void setSupplierSkew(double skew) {
+		this.supplierSkew = skew;
+	}
+
+	/**
+	 * Sets the distribution of order quantities: a power law from {@literal 1}
+	 * to {@code maximumQuantity} with the given exponent.
+	 *
+	 * @param maximumQuantity
+	 *            the largest quantity of an order
+	 * @param exponent
+	 *            the exponent of the power law
+	 */
+	public void setOrderQuantity(int maximumQuantity, double exponent) {
+		this.maximumOrderQuantity = maximumQuantity;
+		this.orderQuantityExponent = exponent;
+	}
+
+	/**
+	 * Sets the largest initial stock of a component; stocks are uniform from
+	 * {@literal 0} to this value.
+	 *
+	 * @param maximumStock
+	 *            the largest stock
+	 */
+	public void setMaximumStock(int maximumStock) {
+		this.maximumStock = maximumStock;
+	}
+
+	/**
+	 * Generates random names, such as for components and suppliers.
+	 *
+	 * @param numberOfNames
+	 *            the number of names
+	 * @return an array of randomized names
+	 */
+	public String[] generateNames(int numberOfNames) {
+		String[] names = new String[numberOfNames];
+		forEachChunk(numberOfNames, 1, (random, index) -> {
+			int length = MINIMUM_NAME_LENGTH + random
+					.nextInt(MAXIMUM_NAME_LENGTH - MINIMUM_NAME_LENGTH + 1);
+			char[] name = new char[length];
+			for (int position = 0; position < length; position++) {
+				name[position] = LETTERS
+						.charAt(random.nextInt(LETTERS.length()));
+			}
+			names[index] = new String(name);
+		});
+		return names;
+	}
+
+	/**
+	 * Generates the data and loads it into the given company, after anything
+	 * it already holds. New IDs are taken from the {@code IdGenerator}.
+	 *
+	 * @param company
+	 *            the company
+	 */
+	public void populate(Company company) {
+		IdGenerator idGenerator = IdGenerator.instance();
+
+		Supplier[] suppliers = new Supplier[supplierCount];
+		String[] supplierNames = generateNames(supplierCount);
+		int firstSupplier = idGenerator.lease(EntityId.SUPPLIER,
+				supplierCount);
+		for (int index = 0; index < supplierCount; index++) {
+			suppliers[index] = new Supplier(firstSupplier + index,
+					supplierNames[index]);
+			company.getAllSuppliers().insert(suppliers[index]);
+		}
+
+		Component[] components = new Component[componentCount];
+		String[] componentNames = generateNames(componentCount);
+		int firstComponent = idGenerator.lease(EntityId.COMPONENT,
+				componentCount);
+		forEachChunk(componentCount, 2, (random, index) -> {
+			components[index] = new Component(firstComponent + index,
+					componentNames[index], random.nextInt(maximumStock + 1));
+		});
+		for (Component component : components) {
+			company.getAllComponents().insert(component);
+		}
+
+		if (supplierCount > 0) {
+			ComponentSupplierRelation[][] relations = relate(components,
+					suppliers);
+			if (componentCount > 0) {
+				placeOrders(company, relations);
+			}
+		}
+	}
+
+	/**
+	 * Generates the relations. Each component picks its suppliers by
+	 * popularity, and adds its relations itself; then every supplier adds the
+	 * relations that picked it. Components and suppliers are each handled in
+	 * parallel, and no two tasks ever touch the same object.
+	 *
+	 * @return the relations of every component
+	 */
+	private ComponentSupplierRelation[][] relate(Component[] components,
+			Supplier[] suppliers) {
+		double[] popularity = new double[suppliers.length];
+		double total = 0;
+		for (int rank = 0; rank < suppliers.length; rank++) {
+			total += 1 / Math.pow(rank + 1, supplierSkew);
+			popularity[rank] = total;
+		}
+		for (int rank = 0; rank < suppliers.length; rank++) {
+			popularity[rank] /= total;
+		}
+		int fanOutLimit = Math.min(maximumFanOut, suppliers.length);
+
+		ComponentSupplierRelation[][] relations = new ComponentSupplierRelation[components.length][];
+		int[][] picks = new int[components.length][];
+		forEachChunk(components.length, 3, (random, index) -> {
+			int fanOut = powerLaw(random, fanOutLimit, fanOutExponent);
+			int[] picked = new int[fanOut];
+			picks[index] = picked;
+			relations[index] = new ComponentSupplierRelation[fanOut];
+			for (int link = 0; link < fanOut; link++) {
+				int pick;
+				int attempts = 0;
+				do {
+					pick = Arrays.binarySearch(popularity,
+							random.nextDouble());
+					pick = Math.min(pick < 0 ? -pick - 1 : pick,
+							suppliers.length - 1);
+					if (++attempts > 64) {
+						pick = random.nextInt(suppliers.length);
+					}
+				} while (contains(picked, link, pick));
+				picked[link] = pick;
+				relations[index][link] = new ComponentSupplierRelation(
+						components[index], suppliers[pick]);
+				components[index].addSupplierRelation(relations[index][link]);
+			}
+		});
+
+		int[] starts = new int[suppliers.length + 1];
+		for (int[] picked : picks) {
+			for (int pick : picked) {
+				starts[pick + 1]++;
+			}
+		}
+		for (int index = 0; index < suppliers.length; index++) {
+			starts[index + 1] += starts[index];
+		}
+		ComponentSupplierRelation[] bySupplier = new ComponentSupplierRelation[starts[suppliers.length]];
+		int[] next = Arrays.copyOf(starts, suppliers.length);
+		for (int index = 0; index < components.length; index++) {
+			for (int link = 0; link < picks[index].length; link++) {
+				bySupplier[next[picks[index][link]]++] = relations[index][link];
+			}
+		}
+		IntStream.range(0, suppliers.length).parallel().forEach(index -> {
+			for (int position = starts[index]; position < starts[index
+					+ 1]; position++) {
+				suppliers[index].addComponentRelation(bySupplier[position]);
+			}
+		});
+		return relations;
+	}
+
+	/**
+	 * Generates the outstanding orders: each is for a random component, from
+	 * one of its suppliers, for a quantity drawn from the power law. The
+	 * orders are generated in parallel and inserted in order.
+	 */
+	private void placeOrders(Company company,
+			ComponentSupplierRelation[][] relations) {
+		IdGenerator idGenerator = IdGenerator.instance();
+		Order[] orders = new Order[orderCount];
+		int firstOrder = idGenerator.lease(EntityId.ORDER, orderCount);
+		forEachChunk(orderCount, 4, (random, index) -> {
+			ComponentSupplierRelation[] choices;
+			do {
+				choices = relations[random.nextInt(relations.length)];
+			} while (choices.length == 0);
+			orders[index] = new Order(firstOrder + index,
+					choices[random.nextInt(choices.length)],
+					powerLaw(random, maximumOrderQuantity,
+							orderQuantityExponent));
+		});
+		for (Order order : orders) {
+			company.getPendingOrders().insert(order);
+		}
+	}
+
+	/**
+	 * Calls the given generator for every index from {@literal 0} to
+	 * {@code count - 1}, in parallel chunks. The random number generator of a
+	 * chunk depends only on the seed, the stream and the chunk index.
+	 *
+	 * @param count
+	 *            the number of indices
+	 * @param stream
+	 *            a number that distinguishes the uses of the generator, so
+	 *            that they draw different random numbers
+	 * @param generator
+	 *            the code generating one item
+	 */
+	private void forEachChunk(int count, int stream, ItemGenerator generator) {
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			SplittableRandom random = new SplittableRandom(
+					seed * 0x9E3779B97F4A7C15L + stream * 0x632BE59BD9B4E019L
+							+ chunk);
+			int end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+			for (int index = chunk * CHUNK_SIZE; index < end; index++) {
+				generator.generate(random, index);
+			}
+		});
+	}
+
+	/**
+	 * Draws an integer from {@literal 1} to {@code maximum} from a power law
+	 * with the given exponent, by inverting its cumulative distribution.
+	 */
+	private static int powerLaw(SplittableRandom random, int maximum,
+			double exponent) {
+		if (exponent == 1) {
+			exponent = 1.000001;
+		}
+		double power = 1 - exponent;
+		double low = 1;
+		double high = Math.pow(maximum + 1, power);
+		double value = Math.pow(low + (high - low) * random.nextDouble(),
+				1 / power);
+		return (int) Math.min(maximum, Math.max(1, Math.floor(value)));
+	}
+
+	/**
+	 * Checks whether the first {@code length} values of an array contain a
+	 * value.
+	 */
+	private static boolean contains(int[] values, int length, int value) {
+		for (int index = 0; index < length; index++) {
+			if (values[index] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Generates the item with a given index.
+	 */
+	private interface ItemGenerator {
+		void generate(SplittableRandom random, int index);
+	}
+
+	/**
+	 * Generates a company and saves it. Usage:
+	 *
+	 * <pre>
+	 * java DataGenerator components suppliers orders [seed]
+	 * </pre>
+	 *
+	 * @param args
+	 *            the sizes and the seed
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.out.println(
+					"Usage: java DataGenerator components suppliers orders [seed]");
+			return;
+		}
+		DataGenerator generator = new DataGenerator(
+				args.length > 3 ? Long.parseLong(args[3]) : 1);
+		generator.setComponentCount(Integer.parseInt(args[0]));
+		generator.setSupplierCount(Integer.parseInt(args[1]));
+		generator.setOrderCount(Integer.parseInt(args[2]));
+		long start = System.nanoTime();
+		generator.populate(Company.instance());
+		System.out.printf("Generated in %.1f s%n",
+				(System.nanoTime() - start) / 1e9);
+		if (Company.save()) {
+			System.out.println(
+					"The company has been saved in the file CompanyData.");
+		}
+	}
+}
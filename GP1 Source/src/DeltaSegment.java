@@ -0,0 +1,478 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The changes made to a {@code Company} between two saves. Once a company has
+ * been saved in full, later saves write just the components, suppliers and
+ * relations listed by {@link ChangeTracker}, and the orders placed and
+ * fulfilled since, so that the time a save takes depends on how much has
+ * changed rather than on the size of the company. Every segment names the
+ * epoch of the save it follows, so that the segments written since a
+ * snapshot form a chain starting at the epoch of the snapshot. The chain is
+ * merged into a new snapshot from time to time; see
+ * {@link CompanySnapshot#compact(MappedSnapshot, List, DataOutputStream)}.
+ *
+ * A component or relation is written with its current stock or quantity
+ * supplied to date, so that reading it back replaces what the earlier
+ * segments or the snapshot hold, and a component with its name as well, in
+ * case it is new. Suppliers and orders cannot change, so they are written
+ * only when they are added.
+ *
+ * <pre>
+ * int       MAGIC, short VERSION, long parent epoch, long epoch
+ * int x3    IdGenerator counters
+ * int       count, then per component: int number, UTF name, int stock
+ * int       count, then per supplier: int number, UTF name
+ * int       count, then per relation: int component number,
+ *           int supplier number, int quantity supplied to date
+ * int       count, then per order placed: int number, int component number,
+ *           int supplier number, int quantity
+ * int       count, then per order fulfilled: int number
+ * </pre>
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class DeltaSegment {
+
+	/**
+	 * Constant value written at the start of every segment, so that files in
+	 * another format are rejected.
+	 */
+	static final int MAGIC = 0x43444c54;
+
+	/**
+	 * Constant value for the version of the format that is written.
+	 */
+	static final short VERSION = 1;
+
+	/**
+	 * Size of the buffer used when a segment is read.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File file;
+	private final long parentEpoch;
+	private final long epoch;
+	private int[] counters;
+	private int[] componentNumbers;
+	private String[] componentNames;
+	private int[] componentStocks;
+	private int[] supplierNumbers;
+	private String[] supplierNames;
+	private int[] relationComponents;
+	private int[] relationSuppliers;
+	private int[] relationQuantities;
+	private int[] orderNumbers;
+	private int[] orderComponents;
+	private int[] orderSuppliers;
+	private int[] orderQuantities;
+	private int[] fulfilledOrders;
+
+	/**
+	 * Private constructor; segments are read with {@link #open(File)}
+	 *
+	 * @param file
+	 *            the file holding the segment
+	 * @param parentEpoch
+	 *            the epoch of the save the segment follows
+	 * @param epoch
+	 *            the epoch of the segment
+	 */
+	private DeltaSegment(File file, long parentEpoch, long epoch) {
+		this.file = file;
+		this.parentEpoch = parentEpoch;
+		this.epoch = epoch;
+	}
+
+	/**
+	 * Writes the changes made to the given company since it was last saved.
+	 * The lists of changes are copied holding their locks, so a change made
+	 * meanwhile cannot break the writing, but it may or may not be written,
+	 * and clearing the lists afterwards would lose it; so the caller must
+	 * still make sure that nothing changes while this runs, and clear the
+	 * {@code ChangeTracker} and the changes of the pending orders once the
+	 * segment is safely on disk. {@link Company#save()} holds the lock that
+	 * every batch of orders takes, which keeps the
+	 * {@link ReplenishmentEngine} out, and {@link ConcurrentCompany#save()}
+	 * holds the write lock of every stripe.
+	 *
+	 * @param company
+	 *            the company being saved
+	 * @param parentEpoch
+	 *            the epoch of the last save
+	 * @param epoch
+	 *            a value identifying this save, which the journal of later
+	 *            changes refers to
+	 * @param output
+	 *            the stream the segment is written to
+	 * @throws IOException
+	 *             if the segment could not be written
+	 */
+	public static void write(Company company, long parentEpoch, long epoch,
+			DataOutputStream output) throws IOException {
+		ChangeTracker tracker = ChangeTracker.instance();
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeLong(parentEpoch);
+		output.writeLong(epoch);
+		IdGenerator.save(output);
+
+		List<Component> components = tracker.getComponents();
+		output.writeInt(components.size());
+		for (Component component : components) {
+			output.writeInt(component.getNumber());
+			output.writeUTF(component.getName());
+			output.writeInt(component.getStock());
+		}
+		List<Supplier> suppliers = tracker.getSuppliers();
+		output.writeInt(suppliers.size());
+		for (Supplier supplier : suppliers) {
+			output.writeInt(supplier.getNumber());
+			output.writeUTF(supplier.getName());
+		}
+		List<ComponentSupplierRelation> relations = tracker.getRelations();
+		output.writeInt(relations.size());
+		for (ComponentSupplierRelation relation : relations) {
+			output.writeInt(relation.getComponent().getNumber());
+			output.writeInt(relation.getSupplier().getNumber());
+			output.writeInt(relation.getQuantitySuppliedToDate());
+		}
+
+		PendingOrders pendingOrders = company.getPendingOrders();
+		synchronized (pendingOrders) {
+			IntHashMap<Order> placed = pendingOrders.getPlaced();
+			output.writeInt(placed.size());
+			for (Order order : placed) {
+				ComponentSupplierRelation relation = order.getRelation();
+				output.writeInt(order.getNumber());
+				output.writeInt(relation.getComponent().getNumber());
+				output.writeInt(relation.getSupplier().getNumber());
+				output.writeInt(order.getQuantity());
+			}
+			IntHashMap<Order> fulfilled = pendingOrders.getFulfilled();
+			output.writeInt(fulfilled.size());
+			for (Order order : fulfilled) {
+				output.writeInt(order.getNumber());
+			}
+		}
+	}
+
+	/**
+	 * Reads the header of the segment in the given file. The changes are read
+	 * by {@link #read()}.
+	 *
+	 * @param file
+	 *            the file holding the segment
+	 * @return the segment
+	 * @throws IOException
+	 *             if the file could not be read or does not hold a segment
+	 */
+	public static DeltaSegment open(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			if (input.readInt() != MAGIC || input.readShort() != VERSION) {
+				throw new IOException("Not a delta segment");
+			}
+			return new DeltaSegment(file, input.readLong(), input.readLong());
+		}
+	}
+
+	/**
+	 * Reads the changes held by the segment, unless they have been read
+	 * already.
+	 *
+	 * @throws IOException
+	 *             if the segment could not be read or is corrupt
+	 */
+	public void read() throws IOException {
+		if (counters != null) {
+			return;
+		}
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file),
+						BUFFER_SIZE))) {
+			input.skipBytes(22);
+			int[] counters = {input.readInt(), input.readInt(),
+					input.readInt()};
+
+			componentNumbers = new int[count(input)];
+			componentNames = new String[componentNumbers.length];
+			componentStocks = new int[componentNumbers.length];
+			for (int index = 0; index < componentNumbers.length; index++) {
+				componentNumbers[index] = input.readInt();
+				componentNames[index] = input.readUTF();
+				componentStocks[index] = input.readInt();
+			}
+			supplierNumbers = new int[count(input)];
+			supplierNames = new String[supplierNumbers.length];
+			for (int index = 0; index < supplierNumbers.length; index++) {
+				supplierNumbers[index] = input.readInt();
+				supplierNames[index] = input.readUTF();
+			}
+			relationComponents = new int[count(input)];
+			relationSuppliers = new int[relationComponents.length];
+			relationQuantities = new int[relationComponents.length];
+			for (int index = 0; index < relationComponents.length; index++) {
+				relationComponents[index] = input.readInt();
+				relationSuppliers[index] = input.readInt();
+				relationQuantities[index] = input.readInt();
+			}
+			orderNumbers = new int[count(input)];
+			orderComponents = new int[orderNumbers.length];
+			orderSuppliers = new int[orderNumbers.length];
+			orderQuantities = new int[orderNumbers.length];
+			for (int index = 0; index < orderNumbers.length; index++) {
+				orderNumbers[index] = input.readInt();
+				orderComponents[index] = input.readInt();
+				orderSuppliers[index] = input.readInt();
+				orderQuantities[index] = input.readInt();
+			}
+			fulfilledOrders = new int[count(input)];
+			for (int index = 0; index < fulfilledOrders.length; index++) {
+				fulfilledOrders[index] = input.readInt();
+			}
+			this.counters = counters;
+		}
+	}
+
+	/**
+	 * Applies the changes held by the segment to the given company, which
+	 * holds the snapshot and the segments before this one.
+	 *
+	 * @param company
+	 *            the company being rebuilt
+	 * @throws IOException
+	 *             if the segment could not be read or does not fit the
+	 *             company
+	 */
+	public void apply(Company company) throws IOException {
+		read();
+		IdGenerator.restore(counters[0], counters[1], counters[2]);
+		SupplierList suppliers = company.getAllSuppliers();
+		for (int index = 0; index < supplierNumbers.length; index++) {
+			if (suppliers.get(supplierNumbers[index]) == null) {
+				suppliers.insert(new Supplier(supplierNumbers[index],
+						supplierNames[index]));
+			}
+		}
+		ComponentList components = company.getAllComponents();
+		for (int index = 0; index < componentNumbers.length; index++) {
+			Component component = components.get(componentNumbers[index]);
+			if (component == null) {
+				components.insert(new Component(componentNumbers[index],
+						componentNames[index], componentStocks[index]));
+			} else {
+				component.addToStock(
+						componentStocks[index] - component.getStock());
+			}
+		}
+		for (int index = 0; index < relationComponents.length; index++) {
+			Component component = components.get(relationComponents[index]);
+			Supplier supplier = suppliers.get(relationSuppliers[index]);
+			if (component == null || supplier == null) {
+				throw new IOException("Corrupt delta segment");
+			}
+			ComponentSupplierRelation relation = component.getSupplier(supplier);
+			if (relation == null) {
+				relation = new ComponentSupplierRelation(component, supplier,
+						relationQuantities[index]);
+				component.addSupplierRelation(relation);
+				supplier.addComponentRelation(relation);
+			} else {
+				relation.addQuantity(relationQuantities[index]
+						- relation.getQuantitySuppliedToDate());
+			}
+		}
+		PendingOrders pendingOrders = company.getPendingOrders();
+		for (int number : fulfilledOrders) {
+			pendingOrders.remove(EntityId.of(EntityId.ORDER, number));
+		}
+		for (int index = 0; index < orderNumbers.length; index++) {
+			Component component = components.get(orderComponents[index]);
+			Supplier supplier = suppliers.get(orderSuppliers[index]);
+			ComponentSupplierRelation relation = component == null
+					|| supplier == null ? null : component.getSupplier(supplier);
+			if (relation == null) {
+				throw new IOException("Corrupt delta segment");
+			}
+			pendingOrders.insert(new Order(orderNumbers[index], relation,
+					orderQuantities[index]));
+		}
+	}
+
+	/**
+	 * Reads the number of entries of a section.
+	 */
+	private static int count(DataInputStream input) throws IOException {
+		int count = input.readInt();
+		if (count < 0) {
+			throw new IOException("Corrupt delta segment");
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the file holding the segment.
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the epoch of the save the segment follows.
+	 *
+	 * @return the epoch of the snapshot or segment before this one
+	 */
+	public long getParentEpoch() {
+		return parentEpoch;
+	}
+
+	/**
+	 * Returns the epoch of the segment.
+	 *
+	 * @return the value identifying the save that wrote the segment
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Returns the counters of the {@code IdGenerator} when the segment was
+	 * written, in the order {@link IdGenerator#save(java.io.DataOutput)}
+	 * writes them. The accessors below return {@literal null} until the
+	 * segment has been read.
+	 *
+	 * @return the next component, supplier and order numbers to be issued
+	 */
+	public int[] getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Returns the numbers of the components added or changed.
+	 *
+	 * @return one number per component
+	 */
+	public int[] getComponentNumbers() {
+		return componentNumbers;
+	}
+
+	/**
+	 * Returns the names of the components added or changed.
+	 *
+	 * @return one name per component
+	 */
+	public String[] getComponentNames() {
+		return componentNames;
+	}
+
+	/**
+	 * Returns the stocks of the components added or changed.
+	 *
+	 * @return one stock per component
+	 */
+	public int[] getComponentStocks() {
+		return componentStocks;
+	}
+
+	/**
+	 * Returns the numbers of the suppliers added.
+	 *
+	 * @return one number per supplier
+	 */
+	public int[] getSupplierNumbers() {
+		return supplierNumbers;
+	}
+
+	/**
+	 * Returns the names of the suppliers added.
+	 *
+	 * @return one name per supplier
+	 */
+	public String[] getSupplierNames() {
+		return supplierNames;
+	}
+
+	/**
+	 * Returns the component numbers of the relations added or changed.
+	 *
+	 * @return one number per relation
+	 */
+	public int[] getRelationComponents() {
+		return relationComponents;
+	}
+
+	/**
+	 * Returns the supplier numbers of the relations added or changed.
+	 *
+	 * @return one number per relation
+	 */
+	public int[] getRelationSuppliers() {
+		return relationSuppliers;
+	}
+
+	/**
+	 * Returns the quantities supplied to date of the relations added or
+	 * changed.
+	 *
+	 * @return one quantity per relation
+	 */
+	public int[] getRelationQuantities() {
+		return relationQuantities;
+	}
+
+	/**
+	 * Returns the numbers of the orders placed and still outstanding.
+	 *
+	 * @return one number per order
+	 */
+	public int[] getOrderNumbers() {
+		return orderNumbers;
+	}
+
+	/**
+	 * Returns the component numbers of the orders placed.
+	 *
+	 * @return one number per order
+	 */
+	public int[] getOrderComponents() {
+		return orderComponents;
+	}
+
+	/**
+	 * Returns the supplier numbers of the orders placed.
+	 *
+	 * @return one number per order
+	 */
+	public int[] getOrderSuppliers() {
+		return orderSuppliers;
+	}
+
+	/**
+	 * Returns the quantities of the orders placed.
+	 *
+	 * @return one quantity per order
+	 */
+	public int[] getOrderQuantities() {
+		return orderQuantities;
+	}
+
+	/**
+	 * Returns the numbers of the orders fulfilled that had been placed before
+	 * the last save.
+	 *
+	 * @return one number per order
+	 */
+	public int[] getFulfilledOrders() {
+		return fulfilledOrders;
+	}
+}
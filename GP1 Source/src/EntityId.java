@@ -0,0 +1,119 @@
+/**
+ * Converts between the text form of the IDs of components, suppliers and
+ * orders, such as {@code C12}, {@code S3} and {@code O99}, and the packed
+ * {@code long} form used inside the collections and {@code Company}. The
+ * high 32 bits of a packed ID hold the type, which is the character of the
+ * marker, and the low 32 bits hold the number issued by
+ * {@code IdGenerator}. IDs are parsed and formatted only where they enter or
+ * leave the system.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class EntityId {
+
+	/**
+	 * Type of the ID of a {@code Component}, written as its marker.
+	 */
+	public static final int COMPONENT = 'C';
+
+	/**
+	 * Type of the ID of a {@code Supplier}, written as its marker.
+	 */
+	public static final int SUPPLIER = 'S';
+
+	/**
+	 * Type of the ID of an {@code Order}, written as its marker.
+	 */
+	public static final int ORDER = 'O';
+
+	/**
+	 * Packed ID returned for text that is not a valid ID. No entity has it.
+	 */
+	public static final long NONE = 0;
+
+	/**
+	 * Private constructor; the class only has static methods
+	 */
+	private EntityId() {
+	}
+
+	/**
+	 * Packs a type and a number into an ID.
+	 *
+	 * @param type
+	 *            {@link #COMPONENT}, {@link #SUPPLIER} or {@link #ORDER}
+	 * @param number
+	 *            the number issued by {@code IdGenerator}
+	 * @return the packed ID
+	 */
+	public static long of(int type, int number) {
+		return (long) type << 32 | (number & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the type of a packed ID.
+	 *
+	 * @param id
+	 *            a packed ID
+	 * @return {@link #COMPONENT}, {@link #SUPPLIER} or {@link #ORDER}
+	 */
+	public static int type(long id) {
+		return (int) (id >>> 32);
+	}
+
+	/**
+	 * Returns the number in a packed ID.
+	 *
+	 * @param id
+	 *            a packed ID
+	 * @return the number issued by {@code IdGenerator}
+	 */
+	public static int number(long id) {
+		return (int) id;
+	}
+
+	/**
+	 * Parses an ID such as {@code C12}. The marker must be followed by a
+	 * positive decimal number without leading zeros that fits in an
+	 * {@code int}.
+	 *
+	 * @param text
+	 *            the text form of the ID
+	 * @return the packed ID, or {@link #NONE} if the text is not an ID
+	 */
+	public static long parse(String text) {
+		if (text == null || text.length() < 2 || text.length() > 11) {
+			return NONE;
+		}
+		char type = text.charAt(0);
+		if ((type != COMPONENT && type != SUPPLIER && type != ORDER)
+				|| text.charAt(1) == '0') {
+			return NONE;
+		}
+		long number = 0;
+		for (int index = 1; index < text.length(); index++) {
+			char digit = text.charAt(index);
+			if (digit < '0' || digit > '9') {
+				return NONE;
+			}
+			number = number * 10 + (digit - '0');
+		}
+		if (number > Integer.MAX_VALUE) {
+			return NONE;
+		}
+		return of(type, (int) number);
+	}
+
+	/**
+	 * Formats a packed ID in its text form.
+	 *
+	 * @param id
+	 *            a packed ID
+	 * @return the text form, such as {@code C12}
+	 */
+	public static String format(long id) {
+		return (char) type(id) + Integer.toString(number(id));
+	}
+}
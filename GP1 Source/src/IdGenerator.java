@@ -1,92 +1,467 @@
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Serializable;
-
-/**
- * This class generates unique IDs for {@code Component}s, {@code Supplier}s and
- * {@code Order}s.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class IdGenerator implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private int componentIdCounter;
-	private int supplierIdCounter;
-	private int orderIdCounter;
-	private static IdGenerator idGenerator;
-
-	/**
-	 * Private constructor for singleton pattern
-	 * 
-	 */
-	private IdGenerator() {
-		componentIdCounter = 1;
-		supplierIdCounter = 1;
-		orderIdCounter = 1;
-	}
-
-	/**
-	 * Supports the singleton pattern
-	 * 
-	 * @return the singleton object
-	 */
-	public static IdGenerator instance() {
-		if (idGenerator == null) {
-			return (idGenerator = new IdGenerator());
-		} else {
-			return idGenerator;
-		}
-	}
-
-	/**
-	 * Generates an identification number for a {@code Component}. Increments
-	 * the {@code componentIdCounter} by {@literal 1}, to ensure that each
-	 * component ID is unique. That new value is finally returned.
-	 * 
-	 * @return {@code componentIdCounter} as the ID for the {@code Component}.
-	 */
-	public int getComponentId() {
-		return componentIdCounter++;
-	}
-
-	/**
-	 * Generate an identification number for a {@code Supplier}. Increments the
-	 * {@code suppliertIdCounter} by {@literal 1}, to ensure that each supplier
-	 * ID is unique. That new value is finally returned.
-	 * 
-	 * @return {@code supplierIdCounter} as the ID for the {@code Supplier}.
-	 */
-	public int getSupplierId() {
-		return supplierIdCounter++;
-	}
-
-	/**
-	 * Generate an identification number for a {@code Order}. Increments the
-	 * {@code orderIdCounter} by {@literal 1}, to ensure that each order ID is
-	 * unique. That new value is finally returned.
-	 * 
-	 * @return {@code orderIdCounter} as the ID for the {@code Order}.
-	 */
-	public int getOrderId() {
-		return orderIdCounter++;
-	}
-
-	/**
-	 * Retrieves the IdGenerator object
-	 * 
-	 * @param input
-	 *            an ObjectInputStream object for de-serialization
-	 */
-	public static void retrieve(ObjectInputStream input) {
-		try {
-			idGenerator = (IdGenerator) input.readObject();
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-		} catch (Exception cnfe) {
-			cnfe.printStackTrace();
-		}
-	}
-
-}
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class generates unique IDs for {@code Component}s, {@code Supplier}s and
+ * {@code Order}s.
+ * 
+ * IDs are not counted out one at a time under a lock. Instead, blocks of
+ * consecutive numbers are leased to a fixed number of slots, and every thread
+ * takes its IDs from the block of the slot it maps to, with a single
+ * compare-and-set on a value that is rarely shared. Only leasing a new block
+ * takes the lock. Each lease is recorded in the journal, and forced to the
+ * disk, before any number of the block is handed out, so that a company
+ * retrieved after a crash never issues an ID again.
+ * 
+ * A slot starts with a block of {@value #MIN_BLOCK} numbers; a block that is
+ * used up quickly is followed by one twice as large, up to
+ * {@value #MAX_BLOCK}, so that busy threads rarely lease and idle ones waste
+ * few numbers. IDs taken by different threads are therefore not issued in
+ * increasing order.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class IdGenerator implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Smallest and largest number of IDs leased to a slot at a time.
+	 */
+	private static final int MIN_BLOCK = 16;
+	private static final int MAX_BLOCK = 1 << 16;
+
+	/**
+	 * A block used up within this many nanoseconds of being leased is
+	 * followed by one twice its size.
+	 */
+	private static final long GROWTH_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Number of slots; at least twice the number of processors, so that
+	 * threads running at the same time seldom share one.
+	 */
+	private static final int SLOTS = Integer.highestOneBit(
+			Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+	/**
+	 * Distance between the leases of two slots, in {@code long}s, so that no
+	 * two of them share a cache line.
+	 */
+	private static final int STRIDE = 8;
+
+	private final Pool components = new Pool(EntityId.COMPONENT);
+	private final Pool suppliers = new Pool(EntityId.SUPPLIER);
+	private final Pool orders = new Pool(EntityId.ORDER);
+	private final long created = System.nanoTime();
+	private transient Journal journal;
+	private static IdGenerator idGenerator;
+
+	/**
+	 * Private constructor for singleton pattern
+	 * 
+	 */
+	private IdGenerator() {
+	}
+
+	/**
+	 * Supports the singleton pattern
+	 * 
+	 * @return the singleton object
+	 */
+	public static IdGenerator instance() {
+		if (idGenerator == null) {
+			return (idGenerator = new IdGenerator());
+		} else {
+			return idGenerator;
+		}
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} starts counting from {@literal 1} again. Used when
+	 * the company is being rebuilt from disk.
+	 */
+	static void reset() {
+		idGenerator = null;
+	}
+
+	/**
+	 * Sets the journal every leased block is recorded in. Until it is set,
+	 * leases are not recorded, as when the company is being rebuilt from
+	 * disk.
+	 * 
+	 * @param journal
+	 *            the journal of the company
+	 */
+	void setJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Generates an identification number for a {@code Component}, taken from
+	 * the block leased to the slot of the calling thread.
+	 * 
+	 * @return a number not issued to any other {@code Component}
+	 */
+	public int getComponentId() {
+		return components.next();
+	}
+
+	/**
+	 * Generates an identification number for a {@code Supplier}, taken from
+	 * the block leased to the slot of the calling thread.
+	 * 
+	 * @return a number not issued to any other {@code Supplier}
+	 */
+	public int getSupplierId() {
+		return suppliers.next();
+	}
+
+	/**
+	 * Generates an identification number for an {@code Order}, taken from the
+	 * block leased to the slot of the calling thread.
+	 * 
+	 * @return a number not issued to any other {@code Order}
+	 */
+	public int getOrderId() {
+		return orders.next();
+	}
+
+	/**
+	 * Leases a block of consecutive numbers to the caller, which issues them
+	 * itself, as when a large number of entities is created at once.
+	 * 
+	 * @param type
+	 *            {@link EntityId#COMPONENT}, {@link EntityId#SUPPLIER} or
+	 *            {@link EntityId#ORDER}
+	 * @param count
+	 *            the number of IDs needed
+	 * @return the first number of the block
+	 */
+	public int lease(int type, int count) {
+		return pool(type).lease(count);
+	}
+
+	/**
+	 * Makes sure that a component ID that has already been issued, such as
+	 * one replayed from the journal, is not issued again.
+	 * 
+	 * @param number
+	 *            the number of the issued component ID
+	 */
+	void reserveComponentId(int number) {
+		components.reserve(number);
+	}
+
+	/**
+	 * Makes sure that a supplier ID that has already been issued, such as one
+	 * replayed from the journal, is not issued again.
+	 * 
+	 * @param number
+	 *            the number of the issued supplier ID
+	 */
+	void reserveSupplierId(int number) {
+		suppliers.reserve(number);
+	}
+
+	/**
+	 * Makes sure that an order ID that has already been issued, such as one
+	 * replayed from the journal, is not issued again.
+	 * 
+	 * @param number
+	 *            the number of the issued order ID
+	 */
+	void reserveOrderId(int number) {
+		orders.reserve(number);
+	}
+
+	/**
+	 * Makes sure that no number up to the given one is issued again, such as
+	 * the end of a leased block replayed from the journal.
+	 * 
+	 * @param type
+	 *            the type of the ID
+	 * @param number
+	 *            the highest number that may have been issued
+	 */
+	void reserve(int type, int number) {
+		pool(type).reserve(number);
+	}
+
+	/**
+	 * Returns the number of IDs of the given type issued since this object
+	 * was created, whether one at a time or in blocks leased by
+	 * {@link #lease(int, int)}.
+	 * 
+	 * @param type
+	 *            the type of the IDs
+	 * @return the number of IDs issued
+	 */
+	public long getIssuedCount(int type) {
+		return pool(type).issuedCount();
+	}
+
+	/**
+	 * Returns the number of blocks of IDs of the given type leased since this
+	 * object was created.
+	 * 
+	 * @param type
+	 *            the type of the IDs
+	 * @return the number of leases, each of which was written to the journal
+	 */
+	public long getLeaseCount(int type) {
+		return pool(type).leaseCount();
+	}
+
+	/**
+	 * Returns the average number of IDs of the given type issued per second
+	 * since this object was created.
+	 * 
+	 * @param type
+	 *            the type of the IDs
+	 * @return the allocation rate
+	 */
+	public double getAllocationRate(int type) {
+		long elapsed = Math.max(1, System.nanoTime() - created);
+		return getIssuedCount(type) * 1e9 / elapsed;
+	}
+
+	/**
+	 * Writes the counters of the IdGenerator object. The blocks leased so far
+	 * are given up first, so that the counters follow the highest IDs
+	 * actually issued; no IDs may be taken while this runs.
+	 * 
+	 * @param output
+	 *            the snapshot being written
+	 * @throws IOException
+	 *             if the counters could not be written
+	 */
+	public static void save(DataOutput output) throws IOException {
+		for (int counter : checkpoint()) {
+			output.writeInt(counter);
+		}
+	}
+
+	/**
+	 * Gives up the blocks leased so far and returns the counters, in the
+	 * order {@link #save(DataOutput)} writes them; no IDs may be taken while
+	 * this runs.
+	 * 
+	 * @return the next component, supplier and order numbers to be issued
+	 */
+	static int[] checkpoint() {
+		IdGenerator generator = instance();
+		return new int[]{generator.components.revoke(),
+				generator.suppliers.revoke(), generator.orders.revoke()};
+	}
+
+	/**
+	 * Retrieves the IdGenerator object from the counters written by
+	 * {@link #save(DataOutput)}
+	 * 
+	 * @param input
+	 *            the snapshot being read
+	 * @throws IOException
+	 *             if the counters could not be read
+	 */
+	public static void retrieve(DataInput input) throws IOException {
+		restore(input.readInt(), input.readInt(), input.readInt());
+	}
+
+	/**
+	 * Recreates the IdGenerator object with the given counters, as read back
+	 * from a snapshot
+	 * 
+	 * @param componentIdCounter
+	 *            the next component number to be issued
+	 * @param supplierIdCounter
+	 *            the next supplier number to be issued
+	 * @param orderIdCounter
+	 *            the next order number to be issued
+	 */
+	static void restore(int componentIdCounter, int supplierIdCounter,
+			int orderIdCounter) {
+		idGenerator = new IdGenerator();
+		idGenerator.components.reserve(componentIdCounter - 1);
+		idGenerator.suppliers.reserve(supplierIdCounter - 1);
+		idGenerator.orders.reserve(orderIdCounter - 1);
+	}
+
+	/**
+	 * Returns the pool of IDs of the given type
+	 * 
+	 * @param type
+	 *            the type of the IDs
+	 * @return the pool
+	 */
+	private Pool pool(int type) {
+		switch (type) {
+			case EntityId.COMPONENT :
+				return components;
+			case EntityId.SUPPLIER :
+				return suppliers;
+			case EntityId.ORDER :
+				return orders;
+			default :
+				throw new IllegalArgumentException("Unknown ID type " + type);
+		}
+	}
+
+	/**
+	 * The IDs of one type: the counter blocks are leased from, and the block
+	 * currently leased to each slot. The lease of a slot is packed into one
+	 * {@code long}, with the end of the block in the high 32 bits and the next
+	 * number to be issued in the low 32 bits; the slot is used up when the two
+	 * are equal.
+	 */
+	private class Pool implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int type;
+		private final AtomicLongArray leases = new AtomicLongArray(
+				SLOTS * STRIDE);
+
+		/**
+		 * The rest is guarded by the lock of the pool.
+		 */
+		private final int[] starts = new int[SLOTS];
+		private final int[] sizes = new int[SLOTS];
+		private final long[] leasedAt = new long[SLOTS];
+
+		/**
+		 * First number not leased yet.
+		 */
+		private int counter = 1;
+
+		/**
+		 * One past the highest number known to have been issued, leaving out
+		 * the blocks still leased to slots.
+		 */
+		private int highWater = 1;
+
+		/**
+		 * Numbers issued, leaving out those of the blocks still leased to
+		 * slots, and number of blocks leased.
+		 */
+		private long issued;
+		private long leaseCount;
+
+		Pool(int type) {
+			this.type = type;
+		}
+
+		/**
+		 * Issues the next number of the block leased to the slot of the
+		 * calling thread, leasing a new block first if it is used up.
+		 */
+		int next() {
+			int slot = (int) Thread.currentThread().getId() & (SLOTS - 1);
+			int index = slot * STRIDE;
+			while (true) {
+				long lease = leases.get(index);
+				if ((int) lease < (int) (lease >>> 32)) {
+					if (leases.compareAndSet(index, lease, lease + 1)) {
+						return (int) lease;
+					}
+				} else {
+					renew(slot, lease);
+				}
+			}
+		}
+
+		/**
+		 * Leases a new block to the given slot, unless another thread did so
+		 * since its lease was seen to be used up.
+		 */
+		private synchronized void renew(int slot, long usedUp) {
+			int index = slot * STRIDE;
+			if (leases.get(index) != usedUp) {
+				return;
+			}
+			int end = (int) (usedUp >>> 32);
+			issued += end - starts[slot];
+			highWater = Math.max(highWater, end);
+			long now = System.nanoTime();
+			int size = sizes[slot] == 0 || now - leasedAt[slot] > GROWTH_WINDOW
+					? MIN_BLOCK
+					: Math.min(sizes[slot] * 2, MAX_BLOCK);
+			int first = take(size);
+			starts[slot] = first;
+			sizes[slot] = size;
+			leasedAt[slot] = now;
+			leases.set(index, (long) (first + size) << 32 | first);
+		}
+
+		/**
+		 * Leases a block that the caller issues itself.
+		 */
+		synchronized int lease(int count) {
+			int first = take(count);
+			issued += count;
+			highWater = Math.max(highWater, counter);
+			return first;
+		}
+
+		/**
+		 * Takes the next block off the counter, and records it in the
+		 * journal before it is used.
+		 */
+		private int take(int count) {
+			int first = counter;
+			counter += count;
+			leaseCount++;
+			Journal journal = IdGenerator.this.journal;
+			if (journal != null) {
+				journal.leaseIds(type, counter);
+			}
+			return first;
+		}
+
+		synchronized void reserve(int number) {
+			counter = Math.max(counter, number + 1);
+			highWater = Math.max(highWater, number + 1);
+		}
+
+		/**
+		 * Takes back the blocks leased to the slots, and moves the counter
+		 * back to just after the highest number issued, so that the unused
+		 * parts of the blocks are not lost. Each lease is read and cleared in
+		 * one step, so a number a thread takes from it meanwhile is either
+		 * counted here or taken from a new block.
+		 *
+		 * @return the next number to be issued
+		 */
+		synchronized int revoke() {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				long lease = leases.getAndSet(slot * STRIDE, 0);
+				int next = (int) lease;
+				if (next > starts[slot]) {
+					issued += next - starts[slot];
+					highWater = Math.max(highWater, next);
+				}
+				starts[slot] = 0;
+			}
+			counter = highWater;
+			return counter;
+		}
+
+		synchronized long issuedCount() {
+			long count = issued;
+			for (int slot = 0; slot < SLOTS; slot++) {
+				count += Math.max(0,
+						(int) leases.get(slot * STRIDE) - starts[slot]);
+			}
+			return count;
+		}
+
+		synchronized long leaseCount() {
+			return leaseCount;
+		}
+	}
+
+}
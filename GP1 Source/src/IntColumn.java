@@ -0,0 +1,137 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A growable column of {@code int} values, kept in fixed-size chunks of
+ * memory that are never moved once allocated. The chunks are either on the
+ * heap or outside of it; in the second case the garbage collector sees one
+ * small buffer object per chunk, however many values the column holds.
+ *
+ * A value is identified by its slot, which {@link #add(int)} hands out.
+ * Values can be read, added to and compared-and-set atomically from several
+ * threads without a lock.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class IntColumn {
+
+	/**
+	 * Each chunk holds {@code 1 << CHUNK_BITS} values.
+	 */
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	/**
+	 * Gives atomic access to the {@code int} values in a chunk.
+	 */
+	private static final VarHandle INT = MethodHandles
+			.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	private final boolean offHeap;
+
+	/**
+	 * The chunks allocated so far. Replaced by a longer copy when a chunk is
+	 * added, so that readers never need a lock.
+	 */
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+	private int size;
+
+	/**
+	 * Creates an empty column
+	 *
+	 * @param offHeap
+	 *            whether the values are kept outside of the heap
+	 */
+	public IntColumn(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Tells whether the values are kept outside of the heap
+	 *
+	 * @return true iff the chunks are direct buffers
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Returns the number of slots handed out so far
+	 *
+	 * @return the size of the column
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Appends a value to the column
+	 *
+	 * @param value
+	 *            the initial value of the slot
+	 * @return the slot holding the value
+	 */
+	public synchronized int add(int value) {
+		int slot = size;
+		if ((slot >>> CHUNK_BITS) == chunks.length) {
+			ByteBuffer[] grown = new ByteBuffer[chunks.length + 1];
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+			grown[chunks.length] = offHeap
+					? ByteBuffer.allocateDirect(4 << CHUNK_BITS)
+					: ByteBuffer.allocate(4 << CHUNK_BITS);
+			chunks = grown;
+		}
+		size++;
+		INT.setVolatile(chunks[slot >>> CHUNK_BITS], (slot & CHUNK_MASK) << 2,
+				value);
+		return slot;
+	}
+
+	/**
+	 * Returns the value in the given slot
+	 *
+	 * @param slot
+	 *            a slot returned by {@link #add(int)}
+	 * @return the value
+	 */
+	public int get(int slot) {
+		return (int) INT.getVolatile(chunks[slot >>> CHUNK_BITS],
+				(slot & CHUNK_MASK) << 2);
+	}
+
+	/**
+	 * Adds the given amount to the value in the given slot, as a single
+	 * atomic instruction
+	 *
+	 * @param slot
+	 *            a slot returned by {@link #add(int)}
+	 * @param delta
+	 *            the amount added
+	 * @return the value before the addition
+	 */
+	public int getAndAdd(int slot, int delta) {
+		return (int) INT.getAndAdd(chunks[slot >>> CHUNK_BITS],
+				(slot & CHUNK_MASK) << 2, delta);
+	}
+
+	/**
+	 * Sets the value in the given slot, if it still holds the expected value.
+	 * May fail even when it does, so callers retry in a loop.
+	 *
+	 * @param slot
+	 *            a slot returned by {@link #add(int)}
+	 * @param expected
+	 *            the value the slot must hold
+	 * @param value
+	 *            the new value
+	 * @return true iff the value was set
+	 */
+	public boolean weakCompareAndSet(int slot, int expected, int value) {
+		return INT.weakCompareAndSet(chunks[slot >>> CHUNK_BITS],
+				(slot & CHUNK_MASK) << 2, expected, value);
+	}
+}
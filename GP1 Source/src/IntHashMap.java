@@ -0,0 +1,345 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map keyed on primitive {@code int} values. Entries are kept in two
+ * parallel arrays in the order they were inserted, and an open-addressing
+ * table of positions into those arrays is used to find an entry by its key.
+ * Keys are never boxed, and each entry costs an {@code int} key, a reference
+ * and about two {@code int} slots in the table.
+ * 
+ * Removing an entry only clears its value; the arrays are compacted when a
+ * later insertion needs the room. Because of this, an iterator is not
+ * disturbed by entries that are removed while it is in use: it returns
+ * every entry that is still in the map when it reaches it, and none that
+ * has been removed.
+ * 
+ * Every entry is also numbered in the order it was inserted. The numbers
+ * increase along the arrays and survive compaction, so a number is a stable
+ * cursor from which {@link #page(int, int)} resumes a listing with a binary
+ * search.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ * @param <E>
+ *            the type of the values stored in the map
+ */
+public class IntHashMap<E> implements Serializable, Iterable<E> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initial number of entries the map can hold before it has to grow.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Marks a slot of {@code table} that does not point to any entry.
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * Marks a slot of {@code table} whose entry has been removed.
+	 */
+	private static final int REMOVED = -2;
+
+	/**
+	 * Open-addressing table. Every slot holds the position of an entry in
+	 * {@code keys} and {@code values}, {@value #EMPTY} or {@value #REMOVED}.
+	 * It is kept at most half full.
+	 */
+	private int[] table;
+	private int[] keys;
+	private Object[] values;
+
+	/**
+	 * Insertion number of every entry in {@code keys} and {@code values}, in
+	 * ascending order.
+	 */
+	private int[] sequences;
+
+	/**
+	 * Number of entries ever inserted; the insertion number of the next one.
+	 */
+	private int insertions;
+
+	/**
+	 * Number of positions used in {@code keys} and {@code values}, including
+	 * those of removed entries.
+	 */
+	private int count;
+	private int size;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public IntHashMap() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		sequences = new int[INITIAL_CAPACITY];
+		table = newTable(INITIAL_CAPACITY * 2);
+	}
+
+	/**
+	 * Returns the number of entries in the map.
+	 *
+	 * @return {@code size}.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value mapped to the given key.
+	 *
+	 * @param key
+	 *            the key being searched for
+	 * @return the value mapped to {@code key}, if one exists. Otherwise,
+	 *         {@literal null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		return (E) values[table[slot]];
+	}
+
+	/**
+	 * Removes the entry with the given key.
+	 *
+	 * @param key
+	 *            the key of the entry to be removed
+	 * @return the value that was mapped to {@code key}, if one existed.
+	 *         Otherwise, {@literal null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public E remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		int position = table[slot];
+		E value = (E) values[position];
+		values[position] = null;
+		table[slot] = REMOVED;
+		size--;
+		return value;
+	}
+
+	/**
+	 * Adds the given value under the given key, unless the key is already in
+	 * the map.
+	 *
+	 * @param key
+	 *            the key of the value
+	 * @param value
+	 *            the value to be added; must not be {@literal null}
+	 * @return {@literal true}, if the value was added. Otherwise,
+	 *         {@literal false}.
+	 */
+	public boolean put(int key, E value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		if (find(key) >= 0) {
+			return false;
+		}
+		if (count == keys.length) {
+			rebuild();
+		}
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while (table[slot] >= 0) {
+			slot = (slot + 1) & mask;
+		}
+		keys[count] = key;
+		values[count] = value;
+		sequences[count] = insertions++;
+		table[slot] = count++;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Makes room for the given number of entries, so that inserting a batch of
+	 * that many does not grow the map more than once.
+	 *
+	 * @param capacity
+	 *            the number of entries the map must hold without growing
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= keys.length) {
+			return;
+		}
+		int length = keys.length;
+		while (length < capacity) {
+			length *= 2;
+		}
+		rebuild(length);
+	}
+
+	/**
+	 * Returns at most {@code limit} values, in insertion order, starting with
+	 * the first value inserted at or after the given cursor. Entries before
+	 * the cursor are skipped by a binary search, not visited.
+	 *
+	 * @param cursor
+	 *            {@literal 0} for the first page, or the next cursor of the
+	 *            previous page
+	 * @param limit
+	 *            the largest number of values returned
+	 * @return the values and the cursor of the page after them
+	 */
+	@SuppressWarnings("unchecked")
+	public Page<E> page(int cursor, int limit) {
+		if (cursor < 0 || limit <= 0) {
+			throw new IllegalArgumentException();
+		}
+		int position = Arrays.binarySearch(sequences, 0, count, cursor);
+		if (position < 0) {
+			position = -position - 1;
+		}
+		List<E> items = new ArrayList<E>(Math.min(limit, size));
+		int next = cursor;
+		for (; position < count; position++) {
+			if (values[position] == null) {
+				continue;
+			}
+			if (items.size() == limit) {
+				return new Page<E>(items, next, true);
+			}
+			items.add((E) values[position]);
+			next = sequences[position] + 1;
+		}
+		return new Page<E>(items, next, false);
+	}
+
+	/**
+	 * Returns an iterator over the values, in insertion order. Removed
+	 * entries are skipped only when the next value is asked for, so that an
+	 * entry removed after the previous call to {@code next()} is not
+	 * returned.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int position;
+
+			@Override
+			public boolean hasNext() {
+				while (position < count && values[position] == null) {
+					position++;
+				}
+				return position < count;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (E) values[position++];
+			}
+		};
+	}
+
+	/**
+	 * Finds the slot of {@code table} that points to the entry with the given
+	 * key.
+	 *
+	 * @param key
+	 *            the key being searched for
+	 * @return the slot, if the key is in the map. Otherwise, {@literal -1}.
+	 */
+	private int find(int key) {
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			int position = table[slot];
+			if (position == EMPTY) {
+				return -1;
+			}
+			if (position != REMOVED && keys[position] == key) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Drops removed entries from the entry arrays, doubling their capacity if
+	 * they are more than half full of live entries, and rebuilds the table.
+	 */
+	private void rebuild() {
+		int capacity = keys.length;
+		if (size >= capacity / 2) {
+			capacity *= 2;
+		}
+		rebuild(capacity);
+	}
+
+	/**
+	 * Drops removed entries from the entry arrays, gives them the given
+	 * capacity, and rebuilds the table.
+	 *
+	 * @param capacity
+	 *            the new length of the entry arrays; a power of two no smaller
+	 *            than {@code size}
+	 */
+	private void rebuild(int capacity) {
+		int[] newKeys = new int[capacity];
+		Object[] newValues = new Object[capacity];
+		int[] newSequences = new int[capacity];
+		table = newTable(capacity * 2);
+		int mask = table.length - 1;
+		int live = 0;
+		for (int position = 0; position < count; position++) {
+			if (values[position] == null) {
+				continue;
+			}
+			newKeys[live] = keys[position];
+			newValues[live] = values[position];
+			newSequences[live] = sequences[position];
+			int slot = hash(keys[position]) & mask;
+			while (table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = live++;
+		}
+		keys = newKeys;
+		values = newValues;
+		sequences = newSequences;
+		count = live;
+	}
+
+	/**
+	 * Creates a table in which every slot is {@value #EMPTY}.
+	 *
+	 * @param length
+	 *            the number of slots; must be a power of two
+	 * @return the new table
+	 */
+	private static int[] newTable(int length) {
+		int[] table = new int[length];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	/**
+	 * Spreads the bits of a key, so that sequential keys do not end up in
+	 * neighbouring slots.
+	 *
+	 * @param key
+	 *            the key to be hashed
+	 * @return the hash of {@code key}
+	 */
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
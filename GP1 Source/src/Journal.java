@@ -0,0 +1,771 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes made to a {@code Company} since its
+ * last snapshot. Every change is encoded as a small binary record. The
+ * records of one operation are written to the file as a single frame, which
+ * carries its length and a checksum, so that a frame cut short by a crash is
+ * recognized and dropped when the journal is replayed.
+ *
+ * Frames are handed to the operating system before the operation returns,
+ * so they survive the process dying. When several threads commit at once,
+ * their records are written together as one frame. Forcing frames to the
+ * disk is more expensive, and is done by a background thread for all frames
+ * written during the last {@value #SYNC_INTERVAL} milliseconds at once. The
+ * only exception are leases of blocks of IDs, which are forced before the
+ * IDs are handed out, since the IDs may be shown to the user before any
+ * other record mentions them.
+ *
+ * A frame that cannot be written or forced is not dropped silently: the
+ * operation committing it fails with an {@code UncheckedIOException}, and so
+ * does every later one, since the frames after a damaged one are not
+ * replayed. The journal works again once the next save has restarted it.
+ *
+ * The journal starts with the epoch of the snapshot it applies to, so that a
+ * journal left over from an older snapshot is never replayed onto a newer
+ * one.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class Journal {
+
+	/**
+	 * Constant value written at the start of every journal, so that files in
+	 * another format are rejected.
+	 */
+	private static final int MAGIC = 0x434a524e;
+
+	/**
+	 * Constant value for the version of the format that is written.
+	 */
+	private static final short VERSION = 1;
+
+	/**
+	 * Size of the header: magic number, version and epoch.
+	 */
+	private static final int HEADER_SIZE = 4 + 2 + 8;
+
+	/**
+	 * Maximum time in milliseconds a frame stays in the operating system
+	 * before it is forced to the disk.
+	 */
+	private static final long SYNC_INTERVAL = 10;
+
+	/**
+	 * Record types.
+	 */
+	private static final byte ADD_COMPONENT = 1;
+	private static final byte ADD_SUPPLIER = 2;
+	private static final byte ADD_RELATION = 3;
+	private static final byte PLACE_ORDER = 4;
+	private static final byte FULFILL_ORDER = 5;
+	private static final byte ASSIGN_COMPONENT = 6;
+	private static final byte LEASE_IDS = 7;
+
+	private final FileChannel channel;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition frameWritten = lock.newCondition();
+	private final Condition closing = lock.newCondition();
+
+	/**
+	 * Records added since the last frame was taken by a writer, and the
+	 * buffer that takes their place when it is.
+	 */
+	private RecordBuffer records = new RecordBuffer();
+	private RecordBuffer spare = new RecordBuffer();
+
+	/**
+	 * Number of records added, and number of those written to the file.
+	 */
+	private long appended;
+	private long written;
+
+	/**
+	 * Used only by the thread that is writing a frame.
+	 */
+	private final CRC32 checksum = new CRC32();
+	private final ByteBuffer frameHeader = ByteBuffer.allocate(8);
+
+	private boolean writing;
+	private boolean unsynced;
+	private boolean closed;
+
+	/**
+	 * The error a frame could not be written or forced with, if any, which
+	 * every commit reports until the journal is restarted.
+	 */
+	private IOException failure;
+
+	/**
+	 * Opens the journal for appending, and starts the thread that forces it to
+	 * the disk.
+	 *
+	 * @param channel
+	 *            the journal file, positioned at its end
+	 */
+	private Journal(FileChannel channel) {
+		this.channel = channel;
+		Thread syncer = new Thread(this::syncPeriodically, "Journal sync");
+		syncer.setDaemon(true);
+		syncer.start();
+	}
+
+	/**
+	 * Starts an empty journal in the given file, replacing any existing one.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param epoch
+	 *            the epoch of the snapshot the journal applies to
+	 * @return the journal
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public static Journal start(File file, long epoch) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		writeHeader(channel, epoch);
+		return new Journal(channel);
+	}
+
+	/**
+	 * Replays the journal in the given file onto a company that has just been
+	 * rebuilt from the snapshot with the given epoch, and opens the journal
+	 * for appending. A journal that belongs to another snapshot is discarded,
+	 * as is everything from the first frame that is cut short, damaged or
+	 * cannot be applied.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param epoch
+	 *            the epoch of the snapshot the company was rebuilt from
+	 * @param company
+	 *            the company the changes are applied to
+	 * @return the journal
+	 * @throws IOException
+	 *             if the file could not be read or written
+	 */
+	public static Journal resume(File file, long epoch, Company company)
+			throws IOException {
+		long validLength = replay(file, epoch, company);
+		if (validLength < 0) {
+			return start(file, epoch);
+		}
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.WRITE);
+		channel.truncate(validLength);
+		channel.position(validLength);
+		return new Journal(channel);
+	}
+
+	/**
+	 * Reads the epoch of the snapshot the journal in the given file applies
+	 * to.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @return the epoch, or {@literal null} if there is no valid journal
+	 */
+	public static Long readEpoch(File file) {
+		try (DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			if (input.readInt() != MAGIC || input.readShort() != VERSION) {
+				return null;
+			}
+			return input.readLong();
+		} catch (IOException ioe) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the journal in the given file, if there is one, holds no
+	 * changes and applies to the snapshot with the given epoch, so that an
+	 * empty journal can be started in its place without losing anything.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param epoch
+	 *            the epoch of the snapshot
+	 * @return {@literal true} if there is no journal, or it is empty and
+	 *         applies to the snapshot
+	 */
+	public static boolean isEmpty(File file, long epoch) {
+		if (!file.exists()) {
+			return true;
+		}
+		Long journalEpoch = readEpoch(file);
+		return journalEpoch != null && journalEpoch == epoch
+				&& file.length() <= HEADER_SIZE;
+	}
+
+	/**
+	 * Applies every complete frame of the journal to the company.
+	 *
+	 * @return the length of the journal up to the end of the last complete
+	 *         frame, or {@literal -1} if the journal does not apply to the
+	 *         snapshot
+	 */
+	private static long replay(File file, long epoch, Company company)
+			throws IOException {
+		Long journalEpoch = readEpoch(file);
+		if (journalEpoch == null || journalEpoch != epoch) {
+			return -1;
+		}
+		long fileLength = file.length();
+		long validLength = HEADER_SIZE;
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			input.skipBytes(HEADER_SIZE);
+			CRC32 checksum = new CRC32();
+			while (true) {
+				byte[] frame;
+				try {
+					int length = input.readInt();
+					int expected = input.readInt();
+					if (length < 0 || length > fileLength - validLength - 8) {
+						break;
+					}
+					frame = new byte[length];
+					input.readFully(frame);
+					checksum.reset();
+					checksum.update(frame, 0, length);
+					if ((int) checksum.getValue() != expected) {
+						break;
+					}
+				} catch (EOFException eofe) {
+					break;
+				}
+				try {
+					apply(new DataInputStream(new ByteArrayInputStream(frame)),
+							company);
+				} catch (IOException | RuntimeException e) {
+					/*
+					 * A frame with a valid checksum that cannot be applied is
+					 * damaged all the same; the records before it in the frame
+					 * stay applied, and the journal ends where it starts.
+					 */
+					e.printStackTrace();
+					break;
+				}
+				validLength += 8 + frame.length;
+			}
+		}
+		return validLength;
+	}
+
+	/**
+	 * Applies the records of one frame to the company.
+	 *
+	 * @throws IOException
+	 *             if a record is not understood, or refers to a component,
+	 *             supplier, relation or order that does not exist
+	 */
+	private static void apply(DataInputStream input, Company company)
+			throws IOException {
+		IdGenerator idGenerator = IdGenerator.instance();
+		while (input.available() > 0) {
+			byte type = input.readByte();
+			switch (type) {
+				case ADD_COMPONENT : {
+					int number = input.readInt();
+					company.getAllComponents()
+							.insert(new Component(number, input.readUTF()));
+					idGenerator.reserveComponentId(number);
+					break;
+				}
+				case ADD_SUPPLIER : {
+					int number = input.readInt();
+					company.getAllSuppliers()
+							.insert(new Supplier(number, input.readUTF()));
+					idGenerator.reserveSupplierId(number);
+					break;
+				}
+				case ADD_RELATION : {
+					Component component = findComponent(company,
+							input.readInt());
+					Supplier supplier = findSupplier(company, input.readInt());
+					company.addComponentSupplierRelation(component, supplier);
+					break;
+				}
+				case PLACE_ORDER : {
+					int number = input.readInt();
+					Component component = findComponent(company,
+							input.readInt());
+					Supplier supplier = findSupplier(company, input.readInt());
+					ComponentSupplierRelation relation = component
+							.getSupplier(supplier);
+					if (relation == null) {
+						throw new IOException("Journal record refers to "
+								+ supplier.getId() + " not supplying "
+								+ component.getId());
+					}
+					company.getPendingOrders()
+							.insert(new Order(number, relation, input.readInt()));
+					idGenerator.reserveOrderId(number);
+					break;
+				}
+				case FULFILL_ORDER : {
+					long orderId = EntityId.of(EntityId.ORDER, input.readInt());
+					if (company.fulfillOrder(orderId) == null) {
+						throw new IOException("Journal record refers to missing "
+								+ EntityId.format(orderId));
+					}
+					break;
+				}
+				case ASSIGN_COMPONENT :
+					/*
+					 * Applied without checking the stock: records of
+					 * concurrent operations on a component may have been
+					 * journaled in a different order than they were
+					 * performed, and taking the quantity off unconditionally
+					 * reaches the same final stock either way.
+					 */
+					findComponent(company, input.readInt())
+							.addToStock(-input.readInt());
+					break;
+				case LEASE_IDS :
+					idGenerator.reserve(input.readByte(), input.readInt() - 1);
+					break;
+				default :
+					throw new IOException("Unknown journal record " + type);
+			}
+		}
+	}
+
+	/**
+	 * Returns the component with the given number in its ID, which a record
+	 * refers to.
+	 *
+	 * @throws IOException
+	 *             if there is no such component
+	 */
+	private static Component findComponent(Company company, int number)
+			throws IOException {
+		long componentId = EntityId.of(EntityId.COMPONENT, number);
+		Component component = company.findComponent(componentId);
+		if (component == null) {
+			throw new IOException("Journal record refers to missing "
+					+ EntityId.format(componentId));
+		}
+		return component;
+	}
+
+	/**
+	 * Returns the supplier with the given number in its ID, which a record
+	 * refers to.
+	 *
+	 * @throws IOException
+	 *             if there is no such supplier
+	 */
+	private static Supplier findSupplier(Company company, int number)
+			throws IOException {
+		long supplierId = EntityId.of(EntityId.SUPPLIER, number);
+		Supplier supplier = company.findSupplier(supplierId);
+		if (supplier == null) {
+			throw new IOException("Journal record refers to missing "
+					+ EntityId.format(supplierId));
+		}
+		return supplier;
+	}
+
+	/**
+	 * Records that a component has been added.
+	 *
+	 * @param component
+	 *            the component added
+	 */
+	public void addComponent(Component component) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(ADD_COMPONENT);
+			output.writeInt(component.getNumber());
+			output.writeUTF(component.getName());
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that a supplier has been added.
+	 *
+	 * @param supplier
+	 *            the supplier added
+	 */
+	public void addSupplier(Supplier supplier) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(ADD_SUPPLIER);
+			output.writeInt(supplier.getNumber());
+			output.writeUTF(supplier.getName());
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that a relation between a component and a supplier has been
+	 * added.
+	 *
+	 * @param relation
+	 *            the relation added
+	 */
+	public void addRelation(ComponentSupplierRelation relation) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(ADD_RELATION);
+			output.writeInt(relation.getComponent().getNumber());
+			output.writeInt(relation.getSupplier().getNumber());
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that an order has been placed.
+	 *
+	 * @param order
+	 *            the order placed
+	 */
+	public void placeOrder(Order order) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(PLACE_ORDER);
+			output.writeInt(order.getNumber());
+			output.writeInt(
+					order.getRelation().getComponent().getNumber());
+			output.writeInt(order.getRelation().getSupplier().getNumber());
+			output.writeInt(order.getQuantity());
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that an order has been fulfilled.
+	 *
+	 * @param order
+	 *            the order fulfilled
+	 */
+	public void fulfillOrder(Order order) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(FULFILL_ORDER);
+			output.writeInt(order.getNumber());
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that a quantity of a component has been assigned.
+	 *
+	 * @param component
+	 *            the component assigned
+	 * @param quantity
+	 *            the quantity assigned
+	 */
+	public void assignComponent(Component component, int quantity) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(ASSIGN_COMPONENT);
+			output.writeInt(component.getNumber());
+			output.writeInt(quantity);
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that a block of IDs has been leased, and forces the record to
+	 * the disk together with every record added before it.
+	 *
+	 * @param type
+	 *            the type of the IDs
+	 * @param end
+	 *            the number after the last one in the block
+	 */
+	public void leaseIds(int type, int end) {
+		lock.lock();
+		try {
+			DataOutputStream output = records.output;
+			output.writeByte(LEASE_IDS);
+			output.writeByte(type);
+			output.writeInt(end);
+			appended++;
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+		commit();
+		try {
+			channel.force(false);
+		} catch (IOException ioe) {
+			fail(ioe);
+			throw notJournaled(ioe);
+		}
+	}
+
+	/**
+	 * Makes sure that every record added so far has been written to the file.
+	 * The first thread to commit becomes the writer: it takes all records
+	 * added up to that point, including those of other threads, and writes
+	 * them as one frame without holding the lock. Threads that commit while a
+	 * frame is being written wait for it, and then write whatever has been
+	 * added in the meantime as the next frame.
+	 *
+	 * @throws UncheckedIOException
+	 *             if the records could not be written, or an earlier frame
+	 *             could not be written or forced since the journal was
+	 *             started
+	 */
+	public void commit() {
+		lock.lock();
+		try {
+			long target = appended;
+			while (written < target && !closed && failure == null) {
+				if (writing) {
+					frameWritten.awaitUninterruptibly();
+					continue;
+				}
+				writing = true;
+				RecordBuffer frame = records;
+				records = spare;
+				spare = frame;
+				long frameEnd = appended;
+				lock.unlock();
+				try {
+					writeFrame(frame);
+				} catch (IOException ioe) {
+					fail(ioe);
+				} finally {
+					lock.lock();
+					frame.reset();
+					written = frameEnd;
+					writing = false;
+					unsynced = true;
+					frameWritten.signalAll();
+				}
+			}
+			if (failure != null) {
+				throw notJournaled(failure);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that a frame could not be written or forced.
+	 */
+	private void fail(IOException ioe) {
+		lock.lock();
+		try {
+			if (failure == null) {
+				failure = ioe;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static UncheckedIOException notJournaled(IOException cause) {
+		return new UncheckedIOException("The change could not be journaled",
+				cause);
+	}
+
+	/**
+	 * Writes the given records to the file as one frame. Only called by the
+	 * thread that is currently the writer.
+	 *
+	 * @param frame
+	 *            the records to be written
+	 * @throws IOException
+	 *             if the frame could not be written
+	 */
+	private void writeFrame(RecordBuffer frame) throws IOException {
+		checksum.reset();
+		checksum.update(frame.buffer(), 0, frame.size());
+		frameHeader.clear();
+		frameHeader.putInt(frame.size());
+		frameHeader.putInt((int) checksum.getValue());
+		frameHeader.flip();
+		ByteBuffer body = ByteBuffer.wrap(frame.buffer(), 0, frame.size());
+		ByteBuffer[] buffers = {frameHeader, body};
+		while (frameHeader.hasRemaining() || body.hasRemaining()) {
+			channel.write(buffers);
+		}
+	}
+
+	/**
+	 * Discards the journal after a new snapshot has been saved, and starts an
+	 * empty one for that snapshot. The caller must make sure that no changes
+	 * are made to the company between taking the snapshot and restarting the
+	 * journal.
+	 *
+	 * @param epoch
+	 *            the epoch of the new snapshot
+	 * @throws IOException
+	 *             if the journal could not be written
+	 */
+	public void restart(long epoch) throws IOException {
+		lock.lock();
+		try {
+			while (writing) {
+				frameWritten.awaitUninterruptibly();
+			}
+			records.reset();
+			written = appended;
+			writeHeader(channel, epoch);
+			unsynced = false;
+			failure = null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes any records not yet committed, forces all frames to the disk and
+	 * closes the journal. The journal is closed even if that fails.
+	 *
+	 * @throws UncheckedIOException
+	 *             if some frame could not be written or forced since the
+	 *             journal was started
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			try {
+				commit();
+				channel.force(false);
+			} catch (UncheckedIOException uioe) {
+				fail(uioe.getCause());
+			} catch (IOException ioe) {
+				fail(ioe);
+			}
+			closed = true;
+			try {
+				channel.close();
+			} catch (IOException ioe) {
+				fail(ioe);
+			}
+			if (failure != null) {
+				throw notJournaled(failure);
+			}
+		} finally {
+			frameWritten.signalAll();
+			closing.signalAll();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Body of the background thread; forces the frames committed since the
+	 * last pass to the disk. The lock is not held while forcing, so that
+	 * operations can keep committing frames in the meantime.
+	 */
+	private void syncPeriodically() {
+		while (true) {
+			lock.lock();
+			try {
+				closing.await(SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+				if (closed) {
+					return;
+				}
+				if (!unsynced) {
+					continue;
+				}
+				unsynced = false;
+			} catch (InterruptedException ie) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				channel.force(false);
+			} catch (IOException ioe) {
+				if (channel.isOpen()) {
+					fail(ioe);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the header at the start of the channel, and forces it to the
+	 * disk.
+	 */
+	private static void writeHeader(FileChannel channel, long epoch)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putShort(VERSION).putLong(epoch).flip();
+		channel.truncate(0);
+		channel.position(0);
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(true);
+	}
+
+	/**
+	 * A {@code ByteArrayOutputStream} whose buffer can be written out without
+	 * being copied, together with the stream used to encode records into it.
+	 */
+	private static class RecordBuffer extends ByteArrayOutputStream {
+		final DataOutputStream output = new DataOutputStream(this);
+
+		RecordBuffer() {
+			super(1 << 12);
+		}
+
+		byte[] buffer() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON text to a {@code Writer} as it is produced, so that a large
+ * listing is never held in memory as a whole. The caller opens and closes
+ * objects and arrays, and names the members of objects; the writer adds the
+ * commas and quotes the strings.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class JsonWriter {
+	private final Writer writer;
+
+	/**
+	 * Whether the innermost open object or array has no members yet, for
+	 * every level of nesting.
+	 */
+	private boolean[] empty = new boolean[8];
+	private int depth;
+	private boolean afterName;
+
+	/**
+	 * Creates a writer
+	 *
+	 * @param writer
+	 *            where the JSON text is written
+	 */
+	public JsonWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Opens an object
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter beginObject() throws IOException {
+		open('{');
+		return this;
+	}
+
+	/**
+	 * Closes the innermost object
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter endObject() throws IOException {
+		depth--;
+		writer.write('}');
+		return this;
+	}
+
+	/**
+	 * Opens an array
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter beginArray() throws IOException {
+		open('[');
+		return this;
+	}
+
+	/**
+	 * Closes the innermost array
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter endArray() throws IOException {
+		depth--;
+		writer.write(']');
+		return this;
+	}
+
+	/**
+	 * Writes the name of the next member of the innermost object
+	 *
+	 * @param name
+	 *            the name of the member
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter name(String name) throws IOException {
+		separate();
+		quote(name);
+		writer.write(':');
+		afterName = true;
+		return this;
+	}
+
+	/**
+	 * Writes a string, or {@code null}
+	 *
+	 * @param value
+	 *            the string
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			writer.write("null");
+		} else {
+			quote(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a number
+	 *
+	 * @param value
+	 *            the number
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter value(long value) throws IOException {
+		separate();
+		writer.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Writes {@code true} or {@code false}
+	 *
+	 * @param value
+	 *            the value
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter value(boolean value) throws IOException {
+		separate();
+		writer.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Ends a value written at the top level with a line feed, so that a
+	 * sequence of values can be read back one line at a time.
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	public JsonWriter newLine() throws IOException {
+		writer.write('\n');
+		return this;
+	}
+
+	/**
+	 * Writes the separator that goes before a value or the name of a member,
+	 * if one is needed.
+	 */
+	private void separate() throws IOException {
+		if (afterName) {
+			afterName = false;
+		} else if (depth > 0) {
+			if (!empty[depth - 1]) {
+				writer.write(',');
+			}
+			empty[depth - 1] = false;
+		}
+	}
+
+	private void open(char bracket) throws IOException {
+		separate();
+		if (depth == empty.length) {
+			empty = Arrays.copyOf(empty, depth * 2);
+		}
+		empty[depth++] = true;
+		writer.write(bracket);
+	}
+
+	/**
+	 * Writes a string in quotes, escaping the characters JSON requires.
+	 */
+	private void quote(String text) throws IOException {
+		writer.write('"');
+		int start = 0;
+		for (int index = 0; index < text.length(); index++) {
+			char character = text.charAt(index);
+			if (character >= ' ' && character != '"' && character != '\\') {
+				continue;
+			}
+			writer.write(text, start, index - start);
+			start = index + 1;
+			switch (character) {
+				case '"' :
+					writer.write("\\\"");
+					break;
+				case '\\' :
+					writer.write("\\\\");
+					break;
+				case '\n' :
+					writer.write("\\n");
+					break;
+				case '\r' :
+					writer.write("\\r");
+					break;
+				case '\t' :
+					writer.write("\\t");
+					break;
+				default :
+					writer.write(String.format("\\u%04x", (int) character));
+			}
+		}
+		writer.write(text, start, text.length() - start);
+		writer.write('"');
+	}
+}
@@ -0,0 +1,585 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A snapshot mapped into memory, from which components, suppliers,
+ * relations and orders are materialized one at a time, the first time they
+ * are needed. Opening a snapshot reads only its header, so the time it takes
+ * does not depend on the size of the company. See {@link CompanySnapshot}
+ * for the layout of the file.
+ *
+ * The collections of the company look up entries they do not hold yet with
+ * {@link #findComponent(int)}, {@link #findSupplier(int)} and
+ * {@link #findOrder(int)}, and get them with {@link #getComponent(int)},
+ * {@link #getSupplier(int)} and {@link #newOrder(int)}. A component or
+ * supplier created here reads its relations back only when they are first
+ * used. Listing a collection materializes all of it.
+ *
+ * Components, suppliers and relations are created holding the lock of the
+ * snapshot and kept by row, so that looking one up never changes the
+ * collections of the company, and two threads asking for the same row get
+ * the same object. The lock is taken last: nothing is locked while holding
+ * it.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class MappedSnapshot {
+	private ByteBuffer buffer;
+	private long epoch;
+	private int componentCount;
+	private int supplierCount;
+	private int relationCount;
+	private int orderCount;
+
+	/**
+	 * Positions in {@code buffer} where each column starts.
+	 */
+	private int componentNumbers;
+	private int componentStocks;
+	private int componentNames;
+	private int componentRelations;
+	private int supplierNumbers;
+	private int supplierNames;
+	private int supplierRelations;
+	private int relationSuppliers;
+	private int relationQuantities;
+	private int relationsBySupplier;
+	private int orderNumbers;
+	private int orderRelations;
+	private int orderQuantities;
+	private int names;
+
+	/**
+	 * The relations materialized so far, keyed on their row, so that both the
+	 * component and the supplier of a relation hold the same object.
+	 */
+	private IntHashMap<ComponentSupplierRelation> relations = new IntHashMap<ComponentSupplierRelation>();
+
+	/**
+	 * The components and suppliers materialized so far, indexed by row.
+	 */
+	private AtomicReferenceArray<Component> components;
+	private AtomicReferenceArray<Supplier> suppliers;
+
+	/**
+	 * Private constructor; snapshots are opened with {@link #map(File)}
+	 *
+	 * @param buffer
+	 *            the contents of the file
+	 */
+	private MappedSnapshot(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Maps the given snapshot into memory and checks its header. A snapshot
+	 * file is never written to or replaced once it has been saved, so the
+	 * mapping stays valid while it is in use; it is released once nothing
+	 * refers to the snapshot any more, which is once every component,
+	 * supplier and order has been read from it and the relations of every
+	 * component and supplier loaded.
+	 *
+	 * @param file
+	 *            a snapshot of the current version
+	 * @return the mapped snapshot
+	 * @throws IOException
+	 *             if the file could not be mapped or is not a snapshot of the
+	 *             current version
+	 */
+	public static MappedSnapshot map(File file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large to map");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		MappedSnapshot snapshot = new MappedSnapshot(buffer);
+		try {
+			snapshot.readHeader();
+		} catch (IndexOutOfBoundsException ioobe) {
+			throw new IOException("Corrupt snapshot", ioobe);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Reads the header and works out where every column starts.
+	 *
+	 * @throws IOException
+	 *             if the header is not that of a snapshot of the current
+	 *             version
+	 */
+	private void readHeader() throws IOException {
+		if (buffer.getInt(0) != CompanySnapshot.MAGIC
+				|| buffer.getShort(4) != CompanySnapshot.VERSION) {
+			throw new IOException("Not a mapped company snapshot");
+		}
+		epoch = buffer.getLong(6);
+		componentCount = buffer.getInt(26);
+		supplierCount = buffer.getInt(30);
+		relationCount = buffer.getInt(34);
+		orderCount = buffer.getInt(38);
+		if (componentCount < 0 || supplierCount < 0 || relationCount < 0
+				|| orderCount < 0) {
+			throw new IOException("Corrupt snapshot");
+		}
+		long position = 42;
+		componentNumbers = column(position);
+		componentStocks = column(position += 4L * componentCount);
+		componentNames = column(position += 4L * componentCount);
+		componentRelations = column(position += 4L * (componentCount + 1));
+		supplierNumbers = column(position += 4L * (componentCount + 1));
+		supplierNames = column(position += 4L * supplierCount);
+		supplierRelations = column(position += 4L * (supplierCount + 1));
+		relationSuppliers = column(position += 4L * (supplierCount + 1));
+		relationQuantities = column(position += 4L * relationCount);
+		relationsBySupplier = column(position += 4L * relationCount);
+		orderNumbers = column(position += 4L * relationCount);
+		orderRelations = column(position += 4L * orderCount);
+		orderQuantities = column(position += 4L * orderCount);
+		names = column(position += 4L * orderCount);
+		if (column(names + (long) buffer.getInt(
+				supplierNames + 4 * supplierCount)) != buffer.limit()) {
+			throw new IOException("Corrupt snapshot");
+		}
+		components = new AtomicReferenceArray<Component>(componentCount);
+		suppliers = new AtomicReferenceArray<Supplier>(supplierCount);
+	}
+
+	/**
+	 * Checks that a column starts within the file.
+	 *
+	 * @param position
+	 *            the position of the column
+	 * @return the position
+	 * @throws IOException
+	 *             if the position is past the end of the file
+	 */
+	private int column(long position) throws IOException {
+		if (position > buffer.limit()) {
+			throw new IOException("Corrupt snapshot");
+		}
+		return (int) position;
+	}
+
+	/**
+	 * Makes the collections of the given company read their entries from
+	 * this snapshot, and the {@code IdGenerator} carry on from where it was
+	 * when the snapshot was written.
+	 *
+	 * @param company
+	 *            an empty company
+	 * @return the epoch of the snapshot
+	 */
+	public long attach(Company company) {
+		IdGenerator.restore(buffer.getInt(14), buffer.getInt(18),
+				buffer.getInt(22));
+		company.getAllComponents().attach(this);
+		company.getAllSuppliers().attach(this);
+		company.getPendingOrders().attach(this);
+		return epoch;
+	}
+
+	/**
+	 * Returns the epoch of the snapshot.
+	 *
+	 * @return the value identifying the snapshot
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Returns the number of components in the snapshot.
+	 *
+	 * @return the number of component rows
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Returns the number of suppliers in the snapshot.
+	 *
+	 * @return the number of supplier rows
+	 */
+	public int getSupplierCount() {
+		return supplierCount;
+	}
+
+	/**
+	 * Returns the number of component-supplier relations in the snapshot.
+	 *
+	 * @return the number of relation rows
+	 */
+	public int getRelationCount() {
+		return relationCount;
+	}
+
+	/**
+	 * Returns the number of outstanding orders in the snapshot.
+	 *
+	 * @return the number of order rows
+	 */
+	public int getOrderCount() {
+		return orderCount;
+	}
+
+	/**
+	 * Returns the number in the ID of the component in the given row.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the number in the ID
+	 */
+	public int getComponentNumber(int row) {
+		return buffer.getInt(componentNumbers + 4 * row);
+	}
+
+	/**
+	 * Returns the stock of the component in the given row.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the stock
+	 */
+	public int getComponentStock(int row) {
+		return buffer.getInt(componentStocks + 4 * row);
+	}
+
+	/**
+	 * Returns the name of the component in the given row.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the name
+	 */
+	public String getComponentName(int row) {
+		return readName(componentNames + 4 * row);
+	}
+
+	/**
+	 * Returns the first relation row of the component in the given row. The
+	 * relations of a component end where those of the next one start, so
+	 * {@code row} may also be the number of components.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the first relation row
+	 */
+	public int getRelationStart(int row) {
+		return buffer.getInt(componentRelations + 4 * row);
+	}
+
+	/**
+	 * Returns the number in the ID of the supplier in the given row.
+	 *
+	 * @param row
+	 *            a supplier row
+	 * @return the number in the ID
+	 */
+	public int getSupplierNumber(int row) {
+		return buffer.getInt(supplierNumbers + 4 * row);
+	}
+
+	/**
+	 * Returns the name of the supplier in the given row.
+	 *
+	 * @param row
+	 *            a supplier row
+	 * @return the name
+	 */
+	public String getSupplierName(int row) {
+		return readName(supplierNames + 4 * row);
+	}
+
+	/**
+	 * Returns the supplier row of the relation in the given row.
+	 *
+	 * @param row
+	 *            a relation row
+	 * @return the supplier row
+	 */
+	public int getRelationSupplier(int row) {
+		return buffer.getInt(relationSuppliers + 4 * row);
+	}
+
+	/**
+	 * Returns the component row of the relation in the given row, which is
+	 * found by a binary search, since relations are stored in the order of
+	 * their components.
+	 *
+	 * @param row
+	 *            a relation row
+	 * @return the component row
+	 */
+	public int getRelationComponent(int row) {
+		int low = 0;
+		int high = componentCount - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (buffer.getInt(componentRelations + 4 * middle) <= row) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the quantity supplied to date of the relation in the given row.
+	 *
+	 * @param row
+	 *            a relation row
+	 * @return the quantity
+	 */
+	public int getRelationQuantity(int row) {
+		return buffer.getInt(relationQuantities + 4 * row);
+	}
+
+	/**
+	 * Returns the number in the ID of the order in the given row.
+	 *
+	 * @param row
+	 *            an order row
+	 * @return the number in the ID
+	 */
+	public int getOrderNumber(int row) {
+		return buffer.getInt(orderNumbers + 4 * row);
+	}
+
+	/**
+	 * Returns the relation row of the order in the given row.
+	 *
+	 * @param row
+	 *            an order row
+	 * @return the relation row
+	 */
+	public int getOrderRelation(int row) {
+		return buffer.getInt(orderRelations + 4 * row);
+	}
+
+	/**
+	 * Returns the quantity of the order in the given row.
+	 *
+	 * @param row
+	 *            an order row
+	 * @return the quantity
+	 */
+	public int getOrderQuantity(int row) {
+		return buffer.getInt(orderQuantities + 4 * row);
+	}
+
+	/**
+	 * Finds the row of the component with the given number in its ID.
+	 *
+	 * @param number
+	 *            the number in the ID
+	 * @return the row, or {@literal -1} if the snapshot has no such component
+	 */
+	public int findComponent(int number) {
+		return search(componentNumbers, componentCount, number);
+	}
+
+	/**
+	 * Finds the row of the supplier with the given number in its ID.
+	 *
+	 * @param number
+	 *            the number in the ID
+	 * @return the row, or {@literal -1} if the snapshot has no such supplier
+	 */
+	public int findSupplier(int number) {
+		return search(supplierNumbers, supplierCount, number);
+	}
+
+	/**
+	 * Finds the row of the order with the given number in its ID.
+	 *
+	 * @param number
+	 *            the number in the ID
+	 * @return the row, or {@literal -1} if the snapshot has no such order
+	 */
+	public int findOrder(int number) {
+		return search(orderNumbers, orderCount, number);
+	}
+
+	/**
+	 * Returns the component in the given row, creating it the first time.
+	 * Its relations are read when they are first used.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the {@code Component} object of the row
+	 */
+	public Component getComponent(int row) {
+		Component component = components.get(row);
+		if (component == null) {
+			synchronized (this) {
+				component = components.get(row);
+				if (component == null) {
+					component = new Component(getComponentNumber(row),
+							getComponentName(row), getComponentStock(row));
+					component.attach(this, row);
+					components.set(row, component);
+				}
+			}
+		}
+		return component;
+	}
+
+	/**
+	 * Returns the component in the given row, if it has been created.
+	 *
+	 * @param row
+	 *            a component row
+	 * @return the {@code Component} object of the row, or {@literal null}
+	 */
+	public Component peekComponent(int row) {
+		return components.get(row);
+	}
+
+	/**
+	 * Returns the supplier in the given row, creating it the first time. Its
+	 * relations are read when they are first used.
+	 *
+	 * @param row
+	 *            a supplier row
+	 * @return the {@code Supplier} object of the row
+	 */
+	public Supplier getSupplier(int row) {
+		Supplier supplier = suppliers.get(row);
+		if (supplier == null) {
+			synchronized (this) {
+				supplier = suppliers.get(row);
+				if (supplier == null) {
+					supplier = new Supplier(getSupplierNumber(row),
+							getSupplierName(row));
+					supplier.attach(this, row);
+					suppliers.set(row, supplier);
+				}
+			}
+		}
+		return supplier;
+	}
+
+	/**
+	 * Creates the order in the given row. Only {@link PendingOrders} calls
+	 * this, once per row.
+	 *
+	 * @param row
+	 *            an order row
+	 * @return the new {@code Order} object
+	 */
+	public Order newOrder(int row) {
+		return new Order(getOrderNumber(row), relation(getOrderRelation(row)),
+				getOrderQuantity(row));
+	}
+
+	/**
+	 * Adds the relations of the component in the given row to it. Only the
+	 * component calls this, holding the lock of the snapshot.
+	 *
+	 * @param component
+	 *            the component created from the row
+	 * @param row
+	 *            a component row
+	 */
+	void loadSupplierRelations(Component component, int row) {
+		int end = buffer.getInt(componentRelations + 4 * (row + 1));
+		for (int relation = buffer.getInt(componentRelations
+				+ 4 * row); relation < end; relation++) {
+			component.restoreSupplierRelation(relation(relation));
+		}
+	}
+
+	/**
+	 * Adds the relations of the supplier in the given row to it. Only the
+	 * supplier calls this, holding the lock of the snapshot.
+	 *
+	 * @param supplier
+	 *            the supplier created from the row
+	 * @param row
+	 *            a supplier row
+	 */
+	void loadComponentRelations(Supplier supplier, int row) {
+		int end = buffer.getInt(supplierRelations + 4 * (row + 1));
+		for (int entry = buffer.getInt(supplierRelations
+				+ 4 * row); entry < end; entry++) {
+			supplier.restoreComponentRelation(
+					relation(buffer.getInt(relationsBySupplier + 4 * entry)));
+		}
+	}
+
+	/**
+	 * Returns the relation in the given row, creating it the first time.
+	 *
+	 * @param row
+	 *            a relation row
+	 * @return the {@code ComponentSupplierRelation} object of the row
+	 */
+	private synchronized ComponentSupplierRelation relation(int row) {
+		ComponentSupplierRelation relation = relations.get(row);
+		if (relation == null) {
+			relation = new ComponentSupplierRelation(
+					getComponent(getRelationComponent(row)),
+					getSupplier(getRelationSupplier(row)),
+					getRelationQuantity(row));
+			relations.put(row, relation);
+		}
+		return relation;
+	}
+
+	/**
+	 * Reads the name whose offsets are at the given position; the name ends
+	 * where the next one starts.
+	 *
+	 * @param position
+	 *            the position of the offset of the name
+	 * @return the name
+	 */
+	private String readName(int position) {
+		int start = buffer.getInt(position);
+		byte[] bytes = new byte[buffer.getInt(position + 4) - start];
+		buffer.get(names + start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Searches an ascending column of numbers.
+	 *
+	 * @param column
+	 *            the position of the column
+	 * @param length
+	 *            the number of values in the column
+	 * @param number
+	 *            the number being searched for
+	 * @return the row holding the number, or {@literal -1}
+	 */
+	private int search(int column, int length, int number) {
+		int low = 0;
+		int high = length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = buffer.getInt(column + 4 * middle);
+			if (value < number) {
+				low = middle + 1;
+			} else if (value > number) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,473 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An index of the names of components or suppliers, which finds the numbers
+ * in their IDs by exact name, by prefix and by a name typed with a few
+ * mistakes. Names are compared without regard to case.
+ *
+ * Every name added gets an entry, numbered in the order it was added. For
+ * exact and prefix searches, the entries are kept sorted by name, apart from
+ * those added since the last search, which are searched linearly until
+ * there are more than {@value #TAIL_LIMIT} of them; then they are sorted and
+ * merged in. For typo-tolerant searches, every entry is listed under each
+ * trigram of its name, that is each sequence of three characters of the
+ * name with two spaces in front. A name within {@code d} edits of the text
+ * searched for lacks at most {@code 3d} of the trigrams of the text, since an
+ * edit changes at most three trigrams. So only the entries listed under one
+ * of the rarest {@code 3d + 1} trigrams of the text are considered, and of
+ * those only the ones listed under enough of its other trigrams, and with
+ * all but {@code d} of its characters, are compared with it.
+ *
+ * The methods of this class may be called from several threads at once.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class NameIndex {
+
+	/**
+	 * Largest number of entries that are searched without being sorted.
+	 */
+	private static final int TAIL_LIMIT = 1024;
+
+	/**
+	 * Shortest text that is searched for with one mistake, and with two.
+	 */
+	private static final int ONE_EDIT_LENGTH = 4;
+	private static final int TWO_EDITS_LENGTH = 8;
+
+	/**
+	 * Largest number of entries sorted by insertion rather than by merging.
+	 */
+	private static final int INSERTION_LIMIT = 16;
+
+	/**
+	 * The name in lower case and the number of every entry.
+	 */
+	private String[] names = new String[16];
+	private int[] numbers = new int[16];
+	private int size;
+
+	/**
+	 * The characters in the name of every entry; see {@link #letters(String)}.
+	 */
+	private long[] letters = new long[16];
+
+	/**
+	 * The entries that were there at the last search, sorted by name and
+	 * then in the order they were added; the entries from {@code sortedSize}
+	 * on have not been sorted yet.
+	 */
+	private int[] sorted = new int[0];
+	private int sortedSize;
+
+	/**
+	 * The entries listed under each trigram; see {@link #trigram(String, int)}.
+	 */
+	private IntHashMap<Postings> trigrams = new IntHashMap<Postings>();
+
+	/**
+	 * The number of trigrams of the text searched for that each entry is
+	 * listed under; zero outside {@link #findSimilar(String, int)}.
+	 */
+	private byte[] counts = new byte[0];
+
+	/**
+	 * Adds a name
+	 *
+	 * @param number
+	 *            the number in the ID of the component or supplier
+	 * @param name
+	 *            its name
+	 */
+	public synchronized void add(int number, String name) {
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			numbers = Arrays.copyOf(numbers, size * 2);
+			letters = Arrays.copyOf(letters, size * 2);
+		}
+		String key = name.toLowerCase(Locale.ROOT);
+		names[size] = key;
+		numbers[size] = number;
+		letters[size] = letters(key);
+		String padded = pad(key);
+		for (int start = 0; start + 3 <= padded.length(); start++) {
+			int gram = trigram(padded, start);
+			Postings postings = trigrams.get(gram);
+			if (postings == null) {
+				trigrams.put(gram, postings = new Postings());
+			}
+			postings.add(size);
+		}
+		size++;
+	}
+
+	/**
+	 * Returns the number of names in the index
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the entries with the given name
+	 *
+	 * @param name
+	 *            the name, in any case
+	 * @param limit
+	 *            the largest number of entries returned
+	 * @return the numbers of the entries, in the order they were added
+	 */
+	public synchronized int[] findExact(String name, int limit) {
+		return find(name.toLowerCase(Locale.ROOT), limit, true);
+	}
+
+	/**
+	 * Finds the entries whose names start with the given text
+	 *
+	 * @param prefix
+	 *            the start of the names, in any case
+	 * @param limit
+	 *            the largest number of entries returned
+	 * @return the numbers of the entries, sorted by name
+	 */
+	public synchronized int[] findPrefix(String prefix, int limit) {
+		return find(prefix.toLowerCase(Locale.ROOT), limit, false);
+	}
+
+	/**
+	 * Finds the entries whose names start with the given text, allowing for
+	 * a few characters of the text being wrong, missing or extra: one if it
+	 * is at least {@value #ONE_EDIT_LENGTH} characters long, two if it is at
+	 * least {@value #TWO_EDITS_LENGTH}. A name matches if some start of it
+	 * is that close to the text, so a name that is just misspelled matches
+	 * too.
+	 *
+	 * @param text
+	 *            the text, in any case
+	 * @param limit
+	 *            the largest number of entries returned
+	 * @return the numbers of the entries, the closest first; among those as
+	 *         close, the shortest names first
+	 */
+	public synchronized int[] findSimilar(String text, int limit) {
+		String key = text.toLowerCase(Locale.ROOT);
+		int edits = key.length() >= TWO_EDITS_LENGTH ? 2
+				: key.length() >= ONE_EDIT_LENGTH ? 1 : 0;
+		if (edits == 0) {
+			return find(key, limit, false);
+		}
+		String padded = pad(key);
+		ArrayList<Postings> lists = new ArrayList<Postings>();
+		int[] seen = new int[padded.length()];
+		for (int start = 0; start + 3 <= padded.length(); start++) {
+			int gram = trigram(padded, start);
+			int previous = 0;
+			while (previous < lists.size() && seen[previous] != gram) {
+				previous++;
+			}
+			if (previous == lists.size()) {
+				seen[previous] = gram;
+				Postings postings = trigrams.get(gram);
+				lists.add(postings != null ? postings : new Postings());
+			}
+		}
+		lists.sort((first, second) -> first.size - second.size);
+
+		// Every match is listed under one of the rarest 3d + 1 trigrams, under
+		// all but 3d of the trigrams counted, and has all but d of the
+		// characters. Counting is cheap next to comparing names, as the lists
+		// are read in order.
+		int rarest = Math.min(lists.size(), 3 * edits + 1);
+		int counted = Math.min(lists.size(), Byte.MAX_VALUE);
+		int needed = Math.max(1, counted - 3 * edits);
+		long wanted = letters(key);
+		if (counts.length < size) {
+			counts = new byte[names.length];
+		}
+		if (needed > 1) {
+			for (Postings postings : lists.subList(0, counted)) {
+				for (int index = 0; index < postings.size; index++) {
+					counts[postings.entries[index]]++;
+				}
+			}
+		}
+		long[] matches = new long[16];
+		int count = 0;
+		for (Postings postings : lists.subList(0, rarest)) {
+			for (int index = 0; index < postings.size; index++) {
+				int entry = postings.entries[index];
+				if (counts[entry] < 0 || needed > 1 && counts[entry] < needed) {
+					continue;
+				}
+				counts[entry] = -1;
+				if (Long.bitCount(wanted & ~letters[entry]) > edits) {
+					continue;
+				}
+				int distance = prefixDistance(key, names[entry], edits);
+				if (distance <= edits) {
+					if (count == matches.length) {
+						matches = Arrays.copyOf(matches, count * 2);
+					}
+					matches[count++] = (long) distance << 56
+							| (long) Math.min(names[entry].length(), 0xffffff) << 32
+							| entry;
+				}
+			}
+		}
+		for (Postings postings : lists.subList(0, needed > 1 ? counted : rarest)) {
+			for (int index = 0; index < postings.size; index++) {
+				counts[postings.entries[index]] = 0;
+			}
+		}
+		Arrays.sort(matches, 0, count);
+		int[] found = new int[Math.min(count, limit)];
+		for (int index = 0; index < found.length; index++) {
+			found[index] = numbers[(int) matches[index]];
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the entries whose names equal or start with the given text. The
+	 * entries added since the last search are sorted and merged in first, if
+	 * there are too many of them to be searched linearly.
+	 */
+	private int[] find(String key, int limit, boolean exact) {
+		if (size - sortedSize > TAIL_LIMIT) {
+			merge();
+		}
+		int[] found = new int[Math.max(0, Math.min(limit, size))];
+		int count = 0;
+		int low = 0;
+		int high = sortedSize;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (names[sorted[middle]].compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		for (int position = low; position < sortedSize
+				&& count < found.length; position++) {
+			String name = names[sorted[position]];
+			if (exact ? !name.equals(key) : !name.startsWith(key)) {
+				break;
+			}
+			found[count++] = sorted[position];
+		}
+		int fromSorted = count;
+		for (int entry = sortedSize; entry < size; entry++) {
+			if (exact ? names[entry].equals(key)
+					: names[entry].startsWith(key)) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count + 1);
+				}
+				found[count++] = entry;
+			}
+		}
+		if (count > fromSorted) {
+			sort(found, 0, count, new int[count]);
+		}
+		int[] result = new int[Math.min(count, limit)];
+		for (int index = 0; index < result.length; index++) {
+			result[index] = numbers[found[index]];
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the entries added since the last merge and merges them into the
+	 * sorted ones.
+	 */
+	private void merge() {
+		int[] tail = new int[size - sortedSize];
+		for (int index = 0; index < tail.length; index++) {
+			tail[index] = sortedSize + index;
+		}
+		sort(tail, 0, tail.length, new int[tail.length]);
+		int[] merged = new int[size];
+		int left = 0;
+		int right = 0;
+		for (int index = 0; index < size; index++) {
+			if (right == tail.length || left < sortedSize
+					&& compare(sorted[left], tail[right]) < 0) {
+				merged[index] = sorted[left++];
+			} else {
+				merged[index] = tail[right++];
+			}
+		}
+		sorted = merged;
+		sortedSize = size;
+	}
+
+	/**
+	 * Sorts part of an array of entries by {@link #compare(int, int)}, with a
+	 * merge sort that works on the entries themselves rather than on boxed
+	 * copies of them.
+	 *
+	 * @param entries
+	 *            the entries
+	 * @param from
+	 *            the first position to be sorted
+	 * @param to
+	 *            the position after the last one to be sorted
+	 * @param spare
+	 *            an array at least as long as {@code to}, used while merging
+	 */
+	private void sort(int[] entries, int from, int to, int[] spare) {
+		if (to - from <= INSERTION_LIMIT) {
+			for (int position = from + 1; position < to; position++) {
+				int entry = entries[position];
+				int before = position;
+				while (before > from && compare(entries[before - 1], entry) > 0) {
+					entries[before] = entries[before - 1];
+					before--;
+				}
+				entries[before] = entry;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(entries, from, middle, spare);
+		sort(entries, middle, to, spare);
+		if (compare(entries[middle - 1], entries[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(entries, from, spare, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int position = from; position < to; position++) {
+			if (right == to
+					|| left < middle && compare(spare[left], spare[right]) <= 0) {
+				entries[position] = spare[left++];
+			} else {
+				entries[position] = spare[right++];
+			}
+		}
+	}
+
+	/**
+	 * Orders entries by name, and then in the order they were added.
+	 */
+	private int compare(int first, int second) {
+		int order = names[first].compareTo(names[second]);
+		return order != 0 ? order : Integer.compare(first, second);
+	}
+
+	/**
+	 * Returns the smallest number of edits that turn the text into a start
+	 * of the name, or a number larger than {@code limit} once it is clear
+	 * that it is larger. Only the band of the usual dynamic programming table
+	 * within {@code limit} of its diagonal is filled in.
+	 *
+	 * @param text
+	 *            the text searched for
+	 * @param name
+	 *            the name of an entry
+	 * @param limit
+	 *            the largest number of edits of interest
+	 * @return the number of edits
+	 */
+	static int prefixDistance(String text, String name, int limit) {
+		int columns = Math.min(name.length(), text.length() + limit);
+		int[] previous = new int[columns + 1];
+		int[] current = new int[columns + 1];
+		int outside = limit + 1;
+		for (int column = 0; column <= columns; column++) {
+			previous[column] = column <= limit ? column : outside;
+		}
+		for (int row = 1; row <= text.length(); row++) {
+			int first = Math.max(1, row - limit);
+			int last = Math.min(columns, row + limit);
+			current[first - 1] = first == 1 ? row : outside;
+			int smallest = current[first - 1];
+			for (int column = first; column <= last; column++) {
+				int cost = text.charAt(row - 1) == name.charAt(column - 1) ? 0
+						: 1;
+				int distance = Math.min(previous[column - 1] + cost,
+						Math.min(previous[column], current[column - 1]) + 1);
+				current[column] = Math.min(distance, outside);
+				smallest = Math.min(smallest, current[column]);
+			}
+			if (last < columns) {
+				current[last + 1] = outside;
+			}
+			if (smallest > limit) {
+				return outside;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		int best = outside;
+		for (int column = Math.max(0, text.length() - limit); column <= columns; column++) {
+			best = Math.min(best, previous[column]);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns a set of the characters in a name, with a bit for each letter
+	 * and digit and the other characters sharing the remaining bits. A name
+	 * within {@code d} edits of the text searched for, or with a start that
+	 * is, lacks at most {@code d} of the bits of the text.
+	 */
+	private static long letters(String key) {
+		long set = 0;
+		for (int index = 0; index < key.length(); index++) {
+			char character = key.charAt(index);
+			if (character >= 'a' && character <= 'z') {
+				set |= 1L << character - 'a';
+			} else if (character >= '0' && character <= '9') {
+				set |= 1L << character - '0' + 26;
+			} else {
+				set |= 1L << 36 + character % 28;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Puts the two spaces in front of a name that make its first characters
+	 * part of trigrams of their own.
+	 */
+	private static String pad(String key) {
+		return "  " + key;
+	}
+
+	/**
+	 * Packs the three characters at the given position into one value. The
+	 * value is different for every trigram of characters below
+	 * {@code '\u0400'}; other trigrams may share a value, which only makes
+	 * more entries be compared with the text searched for.
+	 */
+	private static int trigram(String padded, int start) {
+		return padded.charAt(start) << 20 ^ padded.charAt(start + 1) << 10
+				^ padded.charAt(start + 2);
+	}
+
+	/**
+	 * The entries listed under one trigram, in the order they were added.
+	 */
+	private static class Postings {
+		private int[] entries = new int[4];
+		private int size;
+
+		private void add(int entry) {
+			if (size > 0 && entries[size - 1] == entry) {
+				return;
+			}
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			entries[size++] = entry;
+		}
+	}
+}
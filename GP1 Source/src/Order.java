@@ -1,76 +1,128 @@
-import java.io.Serializable;
-
-/**
- * This class represents a single order.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class Order implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private ComponentSupplierRelation relation;
-	private int quantity;
-	private String id;
-
-	/**
-	 * Constant {@code String} value that is placed in the beginning of every
-	 * {@code id} to indicate that this {@code String} represents an
-	 * {@code Order}.
-	 */
-	private static final String ORDER_MARKER = "O";
-
-	/**
-	 * Represents a single component
-	 * 
-	 * @param relation
-	 *            a ComponentSupplierRelation, containing the component being
-	 *            ordered and the supplier supplying the order
-	 * @param quantity
-	 *            the quantity being ordered
-	 */
-	public Order(ComponentSupplierRelation relation, int quantity) {
-		this.relation = relation;
-		this.quantity = quantity;
-		this.id = ORDER_MARKER + IdGenerator.instance().getOrderId();
-	}
-
-	/**
-	 * Returns the identification of the order.
-	 * 
-	 * @return {@code id}.
-	 */
-	public String getId() {
-		return id;
-	}
-
-	/**
-	 * Returns the order quantity.
-	 * 
-	 * @return {@code quantity}.
-	 */
-	public int getQuantity() {
-		return quantity;
-	}
-
-	/**
-	 * Returns a {@code ComponentSupplierRelation}, a relation containing the
-	 * ordered component and the providing supplier.
-	 * 
-	 * @return {@code relation}.
-	 */
-	public ComponentSupplierRelation getRelation() {
-		return relation;
-	}
-
-	/**
-	 * A string representation of the order
-	 */
-	@Override
-	public String toString() {
-		return "Order ID: " + id + "\nComponent ID: "
-				+ relation.getComponent().getId() + "\nSupplier ID: "
-				+ relation.getSupplier().getId() + "\nQuantity ordered: "
-				+ quantity;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This class represents a single order.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class Order implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private ComponentSupplierRelation relation;
+	private int quantity;
+
+	/**
+	 * The number in the ID of the order; see {@link EntityId}.
+	 */
+	private int number;
+
+	/**
+	 * Represents a single component
+	 * 
+	 * @param relation
+	 *            a ComponentSupplierRelation, containing the component being
+	 *            ordered and the supplier supplying the order
+	 * @param quantity
+	 *            the quantity being ordered
+	 */
+	public Order(ComponentSupplierRelation relation, int quantity) {
+		this.relation = relation;
+		this.quantity = quantity;
+		this.number = IdGenerator.instance().getOrderId();
+	}
+
+	/**
+	 * Represents a single order whose ID has already been issued, such as one
+	 * read back from a snapshot.
+	 * 
+	 * @param number
+	 *            the number in the ID of the order
+	 * @param relation
+	 *            a ComponentSupplierRelation, containing the component being
+	 *            ordered and the supplier supplying the order
+	 * @param quantity
+	 *            the quantity being ordered
+	 */
+	Order(int number, ComponentSupplierRelation relation, int quantity) {
+		this.relation = relation;
+		this.quantity = quantity;
+		this.number = number;
+	}
+
+	/**
+	 * Returns the identification of the order, in its text form.
+	 * 
+	 * @return the ID, such as {@code O99}.
+	 */
+	public String getId() {
+		return EntityId.format(getEntityId());
+	}
+
+	/**
+	 * Returns the identification of the order, packed as described in
+	 * {@link EntityId}.
+	 * 
+	 * @return the packed ID.
+	 */
+	public long getEntityId() {
+		return EntityId.of(EntityId.ORDER, number);
+	}
+
+	/**
+	 * Returns the number in the identification of the order.
+	 * 
+	 * @return {@code number}.
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * Returns the order quantity.
+	 * 
+	 * @return {@code quantity}.
+	 */
+	public int getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Returns a {@code ComponentSupplierRelation}, a relation containing the
+	 * ordered component and the providing supplier.
+	 * 
+	 * @return {@code relation}.
+	 */
+	public ComponentSupplierRelation getRelation() {
+		return relation;
+	}
+
+	/**
+	 * Writes the order as a JSON object
+	 * 
+	 * @param json
+	 *            the destination of the order
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeJson(JsonWriter json) throws IOException {
+		json.beginObject();
+		json.name("id").value(getId());
+		json.name("component").value(relation.getComponent().getId());
+		json.name("supplier").value(relation.getSupplier().getId());
+		json.name("quantity").value(quantity);
+		json.endObject();
+	}
+
+	/**
+	 * A string representation of the order
+	 */
+	@Override
+	public String toString() {
+		return "Order ID: " + getId() + "\nComponent ID: "
+				+ relation.getComponent().getId() + "\nSupplier ID: "
+				+ relation.getSupplier().getId() + "\nQuantity ordered: "
+				+ quantity;
+	}
+}
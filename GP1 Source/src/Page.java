@@ -0,0 +1,74 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A bounded slice of a listing, together with the cursor from which the next
+ * slice can be fetched. See {@link ComponentList#page(int, int)},
+ * {@link SupplierList#page(int, int)} and
+ * {@link PendingOrders#page(int, int)}.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ * @param <E>
+ *            the type of the items listed
+ */
+public class Page<E> implements Iterable<E> {
+	private List<E> items;
+	private int nextCursor;
+	private boolean more;
+
+	/**
+	 * Creates a page
+	 *
+	 * @param items
+	 *            the items on the page
+	 * @param nextCursor
+	 *            the cursor of the following page
+	 * @param more
+	 *            whether there were items after this page when it was taken
+	 */
+	public Page(List<E> items, int nextCursor, boolean more) {
+		this.items = Collections.unmodifiableList(items);
+		this.nextCursor = nextCursor;
+		this.more = more;
+	}
+
+	/**
+	 * Returns the items on this page
+	 *
+	 * @return an unmodifiable list of the items
+	 */
+	public List<E> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the cursor to pass back to fetch the following page. The cursor
+	 * stays valid while items are added to or removed from the listing.
+	 *
+	 * @return the cursor of the following page
+	 */
+	public int getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Tells whether the listing had more items after this page when it was
+	 * taken
+	 *
+	 * @return true iff another page is available
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	/**
+	 * Returns an iterator over the items on this page
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return items.iterator();
+	}
+}
@@ -1,95 +1,502 @@
-import java.io.Serializable;
-import java.util.LinkedList;
-
-/**
- * The collection class for outstanding orders. An outstanding order is an
- * {@code Order} that has not been fulfilled. If an order is fulfilled, then it
- * is removed the {@code PendingOrders} list. See
- * {@link Company#fulfillOrder(String)} and {@link PendingOrders#remove(Order)}
- * for more information.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class PendingOrders implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private LinkedList<Order> pendingOrderList = new LinkedList<Order>();
-	private static PendingOrders pendingOrders;
-
-	/*
-	 * Private constructor for singleton pattern
-	 * 
-	 */
-	private PendingOrders() {
-	}
-
-	/**
-	 * Supports the singleton pattern
-	 * 
-	 * @return the singleton object
-	 */
-	public static PendingOrders instance() {
-		if (pendingOrders == null) {
-			return (pendingOrders = new PendingOrders());
-		} else {
-			return pendingOrders;
-		}
-	}
-
-	/**
-	 * Inserts a given order to the list of orders
-	 * 
-	 * @param order
-	 *            order to be inserted
-	 * @return {@literal true}, if insertion was successful. Otherwise,
-	 *         {@literal false}.
-	 */
-	public boolean insert(Order order) {
-		return pendingOrderList.add(order);
-	}
-
-	/**
-	 * Removes a given order from the list of orders
-	 * 
-	 * @param order
-	 *            order to be removed
-	 * @return true, if the collection contained the given order
-	 */
-	public boolean remove(Order order) {
-		return pendingOrderList.remove(order);
-	}
-
-	/**
-	 * Searches the collection for an order with the given ID.
-	 * 
-	 * @param orderID
-	 *            the ID being searched for
-	 * @return an {@code Order} object whose {@code id} matches with
-	 *         {@code orderID}, if one is found. Otherwise, {@literal null}.
-	 */
-	public Order search(String orderID) {
-		for (Order order : pendingOrderList) {
-			if (order.getId().equals(orderID)) {
-				return order;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Returns a string representation of all outstanding orders.
-	 */
-	@Override
-	public String toString() {
-		String output = "Outstanding orders: \n";
-		for (Order order : pendingOrderList) {
-			ComponentSupplierRelation relation = order.getRelation();
-			output += "Order number: " + order.getId() + " | Component: "
-					+ relation.getComponent().getName() + " | Supplier: "
-					+ relation.getSupplier().getName() + " | Quantity ordered: "
-					+ order.getQuantity() + "\n";
-		}
-		return output;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The collection class for outstanding orders. An outstanding order is an
+ * {@code Order} that has not been fulfilled. If an order is fulfilled, then it
+ * is removed the {@code PendingOrders} list. See
+ * {@link Company#fulfillOrder(String)} and {@link PendingOrders#remove(Order)}
+ * for more information.
+ * 
+ * The methods of this class may be called from several threads at once. A
+ * thread iterating over the collection must hold its lock, as in
+ * {@code synchronized (pendingOrders)}. The number and quantity of the
+ * orders of a component or supplier are kept up to date as orders are placed
+ * and fulfilled, and are read without the lock, so that asking for them
+ * does not wait for orders being placed or fulfilled.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class PendingOrders implements Serializable, Iterable<Order> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The outstanding orders, keyed on the number in their ID and kept in the
+	 * order they were placed.
+	 */
+	private IntHashMap<Order> pendingOrderList = new IntHashMap<Order>();
+
+	/**
+	 * The snapshot the orders not yet in {@code pendingOrderList} are read
+	 * from, until all of them have been read, and the rows of the snapshot
+	 * that have been read, including those of orders fulfilled since.
+	 */
+	private transient MappedSnapshot snapshot;
+	private transient BitSet read;
+
+	/**
+	 * The orders placed since the last save that are still outstanding, and
+	 * those fulfilled since that were placed before it, keyed on the number
+	 * in their ID; see {@link DeltaSegment}. An order placed and fulfilled
+	 * between two saves is in neither.
+	 */
+	private transient IntHashMap<Order> placed = new IntHashMap<Order>();
+	private transient IntHashMap<Order> fulfilled = new IntHashMap<Order>();
+
+	/**
+	 * The number and the total quantity of the outstanding orders of every
+	 * component and of every supplier that has any, keyed on the number in
+	 * their ID. They are changed holding the lock, whenever an order is
+	 * inserted or removed and when a snapshot is attached, by putting a new
+	 * {@code Total} in place of the old one, so that they can be read
+	 * without the lock.
+	 */
+	private transient Map<Integer, Total> componentTotals = new ConcurrentHashMap<Integer, Total>();
+	private transient Map<Integer, Total> supplierTotals = new ConcurrentHashMap<Integer, Total>();
+	private static PendingOrders pendingOrders;
+
+	/*
+	 * Private constructor for singleton pattern
+	 * 
+	 */
+	private PendingOrders() {
+	}
+
+	/**
+	 * Supports the singleton pattern
+	 * 
+	 * @return the singleton object
+	 */
+	public static PendingOrders instance() {
+		if (pendingOrders == null) {
+			return (pendingOrders = new PendingOrders());
+		} else {
+			return pendingOrders;
+		}
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} creates an empty collection. Used when the company
+	 * is being rebuilt from disk.
+	 */
+	static void reset() {
+		pendingOrders = null;
+	}
+
+	/**
+	 * Inserts a given order to the list of orders
+	 * 
+	 * @param order
+	 *            order to be inserted
+	 * @return {@literal true}, if insertion was successful. Otherwise,
+	 *         {@literal false}.
+	 */
+	public synchronized boolean insert(Order order) {
+		if (pendingOrderList.put(order.getNumber(), order)) {
+			placed.put(order.getNumber(), order);
+			count(order, 1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a given order from the list of orders
+	 * 
+	 * @param order
+	 *            order to be removed
+	 * @return true, if the collection contained the given order
+	 */
+	public synchronized boolean remove(Order order) {
+		int key = order.getNumber();
+		if (pendingOrderList.get(key) != order) {
+			return false;
+		}
+		pendingOrderList.remove(key);
+		removed(order);
+		return true;
+	}
+
+	/**
+	 * Removes the order with the given ID from the list of orders
+	 * 
+	 * @param orderID
+	 *            the ID of the order to be removed
+	 * @return the removed {@code Order}, if one was found. Otherwise,
+	 *         {@literal null}.
+	 */
+	public synchronized Order remove(String orderID) {
+		return remove(EntityId.parse(orderID));
+	}
+
+	/**
+	 * Removes the order with the given packed ID from the list of orders
+	 * 
+	 * @param orderId
+	 *            the ID of the order to be removed, packed as described in
+	 *            {@link EntityId}
+	 * @return the removed {@code Order}, if one was found. Otherwise,
+	 *         {@literal null}.
+	 */
+	public synchronized Order remove(long orderId) {
+		if (EntityId.type(orderId) != EntityId.ORDER
+				|| get(EntityId.number(orderId)) == null) {
+			return null;
+		}
+		Order order = pendingOrderList.remove(EntityId.number(orderId));
+		removed(order);
+		return order;
+	}
+
+	/**
+	 * Records that an order has been removed since the last save, and takes
+	 * it out of the totals.
+	 * 
+	 * @param order
+	 *            the order removed
+	 */
+	private void removed(Order order) {
+		if (placed.remove(order.getNumber()) == null) {
+			fulfilled.put(order.getNumber(), order);
+		}
+		count(order, -1);
+	}
+
+	/**
+	 * Returns the number of outstanding orders for a component. Takes
+	 * constant time, and does not take the lock of the collection.
+	 * 
+	 * @param component
+	 *            the component
+	 * @return the number of orders
+	 */
+	public int getOrderCount(Component component) {
+		Total total = componentTotals.get(component.getNumber());
+		return total != null ? total.orders : 0;
+	}
+
+	/**
+	 * Returns the quantity of a component on order. Takes constant time,
+	 * and does not take the lock of the collection.
+	 * 
+	 * @param component
+	 *            the component
+	 * @return the total quantity of its outstanding orders
+	 */
+	public long getQuantity(Component component) {
+		Total total = componentTotals.get(component.getNumber());
+		return total != null ? total.quantity : 0;
+	}
+
+	/**
+	 * Returns the number of outstanding orders with a supplier. Takes
+	 * constant time, and does not take the lock of the collection.
+	 * 
+	 * @param supplier
+	 *            the supplier
+	 * @return the number of orders
+	 */
+	public int getOrderCount(Supplier supplier) {
+		Total total = supplierTotals.get(supplier.getNumber());
+		return total != null ? total.orders : 0;
+	}
+
+	/**
+	 * Returns the quantity on order with a supplier. Takes constant time,
+	 * and does not take the lock of the collection.
+	 * 
+	 * @param supplier
+	 *            the supplier
+	 * @return the total quantity of its outstanding orders
+	 */
+	public long getQuantity(Supplier supplier) {
+		Total total = supplierTotals.get(supplier.getNumber());
+		return total != null ? total.quantity : 0;
+	}
+
+	/**
+	 * Adds an order to the totals of its component and its supplier, or
+	 * takes it out of them.
+	 * 
+	 * @param order
+	 *            the order
+	 * @param sign
+	 *            {@literal 1} to add the order, {@literal -1} to take it out
+	 */
+	private void count(Order order, int sign) {
+		ComponentSupplierRelation relation = order.getRelation();
+		count(componentTotals, relation.getComponent().getNumber(), sign,
+				sign * (long) order.getQuantity());
+		count(supplierTotals, relation.getSupplier().getNumber(), sign,
+				sign * (long) order.getQuantity());
+	}
+
+	/**
+	 * Adds the orders in the attached snapshot to the totals, without
+	 * creating them. The caller must hold the lock of the collection.
+	 */
+	private void countSnapshot() {
+		for (int row = 0; row < snapshot.getOrderCount(); row++) {
+			int relation = snapshot.getOrderRelation(row);
+			long quantity = snapshot.getOrderQuantity(row);
+			count(componentTotals, snapshot.getComponentNumber(
+					snapshot.getRelationComponent(relation)), 1, quantity);
+			count(supplierTotals, snapshot.getSupplierNumber(
+					snapshot.getRelationSupplier(relation)), 1, quantity);
+		}
+	}
+
+	/**
+	 * Adds a number of orders and a quantity to one total, dropping the total
+	 * once it counts no orders.
+	 */
+	private static void count(Map<Integer, Total> totals, int number,
+			int orders, long quantity) {
+		Total total = totals.get(number);
+		if (total != null) {
+			orders += total.orders;
+			quantity += total.quantity;
+		}
+		if (orders == 0) {
+			totals.remove(number);
+		} else {
+			totals.put(number, new Total(orders, quantity));
+		}
+	}
+
+	/**
+	 * Returns the orders placed since the last save that are still
+	 * outstanding. The caller must hold the lock of the collection while
+	 * using the result.
+	 * 
+	 * @return the orders, in the order they were placed
+	 */
+	IntHashMap<Order> getPlaced() {
+		return placed;
+	}
+
+	/**
+	 * Returns the orders fulfilled since the last save that had been placed
+	 * before it. The caller must hold the lock of the collection while using
+	 * the result.
+	 * 
+	 * @return the orders, in the order they were fulfilled
+	 */
+	IntHashMap<Order> getFulfilled() {
+		return fulfilled;
+	}
+
+	/**
+	 * Forgets the orders placed and fulfilled, once they have been saved.
+	 */
+	synchronized void clearChanges() {
+		placed = new IntHashMap<Order>();
+		fulfilled = new IntHashMap<Order>();
+	}
+
+	/**
+	 * Searches the collection for an order with the given ID.
+	 * 
+	 * @param orderID
+	 *            the ID being searched for
+	 * @return an {@code Order} object whose {@code id} matches with
+	 *         {@code orderID}, if one is found. Otherwise, {@literal null}.
+	 */
+	public synchronized Order search(String orderID) {
+		return search(EntityId.parse(orderID));
+	}
+
+	/**
+	 * Searches the collection for an order with the given packed ID.
+	 * 
+	 * @param orderId
+	 *            the ID being searched for, packed as described in
+	 *            {@link EntityId}
+	 * @return an {@code Order} object with the matching ID, if one is found.
+	 *         Otherwise, {@literal null}.
+	 */
+	public synchronized Order search(long orderId) {
+		if (EntityId.type(orderId) != EntityId.ORDER) {
+			return null;
+		}
+		return get(EntityId.number(orderId));
+	}
+
+	/**
+	 * Returns the outstanding order with the given number in its ID, reading
+	 * it from the snapshot the first time it is asked for.
+	 * 
+	 * @param number
+	 *            the number in the ID
+	 * @return the {@code Order} object, if one is outstanding. Otherwise,
+	 *         {@literal null}.
+	 */
+	private Order get(int number) {
+		Order order = pendingOrderList.get(number);
+		if (order == null && snapshot != null) {
+			int row = snapshot.findOrder(number);
+			if (row >= 0 && !read.get(row)) {
+				read.set(row);
+				order = snapshot.newOrder(row);
+				pendingOrderList.put(number, order);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Makes the collection read the orders it does not hold from the given
+	 * snapshot, as they are asked for, and adds them to the totals.
+	 * 
+	 * @param snapshot
+	 *            the snapshot the collection was saved in
+	 */
+	synchronized void attach(MappedSnapshot snapshot) {
+		this.snapshot = snapshot;
+		read = new BitSet();
+		countSnapshot();
+	}
+
+	/**
+	 * Reads all orders that have not been asked for yet from the snapshot,
+	 * so that the collection lists them in the order of their IDs, followed
+	 * by those placed since the snapshot was taken.
+	 */
+	synchronized void load() {
+		if (snapshot == null) {
+			return;
+		}
+		IntHashMap<Order> loaded = new IntHashMap<Order>();
+		for (int row = 0; row < snapshot.getOrderCount(); row++) {
+			int number = snapshot.getOrderNumber(row);
+			Order order = read.get(row) ? pendingOrderList.get(number)
+					: snapshot.newOrder(row);
+			if (order != null) {
+				loaded.put(number, order);
+			}
+		}
+		for (Order order : pendingOrderList) {
+			loaded.put(order.getNumber(), order);
+		}
+		pendingOrderList = loaded;
+		snapshot = null;
+		read = null;
+	}
+
+	/**
+	 * Returns the number of outstanding orders in the collection.
+	 * 
+	 * @return the size of the collection
+	 */
+	public synchronized int size() {
+		load();
+		return pendingOrderList.size();
+	}
+
+	/**
+	 * Returns at most {@code pageSize} outstanding orders, in the order they
+	 * were placed, starting at the given cursor. Pass {@literal 0} for the
+	 * first page and the next cursor of the previous page afterwards; orders
+	 * fulfilled in between do not shift the pages that follow.
+	 * 
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of orders returned
+	 * @return the orders and the cursor of the following page
+	 */
+	public synchronized Page<Order> page(int cursor, int pageSize) {
+		load();
+		return pendingOrderList.page(cursor, pageSize);
+	}
+
+	/**
+	 * Returns an iterator over the outstanding orders, in the order they were
+	 * inserted.
+	 */
+	@Override
+	public Iterator<Order> iterator() {
+		load();
+		return pendingOrderList.iterator();
+	}
+
+	/**
+	 * Writes all outstanding orders to the given writer, one line per order,
+	 * without building the listing in memory.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public synchronized void write(Writer writer) throws IOException {
+		load();
+		writer.write("Outstanding orders: \n");
+		for (Order order : pendingOrderList) {
+			write(writer, order);
+		}
+	}
+
+	/**
+	 * Writes one outstanding order to the given writer, as a line of the
+	 * listing of outstanding orders.
+	 * 
+	 * @param writer
+	 *            the destination of the line
+	 * @param order
+	 *            the order being listed
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public static void write(Writer writer, Order order) throws IOException {
+		ComponentSupplierRelation relation = order.getRelation();
+		writer.write("Order number: ");
+		writer.write(order.getId());
+		writer.write(" | Component: ");
+		writer.write(relation.getComponent().getName());
+		writer.write(" | Supplier: ");
+		writer.write(relation.getSupplier().getName());
+		writer.write(" | Quantity ordered: ");
+		writer.write(Integer.toString(order.getQuantity()));
+		writer.write('\n');
+	}
+
+	/**
+	 * Returns a string representation of all outstanding orders.
+	 */
+	@Override
+	public synchronized String toString() {
+		StringWriter output = new StringWriter();
+		try {
+			write(output);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return output.toString();
+	}
+
+	/**
+	 * The number and the total quantity of the outstanding orders of one
+	 * component or supplier. A total is never changed, but replaced, so that
+	 * a reader always sees both of its values as they were set together.
+	 */
+	private static class Total {
+		private final int orders;
+		private final long quantity;
+
+		private Total(int orders, long quantity) {
+			this.orders = orders;
+			this.quantity = quantity;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * The relations of one component or one supplier, keyed on the other side of
+ * each relation. Most components and suppliers have only a few relations, so
+ * they are kept in a plain array, in the order they were added, and searched
+ * linearly. Once there are more than {@value #LINEAR_LIMIT} of them, a hash
+ * index is built over the array as well.
+ *
+ * A relation is put in place before the size is raised, and the array and
+ * the size are volatile, so one thread may list the relations while another
+ * adds one, as the {@link ReplenishmentEngine} does; it sees the relations
+ * added before it read the size. Looking a relation up by its key still
+ * needs the index to be left alone meanwhile.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class RelationIndex implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Largest number of relations that are searched without a hash index.
+	 */
+	private static final int LINEAR_LIMIT = 8;
+
+	private static final ComponentSupplierRelation[] NONE = new ComponentSupplierRelation[0];
+
+	/**
+	 * Whether relations are keyed on their supplier, as they are for a
+	 * component, rather than on their component.
+	 */
+	private final boolean bySupplier;
+	private volatile ComponentSupplierRelation[] relations = NONE;
+	private volatile int size;
+	private HashMap<Object, ComponentSupplierRelation> index;
+
+	/**
+	 * Creates an empty index
+	 *
+	 * @param bySupplier
+	 *            true for the relations of a component, which are keyed on
+	 *            their supplier; false for those of a supplier
+	 */
+	public RelationIndex(boolean bySupplier) {
+		this.bySupplier = bySupplier;
+	}
+
+	/**
+	 * Returns the relation with the given supplier or component
+	 *
+	 * @param key
+	 *            the other side of the relation
+	 * @return the relation, if there is one. Otherwise, {@literal null}.
+	 */
+	public ComponentSupplierRelation get(Object key) {
+		if (index != null) {
+			return index.get(key);
+		}
+		int count = size;
+		ComponentSupplierRelation[] current = relations;
+		for (int position = 0; position < count; position++) {
+			if (keyOf(current[position]) == key) {
+				return current[position];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a relation, unless there already is one with the same key
+	 *
+	 * @param relation
+	 *            the relation to be added
+	 * @return true iff the relation was added
+	 */
+	public boolean add(ComponentSupplierRelation relation) {
+		if (get(keyOf(relation)) != null) {
+			return false;
+		}
+		int count = size;
+		ComponentSupplierRelation[] current = relations;
+		if (count == current.length) {
+			current = Arrays.copyOf(current, Math.max(2, count + (count >> 1)));
+		}
+		current[count++] = relation;
+		relations = current;
+		size = count;
+		if (index != null) {
+			index.put(keyOf(relation), relation);
+		} else if (count > LINEAR_LIMIT) {
+			index = new HashMap<Object, ComponentSupplierRelation>(count * 2);
+			for (int position = 0; position < count; position++) {
+				index.put(keyOf(current[position]), current[position]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of relations
+	 *
+	 * @return the size of the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a read-only view of the relations, in the order they were added
+	 *
+	 * @return the relations
+	 */
+	public Collection<ComponentSupplierRelation> values() {
+		return new AbstractList<ComponentSupplierRelation>() {
+			@Override
+			public ComponentSupplierRelation get(int position) {
+				if (position >= size) {
+					throw new IndexOutOfBoundsException();
+				}
+				return relations[position];
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the relations, in the order they were added
+	 *
+	 * @return the iterator
+	 */
+	public Iterator<ComponentSupplierRelation> iterator() {
+		return values().iterator();
+	}
+
+	/**
+	 * Returns the key of a relation
+	 *
+	 * @param relation
+	 *            a relation of this index
+	 * @return its supplier or its component
+	 */
+	private Object keyOf(ComponentSupplierRelation relation) {
+		return bySupplier ? relation.getSupplier() : relation.getComponent();
+	}
+}
@@ -0,0 +1,335 @@
+import java.util.List;
+
+/**
+ * Places orders for components that are running out, on a background thread.
+ * Every component may be given a reorder policy: a reorder point and a
+ * reorder quantity. Once the stock of the component, together with what it
+ * has on order from any supplier, however the orders were placed, is at or
+ * below the reorder point, the reorder quantity is ordered, as many times
+ * over as it takes to get above the point again.
+ *
+ * Only components whose stock has just been assigned, or that could not be
+ * assigned for lack of stock, are looked at, apart from those already below
+ * the reorder point of the default policy when it is set, which are found
+ * through {@link ComponentList#findBelow(int, int)}. The company hands every
+ * component it assigns to {@link #touched(Component)},
+ * which just notes it, at most once until it has been looked at, so that
+ * assignments are not slowed down. The background thread takes all the
+ * components noted so far at once, and works out and places the order each
+ * of them needs in turn.
+ *
+ * An order is placed with the supplier that has supplied the most of the
+ * component to date, or with the first supplier of the component, if none
+ * has supplied any yet. Components without a supplier are not ordered. The
+ * order is placed for the relation chosen, so nothing is looked up by ID
+ * while another thread may be adding to the collections, and holding the
+ * lock that keeps saves out; see {@link Company#placeOrder(ComponentSupplierRelation, int)}.
+ * When the company is used through a {@link ConcurrentCompany}, each
+ * component is also looked at holding the locks that facade holds to place
+ * an order for it, so that the engine and other threads order a component
+ * one at a time.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class ReplenishmentEngine implements Runnable {
+	private final Company company;
+
+	/**
+	 * The facade the company is used through, if it was started through one.
+	 */
+	private volatile ConcurrentCompany facade;
+
+	/**
+	 * The reorder policy of every component that has one, keyed on the
+	 * number in the ID of the component, and the policy of the components
+	 * without one of their own, if there is such a policy.
+	 */
+	private final IntHashMap<Policy> policies = new IntHashMap<Policy>();
+	private Policy defaultPolicy;
+
+	/**
+	 * The components assigned since the background thread last took them,
+	 * keyed on the number in their ID.
+	 */
+	private IntHashMap<Component> touched = new IntHashMap<Component>();
+
+	private Thread thread;
+	private boolean stopped;
+	private long evaluated;
+	private long ordered;
+
+	/**
+	 * Creates an engine, which does nothing until it is started
+	 *
+	 * @param company
+	 *            the company whose components are ordered
+	 */
+	public ReplenishmentEngine(Company company) {
+		this.company = company;
+	}
+
+	/**
+	 * Gives a component a reorder policy of its own
+	 *
+	 * @param component
+	 *            the component
+	 * @param reorderPoint
+	 *            the quantity at or below which the component is ordered
+	 * @param reorderQuantity
+	 *            the quantity ordered at a time; if not positive, the
+	 *            component is not ordered at all
+	 */
+	public void setPolicy(Component component, int reorderPoint,
+			int reorderQuantity) {
+		synchronized (policies) {
+			policies.remove(component.getNumber());
+			policies.put(component.getNumber(),
+					new Policy(reorderPoint, reorderQuantity));
+		}
+		touched(component);
+	}
+
+	/**
+	 * Sets the reorder policy of the components without one of their own
+	 *
+	 * @param reorderPoint
+	 *            the quantity at or below which a component is ordered
+	 * @param reorderQuantity
+	 *            the quantity ordered at a time; if not positive, only
+	 *            components with a policy of their own are ordered
+	 */
+	public void setDefaultPolicy(int reorderPoint, int reorderQuantity) {
+		synchronized (policies) {
+			defaultPolicy = new Policy(reorderPoint, reorderQuantity);
+		}
+		touchLowStock();
+	}
+
+	/**
+	 * Notes that the stock of a component has gone down, so that the
+	 * background thread looks at it. Does nothing while the engine is not
+	 * running.
+	 *
+	 * @param component
+	 *            the component
+	 */
+	public synchronized void touched(Component component) {
+		if (thread != null && touched.put(component.getNumber(), component)
+				&& touched.size() == 1) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Starts the background thread, unless it is running already
+	 */
+	public void start() {
+		start(null);
+	}
+
+	/**
+	 * Starts the background thread, unless it is running already, and has it
+	 * work through the given facade from then on
+	 *
+	 * @param facade
+	 *            the facade the company is used through, or {@literal null}
+	 *            if it is used directly
+	 */
+	void start(ConcurrentCompany facade) {
+		this.facade = facade;
+		synchronized (this) {
+			if (thread != null) {
+				return;
+			}
+			stopped = false;
+			thread = new Thread(this, "Replenishment");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		touchLowStock();
+	}
+
+	/**
+	 * Stops the background thread, once it has placed the orders it is
+	 * working out, and waits for it to end
+	 */
+	public void stop() {
+		Thread running;
+		synchronized (this) {
+			stopped = true;
+			notifyAll();
+			running = thread;
+			thread = null;
+		}
+		if (running != null && running != Thread.currentThread()) {
+			try {
+				running.join();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of times a component has been looked at
+	 *
+	 * @return the number of evaluations
+	 */
+	public synchronized long getEvaluated() {
+		return evaluated;
+	}
+
+	/**
+	 * Returns the number of orders placed
+	 *
+	 * @return the number of orders
+	 */
+	public synchronized long getOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Takes the components noted, and places the orders they need, until the
+	 * engine is stopped.
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			IntHashMap<Component> batch;
+			synchronized (this) {
+				while (touched.size() == 0 && !stopped) {
+					try {
+						wait();
+					} catch (InterruptedException ie) {
+						return;
+					}
+				}
+				if (stopped) {
+					return;
+				}
+				batch = touched;
+				touched = new IntHashMap<Component>();
+			}
+			replenish(batch);
+		}
+	}
+
+	/**
+	 * Works out the orders a batch of components needs, and places them.
+	 *
+	 * @param batch
+	 *            the components
+	 */
+	private void replenish(IntHashMap<Component> batch) {
+		int placedCount = 0;
+		for (Component component : batch) {
+			ConcurrentCompany through = facade;
+			Order order = through != null ? through.reorder(this, component)
+					: reorder(component);
+			if (order != null) {
+				placedCount++;
+			}
+		}
+		synchronized (this) {
+			evaluated += batch.size();
+			ordered += placedCount;
+		}
+	}
+
+	/**
+	 * Works out the order a component needs, and places it. A
+	 * {@link ConcurrentCompany} calls this holding the locks it holds to
+	 * place an order for the component.
+	 *
+	 * @param component
+	 *            the component
+	 * @return the order placed, or {@literal null} if none was needed or
+	 *         the component has no supplier
+	 */
+	Order reorder(Component component) {
+		Policy policy = policyOf(component);
+		if (policy == null || policy.reorderQuantity < 1) {
+			return null;
+		}
+		long available = component.getStock()
+				+ company.getQuantityOnOrder(component);
+		if (available > policy.reorderPoint) {
+			return null;
+		}
+		ComponentSupplierRelation relation = chooseSupplier(component);
+		if (relation == null) {
+			return null;
+		}
+		long shortfall = policy.reorderPoint - available + 1;
+		long quantity = (shortfall + policy.reorderQuantity - 1)
+				/ policy.reorderQuantity * policy.reorderQuantity;
+		return company.placeOrder(relation,
+				(int) Math.min(quantity, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Notes the components at or below the reorder point of the default
+	 * policy, whose stock may have run low while the engine was not running.
+	 */
+	private void touchLowStock() {
+		Policy policy;
+		synchronized (policies) {
+			policy = defaultPolicy;
+		}
+		if (policy == null || policy.reorderQuantity < 1
+				|| policy.reorderPoint == Integer.MAX_VALUE) {
+			return;
+		}
+		ConcurrentCompany through = facade;
+		List<Component> low = through != null
+				? through.findBelow(policy.reorderPoint + 1, Integer.MAX_VALUE)
+				: company.getAllComponents().findBelow(policy.reorderPoint + 1,
+						Integer.MAX_VALUE);
+		for (Component component : low) {
+			touched(component);
+		}
+	}
+
+	/**
+	 * Returns the reorder policy of a component, or {@literal null} if it
+	 * has none.
+	 */
+	private Policy policyOf(Component component) {
+		synchronized (policies) {
+			Policy policy = policies.get(component.getNumber());
+			return policy != null ? policy : defaultPolicy;
+		}
+	}
+
+	/**
+	 * Returns the relation of a component with the supplier that has supplied
+	 * the most of it to date, or {@literal null} if it has no suppliers.
+	 */
+	private static ComponentSupplierRelation chooseSupplier(
+			Component component) {
+		ComponentSupplierRelation best = null;
+		for (ComponentSupplierRelation relation : component
+				.getSupplierRelations()) {
+			if (best == null || relation.getQuantitySuppliedToDate() > best
+					.getQuantitySuppliedToDate()) {
+				best = relation;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The reorder point and reorder quantity of a component.
+	 */
+	private static class Policy {
+		private final int reorderPoint;
+		private final int reorderQuantity;
+
+		private Policy(int reorderPoint, int reorderQuantity) {
+			this.reorderPoint = reorderPoint;
+			this.reorderQuantity = reorderQuantity;
+		}
+	}
+}
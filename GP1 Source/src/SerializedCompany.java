@@ -0,0 +1,258 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Reads the data file written by the first versions of the system, which
+ * saved the whole {@code Company} object graph with Java serialization,
+ * followed by the {@code IdGenerator}. Those classes have changed since, so
+ * the stream is not read into them: every class of the old graph is read
+ * into a private class with the same fields instead, and the company is then
+ * rebuilt from those, keeping the IDs, stocks, quantities supplied to date
+ * and outstanding orders.
+ *
+ * A company read this way was not saved as a snapshot, so its first save
+ * writes all of it as a new snapshot, which is read from then on. The old
+ * file is never deleted; see {@link Company#save()}.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class SerializedCompany {
+
+	/**
+	 * The first four bytes of a Java serialization stream: its magic number
+	 * and version.
+	 */
+	static final int STREAM_MAGIC = 0xACED0005;
+
+	/**
+	 * The class each class of the old graph is read into, keyed on the name
+	 * of the old class.
+	 */
+	private static final Map<String, Class<?>> CLASSES = new HashMap<String, Class<?>>();
+
+	static {
+		CLASSES.put("Company", SavedCompany.class);
+		CLASSES.put("ComponentList", SavedComponentList.class);
+		CLASSES.put("SupplierList", SavedSupplierList.class);
+		CLASSES.put("PendingOrders", SavedPendingOrders.class);
+		CLASSES.put("Component", SavedComponent.class);
+		CLASSES.put("Supplier", SavedSupplier.class);
+		CLASSES.put("ComponentSupplierRelation", SavedRelation.class);
+		CLASSES.put("Order", SavedOrder.class);
+		CLASSES.put("IdGenerator", SavedIdGenerator.class);
+	}
+
+	private SerializedCompany() {
+	}
+
+	/**
+	 * Reads the data file written by Java serialization into the given
+	 * company, which is expected to be empty.
+	 *
+	 * @param company
+	 *            the company being rebuilt
+	 * @param file
+	 *            the file holding the serialized company
+	 * @throws IOException
+	 *             if the file could not be read or does not hold a company
+	 *             saved by an earlier version
+	 */
+	public static void read(Company company, File file) throws IOException {
+		SavedCompany saved;
+		SavedIdGenerator counters;
+		try (ObjectInputStream input = new SavedInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			saved = (SavedCompany) input.readObject();
+			counters = (SavedIdGenerator) input.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException(
+					"Not a company saved by an earlier version: " + file, e);
+		}
+		IdGenerator.restore(counters.componentIdCounter,
+				counters.supplierIdCounter, counters.orderIdCounter);
+
+		Map<SavedComponent, Component> components = new IdentityHashMap<SavedComponent, Component>();
+		ComponentList componentList = company.getAllComponents();
+		for (SavedComponent old : saved.components.componentList) {
+			Component component = new Component(number(old.id), old.name);
+			component.addToStock(old.stock);
+			componentList.insert(component);
+			components.put(old, component);
+		}
+
+		Map<SavedSupplier, Supplier> suppliers = new IdentityHashMap<SavedSupplier, Supplier>();
+		SupplierList supplierList = company.getAllSuppliers();
+		for (SavedSupplier old : saved.suppliers.supplierList) {
+			Supplier supplier = new Supplier(number(old.id), old.name);
+			supplierList.insert(supplier);
+			suppliers.put(old, supplier);
+		}
+
+		Map<SavedRelation, ComponentSupplierRelation> relations = new IdentityHashMap<SavedRelation, ComponentSupplierRelation>();
+		for (SavedComponent old : saved.components.componentList) {
+			for (SavedRelation relation : old.supplierRelations) {
+				relation(relations, components, suppliers, relation);
+			}
+		}
+		PendingOrders pendingOrders = company.getPendingOrders();
+		for (SavedOrder old : saved.pendingOrders.pendingOrderList) {
+			pendingOrders.insert(new Order(number(old.id),
+					relation(relations, components, suppliers, old.relation),
+					old.quantity));
+		}
+	}
+
+	/**
+	 * Returns the relation rebuilt from an old one, rebuilding it and adding
+	 * it to its component and supplier the first time.
+	 */
+	private static ComponentSupplierRelation relation(
+			Map<SavedRelation, ComponentSupplierRelation> relations,
+			Map<SavedComponent, Component> components,
+			Map<SavedSupplier, Supplier> suppliers, SavedRelation old)
+			throws IOException {
+		ComponentSupplierRelation relation = relations.get(old);
+		if (relation == null) {
+			Component component = components.get(old.component);
+			Supplier supplier = suppliers.get(old.supplier);
+			if (component == null || supplier == null) {
+				throw new IOException(
+						"A relation refers to a component or supplier that was not saved");
+			}
+			relation = new ComponentSupplierRelation(component, supplier);
+			relation.addQuantity(old.quantitySuppliedToDate);
+			component.addSupplierRelation(relation);
+			supplier.addComponentRelation(relation);
+			relations.put(old, relation);
+		}
+		return relation;
+	}
+
+	/**
+	 * Returns the number in an old ID, such as {@code C3}.
+	 */
+	private static int number(String id) throws IOException {
+		long entityId = EntityId.parse(id);
+		if (entityId == EntityId.NONE) {
+			throw new IOException("Invalid ID " + id);
+		}
+		return EntityId.number(entityId);
+	}
+
+	/**
+	 * A stream that reads every class of the old graph into the class with
+	 * the same fields in {@code CLASSES}, after checking that the fields
+	 * match. Other classes, such as those of the collections, are read as
+	 * they are.
+	 */
+	private static class SavedInputStream extends ObjectInputStream {
+		private SavedInputStream(InputStream input) throws IOException {
+			super(input);
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor()
+				throws IOException, ClassNotFoundException {
+			ObjectStreamClass written = super.readClassDescriptor();
+			Class<?> saved = CLASSES.get(written.getName());
+			if (saved == null) {
+				return written;
+			}
+			ObjectStreamClass local = ObjectStreamClass.lookup(saved);
+			ObjectStreamField[] writtenFields = written.getFields();
+			ObjectStreamField[] localFields = local.getFields();
+			boolean same = written.getSerialVersionUID() == local
+					.getSerialVersionUID()
+					&& writtenFields.length == localFields.length;
+			for (int index = 0; same && index < writtenFields.length; index++) {
+				same = writtenFields[index].getName()
+						.equals(localFields[index].getName())
+						&& writtenFields[index]
+								.getTypeCode() == localFields[index]
+										.getTypeCode();
+			}
+			if (!same) {
+				throw new InvalidClassException(written.getName(),
+						"Not the class saved by an earlier version");
+			}
+			return local;
+		}
+	}
+
+	/*
+	 * The classes of the old graph, with the fields they were saved with.
+	 */
+
+	private static class SavedCompany implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private SavedComponentList components;
+		private SavedSupplierList suppliers;
+		private SavedPendingOrders pendingOrders;
+	}
+
+	private static class SavedComponentList implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private LinkedList<SavedComponent> componentList;
+	}
+
+	private static class SavedSupplierList implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private LinkedList<SavedSupplier> supplierList;
+	}
+
+	private static class SavedPendingOrders implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private LinkedList<SavedOrder> pendingOrderList;
+	}
+
+	private static class SavedComponent implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String name;
+		private String id;
+		private int stock;
+		private HashSet<SavedRelation> supplierRelations;
+	}
+
+	private static class SavedSupplier implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String id;
+		private String name;
+		private HashSet<SavedRelation> componentRelations;
+	}
+
+	private static class SavedRelation implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private SavedComponent component;
+		private SavedSupplier supplier;
+		private int quantitySuppliedToDate;
+	}
+
+	private static class SavedOrder implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private SavedRelation relation;
+		private int quantity;
+		private String id;
+	}
+
+	private static class SavedIdGenerator implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private int componentIdCounter;
+		private int supplierIdCounter;
+		private int orderIdCounter;
+	}
+}
@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An index of the stock of components, which finds the components with the
+ * least stock, or with less than a given quantity, without looking at the
+ * others.
+ *
+ * Every component has an entry holding the number in its ID and its stock as
+ * last seen. The entries with the same stock are chained together into a
+ * bucket, and the buckets that are not empty are kept sorted by stock, so a
+ * search reads only the buckets it returns entries from, and moving an
+ * entry to another bucket when the stock changes takes time logarithmic in
+ * the number of different stock quantities.
+ *
+ * The components are spread over {@value #STRIPE_COUNT} stripes by the
+ * number in their ID, each with its own entries, buckets and lock, so that
+ * changes of stock of different components seldom wait for each other. A
+ * search takes the lock of one stripe at a time, and merges what it finds;
+ * once it has found as many components as it wants, it looks in the
+ * remaining stripes only for components with no more stock than the last
+ * of them.
+ *
+ * Stock is changed without a lock, so the index does not take the new stock
+ * from whoever changed it, but reads it again itself, holding the lock of
+ * the stripe; whichever update of a component comes last then leaves the
+ * stock that the component ended up with.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class StockIndex {
+
+	/**
+	 * Number of stripes; a power of two.
+	 */
+	private static final int STRIPE_COUNT = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	/**
+	 * Creates an empty index
+	 */
+	public StockIndex() {
+		for (int index = 0; index < STRIPE_COUNT; index++) {
+			stripes[index] = new Stripe();
+		}
+	}
+
+	/**
+	 * Records the current stock of a component
+	 *
+	 * @param component
+	 *            the component, which is added if it has no entry yet
+	 */
+	public void update(Component component) {
+		Stripe stripe = stripeOf(component.getNumber());
+		stripe.lock.lock();
+		try {
+			stripe.update(component.getNumber(), component.getStock());
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Records the stock of a component
+	 *
+	 * @param number
+	 *            the number in the ID of the component, which is added if it
+	 *            has no entry yet
+	 * @param stock
+	 *            its stock
+	 */
+	public void update(int number, int stock) {
+		Stripe stripe = stripeOf(number);
+		stripe.lock.lock();
+		try {
+			stripe.update(number, stock);
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of components in the index
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			stripe.lock.lock();
+			try {
+				size += stripe.entries.size();
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Finds the components with less than the given stock, the ones with the
+	 * least stock first
+	 *
+	 * @param level
+	 *            the stock that the components have less than
+	 * @param limit
+	 *            the largest number of components returned
+	 * @return the numbers in the IDs of the components
+	 */
+	public int[] findBelow(int level, int limit) {
+		long[] found = new long[0];
+		for (Stripe stripe : stripes) {
+			int below = level;
+			if (limit > 0 && found.length == limit) {
+				below = (int) Math.min(level, (found[limit - 1] >> 32) + 1);
+			}
+			long[] part;
+			stripe.lock.lock();
+			try {
+				part = stripe.findBelow(below, limit);
+			} finally {
+				stripe.lock.unlock();
+			}
+			found = merge(found, part, limit);
+		}
+		int[] numbers = new int[found.length];
+		for (int index = 0; index < numbers.length; index++) {
+			numbers[index] = (int) found[index];
+		}
+		return numbers;
+	}
+
+	/**
+	 * Merges the components found in two stripes, keeping the ones with the
+	 * least stock.
+	 *
+	 * @param first
+	 *            components, as {@link Stripe#findBelow(int, int)} returns
+	 *            them, sorted by stock
+	 * @param second
+	 *            more components, sorted by stock
+	 * @param limit
+	 *            the largest number of components kept
+	 * @return the components kept, sorted by stock
+	 */
+	private static long[] merge(long[] first, long[] second, int limit) {
+		long[] merged = new long[(int) Math.min(limit,
+				(long) first.length + second.length)];
+		int left = 0;
+		int right = 0;
+		for (int index = 0; index < merged.length; index++) {
+			merged[index] = right == second.length
+					|| left < first.length && first[left] <= second[right]
+							? first[left++]
+							: second[right++];
+		}
+		return merged;
+	}
+
+	/**
+	 * Takes the lock of every stripe, so that the index can be filled in
+	 * while no change of stock is recorded.
+	 */
+	void lockAll() {
+		for (Stripe stripe : stripes) {
+			stripe.lock.lock();
+		}
+	}
+
+	/**
+	 * Releases the locks taken by {@link #lockAll()}.
+	 */
+	void unlockAll() {
+		for (int index = STRIPE_COUNT - 1; index >= 0; index--) {
+			stripes[index].lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the stripe of the component with the given number in its ID.
+	 */
+	private Stripe stripeOf(int number) {
+		int hash = number * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+	}
+
+	/**
+	 * The entries and buckets of the components in one stripe, and the lock
+	 * held while they are read or changed.
+	 */
+	private static class Stripe {
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/**
+		 * The entries, keyed on the number in the ID of their component.
+		 */
+		private IntHashMap<Entry> entries = new IntHashMap<Entry>();
+
+		/**
+		 * The first entry of every bucket that is not empty, keyed on the
+		 * stock of the bucket.
+		 */
+		private TreeMap<Integer, Entry> buckets = new TreeMap<Integer, Entry>();
+
+		private void update(int number, int stock) {
+			Entry entry = entries.get(number);
+			if (entry == null) {
+				entry = new Entry(number);
+				entries.put(number, entry);
+			} else if (entry.stock == stock) {
+				return;
+			} else {
+				unlink(entry);
+			}
+			entry.stock = stock;
+			entry.previous = null;
+			entry.next = buckets.put(stock, entry);
+			if (entry.next != null) {
+				entry.next.previous = entry;
+			}
+		}
+
+		/**
+		 * Finds at most {@code limit} components with less than the given
+		 * stock, the ones with the least stock first.
+		 *
+		 * @return the stock of each component in the high half, and the number
+		 *         in its ID in the low half, so that the values are in the
+		 *         order of the stock
+		 */
+		private long[] findBelow(int level, int limit) {
+			long[] found = new long[Math.max(0, Math.min(limit, 16))];
+			int count = 0;
+			for (Map.Entry<Integer, Entry> bucket : buckets.headMap(level)
+					.entrySet()) {
+				for (Entry entry = bucket.getValue(); entry != null
+						&& count < limit; entry = entry.next) {
+					if (count == found.length) {
+						found = Arrays.copyOf(found,
+								(int) Math.min(limit, count * 2L));
+					}
+					found[count++] = ((long) entry.stock << 32)
+							| (entry.number & 0xFFFFFFFFL);
+				}
+				if (count >= limit) {
+					break;
+				}
+			}
+			return Arrays.copyOf(found, count);
+		}
+
+		/**
+		 * Takes an entry out of its bucket, dropping the bucket if it was the
+		 * only entry in it.
+		 */
+		private void unlink(Entry entry) {
+			if (entry.next != null) {
+				entry.next.previous = entry.previous;
+			}
+			if (entry.previous != null) {
+				entry.previous.next = entry.next;
+			} else if (entry.next != null) {
+				buckets.put(entry.stock, entry.next);
+			} else {
+				buckets.remove(entry.stock);
+			}
+		}
+	}
+
+	/**
+	 * The stock of one component, chained to the entries with the same stock.
+	 */
+	private static class Entry {
+		private final int number;
+		private int stock;
+		private Entry previous;
+		private Entry next;
+
+		private Entry(int number) {
+			this.number = number;
+		}
+	}
+}
@@ -1,95 +1,285 @@
-import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Iterator;
-
-/**
- * This class represents a single supplier.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class Supplier implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private static final String SUPPLIER_MARKER = "S";
-	private String id;
-	private String name;
-	private HashSet<ComponentSupplierRelation> componentRelations = new HashSet<ComponentSupplierRelation>();
-
-	/**
-	 * Represents a single Supplier
-	 * 
-	 * @param name
-	 *            name of the supplier
-	 */
-	public Supplier(String name) {
-		this.name = name;
-		this.id = SUPPLIER_MARKER + IdGenerator.instance().getSupplierId();
-	}
-
-	/**
-	 * Returns the ID of the supplier.
-	 * 
-	 * @return ID of the supplier
-	 */
-	public String getId() {
-		return id;
-	}
-
-	/**
-	 * Returns the name of the supplier.
-	 * 
-	 * @return name of the supplier
-	 */
-	public String getName() {
-		return name;
-	}
-
-	/**
-	 * Returns a set of relationships representing the components supplied by
-	 * this supplier.
-	 * 
-	 * @return a set of ComponentSupplierRelation objects
-	 */
-	public HashSet<ComponentSupplierRelation> getComponentRelations() {
-		return this.componentRelations;
-	}
-
-	/**
-	 * Adds a relationship between the supplier and a component.
-	 * 
-	 * @param relation
-	 *            the relation to be added
-	 * @return true, iff the relation was added
-	 */
-	public boolean addComponentRelation(ComponentSupplierRelation relation) {
-		return componentRelations.add(relation);
-	}
-
-	/**
-	 * Returns an iterator over all the component relations of this supplier
-	 * 
-	 * @return an Iterator of all ComponentSupplierRelation objects related to
-	 *         this supplier
-	 */
-	public Iterator<ComponentSupplierRelation> getAllComponents() {
-		return componentRelations.iterator();
-	}
-
-	/**
-	 * Returns a string representation of the supplier.
-	 */
-	@Override
-	public String toString() {
-		// return "Supplier name: " + name + " | Supplier ID: " + id;
-		String output = "Supplier name: " + name + " | Supplier ID: " + id
-				+ "\nComponents supplied:\n";
-		Iterator<ComponentSupplierRelation> suppliedComponents = getAllComponents();
-		while (suppliedComponents.hasNext()) {
-			Component component = suppliedComponents.next().getComponent();
-			output += (component.getName() + ", " + component.getId() + "\n");
-		}
-		output += "\n";
-		return output;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * This class represents a single supplier.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class Supplier implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number in the ID of the supplier; see {@link EntityId}.
+	 */
+	private final int number;
+	private String name;
+
+	/**
+	 * The relations with the components supplied by this supplier, keyed on
+	 * the component.
+	 */
+	private RelationIndex componentRelations = new RelationIndex(false);
+
+	/**
+	 * The snapshot and row this supplier was created from, until its
+	 * relations have been read from there.
+	 */
+	private transient volatile MappedSnapshot snapshot;
+	private transient int row;
+
+	/**
+	 * Whether the supplier is listed by {@link ChangeTracker} as added since
+	 * the last save.
+	 */
+	private transient volatile boolean changed;
+
+	/**
+	 * Represents a single Supplier
+	 * 
+	 * @param name
+	 *            name of the supplier
+	 */
+	public Supplier(String name) {
+		this.name = name;
+		this.number = IdGenerator.instance().getSupplierId();
+	}
+
+	/**
+	 * Represents a single Supplier whose ID has already been issued, such as
+	 * one read back from a snapshot.
+	 * 
+	 * @param number
+	 *            the number in the ID of the supplier
+	 * @param name
+	 *            name of the supplier
+	 */
+	Supplier(int number, String name) {
+		this.name = name;
+		this.number = number;
+	}
+
+	/**
+	 * Returns the ID of the supplier, in its text form.
+	 * 
+	 * @return ID of the supplier, such as {@code S3}
+	 */
+	public String getId() {
+		return EntityId.format(getEntityId());
+	}
+
+	/**
+	 * Returns the ID of the supplier, packed as described in
+	 * {@link EntityId}.
+	 * 
+	 * @return the packed ID
+	 */
+	public long getEntityId() {
+		return EntityId.of(EntityId.SUPPLIER, number);
+	}
+
+	/**
+	 * Returns the number in the ID of the supplier.
+	 * 
+	 * @return {@code number}
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * Returns whether the supplier has been added since the last save; see
+	 * {@link ChangeTracker}.
+	 * 
+	 * @return {@literal true} if the supplier is listed as changed
+	 */
+	boolean isChanged() {
+		return changed;
+	}
+
+	/**
+	 * Sets whether the supplier is listed as changed. Only
+	 * {@link ChangeTracker} calls this, holding its lock.
+	 * 
+	 * @param changed
+	 *            whether the supplier is listed
+	 */
+	void setChanged(boolean changed) {
+		this.changed = changed;
+	}
+
+	/**
+	 * Returns the name of the supplier.
+	 * 
+	 * @return name of the supplier
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns a set of relationships representing the components supplied by
+	 * this supplier.
+	 * 
+	 * @return a collection of ComponentSupplierRelation objects
+	 */
+	public Collection<ComponentSupplierRelation> getComponentRelations() {
+		loadRelations();
+		return this.componentRelations.values();
+	}
+
+	/**
+	 * Adds a relationship between the supplier and a component.
+	 * 
+	 * @param relation
+	 *            the relation to be added
+	 * @return true, iff the relation was added
+	 */
+	public boolean addComponentRelation(ComponentSupplierRelation relation) {
+		loadRelations();
+		return componentRelations.add(relation);
+	}
+
+	/**
+	 * Adds a relationship read back from a snapshot.
+	 *
+	 * @param relation
+	 *            the relation to be added
+	 */
+	void restoreComponentRelation(ComponentSupplierRelation relation) {
+		componentRelations.add(relation);
+	}
+
+	/**
+	 * Finds and returns the relation between this supplier and the given
+	 * component, if one exists.
+	 * 
+	 * @param component
+	 *            the component whose relation is being searched for
+	 * @return a ComponentSupplierRelation object of the given component and
+	 *         this supplier.
+	 */
+	public ComponentSupplierRelation getComponent(Component component) {
+		loadRelations();
+		return componentRelations.get(component);
+	}
+
+	/**
+	 * Returns an iterator over all the component relations of this supplier
+	 * 
+	 * @return an Iterator of all ComponentSupplierRelation objects related to
+	 *         this supplier
+	 */
+	public Iterator<ComponentSupplierRelation> getAllComponents() {
+		loadRelations();
+		return componentRelations.values().iterator();
+	}
+
+	/**
+	 * Records that this supplier was created from the given row of a
+	 * snapshot, whose relations are read when they are first used.
+	 * 
+	 * @param snapshot
+	 *            the snapshot holding the relations
+	 * @param row
+	 *            the row of this supplier in the snapshot
+	 */
+	void attach(MappedSnapshot snapshot, int row) {
+		this.snapshot = snapshot;
+		this.row = row;
+	}
+
+	/**
+	 * Reads the relations of this supplier from the snapshot it was created
+	 * from, if that has not been done yet. They are read holding the lock of
+	 * the snapshot, and the snapshot is let go only once all of them have
+	 * been added, so that another thread either waits for them or finds them
+	 * all there.
+	 */
+	private void loadRelations() {
+		MappedSnapshot source = snapshot;
+		if (source != null) {
+			synchronized (source) {
+				if (snapshot != null) {
+					source.loadComponentRelations(this, row);
+					snapshot = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the details of the supplier, followed by the name and ID of each
+	 * component it supplies, piece by piece to the given writer.
+	 * 
+	 * @param writer
+	 *            the destination of the details
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write("Supplier name: ");
+		writer.write(name);
+		writer.write(" | Supplier ID: ");
+		writer.write(getId());
+		writer.write("\nComponents supplied:\n");
+		Iterator<ComponentSupplierRelation> suppliedComponents = getAllComponents();
+		while (suppliedComponents.hasNext()) {
+			Component component = suppliedComponents.next().getComponent();
+			writer.write(component.getName());
+			writer.write(", ");
+			writer.write(component.getId());
+			writer.write('\n');
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the details of the supplier, with the ID, name and quantity
+	 * supplied to date of each component it supplies, as a JSON object.
+	 * 
+	 * @param json
+	 *            the destination of the details
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeJson(JsonWriter json) throws IOException {
+		json.beginObject();
+		json.name("id").value(getId());
+		json.name("name").value(name);
+		json.name("components").beginArray();
+		Iterator<ComponentSupplierRelation> suppliedComponents = getAllComponents();
+		while (suppliedComponents.hasNext()) {
+			ComponentSupplierRelation relation = suppliedComponents.next();
+			json.beginObject();
+			json.name("id").value(relation.getComponent().getId());
+			json.name("name").value(relation.getComponent().getName());
+			json.name("supplied").value(relation.getQuantitySuppliedToDate());
+			json.endObject();
+		}
+		json.endArray();
+		json.endObject();
+	}
+
+	/**
+	 * Returns a string representation of the supplier.
+	 */
+	@Override
+	public String toString() {
+		// return "Supplier name: " + name + " | Supplier ID: " + getId();
+		StringWriter output = new StringWriter();
+		try {
+			write(output);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return output.toString();
+	}
+}
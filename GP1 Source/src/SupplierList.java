@@ -1,74 +1,362 @@
-import java.io.Serializable;
-import java.util.LinkedList;
-
-/**
- * The collection class for Supplier objects.
- * 
- * @author Shuja Uddin
- * @version 6 November 2020
- *
- */
-public class SupplierList implements Serializable {
-	private static final long serialVersionUID = 1L;
-	private LinkedList<Supplier> supplierList = new LinkedList<Supplier>();
-	private static SupplierList suppliers;
-
-	/*
-	 * Private constructor for singleton pattern
-	 * 
-	 */
-	private SupplierList() {
-	}
-
-	/**
-	 * Supports the singleton pattern
-	 * 
-	 * @return the singleton object
-	 */
-	public static SupplierList instance() {
-		if (suppliers == null) {
-			return (suppliers = new SupplierList());
-		} else {
-			return suppliers;
-		}
-	}
-
-	/**
-	 * Inserts a given supplier to the list of suppliers
-	 * 
-	 * @param supplier
-	 *            supplier to be inserted
-	 * @return true, if insertion was successful
-	 */
-	public boolean insert(Supplier supplier) {
-		return supplierList.add(supplier);
-	}
-
-	/**
-	 * Searches the collection for a supplier with the given ID.
-	 * 
-	 * @param supplierID
-	 *            the ID being searched for
-	 * @return a Supplier object with the matching ID, if one is found.
-	 */
-	public Supplier search(String supplierID) {
-		for (Supplier supplier : supplierList) {
-			if (supplier.getId().equals(supplierID)) {
-				return supplier;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * A string representation of all suppliers.
-	 */
-	@Override
-	public String toString() {
-		String output = "";
-		for (Supplier supplier : supplierList) {
-			output += (supplier.toString() + "\n");
-		}
-		return output;
-	}
-}
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The collection class for Supplier objects.
+ * 
+ * @author Shuja Uddin
+ * @version 6 November 2020
+ *
+ */
+public class SupplierList implements Serializable, Iterable<Supplier> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The suppliers, keyed on the number in their ID and kept in insertion
+	 * order.
+	 */
+	private volatile IntHashMap<Supplier> supplierList = new IntHashMap<Supplier>();
+
+	/**
+	 * The snapshot the suppliers not yet in {@code supplierList} are read from,
+	 * until all of them have been read. As in {@link ComponentList}, a
+	 * supplier read from the snapshot is kept there until {@link #load()}.
+	 */
+	private transient volatile MappedSnapshot snapshot;
+
+	/**
+	 * The index of the names of the suppliers, built the first time a supplier
+	 * is searched for by name.
+	 */
+	private transient volatile NameIndex names;
+	private static SupplierList suppliers;
+
+	/*
+	 * Private constructor for singleton pattern
+	 * 
+	 */
+	private SupplierList() {
+	}
+
+	/**
+	 * Supports the singleton pattern
+	 * 
+	 * @return the singleton object
+	 */
+	public static SupplierList instance() {
+		if (suppliers == null) {
+			return (suppliers = new SupplierList());
+		} else {
+			return suppliers;
+		}
+	}
+
+	/**
+	 * Discards the singleton object, so that the next call to
+	 * {@link #instance()} creates an empty collection. Used when the company
+	 * is being rebuilt from disk.
+	 */
+	static void reset() {
+		suppliers = null;
+	}
+
+	/**
+	 * Inserts a given supplier to the list of suppliers
+	 * 
+	 * @param supplier
+	 *            supplier to be inserted
+	 * @return true, if insertion was successful
+	 */
+	public boolean insert(Supplier supplier) {
+		if (!inSnapshot(supplier.getNumber())
+				&& supplierList.put(supplier.getNumber(), supplier)) {
+			ChangeTracker.instance().changed(supplier);
+			NameIndex index = names;
+			if (index != null) {
+				index.add(supplier.getNumber(), supplier.getName());
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts a batch of suppliers, growing the collection at most once.
+	 * 
+	 * @param suppliers
+	 *            suppliers to be inserted
+	 * @return the number of suppliers inserted; a supplier whose ID is already
+	 *         in the collection is skipped
+	 */
+	public int insertAll(Supplier[] suppliers) {
+		supplierList.ensureCapacity(supplierList.size() + suppliers.length);
+		ChangeTracker tracker = ChangeTracker.instance();
+		NameIndex index = names;
+		int inserted = 0;
+		for (Supplier supplier : suppliers) {
+			if (!inSnapshot(supplier.getNumber())
+					&& supplierList.put(supplier.getNumber(), supplier)) {
+				tracker.changed(supplier);
+				if (index != null) {
+					index.add(supplier.getNumber(), supplier.getName());
+				}
+				inserted++;
+			}
+		}
+		return inserted;
+	}
+
+	/**
+	 * Searches the collection for a supplier with the given ID.
+	 * 
+	 * @param supplierID
+	 *            the ID being searched for
+	 * @return a Supplier object with the matching ID, if one is found.
+	 */
+	public Supplier search(String supplierID) {
+		return search(EntityId.parse(supplierID));
+	}
+
+	/**
+	 * Searches the collection for a supplier with the given packed ID.
+	 * 
+	 * @param supplierId
+	 *            the ID being searched for, packed as described in
+	 *            {@link EntityId}
+	 * @return a {@code Supplier} object with the matching ID, if one is found.
+	 *         Otherwise, {@literal null}.
+	 */
+	public Supplier search(long supplierId) {
+		if (EntityId.type(supplierId) != EntityId.SUPPLIER) {
+			return null;
+		}
+		return get(EntityId.number(supplierId));
+	}
+
+	/**
+	 * Searches the collection for the suppliers with the given name, ignoring
+	 * case.
+	 * 
+	 * @param name
+	 *            the name being searched for
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the matching {@code Supplier} objects, in the order they were
+	 *         inserted
+	 */
+	public List<Supplier> findByName(String name, int limit) {
+		return lookUp(nameIndex().findExact(name, limit));
+	}
+
+	/**
+	 * Searches the collection for the suppliers whose names start with the
+	 * given text, ignoring case.
+	 * 
+	 * @param prefix
+	 *            the start of the names
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the matching {@code Supplier} objects, sorted by name
+	 */
+	public List<Supplier> findByPrefix(String prefix, int limit) {
+		return lookUp(nameIndex().findPrefix(prefix, limit));
+	}
+
+	/**
+	 * Searches the collection for the suppliers whose names start with the
+	 * given text, or nearly do, allowing for typing mistakes; see
+	 * {@link NameIndex#findSimilar(String, int)}.
+	 * 
+	 * @param text
+	 *            the text typed
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the matching {@code Supplier} objects, the closest matches first
+	 */
+	public List<Supplier> findSimilar(String text, int limit) {
+		return lookUp(nameIndex().findSimilar(text, limit));
+	}
+
+	/**
+	 * Returns the index of the names of the suppliers, building it the first
+	 * time. The names of the suppliers still in the snapshot are read from
+	 * there, without creating the suppliers.
+	 * 
+	 * @return the index
+	 */
+	private synchronized NameIndex nameIndex() {
+		if (names == null) {
+			NameIndex index = new NameIndex();
+			for (int row = 0; snapshot != null
+					&& row < snapshot.getSupplierCount(); row++) {
+				index.add(snapshot.getSupplierNumber(row),
+						snapshot.getSupplierName(row));
+			}
+			for (Supplier supplier : supplierList) {
+				if (snapshot == null
+						|| snapshot.findSupplier(supplier.getNumber()) < 0) {
+					index.add(supplier.getNumber(), supplier.getName());
+				}
+			}
+			names = index;
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the suppliers with the given numbers in their IDs, leaving out any
+	 * that are not in the collection, such as a supplier that an index has seen
+	 * before it was inserted.
+	 */
+	private List<Supplier> lookUp(int[] numbers) {
+		List<Supplier> found = new ArrayList<Supplier>(numbers.length);
+		for (int number : numbers) {
+			Supplier supplier = get(number);
+			if (supplier != null) {
+				found.add(supplier);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the supplier with the given number in its ID, reading it from
+	 * the snapshot the first time it is asked for, without changing the
+	 * collection.
+	 * 
+	 * @param number
+	 *            the number in the ID
+	 * @return the {@code Supplier} object, if one exists. Otherwise,
+	 *         {@literal null}.
+	 */
+	Supplier get(int number) {
+		MappedSnapshot source = snapshot;
+		Supplier supplier = supplierList.get(number);
+		if (supplier == null && source != null) {
+			int row = source.findSupplier(number);
+			if (row >= 0) {
+				supplier = source.getSupplier(row);
+			}
+		}
+		return supplier;
+	}
+
+	/**
+	 * Returns whether the snapshot the collection still reads from holds a
+	 * supplier with the given number in its ID.
+	 */
+	private boolean inSnapshot(int number) {
+		MappedSnapshot source = snapshot;
+		return source != null && source.findSupplier(number) >= 0;
+	}
+
+	/**
+	 * Makes the collection read the suppliers it does not hold from the given
+	 * snapshot, as they are asked for.
+	 * 
+	 * @param snapshot
+	 *            the snapshot the collection was saved in
+	 */
+	void attach(MappedSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Reads all suppliers that have not been asked for yet from the snapshot,
+	 * so that the collection lists them in the order of their IDs, followed
+	 * by those added since the snapshot was taken. As in
+	 * {@link ComponentList}, the snapshot is let go only once the merged
+	 * collection has replaced the old one.
+	 */
+	synchronized void load() {
+		MappedSnapshot source = snapshot;
+		if (source == null) {
+			return;
+		}
+		IntHashMap<Supplier> loaded = new IntHashMap<Supplier>();
+		loaded.ensureCapacity(source.getSupplierCount() + supplierList.size());
+		for (int row = 0; row < source.getSupplierCount(); row++) {
+			loaded.put(source.getSupplierNumber(row), source.getSupplier(row));
+		}
+		for (Supplier supplier : supplierList) {
+			loaded.put(supplier.getNumber(), supplier);
+		}
+		supplierList = loaded;
+		snapshot = null;
+	}
+
+	/**
+	 * Returns the number of suppliers in the collection.
+	 * 
+	 * @return the size of the collection
+	 */
+	public int size() {
+		load();
+		return supplierList.size();
+	}
+
+	/**
+	 * Returns at most {@code pageSize} suppliers, in the order they were
+	 * inserted, starting at the given cursor. Suppliers are never removed, so
+	 * page {@code k} (counting from {@literal 0}) starts at cursor
+	 * {@code k * pageSize}; otherwise, pass the next cursor of the previous
+	 * page.
+	 * 
+	 * @param cursor
+	 *            where the page starts
+	 * @param pageSize
+	 *            the largest number of suppliers returned
+	 * @return the suppliers and the cursor of the following page
+	 */
+	public Page<Supplier> page(int cursor, int pageSize) {
+		load();
+		return supplierList.page(cursor, pageSize);
+	}
+
+	/**
+	 * Returns an iterator over the suppliers, in the order they were
+	 * inserted.
+	 */
+	@Override
+	public Iterator<Supplier> iterator() {
+		load();
+		return supplierList.iterator();
+	}
+
+	/**
+	 * Writes all suppliers to the given writer, one after another, without
+	 * building the listing in memory.
+	 * 
+	 * @param writer
+	 *            the destination of the listing
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void write(Writer writer) throws IOException {
+		load();
+		for (Supplier supplier : supplierList) {
+			supplier.write(writer);
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * A string representation of all suppliers.
+	 */
+	@Override
+	public String toString() {
+		StringWriter output = new StringWriter();
+		try {
+			write(output);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return output.toString();
+	}
+}
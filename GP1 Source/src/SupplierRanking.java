@@ -0,0 +1,202 @@
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * A ranking of suppliers by the quantity they have supplied to date, both
+ * of each component and of all components together. The suppliers of each
+ * component that have supplied it, and all suppliers that have supplied
+ * anything, are kept in sorted sets, the largest quantity first, so the
+ * top {@code k} of either are read off the front of a set in
+ * {@code O(k + log n)} time. Suppliers that have supplied nothing are not
+ * ranked.
+ *
+ * Quantities supplied are added without a lock, so, as {@link StockIndex}
+ * does for stock, the ranking reads the quantity of a relation again itself,
+ * holding its lock, whenever it is told that the quantity has changed.
+ *
+ * @author agent
+ * @version 18 October 2026
+ *
+ */
+public class SupplierRanking {
+
+	/**
+	 * The suppliers of every component that has been supplied, keyed on the
+	 * number in the ID of the component.
+	 */
+	private IntHashMap<Ranking> components = new IntHashMap<Ranking>();
+
+	/**
+	 * The suppliers, ranked by the quantity they have supplied of all
+	 * components together.
+	 */
+	private Ranking suppliers = new Ranking();
+
+	/**
+	 * Records the quantity a supplier has supplied of a component to date
+	 *
+	 * @param relation
+	 *            the relation between the component and the supplier
+	 */
+	public synchronized void update(ComponentSupplierRelation relation) {
+		update(relation.getComponent().getNumber(),
+				relation.getSupplier().getNumber(),
+				relation.getQuantitySuppliedToDate());
+	}
+
+	/**
+	 * Records the quantity a supplier has supplied of a component to date
+	 *
+	 * @param component
+	 *            the number in the ID of the component
+	 * @param supplier
+	 *            the number in the ID of the supplier
+	 * @param quantity
+	 *            the quantity supplied to date
+	 */
+	public synchronized void update(int component, int supplier,
+			long quantity) {
+		Ranking ranking = components.get(component);
+		if (ranking == null) {
+			if (quantity == 0) {
+				return;
+			}
+			components.put(component, ranking = new Ranking());
+		}
+		long previous = ranking.get(supplier);
+		if (previous == quantity) {
+			return;
+		}
+		ranking.set(supplier, quantity);
+		suppliers.set(supplier, suppliers.get(supplier) + quantity - previous);
+	}
+
+	/**
+	 * Returns the quantity a supplier has supplied of all components together
+	 *
+	 * @param supplier
+	 *            the number in the ID of the supplier
+	 * @return the quantity supplied to date
+	 */
+	public synchronized long getTotal(int supplier) {
+		return suppliers.get(supplier);
+	}
+
+	/**
+	 * Finds the suppliers that have supplied the most of all components
+	 * together
+	 *
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the numbers in the IDs of the suppliers, the largest quantity
+	 *         first
+	 */
+	public synchronized int[] findTop(int limit) {
+		return suppliers.top(limit);
+	}
+
+	/**
+	 * Finds the suppliers that have supplied the most of a component
+	 *
+	 * @param component
+	 *            the number in the ID of the component
+	 * @param limit
+	 *            the largest number of suppliers returned
+	 * @return the numbers in the IDs of the suppliers, the largest quantity
+	 *         first
+	 */
+	public synchronized int[] findTop(int component, int limit) {
+		Ranking ranking = components.get(component);
+		return ranking != null ? ranking.top(limit) : new int[0];
+	}
+
+	/**
+	 * The quantities supplied by a set of suppliers, sorted by quantity. The
+	 * set can only be searched by quantity, so a supplier whose quantity is
+	 * not known is searched for linearly while there are at most
+	 * {@value #LINEAR_LIMIT} suppliers, as there are for most components,
+	 * and through a map of the entry of every supplier once there are more.
+	 */
+	private static class Ranking {
+		private TreeSet<Entry> order = new TreeSet<Entry>();
+		private IntHashMap<Entry> entries;
+
+		/**
+		 * Largest number of suppliers searched linearly.
+		 */
+		private static final int LINEAR_LIMIT = 16;
+
+		private long get(int supplier) {
+			Entry entry = find(supplier);
+			return entry != null ? entry.quantity : 0;
+		}
+
+		private void set(int supplier, long quantity) {
+			Entry entry = find(supplier);
+			if (entry != null) {
+				order.remove(entry);
+				if (quantity == 0) {
+					if (entries != null) {
+						entries.remove(supplier);
+					}
+					return;
+				}
+			} else if (quantity == 0) {
+				return;
+			} else {
+				entry = new Entry(supplier);
+				if (entries != null) {
+					entries.put(supplier, entry);
+				}
+			}
+			entry.quantity = quantity;
+			order.add(entry);
+			if (entries == null && order.size() > LINEAR_LIMIT) {
+				entries = new IntHashMap<Entry>();
+				for (Entry ranked : order) {
+					entries.put(ranked.supplier, ranked);
+				}
+			}
+		}
+
+		private int[] top(int limit) {
+			int[] found = new int[Math.max(0, Math.min(limit, order.size()))];
+			Iterator<Entry> ranked = order.iterator();
+			for (int index = 0; index < found.length; index++) {
+				found[index] = ranked.next().supplier;
+			}
+			return found;
+		}
+
+		private Entry find(int supplier) {
+			if (entries != null) {
+				return entries.get(supplier);
+			}
+			for (Entry entry : order) {
+				if (entry.supplier == supplier) {
+					return entry;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The quantity supplied by one supplier. Entries are ordered by quantity,
+	 * the largest first, and then by the number of the supplier.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final int supplier;
+		private long quantity;
+
+		private Entry(int supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int order = Long.compare(other.quantity, quantity);
+			return order != 0 ? order : Integer.compare(supplier, other.supplier);
+		}
+	}
+}
@@ -1,231 +1,773 @@
-import java.util.Random;
-
-/**
- * This class generates randomized data and uses it to test the system
- * functionality via asserts.
- * 
- * @author Shuja Uddin and Adnan Wazwaz
- * @version 6 November 2020
- *
- */
-public class TestBed {
-	private Company company;
-
-	/**
-	 * Constant value that represents the minimum number of {@code Component}s
-	 * that needs to be tested in order to ensure that the system has been
-	 * programmed correctly.
-	 */
-	private static final int MINIMUM_TEST_COMPONENT_COUNT = 20;
-
-	/**
-	 * Constant value that represents the number of {@code Component}s that will
-	 * be tested. The implementer must set this value to at least
-	 * {@value #MINIMUM_TEST_COMPONENT_COUNT}. Otherwise, then the program will
-	 * crash.
-	 */
-	private static final int TEST_COMPONENT_COUNT = 40;
-
-	/**
-	 * Constant value that represents the minimum number of {@code Supplier}s
-	 * that needs to be tested in order to ensure that the system has been
-	 * programmed correctly.
-	 */
-	private static final int MINIMUM_TEST_SUPPLIER_COUNT = 5;
-
-	/**
-	 * Constant value that represents the number of {@code Supplier}s that will
-	 * be tested. The implementer must set this value to at least
-	 * {@value #MINIMUM_TEST_SUPPLIER_COUNT}. Otherwise, the program will crash.
-	 */
-	private static final int TEST_SUPPLIER_COUNT = 10;
-
-	/**
-	 * Stores the Company object and invokes test method to test program
-	 * functionality.
-	 * 
-	 * @param company
-	 *            the Company object
-	 */
-	public TestBed(Company company) {
-		this.company = company;
-		test();
-	}
-
-	/**
-	 * Tests various functionalities by calling on appropriate test methods.
-	 */
-	public void test() {
-		Component[] components = testAddComponent();
-		Supplier[] suppliers = testAddSupplier();
-		testFindComponent(components);
-		testFindSupplier(suppliers);
-		testComponentSupplierRelations(components, suppliers);
-		Order[] orders = testPlaceOrder(components, suppliers);
-		testFulfillOrder(orders);
-		testAssignComponent(components);
-	}
-
-	/**
-	 * Tests component creation.
-	 * 
-	 * @return an array of all Components added, to be used to test other
-	 *         functionalities
-	 */
-	public Component[] testAddComponent() {
-		assert TEST_COMPONENT_COUNT >= MINIMUM_TEST_COMPONENT_COUNT;
-		String[] componentNames = generateNames(TEST_COMPONENT_COUNT);
-		Component[] components = new Component[componentNames.length];
-		for (int index = 0; index < componentNames.length; index++) {
-			components[index] = company.addComponent(componentNames[index]);
-			assert components[index].getName().equals(componentNames[index]);
-		}
-		return components;
-	}
-
-	/**
-	 * Test supplier creation.
-	 * 
-	 * @return an array of all Suppliers added, to be used to test other
-	 *         functionalities
-	 */
-	public Supplier[] testAddSupplier() {
-		assert TEST_SUPPLIER_COUNT >= MINIMUM_TEST_SUPPLIER_COUNT;
-		String[] supplierNames = generateNames(TEST_SUPPLIER_COUNT);
-		Supplier[] suppliers = new Supplier[supplierNames.length];
-		for (int index = 0; index < supplierNames.length; index++) {
-			suppliers[index] = company.addSupplier(supplierNames[index]);
-			assert suppliers[index].getName().equals(supplierNames[index]);
-		}
-		return suppliers;
-	}
-
-	/**
-	 * Tests if the added components can be found
-	 * 
-	 * @param components
-	 *            an array of the components that have been added
-	 */
-	public void testFindComponent(Component[] components) {
-		for (Component component : components) {
-			assert component.equals(company.findComponent(component.getId()));
-		}
-	}
-
-	/**
-	 * Tests if the added suppliers can be found
-	 * 
-	 * @param suppliers
-	 *            an array of the suppliers that have been added
-	 */
-	public void testFindSupplier(Supplier[] suppliers) {
-		for (Supplier supplier : suppliers) {
-			assert supplier.equals(company.findSupplier(supplier.getId()));
-		}
-	}
-
-	/**
-	 * Tests the creation of component-supplier relationships by pairing every
-	 * given component with every given supplier
-	 * 
-	 * @param components
-	 *            an array of components
-	 * @param suppliers
-	 *            an array of suppliers
-	 */
-	public void testComponentSupplierRelations(Component[] components,
-			Supplier[] suppliers) {
-		for (Component component : components) {
-			for (Supplier supplier : suppliers) {
-				company.addComponentSupplierRelation(component, supplier);
-				assert component.getSupplier(supplier).getSupplier()
-						.equals(supplier);
-			}
-		}
-	}
-
-	/**
-	 * Tests order placement by placing an order for every given component with
-	 * every given supplier
-	 * 
-	 * @param components
-	 * @param suppliers
-	 * @return an array of the orders placed, to be used for testing other
-	 *         functionalities
-	 */
-	public Order[] testPlaceOrder(Component[] components,
-			Supplier[] suppliers) {
-		Order[] orders = new Order[400];
-		int ordersIndex = 0;
-		for (Component component : components) {
-			for (Supplier supplier : suppliers) {
-				orders[ordersIndex] = company.placeOrder(component, supplier,
-						100);
-				ComponentSupplierRelation relation = orders[ordersIndex]
-						.getRelation();
-				assert (relation.getComponent().equals(component))
-						&& (relation.getSupplier().equals(supplier));
-				ordersIndex++;
-			}
-		}
-		return orders;
-	}
-
-	/**
-	 * Tests order fulfillment by checking that every given order returns an
-	 * appropriate response.
-	 * 
-	 * @param orders
-	 *            an array of outstanding orders
-	 */
-	public void testFulfillOrder(Order[] orders) {
-		for (Order order : orders) {
-			ComponentSupplierRelation relation = company
-					.fulfillOrder(order.getId());
-			assert order.getRelation().equals(relation);
-		}
-	}
-
-	/**
-	 * Tests assignment of components to production for every given component
-	 * 
-	 * @param components
-	 *            an array of components
-	 */
-	public void testAssignComponent(Component[] components) {
-		for (Component component : components) {
-			company.assignComponent(component, 50);
-			assert component.getStock() == 950;
-		}
-	}
-
-	/**
-	 * Used to generate randomized names for components and suppliers.
-	 * 
-	 * @param numberOfNames
-	 * @return an array of randomized names.
-	 */
-	public String[] generateNames(int numberOfNames) {
-		String lowerCaseLetters = "abcdefghijklmnopqrstuvwxyz";
-		String upperCaseLetters = lowerCaseLetters.toUpperCase();
-		String alphabets = upperCaseLetters + lowerCaseLetters;
-
-		Random random = new Random();
-
-		int lengthOfName = 6;
-
-		String[] names = new String[numberOfNames];
-
-		for (int namesIndex = 0; namesIndex < names.length; namesIndex++) {
-			StringBuilder stringBuilder = new StringBuilder();
-			for (int stringIndex = 0; stringIndex < lengthOfName; stringIndex++) {
-				int randomNumber = random.nextInt(alphabets.length());
-				char randomChar = alphabets.charAt(randomNumber);
-				stringBuilder.append(randomChar);
-			}
-			names[namesIndex] = stringBuilder.toString();
-		}
-
-		return names;
-	}
-}
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class generates randomized data and uses it to test the system
+ * functionality via asserts.
+ * 
+ * @author Shuja Uddin and Adnan Wazwaz
+ * @version 6 November 2020
+ *
+ */
+public class TestBed {
+	private Company company;
+
+	/**
+	 * Constant value that represents the minimum number of {@code Component}s
+	 * that needs to be tested in order to ensure that the system has been
+	 * programmed correctly.
+	 */
+	private static final int MINIMUM_TEST_COMPONENT_COUNT = 20;
+
+	/**
+	 * Constant value that represents the number of {@code Component}s that will
+	 * be tested. The implementer must set this value to at least
+	 * {@value #MINIMUM_TEST_COMPONENT_COUNT}. Otherwise, then the program will
+	 * crash.
+	 */
+	private static final int TEST_COMPONENT_COUNT = 40;
+
+	/**
+	 * Constant value that represents the minimum number of {@code Supplier}s
+	 * that needs to be tested in order to ensure that the system has been
+	 * programmed correctly.
+	 */
+	private static final int MINIMUM_TEST_SUPPLIER_COUNT = 5;
+
+	/**
+	 * Constant value that represents the number of {@code Supplier}s that will
+	 * be tested. The implementer must set this value to at least
+	 * {@value #MINIMUM_TEST_SUPPLIER_COUNT}. Otherwise, the program will crash.
+	 */
+	private static final int TEST_SUPPLIER_COUNT = 10;
+
+	/**
+	 * Stores the Company object and invokes test method to test program
+	 * functionality.
+	 * 
+	 * @param company
+	 *            the Company object
+	 */
+	public TestBed(Company company) {
+		this.company = company;
+		test();
+	}
+
+	/**
+	 * Tests various functionalities by calling on appropriate test methods.
+	 */
+	public void test() {
+		Component[] components = testAddComponent();
+		Supplier[] suppliers = testAddSupplier();
+		testFindComponent(components);
+		testFindSupplier(suppliers);
+		testComponentSupplierRelations(components, suppliers);
+		Order[] orders = testPlaceOrder(components, suppliers);
+		testFulfillOrder(orders);
+		testAssignComponent(components);
+		testBatchOrders(components, suppliers);
+		testBatchOrderIds(components, suppliers);
+		testScriptOrders(components, suppliers);
+		testSupplierRanking();
+		testRemovalDuringIteration();
+		testOrderTotals();
+		testSnapshotRoundTrip(components, suppliers);
+		testReplenishment(components);
+	}
+
+	/**
+	 * Tests component creation.
+	 * 
+	 * @return an array of all Components added, to be used to test other
+	 *         functionalities
+	 */
+	public Component[] testAddComponent() {
+		assert TEST_COMPONENT_COUNT >= MINIMUM_TEST_COMPONENT_COUNT;
+		String[] componentNames = generateNames(TEST_COMPONENT_COUNT);
+		Component[] components = new Component[componentNames.length];
+		for (int index = 0; index < componentNames.length; index++) {
+			components[index] = company.addComponent(componentNames[index]);
+			assert components[index].getName().equals(componentNames[index]);
+		}
+		return components;
+	}
+
+	/**
+	 * Test supplier creation.
+	 * 
+	 * @return an array of all Suppliers added, to be used to test other
+	 *         functionalities
+	 */
+	public Supplier[] testAddSupplier() {
+		assert TEST_SUPPLIER_COUNT >= MINIMUM_TEST_SUPPLIER_COUNT;
+		String[] supplierNames = generateNames(TEST_SUPPLIER_COUNT);
+		Supplier[] suppliers = new Supplier[supplierNames.length];
+		for (int index = 0; index < supplierNames.length; index++) {
+			suppliers[index] = company.addSupplier(supplierNames[index]);
+			assert suppliers[index].getName().equals(supplierNames[index]);
+		}
+		return suppliers;
+	}
+
+	/**
+	 * Tests if the added components can be found
+	 * 
+	 * @param components
+	 *            an array of the components that have been added
+	 */
+	public void testFindComponent(Component[] components) {
+		for (Component component : components) {
+			assert component.equals(company.findComponent(component.getId()));
+		}
+	}
+
+	/**
+	 * Tests if the added suppliers can be found
+	 * 
+	 * @param suppliers
+	 *            an array of the suppliers that have been added
+	 */
+	public void testFindSupplier(Supplier[] suppliers) {
+		for (Supplier supplier : suppliers) {
+			assert supplier.equals(company.findSupplier(supplier.getId()));
+		}
+	}
+
+	/**
+	 * Tests the creation of component-supplier relationships by pairing every
+	 * given component with every given supplier
+	 * 
+	 * @param components
+	 *            an array of components
+	 * @param suppliers
+	 *            an array of suppliers
+	 */
+	public void testComponentSupplierRelations(Component[] components,
+			Supplier[] suppliers) {
+		for (Component component : components) {
+			for (Supplier supplier : suppliers) {
+				company.addComponentSupplierRelation(component, supplier);
+				assert component.getSupplier(supplier).getSupplier()
+						.equals(supplier);
+				assert supplier.getComponent(component) == component
+						.getSupplier(supplier);
+			}
+		}
+	}
+
+	/**
+	 * Tests order placement by placing an order for every given component with
+	 * every given supplier
+	 * 
+	 * @param components
+	 * @param suppliers
+	 * @return an array of the orders placed, to be used for testing other
+	 *         functionalities
+	 */
+	public Order[] testPlaceOrder(Component[] components,
+			Supplier[] suppliers) {
+		Order[] orders = new Order[components.length * suppliers.length];
+		int ordersIndex = 0;
+		for (Component component : components) {
+			for (Supplier supplier : suppliers) {
+				orders[ordersIndex] = company.placeOrder(component, supplier,
+						100);
+				ComponentSupplierRelation relation = orders[ordersIndex]
+						.getRelation();
+				assert (relation.getComponent().equals(component))
+						&& (relation.getSupplier().equals(supplier));
+				ordersIndex++;
+			}
+		}
+		return orders;
+	}
+
+	/**
+	 * Tests order fulfillment by checking that every given order returns an
+	 * appropriate response.
+	 * 
+	 * @param orders
+	 *            an array of outstanding orders
+	 */
+	public void testFulfillOrder(Order[] orders) {
+		for (Order order : orders) {
+			ComponentSupplierRelation relation = company
+					.fulfillOrder(order.getId());
+			assert order.getRelation().equals(relation);
+		}
+	}
+
+	/**
+	 * Tests assignment of components to production for every given component
+	 * 
+	 * @param components
+	 *            an array of components
+	 */
+	public void testAssignComponent(Component[] components) {
+		for (Component component : components) {
+			company.assignComponent(component, 50);
+			assert component.getStock() == 950;
+		}
+	}
+
+	/**
+	 * Tests batch order placement and fulfillment by ordering every given
+	 * component from every given supplier in one batch, mixed with orders
+	 * that cannot be placed, and then fulfilling them in one batch
+	 * 
+	 * @param components
+	 *            an array of components
+	 * @param suppliers
+	 *            an array of suppliers
+	 */
+	public void testBatchOrders(Component[] components, Supplier[] suppliers) {
+		int count = components.length * suppliers.length + 2;
+		String[] componentIDs = new String[count];
+		String[] supplierIDs = new String[count];
+		int[] quantities = new int[count];
+		int index = 0;
+		for (Supplier supplier : suppliers) {
+			for (Component component : components) {
+				componentIDs[index] = component.getId();
+				supplierIDs[index] = supplier.getId();
+				quantities[index++] = 10;
+			}
+		}
+		componentIDs[index] = "C0";
+		supplierIDs[index] = suppliers[0].getId();
+		quantities[index++] = 10;
+		componentIDs[index] = components[0].getId();
+		supplierIDs[index] = suppliers[0].getId();
+		quantities[index] = 0;
+
+		Order[] orders = company.placeOrders(componentIDs, supplierIDs,
+				quantities);
+		String[] orderIDs = new String[count];
+		for (index = 0; index < count - 2; index++) {
+			assert orders[index].getRelation().getComponent().getId()
+					.equals(componentIDs[index]);
+			assert orders[index].getRelation().getSupplier().getId()
+					.equals(supplierIDs[index]);
+			orderIDs[index] = orders[index].getId();
+		}
+		assert orders[count - 2] == null && orders[count - 1] == null;
+		orderIDs[count - 2] = orderIDs[0];
+		orderIDs[count - 1] = "O0";
+
+		int[] stocks = new int[components.length];
+		for (index = 0; index < components.length; index++) {
+			stocks[index] = components[index].getStock();
+		}
+		ComponentSupplierRelation[] relations = company
+				.fulfillOrders(orderIDs);
+		for (index = 0; index < count - 2; index++) {
+			assert orders[index].getRelation().equals(relations[index]);
+		}
+		assert relations[count - 2] == null && relations[count - 1] == null;
+		for (index = 0; index < components.length; index++) {
+			assert components[index].getStock() == stocks[index]
+					+ 10 * suppliers.length;
+		}
+	}
+
+	/**
+	 * Tests that a batch of orders for interleaved components issues the
+	 * order IDs in the order of the arguments, as placing the orders one at a
+	 * time would, so that fulfilling an ID fulfills the order placed for it
+	 * 
+	 * @param components
+	 *            an array of components, each supplied by every supplier
+	 * @param suppliers
+	 *            an array of suppliers
+	 */
+	public void testBatchOrderIds(Component[] components,
+			Supplier[] suppliers) {
+		String[] componentIDs = { components[0].getId(),
+				components[1].getId(), components[0].getId(),
+				components[2].getId(), components[1].getId() };
+		String[] supplierIDs = { suppliers[0].getId(), suppliers[0].getId(),
+				suppliers[0].getId(), suppliers[1].getId(),
+				suppliers[1].getId() };
+		int[] quantities = { 5, 4, 3, 2, 1 };
+		Order[] orders = company.placeOrders(componentIDs, supplierIDs,
+				quantities);
+		for (int index = 0; index < orders.length; index++) {
+			assert orders[index].getRelation().getComponent().getId()
+					.equals(componentIDs[index]);
+			assert orders[index].getQuantity() == quantities[index];
+			assert index == 0 || orders[index].getNumber() > orders[index - 1]
+					.getNumber();
+		}
+		Order single = company.placeOrder(components[0], suppliers[0], 1);
+		assert single.getNumber() > orders[orders.length - 1].getNumber();
+
+		int stock = components[1].getStock();
+		assert company.fulfillOrder(orders[1].getId()) == orders[1]
+				.getRelation();
+		assert components[1].getStock() == stock + 4;
+		String[] orderIDs = { orders[0].getId(), orders[2].getId(),
+				orders[3].getId(), orders[4].getId(), single.getId() };
+		ComponentSupplierRelation[] relations = company
+				.fulfillOrders(orderIDs);
+		for (ComponentSupplierRelation relation : relations) {
+			assert relation != null;
+		}
+	}
+
+	/**
+	 * Tests that a script whose consecutive orders interleave components,
+	 * which are run as one batch, gives the orders IDs in the order of the
+	 * lines, as the same commands typed one at a time would, so that a later
+	 * {@code fulfill} in the script fulfills the order it names
+	 * 
+	 * @param components
+	 *            an array of components, each supplied by every supplier
+	 * @param suppliers
+	 *            an array of suppliers
+	 */
+	public void testScriptOrders(Component[] components, Supplier[] suppliers) {
+		String supplier = suppliers[2].getId();
+		String[] results = runScript("order " + components[4].getId() + " "
+				+ supplier + " 5\norder " + components[5].getId() + " "
+				+ supplier + " 4\norder " + components[4].getId() + " "
+				+ supplier + " 3\n");
+		assert results.length == 3;
+		String[] orderIDs = new String[results.length];
+		for (int index = 0; index < results.length; index++) {
+			assert results[index].contains("\"ok\":true");
+			int start = results[index].indexOf("\"id\":\"") + 6;
+			orderIDs[index] = results[index].substring(start,
+					results[index].indexOf('"', start));
+			assert index == 0
+					|| EntityId.number(EntityId.parse(orderIDs[index])) > EntityId
+							.number(EntityId.parse(orderIDs[index - 1]));
+		}
+
+		int stock = components[5].getStock();
+		results = runScript("fulfill " + orderIDs[1] + "\n");
+		assert results.length == 1 && results[0].contains("\"ok\":true");
+		assert components[5].getStock() == stock + 4;
+		stock = components[4].getStock();
+		results = runScript(
+				"fulfill " + orderIDs[0] + "\nfulfill " + orderIDs[2] + "\n");
+		assert results.length == 2 && results[1].contains("\"ok\":true");
+		assert components[4].getStock() == stock + 8;
+	}
+
+	/**
+	 * Runs a script with a {@code BatchProcessor}.
+	 * 
+	 * @param script
+	 *            the commands, one per line
+	 * @return the result of each command, one per line
+	 */
+	private String[] runScript(String script) {
+		BatchProcessor processor = new BatchProcessor(company);
+		StringWriter results = new StringWriter();
+		try {
+			processor.parse(new StringReader(script));
+			processor.run(results);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return results.toString().split("\n");
+	}
+
+	/**
+	 * Tests that iterating over an {@code IntHashMap}, as the listings of
+	 * outstanding orders do, returns neither entries removed before the
+	 * iterator reaches them nor {@literal null}, and still returns the entries
+	 * that remain
+	 */
+	public void testRemovalDuringIteration() {
+		IntHashMap<Integer> map = new IntHashMap<Integer>();
+		for (int key = 1; key <= 6; key++) {
+			map.put(key, key);
+		}
+		Iterator<Integer> values = map.iterator();
+		assert values.next() == 1;
+		map.remove(2);
+		assert values.hasNext();
+		assert values.next() == 3;
+		map.remove(3);
+		map.remove(4);
+		map.remove(5);
+		assert values.next() == 6;
+		assert !values.hasNext();
+
+		values = map.iterator();
+		assert values.next() == 1;
+		map.remove(6);
+		assert !values.hasNext();
+		map.remove(1);
+		assert !map.iterator().hasNext();
+	}
+
+	/**
+	 * Tests the ranking of suppliers by the quantity they have supplied, for
+	 * a component and for all components together, by fulfilling orders
+	 * for two new components from four new suppliers. Two of the suppliers
+	 * supply the same quantity of the first component, and one supplies none
+	 * of it.
+	 */
+	public void testSupplierRanking() {
+		String[] names = generateNames(6);
+		Component first = company.addComponent(names[0]);
+		Component second = company.addComponent(names[1]);
+		Supplier[] suppliers = new Supplier[4];
+		for (int index = 0; index < suppliers.length; index++) {
+			suppliers[index] = company.addSupplier(names[index + 2]);
+			company.addComponentSupplierRelation(first, suppliers[index]);
+			company.addComponentSupplierRelation(second, suppliers[index]);
+		}
+		supply(first, suppliers[0], 30);
+		supply(first, suppliers[1], 20);
+		supply(first, suppliers[1], 30);
+		supply(first, suppliers[2], 30);
+		supply(second, suppliers[3], 40);
+		supply(second, suppliers[0], 5);
+
+		Supplier tied = suppliers[0].getNumber() < suppliers[2].getNumber()
+				? suppliers[0]
+				: suppliers[2];
+		Supplier other = tied == suppliers[0] ? suppliers[2] : suppliers[0];
+		List<ComponentSupplierRelation> top = company.getTopSuppliers(first,
+				2);
+		assert top.size() == 2;
+		assert top.get(0).getSupplier() == suppliers[1];
+		assert top.get(1).getSupplier() == tied;
+		top = company.getTopSuppliers(first, 10);
+		assert top.size() == 3;
+		assert top.get(2).getSupplier() == other;
+		assert top.get(2).getQuantitySuppliedToDate() == 30;
+		top = company.getTopSuppliers(second, 10);
+		assert top.size() == 2;
+		assert top.get(0).getSupplier() == suppliers[3];
+		assert top.get(1).getSupplier() == suppliers[0];
+
+		assert company.getQuantitySupplied(suppliers[0]) == 35;
+		assert company.getQuantitySupplied(suppliers[1]) == 50;
+		assert company.getQuantitySupplied(suppliers[2]) == 30;
+		assert company.getQuantitySupplied(suppliers[3]) == 40;
+		List<Supplier> ranked = company.getTopSuppliers(Integer.MAX_VALUE);
+		for (int index = 1; index < ranked.size(); index++) {
+			long before = company.getQuantitySupplied(ranked.get(index - 1));
+			long after = company.getQuantitySupplied(ranked.get(index));
+			assert before > after || before == after && ranked
+					.get(index - 1).getNumber() < ranked.get(index).getNumber();
+		}
+		assert company.getQuantitySupplied(ranked.get(ranked.size() - 1)) > 0;
+		int[] positions = new int[suppliers.length];
+		for (int index = 0; index < suppliers.length; index++) {
+			positions[index] = ranked.indexOf(suppliers[index]);
+			assert positions[index] >= 0;
+		}
+		assert positions[1] < positions[3] && positions[3] < positions[0]
+				&& positions[0] < positions[2];
+		assert company.getTopSuppliers(3).equals(ranked.subList(0, 3));
+	}
+
+	/**
+	 * Places an order and fulfills it.
+	 * 
+	 * @param component
+	 *            the component ordered
+	 * @param supplier
+	 *            the supplier it is ordered from
+	 * @param quantity
+	 *            the quantity ordered
+	 */
+	private void supply(Component component, Supplier supplier,
+			int quantity) {
+		Order order = company.placeOrder(component, supplier, quantity);
+		assert company.fulfillOrder(order.getId()) == order.getRelation();
+	}
+
+	/**
+	 * Tests the number and quantity of the outstanding orders of components
+	 * and suppliers as orders are placed, placed in a batch and fulfilled,
+	 * and once the orders have been read back from a snapshot. The orders
+	 * are read back into a collection of their own, attached to the snapshot
+	 * as a retrieve does, so that the company is not replaced.
+	 */
+	public void testOrderTotals() {
+		String[] names = generateNames(4);
+		Component first = company.addComponent(names[0]);
+		Component second = company.addComponent(names[1]);
+		Supplier one = company.addSupplier(names[2]);
+		Supplier other = company.addSupplier(names[3]);
+		for (Component component : new Component[] { first, second }) {
+			company.addComponentSupplierRelation(component, one);
+			company.addComponentSupplierRelation(component, other);
+		}
+		checkTotals(first, 0, 0);
+		checkTotals(one, 0, 0);
+
+		Order kept = company.placeOrder(first, one, 10);
+		Order fulfilled = company.placeOrder(first, other, 20);
+		checkTotals(first, 2, 30);
+		checkTotals(one, 1, 10);
+		checkTotals(other, 1, 20);
+
+		Order[] batch = company.placeOrders(
+				new String[] { first.getId(), second.getId(), second.getId() },
+				new String[] { one.getId(), one.getId(), other.getId() },
+				new int[] { 5, 7, 11 });
+		assert batch[0] != null && batch[1] != null && batch[2] != null;
+		checkTotals(first, 3, 35);
+		checkTotals(second, 2, 18);
+		checkTotals(one, 3, 22);
+		checkTotals(other, 2, 31);
+
+		company.fulfillOrder(fulfilled.getId());
+		checkTotals(first, 2, 15);
+		checkTotals(second, 2, 18);
+		checkTotals(one, 3, 22);
+		checkTotals(other, 1, 11);
+
+		File file = null;
+		try {
+			file = File.createTempFile("TestBed", null);
+			try (DataOutputStream output = open(file)) {
+				CompanySnapshot.write(company, 1, output);
+			}
+			PendingOrders.reset();
+			PendingOrders restored = PendingOrders.instance();
+			PendingOrders.reset();
+			restored.attach(MappedSnapshot.map(file));
+			assert restored.getOrderCount(first) == 2;
+			assert restored.getQuantity(first) == 15;
+			Order read = restored.search(kept.getId());
+			assert read != null && read.getQuantity() == 10;
+			assert restored.getOrderCount(first) == 2;
+			assert restored.getQuantity(first) == 15;
+			assert restored.getOrderCount(second) == 2;
+			assert restored.getQuantity(second) == 18;
+			assert restored.getOrderCount(one) == 3;
+			assert restored.getQuantity(one) == 22;
+			assert restored.getOrderCount(other) == 1;
+			assert restored.getQuantity(other) == 11;
+			assert restored.remove(read);
+			assert restored.getOrderCount(first) == 1;
+			assert restored.getQuantity(first) == 5;
+			assert restored.getOrderCount(one) == 2;
+			assert restored.getQuantity(one) == 12;
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		} finally {
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Asserts the number and quantity of the outstanding orders for a
+	 * component.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param orders
+	 *            the number of orders expected
+	 * @param quantity
+	 *            the quantity expected on order
+	 */
+	private void checkTotals(Component component, int orders, long quantity) {
+		assert company.getPendingOrderCount(component) == orders;
+		assert company.getQuantityOnOrder(component) == quantity;
+	}
+
+	/**
+	 * Asserts the number and quantity of the outstanding orders with a
+	 * supplier.
+	 * 
+	 * @param supplier
+	 *            the supplier
+	 * @param orders
+	 *            the number of orders expected
+	 * @param quantity
+	 *            the quantity expected on order
+	 */
+	private void checkTotals(Supplier supplier, int orders, long quantity) {
+		assert company.getPendingOrderCount(supplier) == orders;
+		assert company.getQuantityOnOrder(supplier) == quantity;
+	}
+
+	/**
+	 * Tests that a snapshot, followed by a delta segment of the changes made
+	 * after it, compacts into a snapshot that holds the company as it is now.
+	 * The files are written to a temporary directory, and the lists of
+	 * changes are cleared after the first snapshot, as a save would do.
+	 * 
+	 * @param components
+	 *            an array of components
+	 * @param suppliers
+	 *            an array of suppliers
+	 */
+	public void testSnapshotRoundTrip(Component[] components,
+			Supplier[] suppliers) {
+		File directory = null;
+		File base = null;
+		File segment = null;
+		File compacted = null;
+		try {
+			directory = Files.createTempDirectory("TestBed").toFile();
+			base = new File(directory, "CompanyData.1");
+			segment = new File(directory, "CompanyDelta.1");
+			compacted = new File(directory, "CompanyData.2");
+			Order fulfilled = company.placeOrder(components[1], suppliers[1],
+					3);
+			try (DataOutputStream output = open(base)) {
+				CompanySnapshot.write(company, 1, output);
+			}
+			ChangeTracker.instance().clear();
+			company.getPendingOrders().clearChanges();
+
+			company.fulfillOrder(fulfilled.getId());
+			company.assignComponent(components[2], 20);
+			Component component = company.addComponent("Round trip");
+			Supplier supplier = company.addSupplier("Round trip");
+			company.addComponentSupplierRelation(component, supplier);
+			Order placed = company.placeOrder(component, supplier, 5);
+			try (DataOutputStream output = open(segment)) {
+				DeltaSegment.write(company, 1, 2, output);
+			}
+			DeltaSegment delta = DeltaSegment.open(segment);
+			delta.read();
+			try (DataOutputStream output = open(compacted)) {
+				CompanySnapshot.compact(MappedSnapshot.map(base),
+						Collections.singletonList(delta), output);
+			}
+
+			MappedSnapshot snapshot = MappedSnapshot.map(compacted);
+			assert snapshot.getEpoch() == 2;
+			assert snapshot.getComponentCount() == company.getAllComponents()
+					.size();
+			for (Component saved : company.getAllComponents()) {
+				int row = snapshot.findComponent(saved.getNumber());
+				assert row >= 0;
+				assert snapshot.getComponentName(row).equals(saved.getName());
+				assert snapshot.getComponentStock(row) == saved.getStock();
+				assert snapshot.getRelationStart(row + 1) - snapshot
+						.getRelationStart(row) == saved.getSupplierRelations()
+								.size();
+				for (int relation = snapshot.getRelationStart(
+						row); relation < snapshot
+								.getRelationStart(row + 1); relation++) {
+					Supplier related = company.getAllSuppliers()
+							.get(snapshot.getSupplierNumber(
+									snapshot.getRelationSupplier(relation)));
+					assert snapshot.getRelationQuantity(relation) == saved
+							.getSupplier(related).getQuantitySuppliedToDate();
+				}
+			}
+			assert snapshot.getSupplierCount() == company.getAllSuppliers()
+					.size();
+			assert snapshot.getOrderCount() == company.getPendingOrders()
+					.size();
+			assert snapshot.findOrder(fulfilled.getNumber()) < 0;
+			int row = snapshot.findOrder(placed.getNumber());
+			assert row >= 0 && snapshot.getOrderQuantity(row) == 5;
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		} finally {
+			for (File file : new File[] { base, segment, compacted,
+					directory }) {
+				if (file != null) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests the replenishment engine: assigning a component below its reorder
+	 * point orders the shortfall, rounded up to the reorder quantity, once;
+	 * assigning more while enough is on order orders nothing; and stopping
+	 * the engine waits for its thread to end.
+	 * 
+	 * @param components
+	 *            an array of components, each with suppliers and nothing on
+	 *            order
+	 */
+	public void testReplenishment(Component[] components) {
+		Component component = components[3];
+		int stock = component.getStock();
+		assert company.getQuantityOnOrder(component) == 0;
+		ReplenishmentEngine engine = company.startReplenishment();
+		engine.setPolicy(component, stock - 100, 30);
+
+		company.assignComponent(component, 150);
+		waitFor(() -> company.getQuantityOnOrder(component) == 60);
+		assert company.getPendingOrderCount(component) == 1;
+
+		long evaluated = engine.getEvaluated();
+		company.assignComponent(component, 5);
+		waitFor(() -> engine.getEvaluated() > evaluated);
+		assert company.getPendingOrderCount(component) == 1;
+		assert company.getQuantityOnOrder(component) == 60;
+
+		company.stopReplenishment();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			assert !thread.getName().equals("Replenishment");
+		}
+	}
+
+	/**
+	 * Waits up to ten seconds for a condition to hold, and asserts that it
+	 * does.
+	 * 
+	 * @param condition
+	 *            the condition
+	 */
+	private static void waitFor(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		assert condition.getAsBoolean();
+	}
+
+	/**
+	 * Opens a buffered stream writing to the given file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the stream
+	 * @throws IOException
+	 *             if the file could not be opened
+	 */
+	private static DataOutputStream open(File file) throws IOException {
+		return new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+	}
+
+	/**
+	 * Used to generate randomized names for components and suppliers.
+	 * 
+	 * @param numberOfNames
+	 * @return an array of randomized names.
+	 */
+	public String[] generateNames(int numberOfNames) {
+		return new DataGenerator(new Random().nextLong())
+				.generateNames(numberOfNames);
+	}
+}
@@ -1,551 +1,770 @@
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
-
-/**
- * This class implements the user interface for the Company project.
- * 
- * @author Shuja Uddin
- *
- */
-public class UserInterface {
-	private static UserInterface userInterface;
-	private BufferedReader input = new BufferedReader(
-			new InputStreamReader(System.in));
-	private static Company company;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * is finished accessing the {@code company}.
-	 */
-	private static final int EXIT = 0;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to add a {@code Component}.
-	 */
-	private static final int ADD_COMPONENT = 1;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to add a {@code Supplier}.
-	 */
-	private static final int ADD_SUPPLIER = 2;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to add a {@code ComponentSupplierRelation}.
-	 */
-	private static final int ADD_COMPONENT_SUPPLIER = 3;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to assign a quantity to a particular {@code Component}.
-	 */
-	private static final int ASSIGN_COMPONENTS = 4;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to place an {@code Order}.
-	 */
-	private static final int PLACE_ORDER = 5;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to fulfill an outstanding {@code Order}.
-	 */
-	private static final int FULFILL_ORDER = 6;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to display the information of a particular {@code Component}.
-	 */
-	private static final int DISPLAY_COMPONENT = 7;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to display the information of a particular {@code Supplier}.
-	 */
-	private static final int DISPLAY_SUPPLIER = 8;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to display the list of {@code Order}s that are currently
-	 * outstanding (i.e.) {@code PendingOrders}.
-	 */
-	private static final int DISPLAY_PENDING_ORDERS = 9;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to display the list of all {@code Component}s in the system.
-	 */
-	private static final int DISPLAY_ALL_COMPONENTS = 10;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to display the list of all {@code Supplier}s in the system.
-	 */
-	private static final int DISPLAY_ALL_SUPPLIERS = 11;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * would like to save all of the changes made into the system.
-	 */
-	private static final int SAVE = 12;
-
-	/**
-	 * Constant value by which the user should enter into the terminal if he/she
-	 * needs help in navigating the system.
-	 */
-	private static final int HELP = 13;
-
-	/**
-	 * Uses the singleton pattern. Looks for any saved data and retrieves it. If
-	 * no data is found, it gets a singleton Company object that can be used for
-	 * testing.
-	 */
-	private UserInterface() {
-		if (yesOrNo("Look for saved data and  use it?")) {
-			retrieve();
-		} else {
-			company = Company.instance();
-			if (yesOrNo(
-					"Do you want to generate a test bed and invoke the functionality using asserts?")) {
-				new TestBed(company);
-			}
-		}
-
-	}
-
-	/**
-	 * Supports the singleton pattern. Retrieves an instance a singleton object
-	 * for {@code userInterface}. If {@code userInterface} is null, a new
-	 * {@code userInterface} will be instantiated.
-	 * 
-	 * @return {@code userInterface} the singleton object.
-	 */
-	public static UserInterface instance() {
-		if (userInterface == null) {
-			return (userInterface = new UserInterface());
-		} else {
-			return userInterface;
-		}
-	}
-
-	/**
-	 * Gets a token after prompting
-	 * 
-	 * @param prompt
-	 *            - whatever the user wants as prompt
-	 * @return - the token from the keyboard
-	 * 
-	 */
-	public String getToken(String prompt) {
-		do {
-			try {
-				System.out.println(prompt);
-				String line = input.readLine();
-				StringTokenizer tokenizer = new StringTokenizer(line, "\n\r\f");
-				if (tokenizer.hasMoreTokens()) {
-					return tokenizer.nextToken();
-				}
-			} catch (IOException ioe) {
-				System.exit(0);
-			}
-		} while (true);
-	}
-
-	/**
-	 * Converts the string to a number
-	 * 
-	 * @param prompt
-	 *            the string for prompting
-	 * @return the integer corresponding to the string
-	 * 
-	 */
-	public int getNumber(String prompt) {
-		do {
-			try {
-				String item = getToken(prompt);
-				Integer number = Integer.valueOf(item);
-				return number.intValue();
-			} catch (NumberFormatException nfe) {
-				System.out.print("Please input a number. ");
-			}
-		} while (true);
-	}
-
-	/**
-	 * Queries for a yes or no and returns true for yes and false for no
-	 * 
-	 * @param prompt
-	 *            The string to be prepended to the yes/no prompt
-	 * @return {@literal true} if the user enters
-	 * 
-	 */
-	private boolean yesOrNo(String prompt) {
-		String more = getToken(
-				prompt + " Enter Y/y for yes, anything else for no");
-		if (more.charAt(0) != 'y' && more.charAt(0) != 'Y') {
-			return false;
-		}
-		return true;
-	}
-
-	/**
-	 * Prompts for a command from the keyboard
-	 * 
-	 * @return a valid command
-	 * 
-	 */
-	public int getCommand() {
-		do {
-			try {
-				int value = getNumber("Enter command, " + HELP + " for help: ");
-				if (value >= EXIT && value <= HELP) {
-					return value;
-				}
-			} catch (NumberFormatException nfe) {
-				System.out.println("Enter a number");
-			}
-		} while (true);
-	}
-
-	/**
-	 * Method for adding a component. Uses the appropriate Company method.
-	 */
-	public void addComponent() {
-		Component component;
-		do {
-			String name = getToken("Enter component name: ");
-			component = company.addComponent(name);
-			if (component != null) {
-				System.out.println(component);
-			} else {
-				System.out
-						.println("Component " + name + " could not be added.");
-			}
-		} while (yesOrNo("Add more components?"));
-	}
-
-	/**
-	 * Method for adding a supplier. Uses the appropriate Company method.
-	 */
-	public void addSupplier() {
-		Supplier supplier;
-		do {
-			String name = getToken("Enter supplier name: ");
-			supplier = company.addSupplier(name);
-			if (supplier != null) {
-				System.out.println(supplier);
-			} else {
-				System.out.println("Supplier " + name + " could not be added.");
-			}
-		} while (yesOrNo("Add more suppliers?"));
-	}
-
-	/**
-	 * Method for adding a relationship between a component and a supplier. Uses
-	 * the functionality of appropriate Company methods.
-	 */
-	public void addComponentSupplierRelation() {
-		String componentID = getToken("Enter component ID: ");
-		Component component = company.findComponent(componentID);
-		if (component == null) {
-			System.out.println("Entered component does not exist.");
-			return;
-		}
-
-		String supplierID = getToken("Enter supplier ID: ");
-		Supplier supplier = company.findSupplier(supplierID);
-		if (supplier == null) {
-			System.out.println("Entered supplier does not exist.");
-			return;
-		}
-
-		boolean relationCreated = company
-				.addComponentSupplierRelation(component, supplier);
-		if (relationCreated) {
-			System.out.println(
-					"Component-Supplier Relationship has been successfully created.");
-			return;
-		}
-		System.out.println("Supplier already associated with component.");
-	}
-
-	/**
-	 * Method for assigning a component to production. Uses the functionality of
-	 * appropriate Company methods.
-	 */
-	public void assignComponents() {
-		String componentID = getToken("Enter component ID: ");
-		Component component = company.findComponent(componentID);
-		if (component == null) {
-			System.out.println("Entered component does not exist.");
-			return;
-		}
-
-		int quantity = getNumber("Enter quantity to assign: ");
-
-		while (quantity < 1) {
-			quantity = getNumber(
-					"Quantity must be more than 0, enter quantity: ");
-		}
-
-		boolean assigned = company.assignComponent(component, quantity);
-		if (assigned) {
-			System.out.println(
-					"Assignment successful. Updated quantity:\n" + component);
-			return;
-		}
-		System.out.println(
-				"Assignment unsuccessful. Assignment quantity exceeds quantity on hand.");
-	}
-
-	/**
-	 * Method for placing an order for a component. Uses the functionality of
-	 * appropriate Company methods.
-	 */
-	public void placeOrder() {
-		String componentID = getToken("Enter component ID: ");
-		Component component = company.findComponent(componentID);
-		if (component == null) {
-			System.out.println("Entered component does not exist.");
-			return;
-		}
-
-		String supplierID = getToken("Enter supplier ID: ");
-		Supplier supplier = company.findSupplier(supplierID);
-		if (supplier == null) {
-			System.out.println("Entered supplier does not exist.");
-			return;
-		}
-
-		int quantity = getNumber("Enter order quantity: ");
-
-		while (quantity < 1) {
-			quantity = getNumber(
-					"Quantity must be more than 0, enter quantity: ");
-		}
-
-		Order order = company.placeOrder(component, supplier, quantity);
-		if (order != null) {
-			System.out.println("Order created: \n" + order);
-			return;
-		}
-		System.out.println("Supplier does not supply this component.");
-	}
-
-	/**
-	 * Method for fulfilling an order. Uses the appropriate Company method.
-	 */
-	public void fulfillOrder() {
-		String orderID = getToken("Enter outstanding order's ID: ");
-		ComponentSupplierRelation relation = company.fulfillOrder(orderID);
-		if (relation == null) {
-			System.out.println("Order not found.");
-			return;
-		}
-		System.out.println(relation);
-	}
-
-	/**
-	 * Method for displaying the details of a given component. Uses the
-	 * appropriate Company methods to find the component and its suppliers.
-	 */
-	public void displayComponent() {
-		String componentID = getToken("Enter component ID: ");
-		Component component = company.findComponent(componentID);
-		if (component == null) {
-			System.out.println("Entered component does not exist.");
-			return;
-		}
-		System.out.println(component);
-		/*
-		 * System.out.println(component + "\nSuppliers:");
-		 * Iterator<ComponentSupplierRelation> componentSuppliers = company
-		 * .getComponentSuppliers(component); while
-		 * (componentSuppliers.hasNext()) { Supplier supplier =
-		 * componentSuppliers.next().getSupplier();
-		 * System.out.println(supplier.getName() + ", " + supplier.getId()); }
-		 */
-	}
-
-	/**
-	 * Method for displaying the details of a given supplier. Uses the
-	 * appropriate Company methods to find the supplier and the components it
-	 * supplies.
-	 */
-	public void displaySupplier() {
-		String supplierID = getToken("Enter supplier ID: ");
-		Supplier supplier = company.findSupplier(supplierID);
-		if (supplier == null) {
-			System.out.println("Entered supplier does not exist.");
-			return;
-		}
-		System.out.println(supplier);
-		/*
-		 * System.out.println(supplier + "\nComponents supplied:");
-		 * Iterator<ComponentSupplierRelation> suppliedComponents = company
-		 * .getSuppliedComponents(supplier); while
-		 * (suppliedComponents.hasNext()) { Component component =
-		 * suppliedComponents.next().getComponent();
-		 * System.out.println(component.getName() + ", " + component.getId()); }
-		 */
-	}
-
-	/**
-	 * Method for displaying all outstanding orders. Uses the appropriate
-	 * Company method to get the list of outstanding orders.
-	 */
-	public void displayPendingOrders() {
-		System.out.println(company.getPendingOrders());
-	}
-
-	/**
-	 * Method for displaying all components. Uses the appropriate Company method
-	 * to get the list of all components.
-	 */
-	public void displayAllComponents() {
-		System.out.println(company.getAllComponents());
-	}
-
-	/**
-	 * Method for displaying all suppliers. Uses the appropriate Company method
-	 * to get the list of all suppliers.
-	 */
-	public void displayAllSuppliers() {
-		System.out.println(company.getAllSuppliers());
-	}
-
-	/**
-	 * Calls the appropriate Company method to retrieve a saved Company object.
-	 * 
-	 */
-	private void retrieve() {
-		try {
-			if (company == null) {
-				company = Company.retrieve();
-				if (company != null) {
-					System.out.println(
-							"The company has been successfully retrieved from the file CompanyData.\n");
-				} else {
-					System.out.println(
-							"File doesn't exist; creating new company.");
-					company = Company.instance();
-				}
-			}
-		} catch (Exception cnfe) {
-			cnfe.printStackTrace();
-		}
-	}
-
-	/**
-	 * Calls the appropriate Company method for saving the Company object.
-	 * 
-	 */
-	private void save() {
-		if (Company.save()) {
-			System.out.println(
-					"The company has been successfully saved in the file CompanyData.\n");
-		} else {
-			System.out.println(
-					"File could not be saved due to an unknown error.\n");
-		}
-	}
-
-	/**
-	 * Displays the help screen
-	 * 
-	 */
-	public void help() {
-		System.out
-				.println("Enter a number between 0 and 13 as explained below:");
-		System.out.println(EXIT + " to exit");
-		System.out.println(ADD_COMPONENT + " to add a component.");
-		System.out.println(ADD_SUPPLIER + " to add a supplier.");
-		System.out.println(
-				ADD_COMPONENT_SUPPLIER + " to add a supplier to a component.");
-		System.out.println(ASSIGN_COMPONENTS
-				+ " to assign a quantity of components to production.");
-		System.out.println(PLACE_ORDER + " to order components.");
-		System.out.println(
-				FULFILL_ORDER + " to mark outstanding orders as fulfilled.");
-		System.out.println(
-				DISPLAY_COMPONENT + " to display a component's details.");
-		System.out.println(
-				DISPLAY_SUPPLIER + " to display a supplier's details.");
-		System.out.println(
-				DISPLAY_PENDING_ORDERS + " to display all outstanding orders.");
-		System.out.println(
-				DISPLAY_ALL_COMPONENTS + " to display all components.");
-		System.out
-				.println(DISPLAY_ALL_SUPPLIERS + " to display all suppliers.");
-		System.out.println(SAVE + " to  save data");
-		System.out.println(HELP + " for help");
-	}
-
-	/**
-	 * Organizes the whole process. Calls the appropriate method for the
-	 * different functionalities.
-	 * 
-	 */
-	public void process() {
-		int command;
-		help();
-		while ((command = getCommand()) != EXIT) {
-			switch (command) {
-				case ADD_COMPONENT :
-					addComponent();
-					break;
-				case ADD_SUPPLIER :
-					addSupplier();
-					break;
-				case ADD_COMPONENT_SUPPLIER :
-					addComponentSupplierRelation();
-					break;
-				case ASSIGN_COMPONENTS :
-					assignComponents();
-					break;
-				case PLACE_ORDER :
-					placeOrder();
-					break;
-				case FULFILL_ORDER :
-					fulfillOrder();
-					break;
-				case DISPLAY_COMPONENT :
-					displayComponent();
-					break;
-				case DISPLAY_SUPPLIER :
-					displaySupplier();
-					break;
-				case DISPLAY_PENDING_ORDERS :
-					displayPendingOrders();
-					break;
-				case DISPLAY_ALL_COMPONENTS :
-					displayAllComponents();
-					break;
-				case DISPLAY_ALL_SUPPLIERS :
-					displayAllSuppliers();
-					break;
-				case SAVE :
-					save();
-					break;
-				case HELP :
-					help();
-					break;
-			}
-		}
-	}
-
-	/**
-	 * The method to start the application. Simply calls process().
-	 * 
-	 * @param args
-	 *            not used
-	 */
-	public static void main(String[] args) {
-		UserInterface.instance().process();
-	}
-}
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.StringTokenizer;
+
+/**
+ * This class implements the user interface for the Company project.
+ * 
+ * @author Shuja Uddin
+ *
+ */
+public class UserInterface {
+	private static UserInterface userInterface;
+	private BufferedReader input = new BufferedReader(
+			new InputStreamReader(System.in));
+	private Writer output = new BufferedWriter(
+			new OutputStreamWriter(System.out), 1 << 16);
+	private static Company company;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * is finished accessing the {@code company}.
+	 */
+	private static final int EXIT = 0;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to add a {@code Component}.
+	 */
+	private static final int ADD_COMPONENT = 1;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to add a {@code Supplier}.
+	 */
+	private static final int ADD_SUPPLIER = 2;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to add a {@code ComponentSupplierRelation}.
+	 */
+	private static final int ADD_COMPONENT_SUPPLIER = 3;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to assign a quantity to a particular {@code Component}.
+	 */
+	private static final int ASSIGN_COMPONENTS = 4;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to place an {@code Order}.
+	 */
+	private static final int PLACE_ORDER = 5;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to fulfill an outstanding {@code Order}.
+	 */
+	private static final int FULFILL_ORDER = 6;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to display the information of a particular {@code Component}.
+	 */
+	private static final int DISPLAY_COMPONENT = 7;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to display the information of a particular {@code Supplier}.
+	 */
+	private static final int DISPLAY_SUPPLIER = 8;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to display the list of {@code Order}s that are currently
+	 * outstanding (i.e.) {@code PendingOrders}.
+	 */
+	private static final int DISPLAY_PENDING_ORDERS = 9;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to display the list of all {@code Component}s in the system.
+	 */
+	private static final int DISPLAY_ALL_COMPONENTS = 10;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to display the list of all {@code Supplier}s in the system.
+	 */
+	private static final int DISPLAY_ALL_SUPPLIERS = 11;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to save all of the changes made into the system.
+	 */
+	private static final int SAVE = 12;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to import components, suppliers and relations from a file.
+	 */
+	private static final int IMPORT = 13;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like to search for components and suppliers by name.
+	 */
+	private static final int SEARCH = 14;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * would like a component to be ordered automatically when it runs low.
+	 */
+	private static final int REORDER = 15;
+
+	/**
+	 * Constant value by which the user should enter into the terminal if he/she
+	 * needs help in navigating the system.
+	 */
+	private static final int HELP = 16;
+
+	/**
+	 * Constant value for the number of entries shown at a time by the commands
+	 * that display all components, suppliers or outstanding orders.
+	 */
+	private static final int PAGE_SIZE = 20;
+
+	/**
+	 * Uses the singleton pattern. Looks for any saved data and retrieves it. If
+	 * no data is found, it gets a singleton Company object that can be used for
+	 * testing.
+	 */
+	private UserInterface() {
+		if (yesOrNo("Look for saved data and  use it?")) {
+			retrieve();
+		} else {
+			company = Company.instance();
+			if (yesOrNo(
+					"Do you want to generate a test bed and invoke the functionality using asserts?")) {
+				new TestBed(company);
+			}
+		}
+
+	}
+
+	/**
+	 * Supports the singleton pattern. Retrieves an instance a singleton object
+	 * for {@code userInterface}. If {@code userInterface} is null, a new
+	 * {@code userInterface} will be instantiated.
+	 * 
+	 * @return {@code userInterface} the singleton object.
+	 */
+	public static UserInterface instance() {
+		if (userInterface == null) {
+			return (userInterface = new UserInterface());
+		} else {
+			return userInterface;
+		}
+	}
+
+	/**
+	 * Gets a token after prompting
+	 * 
+	 * @param prompt
+	 *            - whatever the user wants as prompt
+	 * @return - the token from the keyboard
+	 * 
+	 */
+	public String getToken(String prompt) {
+		do {
+			try {
+				System.out.println(prompt);
+				String line = input.readLine();
+				StringTokenizer tokenizer = new StringTokenizer(line, "\n\r\f");
+				if (tokenizer.hasMoreTokens()) {
+					return tokenizer.nextToken();
+				}
+			} catch (IOException ioe) {
+				System.exit(0);
+			}
+		} while (true);
+	}
+
+	/**
+	 * Converts the string to a number
+	 * 
+	 * @param prompt
+	 *            the string for prompting
+	 * @return the integer corresponding to the string
+	 * 
+	 */
+	public int getNumber(String prompt) {
+		do {
+			try {
+				String item = getToken(prompt);
+				Integer number = Integer.valueOf(item);
+				return number.intValue();
+			} catch (NumberFormatException nfe) {
+				System.out.print("Please input a number. ");
+			}
+		} while (true);
+	}
+
+	/**
+	 * Queries for a yes or no and returns true for yes and false for no
+	 * 
+	 * @param prompt
+	 *            The string to be prepended to the yes/no prompt
+	 * @return {@literal true} if the user enters
+	 * 
+	 */
+	private boolean yesOrNo(String prompt) {
+		String more = getToken(
+				prompt + " Enter Y/y for yes, anything else for no");
+		if (more.charAt(0) != 'y' && more.charAt(0) != 'Y') {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Prompts for a command from the keyboard
+	 * 
+	 * @return a valid command
+	 * 
+	 */
+	public int getCommand() {
+		do {
+			try {
+				int value = getNumber("Enter command, " + HELP + " for help: ");
+				if (value >= EXIT && value <= HELP) {
+					return value;
+				}
+			} catch (NumberFormatException nfe) {
+				System.out.println("Enter a number");
+			}
+		} while (true);
+	}
+
+	/**
+	 * Method for adding a component. Uses the appropriate Company method.
+	 */
+	public void addComponent() {
+		Component component;
+		do {
+			String name = getToken("Enter component name: ");
+			component = company.addComponent(name);
+			if (component != null) {
+				System.out.println(component);
+			} else {
+				System.out
+						.println("Component " + name + " could not be added.");
+			}
+		} while (yesOrNo("Add more components?"));
+	}
+
+	/**
+	 * Method for adding a supplier. Uses the appropriate Company method.
+	 */
+	public void addSupplier() {
+		Supplier supplier;
+		do {
+			String name = getToken("Enter supplier name: ");
+			supplier = company.addSupplier(name);
+			if (supplier != null) {
+				System.out.println(supplier);
+			} else {
+				System.out.println("Supplier " + name + " could not be added.");
+			}
+		} while (yesOrNo("Add more suppliers?"));
+	}
+
+	/**
+	 * Method for adding a relationship between a component and a supplier. Uses
+	 * the functionality of appropriate Company methods.
+	 */
+	public void addComponentSupplierRelation() {
+		String componentID = getToken("Enter component ID: ");
+		Component component = company.findComponent(componentID);
+		if (component == null) {
+			System.out.println("Entered component does not exist.");
+			return;
+		}
+
+		String supplierID = getToken("Enter supplier ID: ");
+		Supplier supplier = company.findSupplier(supplierID);
+		if (supplier == null) {
+			System.out.println("Entered supplier does not exist.");
+			return;
+		}
+
+		boolean relationCreated = company
+				.addComponentSupplierRelation(component, supplier);
+		if (relationCreated) {
+			System.out.println(
+					"Component-Supplier Relationship has been successfully created.");
+			return;
+		}
+		System.out.println("Supplier already associated with component.");
+	}
+
+	/**
+	 * Method for assigning a component to production. Uses the functionality of
+	 * appropriate Company methods.
+	 */
+	public void assignComponents() {
+		String componentID = getToken("Enter component ID: ");
+		Component component = company.findComponent(componentID);
+		if (component == null) {
+			System.out.println("Entered component does not exist.");
+			return;
+		}
+
+		int quantity = getNumber("Enter quantity to assign: ");
+
+		while (quantity < 1) {
+			quantity = getNumber(
+					"Quantity must be more than 0, enter quantity: ");
+		}
+
+		boolean assigned = company.assignComponent(component, quantity);
+		if (assigned) {
+			System.out.println(
+					"Assignment successful. Updated quantity:\n" + component);
+			return;
+		}
+		System.out.println(
+				"Assignment unsuccessful. Assignment quantity exceeds quantity on hand.");
+	}
+
+	/**
+	 * Method for giving a component a reorder point and a reorder quantity,
+	 * so that it is ordered automatically when its stock runs low. Starts the
+	 * replenishment engine of the company, if it is not running yet.
+	 */
+	public void setReorderPolicy() {
+		String componentID = getToken("Enter component ID: ");
+		Component component = company.findComponent(componentID);
+		if (component == null) {
+			System.out.println("Entered component does not exist.");
+			return;
+		}
+
+		int reorderPoint = getNumber("Enter reorder point: ");
+		int reorderQuantity = getNumber(
+				"Enter reorder quantity, 0 to stop ordering automatically: ");
+		company.startReplenishment().setPolicy(component, reorderPoint,
+				reorderQuantity);
+		System.out.println("Reorder policy set.");
+	}
+
+	/**
+	 * Method for placing an order for a component. Uses the functionality of
+	 * appropriate Company methods.
+	 */
+	public void placeOrder() {
+		String componentID = getToken("Enter component ID: ");
+		Component component = company.findComponent(componentID);
+		if (component == null) {
+			System.out.println("Entered component does not exist.");
+			return;
+		}
+
+		String supplierID = getToken("Enter supplier ID: ");
+		Supplier supplier = company.findSupplier(supplierID);
+		if (supplier == null) {
+			System.out.println("Entered supplier does not exist.");
+			return;
+		}
+
+		int quantity = getNumber("Enter order quantity: ");
+
+		while (quantity < 1) {
+			quantity = getNumber(
+					"Quantity must be more than 0, enter quantity: ");
+		}
+
+		Order order = company.placeOrder(component, supplier, quantity);
+		if (order != null) {
+			System.out.println("Order created: \n" + order);
+			return;
+		}
+		System.out.println("Supplier does not supply this component.");
+	}
+
+	/**
+	 * Method for fulfilling an order. Uses the appropriate Company method.
+	 */
+	public void fulfillOrder() {
+		String orderID = getToken("Enter outstanding order's ID: ");
+		ComponentSupplierRelation relation = company.fulfillOrder(orderID);
+		if (relation == null) {
+			System.out.println("Order not found.");
+			return;
+		}
+		System.out.println(relation);
+	}
+
+	/**
+	 * Method for displaying the details of a given component. Uses the
+	 * appropriate Company methods to find the component and its suppliers.
+	 */
+	public void displayComponent() {
+		String componentID = getToken("Enter component ID: ");
+		Component component = company.findComponent(componentID);
+		if (component == null) {
+			System.out.println("Entered component does not exist.");
+			return;
+		}
+		System.out.println(component);
+		/*
+		 * System.out.println(component + "\nSuppliers:");
+		 * Iterator<ComponentSupplierRelation> componentSuppliers = company
+		 * .getComponentSuppliers(component); while
+		 * (componentSuppliers.hasNext()) { Supplier supplier =
+		 * componentSuppliers.next().getSupplier();
+		 * System.out.println(supplier.getName() + ", " + supplier.getId()); }
+		 */
+	}
+
+	/**
+	 * Method for displaying the details of a given supplier. Uses the
+	 * appropriate Company methods to find the supplier and the components it
+	 * supplies.
+	 */
+	public void displaySupplier() {
+		String supplierID = getToken("Enter supplier ID: ");
+		Supplier supplier = company.findSupplier(supplierID);
+		if (supplier == null) {
+			System.out.println("Entered supplier does not exist.");
+			return;
+		}
+		System.out.println(supplier);
+		/*
+		 * System.out.println(supplier + "\nComponents supplied:");
+		 * Iterator<ComponentSupplierRelation> suppliedComponents = company
+		 * .getSuppliedComponents(supplier); while
+		 * (suppliedComponents.hasNext()) { Component component =
+		 * suppliedComponents.next().getComponent();
+		 * System.out.println(component.getName() + ", " + component.getId()); }
+		 */
+	}
+
+	/**
+	 * Method for displaying all outstanding orders, a page at a time. Uses the
+	 * appropriate Company method to get the list of outstanding orders.
+	 */
+	public void displayPendingOrders() {
+		try {
+			PendingOrders pendingOrders = company.getPendingOrders();
+			output.write("Outstanding orders: \n");
+			Page<Order> page;
+			int cursor = 0;
+			do {
+				page = pendingOrders.page(cursor, PAGE_SIZE);
+				for (Order order : page) {
+					PendingOrders.write(output, order);
+				}
+				output.flush();
+				cursor = page.getNextCursor();
+			} while (page.hasMore() && yesOrNo("Display more orders?"));
+			output.write(System.lineSeparator());
+			output.flush();
+		} catch (IOException ioe) {
+			System.out.println("Outstanding orders could not be displayed.");
+		}
+	}
+
+	/**
+	 * Method for displaying all components, a page at a time. Uses the
+	 * appropriate Company method to get the list of all components.
+	 */
+	public void displayAllComponents() {
+		try {
+			ComponentList components = company.getAllComponents();
+			Page<Component> page;
+			int cursor = 0;
+			do {
+				page = components.page(cursor, PAGE_SIZE);
+				for (Component component : page) {
+					component.write(output);
+					output.write('\n');
+				}
+				output.flush();
+				cursor = page.getNextCursor();
+			} while (page.hasMore() && yesOrNo("Display more components?"));
+			output.write(System.lineSeparator());
+			output.flush();
+		} catch (IOException ioe) {
+			System.out.println("Components could not be displayed.");
+		}
+	}
+
+	/**
+	 * Method for displaying all suppliers, a page at a time. Uses the
+	 * appropriate Company method to get the list of all suppliers.
+	 */
+	public void displayAllSuppliers() {
+		try {
+			SupplierList suppliers = company.getAllSuppliers();
+			Page<Supplier> page;
+			int cursor = 0;
+			do {
+				page = suppliers.page(cursor, PAGE_SIZE);
+				for (Supplier supplier : page) {
+					supplier.write(output);
+					output.write('\n');
+				}
+				output.flush();
+				cursor = page.getNextCursor();
+			} while (page.hasMore() && yesOrNo("Display more suppliers?"));
+			output.write(System.lineSeparator());
+			output.flush();
+		} catch (IOException ioe) {
+			System.out.println("Suppliers could not be displayed.");
+		}
+	}
+
+	/**
+	 * Method for searching for components and suppliers by name. Shows those
+	 * whose names start with the text entered, and those whose names nearly
+	 * do, in case the text has a typing mistake.
+	 */
+	public void search() {
+		String text = getToken("Enter the name or the start of the name: ");
+		System.out.println("Components:");
+		for (Component component : company.searchComponents(text,
+				PAGE_SIZE)) {
+			System.out.println(component.getId() + ", " + component.getName());
+		}
+		System.out.println("Suppliers:");
+		for (Supplier supplier : company.searchSuppliers(text, PAGE_SIZE)) {
+			System.out.println(supplier.getId() + ", " + supplier.getName());
+		}
+	}
+
+	/**
+	 * Method for importing components, suppliers and relations from a file.
+	 * Uses a {@code BulkImporter}, and shows its report.
+	 */
+	public void importFile() {
+		String fileName = getToken("Enter the name of the file to import: ");
+		try {
+			BulkImporter.Report report = new BulkImporter(company)
+					.importFile(new File(fileName));
+			System.out.println(report);
+			for (String error : report.getErrors()) {
+				System.out.println(error);
+			}
+		} catch (IOException ioe) {
+			System.out.println("File " + fileName + " could not be read.");
+		}
+	}
+
+	/**
+	 * Calls the appropriate Company method to retrieve a saved Company object.
+	 * 
+	 */
+	private void retrieve() {
+		try {
+			if (company == null) {
+				company = Company.retrieve();
+				if (company != null) {
+					System.out.println(
+							"The company has been successfully retrieved from the file CompanyData.\n");
+				} else {
+					System.out.println(
+							"No saved company could be loaded; creating new company.");
+					company = Company.instance();
+				}
+			}
+		} catch (Exception cnfe) {
+			cnfe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Calls the appropriate Company method for saving the Company object.
+	 * 
+	 */
+	private void save() {
+		if (Company.save()) {
+			System.out.println(
+					"The company has been successfully saved in the file CompanyData.\n");
+		} else {
+			System.out.println(
+					"File could not be saved due to an unknown error.\n");
+		}
+	}
+
+	/**
+	 * Displays the help screen
+	 * 
+	 */
+	public void help() {
+		System.out
+				.println("Enter a number between " + EXIT + " and " + HELP
+						+ " as explained below:");
+		System.out.println(EXIT + " to exit");
+		System.out.println(ADD_COMPONENT + " to add a component.");
+		System.out.println(ADD_SUPPLIER + " to add a supplier.");
+		System.out.println(
+				ADD_COMPONENT_SUPPLIER + " to add a supplier to a component.");
+		System.out.println(ASSIGN_COMPONENTS
+				+ " to assign a quantity of components to production.");
+		System.out.println(PLACE_ORDER + " to order components.");
+		System.out.println(
+				FULFILL_ORDER + " to mark outstanding orders as fulfilled.");
+		System.out.println(
+				DISPLAY_COMPONENT + " to display a component's details.");
+		System.out.println(
+				DISPLAY_SUPPLIER + " to display a supplier's details.");
+		System.out.println(
+				DISPLAY_PENDING_ORDERS + " to display all outstanding orders.");
+		System.out.println(
+				DISPLAY_ALL_COMPONENTS + " to display all components.");
+		System.out
+				.println(DISPLAY_ALL_SUPPLIERS + " to display all suppliers.");
+		System.out.println(SAVE + " to  save data");
+		System.out.println(IMPORT
+				+ " to import components, suppliers and relations from a file.");
+		System.out.println(
+				SEARCH + " to search for components and suppliers by name.");
+		System.out.println(REORDER
+				+ " to order a component automatically when it runs low.");
+		System.out.println(HELP + " for help");
+	}
+
+	/**
+	 * Organizes the whole process. Calls the appropriate method for the
+	 * different functionalities.
+	 * 
+	 */
+	public void process() {
+		int command;
+		help();
+		while ((command = getCommand()) != EXIT) {
+			try {
+				switch (command) {
+					case ADD_COMPONENT :
+						addComponent();
+						break;
+					case ADD_SUPPLIER :
+						addSupplier();
+						break;
+					case ADD_COMPONENT_SUPPLIER :
+						addComponentSupplierRelation();
+						break;
+					case ASSIGN_COMPONENTS :
+						assignComponents();
+						break;
+					case PLACE_ORDER :
+						placeOrder();
+						break;
+					case FULFILL_ORDER :
+						fulfillOrder();
+						break;
+					case DISPLAY_COMPONENT :
+						displayComponent();
+						break;
+					case DISPLAY_SUPPLIER :
+						displaySupplier();
+						break;
+					case DISPLAY_PENDING_ORDERS :
+						displayPendingOrders();
+						break;
+					case DISPLAY_ALL_COMPONENTS :
+						displayAllComponents();
+						break;
+					case DISPLAY_ALL_SUPPLIERS :
+						displayAllSuppliers();
+						break;
+					case SAVE :
+						save();
+						break;
+					case IMPORT :
+						importFile();
+						break;
+					case SEARCH :
+						search();
+						break;
+					case REORDER :
+						setReorderPolicy();
+						break;
+					case HELP :
+						help();
+						break;
+				}
+			} catch (UncheckedIOException uioe) {
+				System.out.println("The change was made but could not be "
+						+ "journaled; save the company to keep it: "
+						+ uioe.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Runs a script of commands against the saved company, or a new one if
+	 * nothing has been saved, without prompting. See {@link BatchProcessor}
+	 * for the commands and the results.
+	 * 
+	 * @param script
+	 *            the name of the script file
+	 * @param results
+	 *            the name of the file the results are written to, or
+	 *            {@literal null} for the standard output, which is flushed
+	 *            but left open
+	 * @throws IOException
+	 *             if the script could not be read or the results written
+	 */
+	private static void runScript(String script, String results)
+			throws IOException {
+		company = Company.retrieve();
+		if (company == null) {
+			company = Company.instance();
+		}
+		long start = System.nanoTime();
+		BatchProcessor processor = new BatchProcessor(company);
+		try (Reader reader = new FileReader(script, StandardCharsets.UTF_8)) {
+			processor.parse(reader);
+		}
+		int commands = processor.size();
+		if (results == null) {
+			Writer writer = new BufferedWriter(
+					new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+					1 << 16);
+			processor.run(writer);
+			writer.flush();
+		} else {
+			try (Writer writer = new BufferedWriter(
+					new FileWriter(results, StandardCharsets.UTF_8), 1 << 16)) {
+				processor.run(writer);
+			}
+		}
+		System.err.printf("Ran %d commands in %.2f s; %d failed.%n", commands,
+				(System.nanoTime() - start) / 1e9, processor.getFailed());
+	}
+
+	/**
+	 * The method to start the application. With no arguments, simply calls
+	 * process(). Otherwise, runs the script named by the first argument,
+	 * writing the results to the file named by the second argument, if there
+	 * is one.
+	 * 
+	 * @param args
+	 *            the script and results files, for a run without prompts
+	 */
+	public static void main(String[] args) {
+		if (args.length > 0) {
+			try {
+				runScript(args[0], args.length > 1 ? args[1] : null);
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+				System.exit(1);
+			}
+			return;
+		}
+		UserInterface.instance().process();
+	}
+}